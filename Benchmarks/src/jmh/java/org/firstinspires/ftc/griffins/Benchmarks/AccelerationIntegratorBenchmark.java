@@ -0,0 +1,92 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import com.qualcomm.hardware.adafruit.BNO055IMU;
+
+import org.firstinspires.ftc.griffins.GriffinAccelerationIntegrator;
+import org.firstinspires.ftc.griffins.GriffinAccelerationIntegratorLowPass;
+import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One acceleration sample through the integrators, at the IMU's 100 Hz.
+ * The samples are made once and reused with new timestamps, so the allocations reported are the integrators' own.
+ * The integrators only make a {@link Position} when asked for one, so {@link #updateAndGetPosition()} includes that.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccelerationIntegratorBenchmark {
+
+    private static final int SAMPLE_COUNT = 1024;
+    private static final long SAMPLE_PERIOD_NANOSECONDS = 10000000;
+
+    @Param({"TRAPEZOID", "SIMPSON", "RK4"})
+    public GriffinAccelerationIntegrator.IntegrationMethod method;
+
+    private final Acceleration[] samples = new Acceleration[SAMPLE_COUNT];
+    private int sampleIndex;
+    private long sampleTime;
+    private GriffinAccelerationIntegrator integrator;
+    private GriffinAccelerationIntegratorLowPass lowPassIntegrator;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            samples[i] = new Acceleration(DistanceUnit.METER, 0.1 * random.nextGaussian(), 0.1 * random.nextGaussian(),
+                    0.1 * random.nextGaussian(), 0);
+        }
+
+        BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
+        parameters.loggingEnabled = false;
+
+        integrator = new GriffinAccelerationIntegrator(method);
+        integrator.initialize(parameters, new Position(DistanceUnit.METER, 0, 0, 0, 1), new Velocity(DistanceUnit.METER, 0, 0, 0, 1));
+        lowPassIntegrator = new GriffinAccelerationIntegratorLowPass(method);
+        lowPassIntegrator.initialize(parameters, new Position(DistanceUnit.METER, 0, 0, 0, 1), new Velocity(DistanceUnit.METER, 0, 0, 0, 1));
+    }
+
+    /**
+     * @return the next sample, stamped 10 ms after the last one; the integrators keep only the previous sample,
+     * so a sample is never changed while it is still in use
+     */
+    private Acceleration nextSample() {
+        sampleIndex = (sampleIndex + 1) & (SAMPLE_COUNT - 1);
+        sampleTime += SAMPLE_PERIOD_NANOSECONDS;
+        Acceleration sample = samples[sampleIndex];
+        sample.acquisitionTime = sampleTime;
+        return sample;
+    }
+
+    @Benchmark
+    public Acceleration update() {
+        integrator.update(nextSample());
+        return integrator.getAcceleration();
+    }
+
+    @Benchmark
+    public Position updateAndGetPosition() {
+        integrator.update(nextSample());
+        return integrator.getPosition();
+    }
+
+    @Benchmark
+    public Acceleration updateLowPass() {
+        lowPassIntegrator.update(nextSample());
+        return lowPassIntegrator.getAcceleration();
+    }
+}
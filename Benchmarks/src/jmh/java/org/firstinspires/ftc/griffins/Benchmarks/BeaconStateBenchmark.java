@@ -0,0 +1,184 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import org.firstinspires.ftc.griffins.RobotHardware.BeaconState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging two sensor readings into a beacon state, and guessing the missing half, as the beacon scan does every loop.
+ * Each call takes the next of every valid input, so the branches are not always taken the same way.
+ * <p/>
+ * The legacy benchmarks run the bit twiddling versions the tables replaced, from {@link LegacyBeaconState}.
+ * Before any measurement, every operation is run on every state both ways, and the run fails if any answer
+ * or exception differs.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BeaconStateBenchmark {
+
+    private static final BeaconState[] SINGLE_STATES = {BeaconState.BLUE, BeaconState.RED, BeaconState.UNDEFINED};
+    private static final BeaconState[] GUESSABLE_STATES;
+    private static final BeaconState[] MERGED_STATES;
+
+    static {
+        List<BeaconState> guessable = new ArrayList<>();
+        for (BeaconState state : BeaconState.values()) {
+            // the merged states, except the one with no data
+            if (state.numberState() > BeaconState.UNDEFINED.numberState() && state != BeaconState.UNDEFINED_UNDEFINED) {
+                guessable.add(state);
+            }
+        }
+        GUESSABLE_STATES = guessable.toArray(new BeaconState[guessable.size()]);
+
+        List<BeaconState> merged = new ArrayList<>();
+        for (BeaconState state : BeaconState.values()) {
+            if (state.numberState() > BeaconState.UNDEFINED.numberState()) {
+                merged.add(state);
+            }
+        }
+        MERGED_STATES = merged.toArray(new BeaconState[merged.size()]);
+    }
+
+    private int mergeIndex;
+    private int guessIndex;
+    private int mergedIndex;
+
+    @Setup(Level.Trial)
+    public void checkSameAsLegacy() {
+        for (BeaconState back : BeaconState.values()) {
+            for (BeaconState front : BeaconState.values()) {
+                checkSame("mergeBeaconStates(" + back + ", " + front + ")", merge(back, front, false), merge(back, front, true));
+            }
+        }
+
+        for (BeaconState state : BeaconState.values()) {
+            for (String operation : new String[]{"containsUndefined", "removeUndefined", "guessBeaconState", "getBackState", "getFrontState"}) {
+                checkSame(operation + "(" + state + ")", apply(operation, state, false), apply(operation, state, true));
+            }
+        }
+
+        for (int numberState = -1; numberState <= 16; numberState++) {
+            checkSame("getFromNumberState(" + numberState + ")", fromNumberState(numberState, false), fromNumberState(numberState, true));
+        }
+    }
+
+    private static void checkSame(String operation, String tables, String legacy) {
+        if (!tables.equals(legacy)) {
+            throw new IllegalStateException(operation + " is " + tables + " with the tables, but " + legacy + " before");
+        }
+    }
+
+    // these return the answer's name, or the exception's class and message, so the two versions can be compared
+
+    private static String merge(BeaconState back, BeaconState front, boolean legacy) {
+        try {
+            return (legacy ? LegacyBeaconState.mergeBeaconStates(back, front) : BeaconState.mergeBeaconStates(back, front)).name();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String apply(String operation, BeaconState state, boolean legacy) {
+        try {
+            switch (operation) {
+                case "containsUndefined":
+                    return String.valueOf(legacy ? LegacyBeaconState.containsUndefined(state) : BeaconState.containsUndefined(state));
+                case "removeUndefined":
+                    return (legacy ? LegacyBeaconState.removeUndefined(state) : BeaconState.removeUndefined(state)).name();
+                case "guessBeaconState":
+                    return (legacy ? LegacyBeaconState.guessBeaconState(state) : BeaconState.guessBeaconState(state)).name();
+                case "getBackState":
+                    return (legacy ? LegacyBeaconState.getBackState(state) : state.getBackState()).name();
+                case "getFrontState":
+                    return (legacy ? LegacyBeaconState.getFrontState(state) : state.getFrontState()).name();
+                default:
+                    throw new IllegalArgumentException(operation);
+            }
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String fromNumberState(int numberState, boolean legacy) {
+        try {
+            return (legacy ? LegacyBeaconState.getFromNumberState(numberState) : BeaconState.getFromNumberState(numberState)).name();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public BeaconState mergeBeaconStates() {
+        mergeIndex = (mergeIndex + 1) % (SINGLE_STATES.length * SINGLE_STATES.length);
+        return BeaconState.mergeBeaconStates(SINGLE_STATES[mergeIndex / SINGLE_STATES.length], SINGLE_STATES[mergeIndex % SINGLE_STATES.length]);
+    }
+
+    @Benchmark
+    public BeaconState guessBeaconState() {
+        guessIndex = (guessIndex + 1) % GUESSABLE_STATES.length;
+        return BeaconState.guessBeaconState(GUESSABLE_STATES[guessIndex]);
+    }
+
+    @Benchmark
+    public BeaconState mergeBeaconStatesLegacy() {
+        mergeIndex = (mergeIndex + 1) % (SINGLE_STATES.length * SINGLE_STATES.length);
+        return LegacyBeaconState.mergeBeaconStates(SINGLE_STATES[mergeIndex / SINGLE_STATES.length], SINGLE_STATES[mergeIndex % SINGLE_STATES.length]);
+    }
+
+    @Benchmark
+    public BeaconState guessBeaconStateLegacy() {
+        guessIndex = (guessIndex + 1) % GUESSABLE_STATES.length;
+        return LegacyBeaconState.guessBeaconState(GUESSABLE_STATES[guessIndex]);
+    }
+
+    @Benchmark
+    public BeaconState removeUndefined() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        return BeaconState.removeUndefined(MERGED_STATES[mergedIndex]);
+    }
+
+    @Benchmark
+    public BeaconState removeUndefinedLegacy() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        return LegacyBeaconState.removeUndefined(MERGED_STATES[mergedIndex]);
+    }
+
+    @Benchmark
+    public boolean containsUndefined() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        return BeaconState.containsUndefined(MERGED_STATES[mergedIndex]);
+    }
+
+    @Benchmark
+    public boolean containsUndefinedLegacy() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        return LegacyBeaconState.containsUndefined(MERGED_STATES[mergedIndex]);
+    }
+
+    @Benchmark
+    public BeaconState backAndFrontStates() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        BeaconState state = MERGED_STATES[mergedIndex];
+        return state.getBackState() == BeaconState.UNDEFINED ? state.getFrontState() : state.getBackState();
+    }
+
+    @Benchmark
+    public BeaconState backAndFrontStatesLegacy() {
+        mergedIndex = (mergedIndex + 1) % MERGED_STATES.length;
+        BeaconState state = MERGED_STATES[mergedIndex];
+        return LegacyBeaconState.getBackState(state) == BeaconState.UNDEFINED ?
+                LegacyBeaconState.getFrontState(state) : LegacyBeaconState.getBackState(state);
+    }
+}
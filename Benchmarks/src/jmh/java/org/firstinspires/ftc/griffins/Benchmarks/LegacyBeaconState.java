@@ -0,0 +1,92 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import org.firstinspires.ftc.griffins.RobotHardware.BeaconState;
+
+/**
+ * The bit twiddling {@link BeaconState} operations from before they were table driven, kept so the benchmark
+ * can time the tables against them and check that both give the same answers.
+ */
+
+public class LegacyBeaconState {
+
+    public static BeaconState mergeBeaconStates(BeaconState back, BeaconState front) {
+        if (back.numberState() >> 2 != 0 || front.numberState() >> 2 != 0) {
+            throw new IllegalArgumentException("Valid arguments are BLUE, RED, UNDEFINED, all others are already merged");
+        }
+
+        return getFromNumberState((back.numberState() << 2) + front.numberState());
+    }
+
+    public static boolean containsUndefined(BeaconState beaconState) {
+        return ((beaconState.numberState() >> 2) ^ 0b11) == 0 || ((beaconState.numberState() & 0b11) ^ 0b11) == 0;
+    }
+
+    public static BeaconState removeUndefined(BeaconState containsUndefined) {
+        if (containsUndefined.numberState() >> 2 == BeaconState.UNDEFINED.numberState()) {
+            return getFromNumberState(containsUndefined.numberState() & 0b00_11);
+        } else {
+            return getFromNumberState((containsUndefined.numberState() & 0b11_00) >> 2);
+        }
+    }
+
+    public static BeaconState guessBeaconState(BeaconState containsUndefined) {
+        if (containsUndefined.numberState() <= 0b00_11 || containsUndefined == BeaconState.UNDEFINED_UNDEFINED) {
+            throw new IllegalArgumentException("Insufficient data: " + containsUndefined);
+        }
+
+        if ((containsUndefined.numberState() & 0b00_11) == BeaconState.UNDEFINED.numberState()) {
+            return getFromNumberState((removeUndefined(containsUndefined).numberState() << 2) + (removeUndefined(containsUndefined).numberState() ^ 0b11));
+        } else if ((containsUndefined.numberState() & 0b11_00) == (BeaconState.UNDEFINED.numberState() << 2)) {
+            return getFromNumberState(((removeUndefined(containsUndefined).numberState() ^ 0b11) << 2) + removeUndefined(containsUndefined).numberState());
+        } else {
+            return containsUndefined;
+        }
+    }
+
+    public static BeaconState getFromNumberState(int numberState) {
+        switch (numberState) {
+            case 0b00_01:
+                return BeaconState.BLUE;
+            case 0b00_10:
+                return BeaconState.RED;
+            case 0b00_11:
+                return BeaconState.UNDEFINED;
+            case 0b01_01:
+                return BeaconState.BLUE_BLUE;
+            case 0b01_10:
+                return BeaconState.BLUE_RED;
+            case 0b01_11:
+                return BeaconState.BLUE_UNDEFINED;
+            case 0b10_01:
+                return BeaconState.RED_BLUE;
+            case 0b10_10:
+                return BeaconState.RED_RED;
+            case 0b10_11:
+                return BeaconState.RED_UNDEFINED;
+            case 0b11_01:
+                return BeaconState.UNDEFINED_BLUE;
+            case 0b11_10:
+                return BeaconState.UNDEFINED_RED;
+            case 0b11_11:
+                return BeaconState.UNDEFINED_UNDEFINED;
+            default:
+                throw new IllegalArgumentException("Not a valid number state.");
+        }
+    }
+
+    public static BeaconState getBackState(BeaconState state) {
+        if (state.numberState() <= 0b00_11) {
+            throw new IllegalArgumentException("Not Merged!");
+        }
+
+        return getFromNumberState(state.numberState() >> 2);
+    }
+
+    public static BeaconState getFrontState(BeaconState state) {
+        if (state.numberState() <= 0b00_11) {
+            throw new IllegalArgumentException("Not Merged!");
+        }
+
+        return getFromNumberState(state.numberState() & 0b00_11);
+    }
+}
@@ -0,0 +1,67 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import org.firstinspires.ftc.griffins.Filter;
+import org.firstinspires.ftc.griffins.LowPassFilter;
+import org.firstinspires.ftc.griffins.RingBufferLowPassFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One value through the moving average filters, after they are full.
+ * The ring buffer filter is the one the integrator uses now, the list based one is kept to compare against.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LowPassFilterBenchmark {
+
+    private static final int VALUE_COUNT = 1024;
+
+    @Param({"10", "100"})
+    public int capacity;
+
+    private final double[] values = new double[VALUE_COUNT];
+    private int valueIndex;
+    private Filter lowPassFilter;
+    private Filter ringBufferFilter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = 9.8 + random.nextGaussian();
+        }
+
+        lowPassFilter = new LowPassFilter(capacity);
+        ringBufferFilter = new RingBufferLowPassFilter(capacity);
+        for (int i = 0; i < capacity; i++) {
+            lowPassFilter.processValue(nextValue());
+            ringBufferFilter.processValue(nextValue());
+        }
+    }
+
+    private double nextValue() {
+        valueIndex = (valueIndex + 1) & (VALUE_COUNT - 1);
+        return values[valueIndex];
+    }
+
+    @Benchmark
+    public double lowPassFilter() {
+        return lowPassFilter.processValue(nextValue());
+    }
+
+    @Benchmark
+    public double ringBufferLowPassFilter() {
+        return ringBufferFilter.processValue(nextValue());
+    }
+}
@@ -0,0 +1,64 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import org.firstinspires.ftc.griffins.Navigation.DoubleSource;
+import org.firstinspires.ftc.griffins.Navigation.PIDController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One calculation of the controller, in the per iteration mode the old loops use and the time based mode.
+ * The source walks through a fixed set of readings, so the error changes every call like it does on the robot.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PIDControllerBenchmark {
+
+    private static final int READING_COUNT = 1024;
+
+    @Param({"false", "true"})
+    public boolean timeBased;
+
+    private final double[] readings = new double[READING_COUNT];
+    private int readingIndex;
+    private PIDController controller;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < READING_COUNT; i++) {
+            readings[i] = 1000 * Math.sin(2 * Math.PI * i / READING_COUNT);
+        }
+
+        controller = new PIDController(0.0015, 0.0001, 0.003, 0.1, 22.3, new DoubleSource() {
+            @Override
+            public double value() {
+                readingIndex = (readingIndex + 1) & (READING_COUNT - 1);
+                return readings[readingIndex];
+            }
+        }, null);
+        controller.setTimeBased(timeBased);
+        controller.setOutputRange(-1, 1);
+        controller.setSetPoint(500);
+        controller.sendPIDOutput(); // enables the controller
+    }
+
+    @Benchmark
+    public double calculate() {
+        controller.calculate();
+        return controller.getError();
+    }
+
+    @Benchmark
+    public double sendPIDOutput() {
+        return controller.sendPIDOutput();
+    }
+}
@@ -0,0 +1,55 @@
+package org.firstinspires.ftc.griffins.Benchmarks;
+
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import org.firstinspires.ftc.griffins.Simulation.SimDcMotor;
+import org.firstinspires.ftc.griffins.SyncedDcMotors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting the power of a drive side, two motors in sync, like every drive loop does twice.
+ * The motors are simulated ones, so this measures the sync and the power bookkeeping, not the USB write.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SyncedDcMotorsBenchmark {
+
+    private SyncedDcMotors allSame;
+    private SyncedDcMotors alternating;
+    private double power;
+
+    @Setup
+    public void setup() {
+        allSame = new SyncedDcMotors(DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALL_SAME,
+                new SimDcMotor("left1", 560, 340), new SimDcMotor("left2", 560, 340));
+        alternating = new SyncedDcMotors(DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALTERNATING,
+                new SimDcMotor("shooterL", 560, 340), new SimDcMotor("shooterR", 560, 340));
+    }
+
+    private double nextPower() {
+        power = power > 0.99 ? -1 : power + 0.01;
+        return power;
+    }
+
+    @Benchmark
+    public double setPowerAllSame() {
+        allSame.setPower(nextPower());
+        return allSame.getPower();
+    }
+
+    @Benchmark
+    public double setPowerAlternating() {
+        alternating.setPower(nextPower());
+        return alternating.getPower();
+    }
+}
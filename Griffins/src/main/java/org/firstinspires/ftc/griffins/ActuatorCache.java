@@ -0,0 +1,184 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sits in front of the motor and servo writes, every write to a Modern Robotics controller is a USB transaction.
+ * A write is dropped when it is within a tolerance of the last value sent to the controller.
+ * <p/>
+ * By default writes go out immediately. In deferred mode only the last value of each actuator is kept,
+ * and {@link #flush()} sends them all at the end of the cycle, grouped by controller.
+ * <p/>
+ * The actuators can be written from more than one thread, like the particle sorter on the controller's thread
+ * and the control loop flushing on its own. Each cached actuator is locked on its own while it is written or flushed,
+ * so a flush always sends the newest value, and threads writing different actuators never wait for each other.
+ * The actuators are wrapped once, while the hardware is set up, before any other thread uses the cache.
+ */
+
+public class ActuatorCache {
+
+    public static final double DEFAULT_POWER_TOLERANCE = 0.005; // half of the controller's power resolution
+    public static final double DEFAULT_POSITION_TOLERANCE = 0.5 / 255; // half of the controller's servo resolution
+
+    interface CachedActuator {
+        HardwareDevice getControllerDevice();
+
+        /**
+         * @return true if a value was sent to the controller
+         */
+        boolean flush();
+    }
+
+    private final List<CachedActuator> actuators = new ArrayList<>();
+    private final Map<HardwareDevice, CachedActuator> wrappers = new IdentityHashMap<>();
+    private volatile double powerTolerance = DEFAULT_POWER_TOLERANCE;
+    private volatile double positionTolerance = DEFAULT_POSITION_TOLERANCE;
+    private volatile boolean deferred;
+
+    //statistics, under the cache's lock
+    private long requestedWrites;
+    private long sentWrites;
+    private long windowStartTime = Clock.now();
+    private long windowStartSaved;
+    private double writesSavedPerSecond;
+
+    /**
+     * @return a cached motor in front of the motor, the same one every time for the same motor
+     */
+    public CachedDcMotor wrap(DcMotor motor) {
+        CachedActuator wrapper = wrappers.get(motor);
+        if (wrapper == null) {
+            wrapper = new CachedDcMotor(this, motor);
+            add(motor, wrapper);
+        }
+        return (CachedDcMotor) wrapper;
+    }
+
+    /**
+     * @return a cached servo in front of the servo, the same one every time for the same servo
+     */
+    public CachedServo wrap(Servo servo) {
+        CachedActuator wrapper = wrappers.get(servo);
+        if (wrapper == null) {
+            wrapper = new CachedServo(this, servo);
+            add(servo, wrapper);
+        }
+        return (CachedServo) wrapper;
+    }
+
+    private void add(HardwareDevice device, CachedActuator wrapper) {
+        wrappers.put(device, wrapper);
+
+        // keep the actuators of each controller next to each other, so a flush finishes one controller before the next
+        int index = actuators.size();
+        for (int i = actuators.size() - 1; i >= 0; i--) {
+            if (actuators.get(i).getControllerDevice() == wrapper.getControllerDevice()) {
+                index = i + 1;
+                break;
+            }
+        }
+        actuators.add(index, wrapper);
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Leaving deferred mode flushes the pending writes.
+     */
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+        if (!deferred) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the pending writes of every actuator, should be called once at the end of each cycle in deferred mode.
+     */
+    public void flush() {
+        for (CachedActuator actuator : actuators) {
+            actuator.flush();
+        }
+    }
+
+    /**
+     * Sends the pending write of one actuator right away, even in deferred mode,
+     * for a write that cannot wait for the end of the cycle.
+     *
+     * @param actuator one of the cache's wrappers
+     * @return true if a value was sent to the controller
+     */
+    public boolean flush(HardwareDevice actuator) {
+        if (!(actuator instanceof CachedActuator)) {
+            throw new IllegalArgumentException("Not a cached actuator: " + actuator);
+        }
+        return ((CachedActuator) actuator).flush();
+    }
+
+    public double getPowerTolerance() {
+        return powerTolerance;
+    }
+
+    public void setPowerTolerance(double powerTolerance) {
+        this.powerTolerance = powerTolerance;
+    }
+
+    public double getPositionTolerance() {
+        return positionTolerance;
+    }
+
+    public void setPositionTolerance(double positionTolerance) {
+        this.positionTolerance = positionTolerance;
+    }
+
+    synchronized void recordRequest() {
+        requestedWrites++;
+    }
+
+    synchronized void recordSend() {
+        sentWrites++;
+    }
+
+    public synchronized long getRequestedWrites() {
+        return requestedWrites;
+    }
+
+    public synchronized long getSentWrites() {
+        return sentWrites;
+    }
+
+    public synchronized long getSavedWrites() {
+        return requestedWrites - sentWrites;
+    }
+
+    /**
+     * @return the writes saved per second, over the last whole second
+     */
+    public synchronized double getWritesSavedPerSecond() {
+        long now = Clock.now();
+        long elapsed = now - windowStartTime;
+        if (elapsed >= 1000000000L) {
+            long saved = getSavedWrites();
+            writesSavedPerSecond = (saved - windowStartSaved) * 1e9 / elapsed;
+            windowStartSaved = saved;
+            windowStartTime = now;
+        }
+        return writesSavedPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d/%d writes sent, %.0f saved/s",
+                getSentWrites(), getRequestedWrites(), getWritesSavedPerSecond());
+    }
+}
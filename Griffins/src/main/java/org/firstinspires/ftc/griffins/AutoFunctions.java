@@ -7,13 +7,32 @@ import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.Range;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import org.firstinspires.ftc.griffins.Commands.Command;
+import org.firstinspires.ftc.griffins.Commands.CommandScheduler;
+import org.firstinspires.ftc.griffins.Commands.DeadlineGroup;
+import org.firstinspires.ftc.griffins.Commands.DeferredCommand;
+import org.firstinspires.ftc.griffins.Commands.InstantCommand;
+import org.firstinspires.ftc.griffins.Commands.SequentialGroup;
+import org.firstinspires.ftc.griffins.Commands.WaitCommand;
+import org.firstinspires.ftc.griffins.Commands.WaitUntilCommand;
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+import org.firstinspires.ftc.griffins.Navigation.DriveReplay;
+import org.firstinspires.ftc.griffins.Navigation.FlywheelService;
 import org.firstinspires.ftc.griffins.Navigation.LinearOpModeTimeOutFunc;
 import org.firstinspires.ftc.griffins.Navigation.PIDDrive;
 import org.firstinspires.ftc.griffins.Navigation.PIDRate;
+import org.firstinspires.ftc.griffins.Navigation.Pose;
+import org.firstinspires.ftc.griffins.Navigation.PoseFusion;
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+import org.firstinspires.ftc.griffins.Navigation.VuforiaPoseService;
 import org.firstinspires.ftc.griffins.RobotHardware.BeaconState;
 import org.firstinspires.ftc.robotcore.external.Func;
+import org.firstinspires.ftc.robotcore.internal.AppUtil;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.Locale;
 
 import static org.firstinspires.ftc.griffins.RobotHardware.BUTTON_PUSHER_RATIO;
 import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.BLUE;
@@ -27,20 +46,36 @@ import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.guessBeac
 
 /**
  * Created by David on 11/28/2016.
+ * The methods that end in Command build {@link Command}s for a {@link CommandScheduler}, so mechanisms can overlap,
+ * {@link #run(Command)} runs one to the end. The blocking methods do the same things one at a time.
  */
 
 public class AutoFunctions {
     public static final double[] scanningSpeeds = {0.07, 0.15};
+    // the predictive scan: the leading color sensor is read at least this many times while the robot moves one sensor spacing
+    public static final double SCAN_SAMPLES_PER_SPACING = 3;
+    public static final double SCAN_STOP_TOLERANCE = 0.5; // inches the robot may move between a color and the sensor reading it
+    public static final double SCAN_DECELERATION = 40; // inches per second squared
+    public static final double MAX_SCAN_SPEED = 24; // inches per second
+    public static final double SCAN_INCHES_PER_SECOND_PER_POWER = 60; // the first guess, it is measured during the scan
     public static final double SHOOTING_SPEED = 0.71;
+    public static final double SHOOTING_RPM = SHOOTING_SPEED * RobotHardware.SHOOTER_MAX_RPM;
+    // the shot from the second beacon is further from the goal
+    public static final double BEACON_SHOOTING_RPM = 0.765 * RobotHardware.SHOOTER_MAX_RPM;
 
     private LinearOpMode linearOpMode;
     private RobotHardware hardware;
     private PIDDrive drive;
     private PIDRate rate;
+    private FlywheelService flywheel;
+    private VuforiaPoseService poseService;
     private BeaconState alliance;
-    //AutoLoadTimeOutFunc 'static' variables
-    private ElapsedTime reverseTimer = new ElapsedTime(0);
-    private ElapsedTime loaderTimer = new ElapsedTime(0);
+    private final ParticleSorter sorter;
+    private final LoopHistogram scanTime = LoopHistogram.get("beacon scan");
+
+    private final CommandScheduler scheduler = new CommandScheduler();
+    private final ControlLoopExecutor commandLoop = new ControlLoopExecutor();
+    private final Func<Boolean> opModeActive;
 
     public AutoFunctions(RobotHardware hardware, LinearOpMode linearOpMode) {
         this(hardware, linearOpMode, null);
@@ -52,6 +87,93 @@ public class AutoFunctions {
         drive = new PIDDrive(hardware);
         rate = new PIDRate(hardware);
         this.alliance = alliance;
+        sorter = new ParticleSorter(hardware);
+        sorter.setAlliance(alliance);
+
+        opModeActive = new Func<Boolean>() {
+            @Override
+            public Boolean value() {
+                return AutoFunctions.this.linearOpMode.opModeIsActive();
+            }
+        };
+        flywheel = new FlywheelService(rate, opModeActive);
+        scheduler.addPeriodic(new Runnable() {
+            @Override
+            public void run() {
+                AutoFunctions.this.linearOpMode.telemetry.update();
+            }
+        });
+    }
+
+    /**
+     * Runs the command, and any commands it starts, until it finishes or the opmode stops.
+     *
+     * @return true if it finished
+     */
+    public boolean run(Command command) {
+        if (!linearOpMode.opModeIsActive()) {
+            return false;
+        }
+        scheduler.schedule(command);
+        return scheduler.runUntilIdle(opModeActive, commandLoop);
+    }
+
+    public CommandScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public FlywheelService getFlywheel() {
+        return flywheel;
+    }
+
+    public ParticleSorter getSorter() {
+        return sorter;
+    }
+
+    /**
+     * Starts writing the drive and shooter data to files in the robot settings folder, as they are recorded.
+     * If a file can not be opened the data is still kept in memory.
+     *
+     * @param fileNamePrefix the start of the file names, "-drive.dat" and "-shooter.dat" are added to it
+     */
+    public void startRecording(String fileNamePrefix) {
+        try {
+            drive.getRecorder().startFlushing(new File(AppUtil.ROBOT_SETTINGS, fileNamePrefix + "-drive.dat"));
+            rate.getRecorder().startFlushing(new File(AppUtil.ROBOT_SETTINGS, fileNamePrefix + "-shooter.dat"));
+        } catch (IOException e) {
+            RobotLog.ee("AutoFunctions", "could not open the recording files: %s", e.getMessage());
+            linearOpMode.telemetry.log().add("not recording: " + e.getMessage());
+        }
+    }
+
+    public void stopRecording() {
+        drive.getRecorder().stopFlushing();
+        rate.getRecorder().stopFlushing();
+    }
+
+    /**
+     * Starts a pose service on the vision source, if it is ready, and corrects the fused pose with its poses from then on.
+     * The odometry has to be on the field first, and the source's poses have to be in the same field frame,
+     * see {@link org.firstinspires.ftc.griffins.Navigation.FieldFrameSource}.
+     *
+     * @return true if the service was started
+     */
+    public boolean startVision(VisionSource source) {
+        if (poseService != null || !source.isReady()) {
+            return false;
+        }
+        poseService = new VuforiaPoseService(source);
+        poseService.start();
+        hardware.setPoseService(poseService);
+        return true;
+    }
+
+    public void stopVision() {
+        if (poseService != null) {
+            hardware.setPoseService(null);
+            poseService.stop();
+            poseService = null;
+        }
     }
 
     public BeaconState getAlliance() {
@@ -63,6 +185,7 @@ public class AutoFunctions {
         boolean blue = alliance == BLUE || this.alliance == BLUE;
 
         this.alliance = alliance;
+        sorter.setAlliance(alliance);
         Iterator dimIterator = linearOpMode.hardwareMap.deviceInterfaceModule.iterator();
 
         for (DeviceInterfaceModule dim :
@@ -118,29 +241,49 @@ public class AutoFunctions {
     }
 
     public void scanForBeacon(DriveStraightDirection defaultDirection, TurnDirection turnDirection) {
-        double drivePower = determineDrivePower(defaultDirection, turnDirection);
-
-        Func<Boolean> timeout = new AutoLoadTimeOutFunc(linearOpMode, 3);
+        run(scanForBeaconCommand(defaultDirection, turnDirection));
+    }
 
-        while (timeout.value() && drivePower != 0) {
-            wallDrive(drivePower, turnDirection);
-            drivePower = determineDrivePower(defaultDirection, turnDirection);
-            linearOpMode.telemetry.update();
-        }
+    /**
+     * Drives along the wall until both beacon colors are seen, for 3 seconds while auto loading,
+     * then for up to 2 more with the intake reversed.
+     */
+    public Command scanForBeaconCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection) {
+        return scanForBeaconCommand(defaultDirection, turnDirection, false);
+    }
 
-        hardware.setLoaderPower(0);
-        hardware.getIntake().setPower(0);
-        timeout = new LinearOpModeTimeOutFunc(linearOpMode, 2);
+    /**
+     * Scans like {@link #scanForBeaconCommand(DriveStraightDirection, TurnDirection)}, but at the speed the color sensors
+     * can keep up with, slowing down between the two sensors seeing the beacon so it stops on the button.
+     * Every scan is logged with its time.
+     */
+    public Command predictiveScanForBeaconCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection) {
+        return scanForBeaconCommand(defaultDirection, turnDirection, true);
+    }
 
-        while (timeout.value() && drivePower != 0) {
-            hardware.getIntake().setPower(-1);
-            wallDrive(drivePower, turnDirection);
-            drivePower = determineDrivePower(defaultDirection, turnDirection);
-            linearOpMode.telemetry.update();
-        }
+    private Command scanForBeaconCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection, boolean predictive) {
+        return new SequentialGroup(
+                new DeadlineGroup(scanCommand(defaultDirection, turnDirection, false, predictive).withTimeout(3), autoLoadCommand()),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        hardware.setLoaderPower(0);
+                        hardware.getIntake().setPower(0);
+                    }
+                }),
+                scanCommand(defaultDirection, turnDirection, true, predictive).withTimeout(2),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        hardware.setLoaderPower(0);
+                        hardware.stopDrive();
+                    }
+                }));
+    }
 
-        hardware.setLoaderPower(0);
-        hardware.stopDrive();
+    private Command scanCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection, boolean reverseIntake, boolean predictive) {
+        return predictive ? new PredictiveScanCommand(defaultDirection, turnDirection, reverseIntake)
+                : new ScanCommand(defaultDirection, turnDirection, reverseIntake);
     }
 
     public void oneWheelTurn(DcMotor turningMotor, double angle) throws InterruptedException {
@@ -414,65 +557,112 @@ public class AutoFunctions {
     }
 
     public void pushBeacon(BeaconState beaconState, BeaconState alliance, boolean shoot) {
-        if (linearOpMode.opModeIsActive()) {
-            if (beaconState != UNDEFINED_UNDEFINED) {
-                beaconState = guessBeaconState(beaconState);
-                boolean drove = false;
+        run(pushBeaconCommand(beaconState, alliance, shoot));
+    }
 
-                double inchesBetweenButtons = 4.8;
-                BeaconState previousAlliance = this.alliance;
+    /**
+     * Presses the alliance's side of the beacon, driving to the other button first if it is on the far side.
+     * With shoot, the particles are fired while the button is pressed, once the flywheels are at speed,
+     * the flywheels can be armed early with {@link #armFlywheelCommand(double)} to skip the wait.
+     */
+    public Command pushBeaconCommand(BeaconState beaconState, final BeaconState alliance, final boolean shoot) {
+        SequentialGroup sequence = new SequentialGroup();
+        if (beaconState == UNDEFINED_UNDEFINED) {
+            return sequence;
+        }
 
-                if (shoot) {
-                    hardware.getShooter().setPower(0.765);
-                }
+        beaconState = guessBeaconState(beaconState);
+        boolean drove = false;
 
-                if ((alliance == BLUE && beaconState == RED_BLUE) || (alliance == RED && beaconState == BLUE_RED)) {
-                    drove = true;
+        double inchesBetweenButtons = 4.8;
+        final BeaconState previousAlliance = this.alliance;
+        TurnDirection toWall = alliance == BLUE ? TurnDirection.RIGHT : TurnDirection.LEFT;
+
+        if (shoot) {
+            sequence.addCommands(armFlywheelCommand(BEACON_SHOOTING_RPM));
+        }
+
+        if ((alliance == BLUE && beaconState == RED_BLUE) || (alliance == RED && beaconState == BLUE_RED)) {
+            drove = true;
+            sequence.addCommands(new InstantCommand(new Runnable() {
+                @Override
+                public void run() {
                     if (!shoot) {
                         hardware.getIntake().setPower(-1);
-                        this.alliance = null;
+                        AutoFunctions.this.alliance = null;
+                        sorter.setAlliance(null);
                     } else {
                         hardware.getTurretRotation().setTargetPosition((int) (hardware.getTurretRotation().getTargetPosition() +
                                 (alliance == RED ? 1 : -1) * RobotHardware.ENCODER_COUNTS_PER_TURRET_DEGREE * 6));
                         hardware.getTurretRotation().setPower(.5);
                     }
-                    wallPIDDrive(inchesBetweenButtons, DriveStraightDirection.FORWARD, alliance == BLUE ? TurnDirection.RIGHT : TurnDirection.LEFT, 1);
-
                 }
+            }));
+            sequence.addCommands(wallPIDDriveCommand(inchesBetweenButtons, DriveStraightDirection.FORWARD, toWall, 1));
+        }
 
-                if (shoot) {
-                    autoLoadingSleep(500);
+        if (shoot) {
+            sequence.addCommands(withAutoLoad(waitForFlywheelCommand(1.5)), new InstantCommand(new Runnable() {
+                @Override
+                public void run() {
                     hardware.setLoaderPower(0.75);
                 }
+            }));
+        }
 
-                if (!((alliance == BLUE && beaconState == BLUE_BLUE) || (alliance == RED && beaconState == RED_RED))) {
+        if (!((alliance == BLUE && beaconState == BLUE_BLUE) || (alliance == RED && beaconState == RED_RED))) {
+            sequence.addCommands(new InstantCommand(new Runnable() {
+                @Override
+                public void run() {
                     hardware.extendButtonPusher(BUTTON_PUSHER_RATIO);
-                    if (shoot) {
-                        linearOpMode.sleep(2000);
-                    } else {
-                        autoLoadingSleep(2000);
-                    }
                 }
+            }), shoot ? new WaitCommand(2) : withAutoLoad(new WaitCommand(2)));
+        }
 
-
-
+        sequence.addCommands(new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
                 hardware.retractButtonPusher();
-                if (shoot) {
-                    linearOpMode.sleep(1000);
-                } else {
-                    autoLoadingSleep(1000);
-                    this.alliance = previousAlliance;
+            }
+        }));
+        if (shoot) {
+            sequence.addCommands(new WaitCommand(1));
+        } else {
+            sequence.addCommands(withAutoLoad(new WaitCommand(1)), new InstantCommand(new Runnable() {
+                @Override
+                public void run() {
+                    AutoFunctions.this.alliance = previousAlliance;
+                    sorter.setAlliance(previousAlliance);
                 }
+            }));
+        }
 
-                if (drove && !shoot) {
-                    wallPIDDrive(inchesBetweenButtons, DriveStraightDirection.BACKWARD, alliance == BLUE ? TurnDirection.RIGHT : TurnDirection.LEFT, 1);
-                }
+        if (drove && !shoot) {
+            sequence.addCommands(wallPIDDriveCommand(inchesBetweenButtons, DriveStraightDirection.BACKWARD, toWall, 1));
+        }
 
+        sequence.addCommands(new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
                 hardware.setLoaderPower(0);
-                hardware.getShooter().setPower(0);
+                flywheel.disarm();
                 hardware.getIntake().setPower(0);
             }
-        }
+        }));
+        return sequence;
+    }
+
+    /**
+     * Reads the beacon when the command starts, and presses the alliance's side.
+     */
+    public Command pushBeaconCommand(final BeaconState alliance, final boolean shoot) {
+        return new DeferredCommand(new Func<Command>() {
+            @Override
+            public Command value() {
+                return pushBeaconCommand(alliance == BLUE ? hardware.findRightBeaconState() : hardware.findLeftBeaconState(),
+                        alliance, shoot);
+            }
+        }).requires(drive);
     }
 
     public void pushBeacon(BeaconState alliance) {
@@ -495,30 +685,76 @@ public class AutoFunctions {
     }
 
     public void shoot(){
-        if (linearOpMode.opModeIsActive()){
-            hardware.getShooter().setPower(SHOOTING_SPEED);
-            linearOpMode.sleep(700);
-            hardware.setLoaderPower(0.75);
-            linearOpMode.sleep(1000);
-            hardware.setLoaderPower(0);
-            linearOpMode.sleep(500);
-            hardware.setLoaderPower(0.75);
-            linearOpMode.sleep(1000);
-            hardware.getShooter().setPower(0.0);
-            hardware.setLoaderPower(0.0);
-        }
+        run(shootCommand());
+    }
+
+    /**
+     * Spins up the flywheels, if they are not already, and fires two particles once they are at speed.
+     */
+    public Command shootCommand() {
+        return new SequentialGroup(
+                armFlywheelCommand(SHOOTING_RPM),
+                waitForFlywheelCommand(1.5),
+                loaderPowerCommand(0.75),
+                new WaitCommand(1),
+                loaderPowerCommand(0),
+                new WaitCommand(0.5),
+                loaderPowerCommand(0.75),
+                new WaitCommand(1),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        flywheel.disarm();
+                        hardware.setLoaderPower(0.0);
+                    }
+                }));
+    }
+
+    /**
+     * Arms the flywheel service with the speed, the flywheels spin up in the background while other commands run.
+     */
+    public Command armFlywheelCommand(final double rpm) {
+        return new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
+                flywheel.arm(rpm);
+            }
+        });
+    }
+
+    /**
+     * Waits until the flywheels are at the armed speed, it finishes right away if they already are.
+     *
+     * @param timeoutSeconds the longest it waits, so a flywheel that never settles does not stall the autonomous
+     */
+    public Command waitForFlywheelCommand(double timeoutSeconds) {
+        return new WaitUntilCommand(new Func<Boolean>() {
+            @Override
+            public Boolean value() {
+                return flywheel.isAtSpeed();
+            }
+        }).withTimeout(timeoutSeconds);
+    }
+
+    public Command loaderPowerCommand(final double power) {
+        return new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
+                hardware.setLoaderPower(power);
+            }
+        });
     }
 
     public void shootPID() {
         if (linearOpMode.opModeIsActive()) {
-            rate.setRateTarget(7);
-            linearOpMode.sleep(500);
+            LinearOpModeTimeOutFunc opModeActive = new LinearOpModeTimeOutFunc(linearOpMode, 30);
+            rate.setRateTarget(SHOOTING_RPM);
+            rate.waitUntilAtSpeed(new LinearOpModeTimeOutFunc(linearOpMode, 1.5));
             hardware.setLoaderPower(1.0);
-            linearOpMode.sleep(2000);
+            rate.holdRate(2, opModeActive);
             hardware.setLoaderPower(0.0);
-            linearOpMode.sleep(500);
             rate.setRateTarget(0);
-            hardware.setLoaderPower(0.0);
+            linearOpMode.telemetry.log().add("shot spin up " + rate.getLeftFlywheel().getSpinUpTime() + ", " + rate.getRightFlywheel().getSpinUpTime());
         }
     }
 
@@ -550,8 +786,9 @@ public class AutoFunctions {
 
     public void driveStraightPID(double inches, DriveStraightDirection direction, double timeoutSeconds, boolean quickExit) {
         drive.setDriveTarget(inches * (direction == DriveStraightDirection.FORWARD ? 1 : -1));
-        drive.driveToTarget(new AutoLoadTimeOutFunc(linearOpMode, timeoutSeconds), linearOpMode.telemetry);
-        hardware.setLoaderPower(0);
+        sorter.enable();
+        drive.driveToTarget(new LinearOpModeTimeOutFunc(linearOpMode, timeoutSeconds), linearOpMode.telemetry);
+        stopAutoLoad();
     }
 
     public void driveStraightPID(double inches, DriveStraightDirection direction, boolean quickExit) {
@@ -568,8 +805,9 @@ public class AutoFunctions {
 
     public String twoWheelTurnPID(double degrees, TurnDirection direction, double timeoutSeconds, boolean quickExit) {
         drive.setTurnTarget(degrees * (direction == TurnDirection.LEFT ? 1 : -1));
-        String data = drive.driveToTarget(new AutoLoadTimeOutFunc(linearOpMode, timeoutSeconds), linearOpMode.telemetry, quickExit);
-        hardware.setLoaderPower(0);
+        sorter.enable();
+        String data = drive.driveToTarget(new LinearOpModeTimeOutFunc(linearOpMode, timeoutSeconds), linearOpMode.telemetry, quickExit);
+        stopAutoLoad();
         return data;
     }
 
@@ -585,8 +823,41 @@ public class AutoFunctions {
         return twoWheelTurnPID(degrees, direction, timeoutSeconds, false);
     }
 
-    public String shootPIDtoString(double rps) {
-        return rate.spinToTarget(new LinearOpModeTimeOutFunc(linearOpMode, 10), linearOpMode.telemetry, false);
+    /**
+     * Turns to a field heading from the fused pose, so the heading does not depend on how far off the earlier moves ended.
+     */
+    public void turnToHeading(double heading, double timeoutSeconds) {
+        drive.setTurnTargetHeading(heading);
+        sorter.enable();
+        drive.driveToTarget(new LinearOpModeTimeOutFunc(linearOpMode, timeoutSeconds), linearOpMode.telemetry, false);
+        stopAutoLoad();
+    }
+
+    /**
+     * Turns toward a field position and drives onto it, using the fused pose.
+     * If the position is behind the robot, it turns the back toward it and drives backward, whichever turn is shorter.
+     */
+    public void driveToPosition(double x, double y, double timeoutSeconds) {
+        PoseFusion pose = hardware.getPoseFusion();
+        hardware.updateSensorFrame();
+        double bearing = pose.getBearingTo(x, y);
+        if (Math.abs(Pose.wrapDegrees(bearing - pose.getHeading())) > 90) {
+            bearing += 180;
+        }
+
+        long startTime = Clock.now();
+        turnToHeading(pose.getHeading() + Pose.wrapDegrees(bearing - pose.getHeading()), timeoutSeconds);
+        drive.setDriveTargetPosition(x, y);
+        sorter.enable();
+        drive.driveToTarget(new LinearOpModeTimeOutFunc(linearOpMode, Math.max(0, timeoutSeconds - Clock.secondsSince(startTime))),
+                linearOpMode.telemetry, false);
+        stopAutoLoad();
+    }
+
+    public String shootPIDtoString(double rpm) {
+        String data = rate.spinToTarget(rpm, new LinearOpModeTimeOutFunc(linearOpMode, 10), linearOpMode.telemetry, false);
+        rate.setRateTarget(0);
+        return data;
     }
 
     public void wallPIDDrive(double inches, DriveStraightDirection direction, TurnDirection turnDirection, double timeoutSeconds) {
@@ -599,66 +870,377 @@ public class AutoFunctions {
             leftBias = .6;
             rightBias = 1;
         }
-        drive.wallDriveToTarget(leftBias, rightBias, new AutoLoadTimeOutFunc(linearOpMode, timeoutSeconds));
+        sorter.enable();
+        drive.wallDriveToTarget(leftBias, rightBias, new LinearOpModeTimeOutFunc(linearOpMode, timeoutSeconds));
+        stopAutoLoad();
+    }
+
+    /**
+     * Drives like {@link #driveStraightPID(double, DriveStraightDirection, double)}, a step per cycle.
+     */
+    public Command driveStraightCommand(final double inches, final DriveStraightDirection direction, double timeoutSeconds) {
+        return withAutoLoad(new PIDDriveCommand() {
+            @Override
+            protected void setTarget() {
+                drive.setDriveTarget(inches * (direction == DriveStraightDirection.FORWARD ? 1 : -1));
+            }
+        }.withTimeout(timeoutSeconds));
+    }
+
+    /**
+     * Turns like {@link #turnToHeading(double, double)}, a step per cycle.
+     */
+    public Command turnToHeadingCommand(final double heading, double timeoutSeconds) {
+        return withAutoLoad(new PIDDriveCommand() {
+            @Override
+            protected void setTarget() {
+                drive.setTurnTargetHeading(heading);
+            }
+        }.withTimeout(timeoutSeconds));
+    }
+
+    /**
+     * Drives along the wall like {@link #wallPIDDrive(double, DriveStraightDirection, TurnDirection, double)}, a step per cycle.
+     */
+    public Command wallPIDDriveCommand(final double inches, final DriveStraightDirection direction, TurnDirection turnDirection,
+                                       double timeoutSeconds) {
+        final double leftBias = turnDirection == TurnDirection.RIGHT ? 1 : .6;
+        final double rightBias = turnDirection == TurnDirection.RIGHT ? .6 : 1;
+        return withAutoLoad(new Command() {
+            private boolean onTarget;
+
+            @Override
+            protected void initialize() {
+                drive.setDriveTarget(inches * (direction == DriveStraightDirection.FORWARD ? 1 : -1));
+                onTarget = false;
+            }
+
+            @Override
+            protected void execute() {
+                onTarget = drive.stepWallDrive(leftBias, rightBias);
+            }
+
+            @Override
+            protected boolean isFinished() {
+                return onTarget;
+            }
+
+            @Override
+            protected void end(boolean interrupted) {
+                hardware.stopDrive();
+            }
+        }.requires(drive).withTimeout(timeoutSeconds));
+    }
+
+    /**
+     * Sorts the particles in the loader for as long as it runs, it never finishes.
+     * The {@link ParticleSorter} does the sorting as the loader color sensor is read, the command only turns it on and off.
+     */
+    public Command autoLoadCommand() {
+        return new Command() {
+            @Override
+            protected void initialize() {
+                sorter.enable();
+            }
+
+            @Override
+            protected boolean isFinished() {
+                return false;
+            }
+
+            @Override
+            protected void end(boolean interrupted) {
+                sorter.disable();
+            }
+        };
+    }
+
+    /**
+     * Drives a recorded run again, tracking its encoders and heading, see {@link DriveReplay}.
+     */
+    public Command replayCommand(final DriveReplay replay) {
+        return new Command() {
+            private boolean done;
+
+            @Override
+            protected void initialize() {
+                replay.start();
+                done = false;
+            }
+
+            @Override
+            protected void execute() {
+                done = replay.step();
+            }
+
+            @Override
+            protected boolean isFinished() {
+                return done;
+            }
+
+            @Override
+            protected void end(boolean interrupted) {
+                replay.stop();
+            }
+        }.requires(drive);
+    }
+
+    /**
+     * @return the command with the auto loading running alongside it, the loader is stopped after it
+     */
+    private Command withAutoLoad(Command command) {
+        return new SequentialGroup(new DeadlineGroup(command, autoLoadCommand()), loaderPowerCommand(0));
+    }
+
+    /**
+     * Stops the sorting the blocking methods start, and the loader with it.
+     */
+    private void stopAutoLoad() {
+        sorter.disable();
         hardware.setLoaderPower(0);
     }
 
     public void autoLoadingSleep(int milliseconds) {
-        AutoLoadTimeOutFunc timeOutFunc = new AutoLoadTimeOutFunc(linearOpMode, milliseconds / 1000.0);
+        LinearOpModeTimeOutFunc timeOutFunc = new LinearOpModeTimeOutFunc(linearOpMode, milliseconds / 1000.0);
+        sorter.enable();
         while (timeOutFunc.value())
             linearOpMode.telemetry.update();
-        hardware.setLoaderPower(0);
+        stopAutoLoad();
     }
 
     public void AutoLoadingTest() {
-        AutoLoadTimeOutFunc autoLoadTimeOutFunc = new AutoLoadTimeOutFunc(linearOpMode, 30);
+        LinearOpModeTimeOutFunc timeOutFunc = new LinearOpModeTimeOutFunc(linearOpMode, 30);
+        sorter.enable();
 
-        while (autoLoadTimeOutFunc.value())
+        while (timeOutFunc.value()) {
+            linearOpMode.telemetry.addData("Particle Color", hardware.findParticleColor());
+            linearOpMode.telemetry.addData("Sorter", sorter);
+            LoopHistogram.addTelemetry(linearOpMode.telemetry);
             linearOpMode.telemetry.update();
+        }
+        stopAutoLoad();
     }
 
     public enum DriveStraightDirection {FORWARD, BACKWARD}
     public enum TurnDirection {RIGHT, LEFT}
 
-    public class AutoLoadTimeOutFunc extends LinearOpModeTimeOutFunc {
+    /**
+     * Runs the drive to the target that {@link #setTarget()} sets, a step per cycle, and stops it when it ends.
+     */
+    private abstract class PIDDriveCommand extends Command {
+        private boolean onTarget;
+
+        PIDDriveCommand() {
+            requires(drive);
+        }
+
+        protected abstract void setTarget();
+
+        @Override
+        protected void initialize() {
+            setTarget();
+            drive.startToTarget(false);
+            onTarget = false;
+        }
+
+        @Override
+        protected void execute() {
+            onTarget = drive.stepToTarget();
+        }
+
+        @Override
+        protected boolean isFinished() {
+            return onTarget;
+        }
+
+        @Override
+        protected void end(boolean interrupted) {
+            hardware.stopDrive();
+        }
+    }
 
-        public AutoLoadTimeOutFunc(LinearOpMode opMode, double timeOutLengthSeconds) {
-            super(opMode, timeOutLengthSeconds);
-            hardware.registerLoaderColorSensor();
+    /**
+     * Drives along the wall, slower once one beacon color is seen, until both are.
+     */
+    private class ScanCommand extends Command {
+        private final DriveStraightDirection defaultDirection;
+        private final TurnDirection turnDirection;
+        private final boolean reverseIntake;
+        private double drivePower;
+
+        ScanCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection, boolean reverseIntake) {
+            this.defaultDirection = defaultDirection;
+            this.turnDirection = turnDirection;
+            this.reverseIntake = reverseIntake;
+            requires(drive);
         }
 
         @Override
-        public Boolean value() {
-
-            if (alliance != null) {
-                double loaderPower = loaderTimer.milliseconds() > 200 ? 0 : .5;
-                double intakePower = reverseTimer.milliseconds() > 750 ? 1 : -1;
-
-                BeaconState ball = hardware.findParticleColor();
-
-                if (ball == alliance) { // particle is our color
-                    loaderPower = 1;
-                    intakePower = 1;
-                    loaderTimer.reset();
-                } else if (!ball.containsUndefined()) { // particle is not our color
-                    loaderPower = -1;
-                    intakePower = -1;
-                    reverseTimer.reset();
-                    loaderTimer.reset();
+        protected void initialize() {
+            drivePower = determineDrivePower(defaultDirection, turnDirection);
+        }
+
+        @Override
+        protected void execute() {
+            if (drivePower != 0) {
+                if (reverseIntake) {
+                    hardware.getIntake().setPower(-1);
                 }
+                wallDrive(drivePower, turnDirection);
+                drivePower = determineDrivePower(defaultDirection, turnDirection);
+            }
+        }
 
-                hardware.getIntake().setPower(intakePower);
-                hardware.setLoaderPower(loaderPower);
+        @Override
+        protected boolean isFinished() {
+            return drivePower == 0;
+        }
+    }
 
-                linearOpMode.telemetry.addData("Particle Color", ball);
-                linearOpMode.telemetry.addData("Loader Power", loaderPower);
-                linearOpMode.telemetry.addData("Intake Power", intakePower);
-                linearOpMode.telemetry.addData("Timer Value", reverseTimer.milliseconds());
+    /**
+     * Drives along the wall until both beacon colors are seen, with the speed worked out from the color sensors.
+     * <p/>
+     * Before any color is seen it drives as fast as the leading sensor can still be read
+     * {@link #SCAN_SAMPLES_PER_SPACING} times over one sensor spacing. Once the leading sensor sees a color,
+     * the trailing one reaches the same spot after one spacing, so the speed comes down to stop there,
+     * but never below the speed at which the robot moves {@link #SCAN_STOP_TOLERANCE} between the trailing sensor
+     * seeing the color and the loop reacting to it. The power for a speed is learned from the encoders as it drives.
+     */
+    private class PredictiveScanCommand extends Command {
+        private final DriveStraightDirection defaultDirection;
+        private final TurnDirection turnDirection;
+        private final boolean reverseIntake;
+        private final ExponentialMovingAverageFilter loopPeriod = new ExponentialMovingAverageFilter(0.2);
+        private final ExponentialMovingAverageFilter speed = new ExponentialMovingAverageFilter(0.3);
+        private double inchesPerSecondPerPower;
+        private double power;
+        private long startTime;
+        private long lastTime;
+        private double startDistance;
+        private double lastDistance;
+        private double leadingSeenDistance;
+        private boolean found;
+        private int drivenCycles;
+
+        PredictiveScanCommand(DriveStraightDirection defaultDirection, TurnDirection turnDirection, boolean reverseIntake) {
+            this.defaultDirection = defaultDirection;
+            this.turnDirection = turnDirection;
+            this.reverseIntake = reverseIntake;
+            requires(drive);
+        }
 
+        @Override
+        protected void initialize() {
+            loopPeriod.reset();
+            speed.reset();
+            inchesPerSecondPerPower = SCAN_INCHES_PER_SECOND_PER_POWER;
+            power = 0;
+            SensorFrame frame = hardware.updateSensorFrame();
+            startTime = frame.getTimestamp();
+            lastTime = startTime;
+            startDistance = getDistance(frame);
+            lastDistance = startDistance;
+            // a sensor that already sees a color could have seen it anywhere, so the whole spacing is left to go
+            leadingSeenDistance = startDistance;
+            found = false;
+            drivenCycles = 0;
+        }
+
+        @Override
+        protected void execute() {
+            SensorFrame frame = hardware.updateSensorFrame();
+            double distance = getDistance(frame);
+            double dt = (frame.getTimestamp() - lastTime) * 1e-9;
+            if (dt > 0) {
+                loopPeriod.processValue(dt);
+                speed.processValue((distance - lastDistance) / dt);
+                // the power that moved the robot this cycle was set last cycle
+                if (power > 0 && speed.atCapacity()) {
+                    inchesPerSecondPerPower = Range.clip(inchesPerSecondPerPower + 0.2 * (speed.getProcessedValue() / power - inchesPerSecondPerPower),
+                            10, 120);
+                }
             }
+            lastTime = frame.getTimestamp();
+            lastDistance = distance;
 
+            BeaconState beaconState = turnDirection == TurnDirection.RIGHT ? hardware.findRightBeaconState() : hardware.findLeftBeaconState();
+            boolean forward = defaultDirection == DriveStraightDirection.FORWARD;
+            ColorSensorPoller leadingPoller = getPoller(forward);
+            ColorSensorPoller trailingPoller = getPoller(!forward);
+
+            if (!beaconState.containsUndefined()) {
+                found = true;
+                return;
+            }
 
-            return super.value();
+            double sensorPeriod = Math.max(leadingPoller.getAveragePeriod(), trailingPoller.getAveragePeriod());
+            if (sensorPeriod == 0) {
+                // not read twice yet, the old scanning speed is known to be safe
+                sensorPeriod = RobotHardware.BEACON_COLOR_SENSOR_SPACING / (SCAN_SAMPLES_PER_SPACING * scanningSpeeds[1] * inchesPerSecondPerPower);
+            }
+            double approachSpeed = Math.min(MAX_SCAN_SPEED, RobotHardware.BEACON_COLOR_SENSOR_SPACING / (SCAN_SAMPLES_PER_SPACING * sensorPeriod));
+            double creepSpeed = Math.min(approachSpeed, SCAN_STOP_TOLERANCE / (sensorPeriod + loopPeriod.getProcessedValue()));
+
+            double targetSpeed;
+            if (beaconState == UNDEFINED_UNDEFINED) {
+                targetSpeed = approachSpeed;
+                leadingSeenDistance = Double.NaN;
+            } else {
+                if (Double.isNaN(leadingSeenDistance)) {
+                    // the color was there when the sample was read, the robot has moved on since
+                    leadingSeenDistance = distance - speed.getProcessedValue() * (frame.getTimestamp() - leadingPoller.getLatestSample().getTimestamp()) * 1e-9;
+                }
+                double remaining = Math.max(0, RobotHardware.BEACON_COLOR_SENSOR_SPACING - (distance - leadingSeenDistance));
+                targetSpeed = Range.clip(Math.sqrt(2 * SCAN_DECELERATION * remaining), creepSpeed, approachSpeed);
+            }
+
+            power = Range.clip(targetSpeed / inchesPerSecondPerPower, scanningSpeeds[0], 1);
+            if (reverseIntake) {
+                hardware.getIntake().setPower(-1);
+            }
+            wallDrive(power * (forward ? 1 : -1.1), turnDirection);
+            drivenCycles++;
+
+            linearOpMode.telemetry.addData("Beacon State", beaconState);
+            linearOpMode.telemetry.addData("Scan Speed", "%.1f in/s, target %.1f in/s", speed.getProcessedValue(), targetSpeed);
+        }
+
+        @Override
+        protected boolean isFinished() {
+            return found;
+        }
+
+        @Override
+        protected void end(boolean interrupted) {
+            hardware.stopDrive();
+            if (drivenCycles == 0) {
+                // already on the button, like the second part of a scan that found it in the first
+                return;
+            }
+
+            double seconds = (lastTime - startTime) * 1e-9;
+            String report = String.format(Locale.US, "beacon scan %s in %.2f s, %.1f in, sensors %.0f/%.0f ms",
+                    found ? "found" : "missed", seconds, Math.abs(lastDistance - startDistance),
+                    getPoller(true).getAveragePeriod() * 1000, getPoller(false).getAveragePeriod() * 1000);
+            scanTime.record(lastTime - startTime);
+            RobotLog.ii("AutoFunctions", report);
+            linearOpMode.telemetry.log().add(report);
+        }
+
+        /**
+         * @return the inches driven in the scan direction, from the average of the drive encoders
+         */
+        private double getDistance(SensorFrame frame) {
+            double inches = (frame.getLeftDrivePosition() + frame.getRightDrivePosition()) / 2.0 * RobotHardware.INCHES_PER_ENCODER_COUNT;
+            return defaultDirection == DriveStraightDirection.FORWARD ? inches : -inches;
+        }
+
+        private ColorSensorPoller getPoller(boolean front) {
+            if (turnDirection == TurnDirection.RIGHT) {
+                return front ? hardware.getRightSecondaryButtonPusherColorPoller() : hardware.getRightButtonPusherColorPoller();
+            } else {
+                return front ? hardware.getLeftSecondaryButtonPusherColorPoller() : hardware.getLeftButtonPusherColorPoller();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -3,14 +3,34 @@ package org.firstinspires.ftc.griffins;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
 
+import org.firstinspires.ftc.griffins.Commands.Command;
+import org.firstinspires.ftc.griffins.Commands.InstantCommand;
+import org.firstinspires.ftc.griffins.Commands.ParallelGroup;
+import org.firstinspires.ftc.griffins.Commands.SequentialGroup;
+import org.firstinspires.ftc.griffins.Commands.WaitCommand;
+import org.firstinspires.ftc.griffins.Commands.WaitUntilCommand;
+import org.firstinspires.ftc.griffins.Navigation.FieldFrameSource;
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+import org.firstinspires.ftc.robotcore.external.Func;
+
 /**
  * Created by David on 3/25/2017.
+ * The field poses are in inches, with the beacon wall along the x axis at y = 0 and the field at positive y,
+ * the red side is the blue side mirrored across the middle of the field.
+ * The vision source's poses are in Vuforia's field frame, they are turned into this one by a {@link FieldFrameSource}.
  */
 
 public abstract class BeaconAuto extends LinearOpMode {
+    public static final double FIELD_SIZE = 144;
+    // the blue start, facing the beacon wall at 45 degrees with both beacons ahead of it to the right
+    public static final double START_X = 24;
+    public static final double START_Y = 46;
+    public static final double START_HEADING = -45;
+
     protected Alliance alliance;
     private RobotHardware hardware;
     private AutoFunctions autoFunctions;
+    private VisionSource visionSource;
 
     private AutoFunctions.TurnDirection toWall;
     private AutoFunctions.TurnDirection awayFromWall;
@@ -39,87 +59,160 @@ public abstract class BeaconAuto extends LinearOpMode {
 
         autoFunctions.setAlliance(color);
         autoFunctions.setAlliance(null);
+        // the camera takes a few seconds to start, so it starts before the match
+        visionSource = createVisionSource();
+        telemetry.log().add(visionSource != null ? "Vision ready" : "No vision, driving on the odometry");
         telemetry.log().add("versioning 11");
 
         waitForStart();
+        LoopHistogram.resetAll();
+        autoFunctions.startRecording("auto");
+
+        // the steps run one after another, except where a mechanism can get ready while another one moves
+        Command autonomous = new SequentialGroup(
+                // the shooter spins up while the gyro finishes calibrating
+                new ParallelGroup(autoFunctions.armFlywheelCommand(AutoFunctions.SHOOTING_RPM), new WaitUntilCommand(new Func<Boolean>() {
+                    @Override
+                    public Boolean value() {
+                        return !hardware.getTurretGyro().isCalibrating();
+                    }
+                })),
+
+                //shoot two particles
+                autoFunctions.shootCommand(),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        telemetry.log().add("Finished Shooting");
+
+                        // the odometry measures the rest of the run from the start, so the turns are to headings, not by angles,
+                        // and the vision poses correct it from here
+                        hardware.updateSensorFrame();
+                        hardware.getOdometry().setPose(getStartX(), START_Y, getStartHeading());
+                        if (visionSource != null) {
+                            autoFunctions.startVision(new FieldFrameSource(visionSource, alliance == Alliance.BLUE_ALLIANCE));
+                        }
+                    }
+                }),
+
+                //drive toward beacon wall, running the intake for the first half second of the drive
+                new ParallelGroup(autoFunctions.driveStraightCommand(51, AutoFunctions.DriveStraightDirection.FORWARD, 3),
+                        new SequentialGroup(intakePowerCommand(1), new WaitCommand(0.5), intakePowerCommand(0))),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        telemetry.log().add("Arrived at beacon wall");
+                    }
+                }),
+
+                autoFunctions.driveStraightCommand(2, AutoFunctions.DriveStraightDirection.BACKWARD, 1),
+
+                //"parallel parking", 22 degrees away from the wall from the start heading, whatever the drive did to it
+                autoFunctions.turnToHeadingCommand(getStartHeading() + (awayFromWall == AutoFunctions.TurnDirection.LEFT ? 22 : -22), 2),
+
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        hardware.registerBeaconColorSensors();
+                        hardware.registerLoaderColorSensor();
+                    }
+                }),
+
+                autoFunctions.driveStraightCommand(22, AutoFunctions.DriveStraightDirection.FORWARD, 1.5),
+                allianceCommand(color),
+                autoFunctions.wallPIDDriveCommand(22, AutoFunctions.DriveStraightDirection.FORWARD, toWall, 2),
+
+                autoFunctions.predictiveScanForBeaconCommand(AutoFunctions.DriveStraightDirection.FORWARD, toWall),
+                autoFunctions.loaderPowerCommand(0),
+
+                autoFunctions.pushBeaconCommand(color, false),
+
+                autoFunctions.wallPIDDriveCommand(45, AutoFunctions.DriveStraightDirection.BACKWARD, toWall, 2),
+
+                allianceCommand(null),
+
+                // nothing is loaded once the alliance is cleared, so the shooter spins up and the turret turns toward
+                // the goal during the scan, instead of after it
+                autoFunctions.armFlywheelCommand(AutoFunctions.BEACON_SHOOTING_RPM),
+                new InstantCommand(new Runnable() {
+                    @Override
+                    public void run() {
+                        hardware.getTurretRotation().setMode(DcMotor.RunMode.RUN_TO_POSITION);
+                        hardware.getTurretRotation().setTargetPosition((int) (hardware.getTurretRotation().getCurrentPosition() +
+                                (toWall == AutoFunctions.TurnDirection.LEFT ? 1 : -1) * RobotHardware.ENCODER_COUNTS_PER_TURRET_DEGREE * 40));
+                        hardware.getTurretRotation().setPower(.5);
+                    }
+                }),
+                autoFunctions.predictiveScanForBeaconCommand(AutoFunctions.DriveStraightDirection.BACKWARD, toWall),
+                intakePowerCommand(0),
+
+                autoFunctions.pushBeaconCommand(color, true),
+
+                drivePowerCommand(0.25, 0.4),
+                new WaitCommand(0.9),
+                drivePowerCommand(0, -0.6),
+                new WaitCommand(0.8),
+                drivePowerCommand(-0.5, -0.3),
+                new WaitCommand(2),
+                drivePowerCommand(0, 0));
+
+        autoFunctions.run(autonomous);
+        autoFunctions.getFlywheel().stop();
+        autoFunctions.stopVision();
+
+        autoFunctions.stopRecording();
+        LoopHistogram.dumpAll("auto-loop-times.csv");
+    }
 
-        while (opModeIsActive() && hardware.getTurretGyro().isCalibrating()) ;
-
-        //shoot two particles
-        autoFunctions.shoot();
-        telemetry.log().add("Finished Shooting");
-        telemetry.update();
-
-        double angle = autoFunctions.getZAngle();
-
-        hardware.getIntake().setPower(1);
-        sleep(500);
-        hardware.getIntake().setPower(0);
-
-        //drive toward beacon wall
-        autoFunctions.driveStraightPID(51, AutoFunctions.DriveStraightDirection.FORWARD, 3, true);
-        telemetry.log().add("Arrived at beacon wall");
-        telemetry.update();
-
-
-        autoFunctions.driveStraightPID(2, AutoFunctions.DriveStraightDirection.BACKWARD, 1);
-
-        angle -= autoFunctions.getZAngle();
-
-        //"parallel parking"
-        int gyroHeading = hardware.getTurretGyro().getIntegratedZValue();
-        autoFunctions.twoWheelTurnPID(22 + (alliance == Alliance.RED_ALLIANCE ? -1 : 1) * angle, awayFromWall, 2);
-
-        hardware.registerBeaconColorSensors();
-        hardware.registerLoaderColorSensor();
-
-        autoFunctions.driveStraightPID(22, AutoFunctions.DriveStraightDirection.FORWARD, 1.5, true);
-        autoFunctions.setAlliance(color);
-        autoFunctions.wallPIDDrive(22, AutoFunctions.DriveStraightDirection.FORWARD, toWall, 2);
-
-        //autoFunctions.twoWheelTurnPID(20, AutoFunctions.TurnDirection.RIGHT, .3, true); //timer out
-
-        hardware.stopDrive();
-
-        autoFunctions.scanForBeacon(AutoFunctions.DriveStraightDirection.FORWARD, toWall);
-
-        hardware.setLoaderPower(0);
-
-/*        setDrivePower(0.2, 0.1);
-
-        autoFunctions.autoLoadingSleep(200);*/
-        hardware.stopDrive();
-
-        autoFunctions.pushBeacon(color);
-
-        //autoFunctions.twoWheelTurnPID(45, AutoFunctions.TurnDirection.LEFT, 0.5, true); //timer out
-        autoFunctions.wallPIDDrive(45, AutoFunctions.DriveStraightDirection.BACKWARD, toWall, 2);
-
-        autoFunctions.setAlliance(null);
-
-        autoFunctions.scanForBeacon(AutoFunctions.DriveStraightDirection.BACKWARD, toWall);
+    /**
+     * Called once while the op mode initializes.
+     *
+     * @return an initialized vision source whose poses are in Vuforia's field frame, or null to drive on the odometry alone
+     */
+    protected VisionSource createVisionSource() {
+        return null;
+    }
 
-        /*setDrivePower(-0.2, -0.1);
+    public double getStartX() {
+        return alliance == Alliance.BLUE_ALLIANCE ? START_X : FIELD_SIZE - START_X;
+    }
 
-        autoFunctions.autoLoadingSleep(300);
-        hardware.stopDrive();*/
+    public double getStartHeading() {
+        return alliance == Alliance.BLUE_ALLIANCE ? START_HEADING : 180 - START_HEADING;
+    }
 
-        hardware.getIntake().setPower(0);
-        hardware.getTurretRotation().setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        hardware.getTurretRotation().setTargetPosition((int) (hardware.getTurretRotation().getCurrentPosition() +
-                (toWall == AutoFunctions.TurnDirection.LEFT ? 1 : -1) * RobotHardware.ENCODER_COUNTS_PER_TURRET_DEGREE * 40));
-        hardware.getTurretRotation().setPower(.5);
+    /**
+     * @return the robot's hardware, once the op mode has started running
+     */
+    public RobotHardware getHardware() {
+        return hardware;
+    }
 
-        autoFunctions.pushBeacon(color, true);
+    private Command intakePowerCommand(final double power) {
+        return new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
+                hardware.getIntake().setPower(power);
+            }
+        });
+    }
 
-        setDrivePower(0.25, 0.4);
-        sleep(900);
-        setDrivePower(0, -0.6);
-        sleep(800);
-        setDrivePower(-0.5, -0.3);
-        sleep(2000);
-        hardware.stopDrive();
+    private Command allianceCommand(final RobotHardware.BeaconState alliance) {
+        return new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
+                autoFunctions.setAlliance(alliance);
+            }
+        });
+    }
 
+    private Command drivePowerCommand(final double power1, final double power2) {
+        return new InstantCommand(new Runnable() {
+            @Override
+            public void run() {
+                setDrivePower(power1, power2);
+            }
+        });
     }
 
     // this methods mirrors driving commands, to use, enter powers for the blue auto,
@@ -0,0 +1,99 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * A second order IIR filter, in transposed direct form II.
+ * Use {@link #lowPass(double, double, double)} or {@link #highPass(double, double, double)} to design one,
+ * a second order low pass cuts noise above the cutoff much harder than a moving average of the same delay.
+ * The first value sets the filter to the steady state for that value, so it does not ramp up from 0.
+ */
+
+public class BiquadFilter extends Filter {
+
+    public static final double BUTTERWORTH_Q = 1 / Math.sqrt(2);
+
+    private final double b0, b1, b2, a1, a2; // normalized so a0 is 1
+    private double z1, z2;
+    private int sampleCount;
+    private double processedValue;
+
+    public BiquadFilter(double b0, double b1, double b2, double a0, double a1, double a2) {
+        if (a0 == 0) {
+            throw new IllegalArgumentException("a0 can not be 0");
+        }
+
+        this.b0 = b0 / a0;
+        this.b1 = b1 / a0;
+        this.b2 = b2 / a0;
+        this.a1 = a1 / a0;
+        this.a2 = a2 / a0;
+        reset();
+    }
+
+    /**
+     * @param cutoffFrequency the -3 dB frequency, in Hz, must be below half the sample rate
+     * @param sampleRate      the number of values per second
+     * @param q               the sharpness of the cutoff, {@link #BUTTERWORTH_Q} for the flattest pass band
+     */
+    public static BiquadFilter lowPass(double cutoffFrequency, double sampleRate, double q) {
+        checkFrequency(cutoffFrequency, sampleRate);
+        double w0 = 2 * Math.PI * cutoffFrequency / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new BiquadFilter((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    public static BiquadFilter highPass(double cutoffFrequency, double sampleRate, double q) {
+        checkFrequency(cutoffFrequency, sampleRate);
+        double w0 = 2 * Math.PI * cutoffFrequency / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * q);
+        return new BiquadFilter((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+    }
+
+    private static void checkFrequency(double cutoffFrequency, double sampleRate) {
+        if (cutoffFrequency <= 0 || cutoffFrequency >= sampleRate / 2) {
+            throw new IllegalArgumentException("The cutoff frequency must be between 0 and half the sample rate");
+        }
+    }
+
+    @Override
+    public double processValue(double value) {
+        if (sampleCount == 0) {
+            // the state the filter would have after a long run of this value
+            double steadyState = value * (b0 + b1 + b2) / (1 + a1 + a2);
+            z1 = steadyState - b0 * value;
+            z2 = b2 * value - a2 * steadyState;
+        }
+
+        processedValue = b0 * value + z1;
+        z1 = b1 * value - a1 * processedValue + z2;
+        z2 = b2 * value - a2 * processedValue;
+
+        if (sampleCount < 2) {
+            sampleCount++;
+        }
+
+        return processedValue;
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return processedValue;
+    }
+
+    /**
+     * @return true once the filter has seen as many values as its order
+     */
+    @Override
+    public boolean atCapacity() {
+        return sampleCount >= 2;
+    }
+
+    @Override
+    public void reset() {
+        z1 = 0;
+        z2 = 0;
+        sampleCount = 0;
+        processedValue = 0;
+    }
+}
@@ -2,6 +2,9 @@ package org.firstinspires.ftc.griffins;
 
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+import org.firstinspires.ftc.griffins.Navigation.VuforiaNavigation;
+
 /**
  * Created by David on 12/7/2016.
  */
@@ -15,4 +18,11 @@ public class BlueAuto extends BeaconAuto {
         alliance = BeaconAuto.Alliance.BLUE_ALLIANCE;
         super.runOpMode();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected VisionSource createVisionSource() {
+        VuforiaNavigation vuforia = new VuforiaNavigation();
+        vuforia.initializeVuforia();
+        return vuforia;
+    }
+}
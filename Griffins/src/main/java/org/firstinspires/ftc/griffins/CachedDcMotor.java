@@ -0,0 +1,180 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+
+/**
+ * A motor whose power writes go through an {@link ActuatorCache}, everything else goes straight to the motor.
+ * Changing the mode, direction or zero power behavior forgets the last power sent, so the next power is always sent.
+ */
+
+public class CachedDcMotor implements DcMotor, ActuatorCache.CachedActuator {
+
+    private final ActuatorCache cache;
+    private final DcMotor motor;
+    private double requestedPower;
+    private double sentPower = Double.NaN;
+
+    CachedDcMotor(ActuatorCache cache, DcMotor motor) {
+        this.cache = cache;
+        this.motor = motor;
+    }
+
+    public DcMotor getMotor() {
+        return motor;
+    }
+
+    @Override
+    public synchronized void setPower(double power) {
+        cache.recordRequest();
+        requestedPower = power;
+        if (!cache.isDeferred()) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized double getPower() {
+        return requestedPower;
+    }
+
+    @Override
+    public synchronized boolean flush() {
+        boolean stopping = requestedPower == 0 && sentPower != 0;
+        if (stopping || !(Math.abs(requestedPower - sentPower) <= cache.getPowerTolerance())) {
+            motor.setPower(requestedPower);
+            sentPower = requestedPower;
+            cache.recordSend();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forces the next flush to send the power.
+     */
+    public synchronized void invalidate() {
+        sentPower = Double.NaN;
+    }
+
+    @Override
+    public HardwareDevice getControllerDevice() {
+        return motor.getController();
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return motor.getManufacturer();
+    }
+
+    @Override
+    public String getDeviceName() {
+        return motor.getDeviceName();
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return motor.getConnectionInfo();
+    }
+
+    @Override
+    public int getVersion() {
+        return motor.getVersion();
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        motor.resetDeviceConfigurationForOpMode();
+        invalidate();
+    }
+
+    @Override
+    public void close() {
+        motor.close();
+    }
+
+    @Override
+    public void setDirection(Direction direction) {
+        motor.setDirection(direction);
+        invalidate();
+    }
+
+    @Override
+    public Direction getDirection() {
+        return motor.getDirection();
+    }
+
+    @Override
+    public void setMaxSpeed(int encoderTicksPerSecond) {
+        motor.setMaxSpeed(encoderTicksPerSecond);
+    }
+
+    @Override
+    public int getMaxSpeed() {
+        return motor.getMaxSpeed();
+    }
+
+    @Override
+    public DcMotorController getController() {
+        return motor.getController();
+    }
+
+    @Override
+    public int getPortNumber() {
+        return motor.getPortNumber();
+    }
+
+    @Override
+    public void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior) {
+        motor.setZeroPowerBehavior(zeroPowerBehavior);
+        invalidate();
+    }
+
+    @Override
+    public ZeroPowerBehavior getZeroPowerBehavior() {
+        return motor.getZeroPowerBehavior();
+    }
+
+    @Override
+    public void setPowerFloat() {
+        motor.setPowerFloat();
+        invalidate();
+    }
+
+    @Override
+    public boolean getPowerFloat() {
+        return motor.getPowerFloat();
+    }
+
+    @Override
+    public void setTargetPosition(int position) {
+        motor.setTargetPosition(position);
+    }
+
+    @Override
+    public int getTargetPosition() {
+        return motor.getTargetPosition();
+    }
+
+    @Override
+    public boolean isBusy() {
+        return motor.isBusy();
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return motor.getCurrentPosition();
+    }
+
+    @Override
+    public void setMode(RunMode mode) {
+        motor.setMode(mode);
+        invalidate();
+    }
+
+    @Override
+    public RunMode getMode() {
+        return motor.getMode();
+    }
+}
@@ -0,0 +1,121 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.ServoController;
+
+/**
+ * A servo whose position writes go through an {@link ActuatorCache}, everything else goes straight to the servo.
+ */
+
+public class CachedServo implements Servo, ActuatorCache.CachedActuator {
+
+    private final ActuatorCache cache;
+    private final Servo servo;
+    private double requestedPosition = Double.NaN;
+    private double sentPosition = Double.NaN;
+
+    CachedServo(ActuatorCache cache, Servo servo) {
+        this.cache = cache;
+        this.servo = servo;
+    }
+
+    public Servo getServo() {
+        return servo;
+    }
+
+    @Override
+    public synchronized void setPosition(double position) {
+        cache.recordRequest();
+        requestedPosition = position;
+        if (!cache.isDeferred()) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized double getPosition() {
+        return Double.isNaN(requestedPosition) ? servo.getPosition() : requestedPosition;
+    }
+
+    @Override
+    public synchronized boolean flush() {
+        if (!Double.isNaN(requestedPosition) && !(Math.abs(requestedPosition - sentPosition) <= cache.getPositionTolerance())) {
+            servo.setPosition(requestedPosition);
+            sentPosition = requestedPosition;
+            cache.recordSend();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forces the next flush to send the position.
+     */
+    public synchronized void invalidate() {
+        sentPosition = Double.NaN;
+    }
+
+    @Override
+    public HardwareDevice getControllerDevice() {
+        return servo.getController();
+    }
+
+    @Override
+    public ServoController getController() {
+        return servo.getController();
+    }
+
+    @Override
+    public int getPortNumber() {
+        return servo.getPortNumber();
+    }
+
+    @Override
+    public void setDirection(Direction direction) {
+        servo.setDirection(direction);
+        invalidate();
+    }
+
+    @Override
+    public Direction getDirection() {
+        return servo.getDirection();
+    }
+
+    @Override
+    public void scaleRange(double min, double max) {
+        servo.scaleRange(min, max);
+        invalidate();
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return servo.getManufacturer();
+    }
+
+    @Override
+    public String getDeviceName() {
+        return servo.getDeviceName();
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return servo.getConnectionInfo();
+    }
+
+    @Override
+    public int getVersion() {
+        return servo.getVersion();
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+        servo.resetDeviceConfigurationForOpMode();
+        invalidate();
+    }
+
+    @Override
+    public void close() {
+        servo.close();
+    }
+}
@@ -0,0 +1,72 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * The robot's time, in nanoseconds: control loop deadlines, sensor timestamps and timeouts are all read from here.
+ * On the robot it is System.nanoTime() and waiting sleeps the thread,
+ * the simulation sets a virtual clock instead, so a run goes as fast as the computer allows.
+ * <p/>
+ * How long the code itself takes, like the times in {@link LoopHistogram}, is still measured with System.nanoTime().
+ */
+
+public abstract class Clock {
+
+    // the last part of a wait is spent yielding instead of sleeping, Thread.sleep is not precise enough
+    private static final long SPIN_WAIT_NANOSECONDS = 1000000;
+
+    public static final Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleepUntil(long deadline) throws InterruptedException {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > SPIN_WAIT_NANOSECONDS) {
+                long sleepTime = remaining - SPIN_WAIT_NANOSECONDS;
+                Thread.sleep(sleepTime / 1000000, (int) (sleepTime % 1000000));
+            }
+
+            while (System.nanoTime() < deadline) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                Thread.yield();
+            }
+        }
+    };
+
+    private static volatile Clock clock = SYSTEM;
+
+    public static Clock get() {
+        return clock;
+    }
+
+    /**
+     * Replaces the clock, before anything that keeps time is made.
+     */
+    public static void set(Clock clock) {
+        Clock.clock = clock;
+    }
+
+    /**
+     * @return the current time of the clock in use
+     */
+    public static long now() {
+        return clock.nanoTime();
+    }
+
+    /**
+     * @return the seconds since the given {@link #now()}
+     */
+    public static double secondsSince(long startTime) {
+        return (now() - startTime) * 1e-9;
+    }
+
+    public abstract long nanoTime();
+
+    /**
+     * Blocks until the clock reaches the deadline, returns right away if it already has.
+     */
+    public abstract void sleepUntil(long deadline) throws InterruptedException;
+}
@@ -0,0 +1,60 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * An immutable reading of a Modern Robotics color sensor, decoded from one read of its I2C cache.
+ */
+
+public class ColorSample {
+    public static final ColorSample EMPTY = new ColorSample(0, -1, 0, 0, 0, 0);
+
+    private final long timestamp;
+    private final int colorNumber;
+    private final int red;
+    private final int green;
+    private final int blue;
+    private final int alpha;
+
+    public ColorSample(long timestamp, int colorNumber, int red, int green, int blue, int alpha) {
+        this.timestamp = timestamp;
+        this.colorNumber = colorNumber;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @return the {@link Clock#now()} at which the sample was decoded, 0 if the sensor has not been read yet
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the sensor's color number, or -1 if the sensor has not reported one
+     */
+    public int getColorNumber() {
+        return colorNumber;
+    }
+
+    public int red() {
+        return red;
+    }
+
+    public int green() {
+        return green;
+    }
+
+    public int blue() {
+        return blue;
+    }
+
+    public int alpha() {
+        return alpha;
+    }
+
+    @Override
+    public String toString() {
+        return alpha + " " + blue + " " + red + " " + green;
+    }
+}
@@ -0,0 +1,139 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.hardware.modernrobotics.ModernRoboticsI2cColorSensor;
+import com.qualcomm.robotcore.hardware.I2cController;
+import com.qualcomm.robotcore.util.TypeConversion;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Takes the color sensor's place as the port ready callback. Every time the port is ready,
+ * the sensor gets its callback, then the read cache is decoded once into a {@link ColorSample}.
+ * The latest sample is published through an atomic reference, so reading it never blocks on the cache lock.
+ * A {@link SampleListener} can react to every sample as it is decoded, on the controller's thread.
+ * The poller also measures how often new samples arrive, so code that moves past a target knows how far
+ * the robot goes between two readings.
+ */
+
+public class ColorSensorPoller implements I2cController.I2cPortReadyCallback {
+
+    // the weight of the newest period in the average, about the last 15 periods count
+    public static final double PERIOD_AVERAGE_ALPHA = 0.125;
+    // a gap longer than this is the sensor being deregistered, not a slow cycle, so it is left out of the average
+    public static final long MAX_PERIOD_NANOSECONDS = 250000000L;
+
+    private final ModernRoboticsI2cColorSensor colorSensor;
+    private final I2cController controller;
+    private final int port;
+    private final Lock readLock;
+    private final byte[] readCache;
+    private final AtomicReference<ColorSample> latestSample;
+    private volatile long sampleCount;
+    private volatile SampleListener listener;
+    // only written on the controller's thread
+    private long lastSampleTime;
+    private volatile double averagePeriod;
+
+    public ColorSensorPoller(ModernRoboticsI2cColorSensor colorSensor) {
+        this.colorSensor = colorSensor;
+        this.controller = colorSensor.getI2cController();
+        this.port = colorSensor.getPort();
+        this.readLock = controller.getI2cReadCacheLock(port);
+        this.readCache = controller.getI2cReadCache(port);
+        this.latestSample = new AtomicReference<>(ColorSample.EMPTY);
+    }
+
+    @Override
+    public void portIsReady(int port) {
+        colorSensor.portIsReady(port);
+
+        byte colorNumber;
+        byte red;
+        byte green;
+        byte blue;
+        byte alpha;
+        try {
+            readLock.lock();
+            colorNumber = readCache[ModernRoboticsI2cColorSensor.OFFSET_COLOR_NUMBER];
+            red = readCache[ModernRoboticsI2cColorSensor.OFFSET_RED_READING];
+            green = readCache[ModernRoboticsI2cColorSensor.OFFSET_GREEN_READING];
+            blue = readCache[ModernRoboticsI2cColorSensor.OFFSET_BLUE_READING];
+            alpha = readCache[ModernRoboticsI2cColorSensor.OFFSET_ALPHA_VALUE];
+        } finally {
+            readLock.unlock();
+        }
+
+        long now = Clock.now();
+        long period = now - lastSampleTime;
+        if (lastSampleTime != 0 && period < MAX_PERIOD_NANOSECONDS) {
+            averagePeriod = averagePeriod == 0 ? period : averagePeriod + PERIOD_AVERAGE_ALPHA * (period - averagePeriod);
+        }
+        lastSampleTime = now;
+
+        ColorSample sample = new ColorSample(now,
+                colorNumber == -1 ? -1 : TypeConversion.unsignedByteToInt(colorNumber),
+                TypeConversion.unsignedByteToInt(red),
+                TypeConversion.unsignedByteToInt(green),
+                TypeConversion.unsignedByteToInt(blue),
+                TypeConversion.unsignedByteToInt(alpha));
+        latestSample.set(sample);
+        sampleCount++;
+
+        SampleListener listener = this.listener;
+        if (listener != null) {
+            listener.onSample(sample);
+        }
+    }
+
+    /**
+     * Sets the listener that is called with every new sample, null removes it.
+     * The listener runs on the controller's thread, so it has to be quick and must not block.
+     */
+    public void setListener(SampleListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers the poller as the port's callback, in place of the color sensor.
+     */
+    public void register() {
+        controller.registerForI2cPortReadyCallback(this, port);
+    }
+
+    /**
+     * Removes the port's callback, whether it is the poller or the color sensor itself.
+     */
+    public void deregister() {
+        controller.deregisterForPortReadyCallback(port);
+    }
+
+    /**
+     * @return the most recent sample, {@link ColorSample#EMPTY} until the first port ready callback
+     */
+    public ColorSample getLatestSample() {
+        return latestSample.get();
+    }
+
+    /**
+     * @return the number of samples decoded since the poller was created
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the average time between samples, in seconds, 0 until the second sample
+     */
+    public double getAveragePeriod() {
+        return averagePeriod * 1e-9;
+    }
+
+    public ModernRoboticsI2cColorSensor getColorSensor() {
+        return colorSensor;
+    }
+
+    public interface SampleListener {
+        void onSample(ColorSample sample);
+    }
+}
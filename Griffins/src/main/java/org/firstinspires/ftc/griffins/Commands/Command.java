@@ -0,0 +1,66 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One action of the robot that takes some time, run a step at a time by a {@link CommandScheduler}.
+ * Every cycle the scheduler calls {@link #execute()} and then {@link #isFinished()}, none of them may block,
+ * so a command that waits for something just checks for it every cycle, and other commands keep running meanwhile.
+ * <p/>
+ * A command names the mechanisms it drives with {@link #requires(Object...)}, usually the motor or controller objects.
+ * Scheduling a command interrupts any running command that requires one of the same mechanisms.
+ * Commands are combined with {@link SequentialGroup}, {@link ParallelGroup}, {@link RaceGroup} and {@link DeadlineGroup}.
+ */
+
+public abstract class Command {
+
+    private final Set<Object> requirements = new HashSet<>();
+
+    /**
+     * Adds to the mechanisms the command drives.
+     *
+     * @return the command, so it can be chained
+     */
+    public Command requires(Object... mechanisms) {
+        Collections.addAll(requirements, mechanisms);
+        return this;
+    }
+
+    public Set<Object> getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * Called once when the command starts, a command can be started again after it ends.
+     */
+    protected void initialize() {
+    }
+
+    /**
+     * Called every cycle while the command runs, including the cycle it starts in.
+     */
+    protected void execute() {
+    }
+
+    /**
+     * Called after every {@link #execute()}, the command ends the first time it returns true.
+     */
+    protected abstract boolean isFinished();
+
+    /**
+     * Called once when the command ends.
+     *
+     * @param interrupted true if it was stopped before it finished
+     */
+    protected void end(boolean interrupted) {
+    }
+
+    /**
+     * @return the command, interrupted if it is still running after the time
+     */
+    public Command withTimeout(double seconds) {
+        return new RaceGroup(this, new WaitCommand(seconds));
+    }
+}
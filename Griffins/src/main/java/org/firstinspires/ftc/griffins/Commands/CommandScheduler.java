@@ -0,0 +1,123 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import org.firstinspires.ftc.griffins.LoopHistogram;
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+import org.firstinspires.ftc.robotcore.external.Func;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ticks every running {@link Command} once per cycle, so mechanisms that wait on something different,
+ * the drive on its target, the shooter on its spin up, can all be busy at the same time.
+ * <p/>
+ * {@link #run()} is one cycle: the periodic actions, such as reading the sensors or sending telemetry,
+ * then every running command, in the order they were scheduled. Call it from an existing loop,
+ * or let {@link #runUntilIdle(Func, ControlLoopExecutor)} loop until everything has finished.
+ * The scheduler is not thread safe, it should be used from the opmode's thread.
+ */
+
+public class CommandScheduler {
+
+    private final List<Command> commands = new ArrayList<>();
+    private final List<Runnable> periodics = new ArrayList<>();
+    private final LoopHistogram cycleTime = LoopHistogram.get("Command scheduler");
+
+    /**
+     * Adds an action that runs at the start of every cycle, before the commands.
+     */
+    public void addPeriodic(Runnable periodic) {
+        periodics.add(periodic);
+    }
+
+    /**
+     * Starts the command, interrupting any running command that requires one of the same mechanisms.
+     * Scheduling a command that is already running does nothing.
+     */
+    public void schedule(Command command) {
+        if (commands.contains(command)) {
+            return;
+        }
+
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            Command running = commands.get(i);
+            for (Object requirement : command.getRequirements()) {
+                if (running.getRequirements().contains(requirement)) {
+                    commands.remove(i);
+                    running.end(true);
+                    break;
+                }
+            }
+        }
+
+        command.initialize();
+        commands.add(command);
+    }
+
+    /**
+     * Runs one cycle, commands that finish are ended and removed.
+     */
+    public void run() {
+        long cycleStart = System.nanoTime();
+
+        for (int i = 0; i < periodics.size(); i++) {
+            periodics.get(i).run();
+        }
+
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            command.execute();
+            if (command.isFinished()) {
+                // the command may have been interrupted by one it scheduled, so it is looked up again
+                int index = commands.indexOf(command);
+                if (index >= 0) {
+                    commands.remove(index);
+                    command.end(false);
+                    if (index <= i) {
+                        i--;
+                    }
+                }
+            }
+        }
+
+        cycleTime.recordSince(cycleStart);
+    }
+
+    /**
+     * Runs cycles until every command has finished, or the check fails, then interrupts whatever is left.
+     *
+     * @param keepRunning checked every cycle, usually whether the opmode is still active
+     * @param controlLoop paces the cycles
+     * @return true if every command finished
+     */
+    public boolean runUntilIdle(Func<Boolean> keepRunning, ControlLoopExecutor controlLoop) {
+        controlLoop.reset();
+        do {
+            run();
+        } while (!isIdle() && keepRunning.value() && controlLoop.waitForNextCycle());
+
+        boolean finished = isIdle();
+        cancelAll();
+        return finished;
+    }
+
+    public void cancel(Command command) {
+        if (commands.remove(command)) {
+            command.end(true);
+        }
+    }
+
+    public void cancelAll() {
+        while (!commands.isEmpty()) {
+            commands.remove(commands.size() - 1).end(true);
+        }
+    }
+
+    public boolean isScheduled(Command command) {
+        return commands.contains(command);
+    }
+
+    public boolean isIdle() {
+        return commands.isEmpty();
+    }
+}
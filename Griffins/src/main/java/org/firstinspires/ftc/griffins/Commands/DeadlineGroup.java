@@ -0,0 +1,26 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+/**
+ * Runs its commands at the same time, and finishes when the first one, the deadline, finishes,
+ * interrupting the others if they are still running. The others are what should happen meanwhile,
+ * like the intake running while the robot drives.
+ */
+
+public class DeadlineGroup extends ParallelGroup {
+
+    public DeadlineGroup(Command deadline, Command... others) {
+        super(combine(deadline, others));
+    }
+
+    private static Command[] combine(Command deadline, Command[] others) {
+        Command[] commands = new Command[others.length + 1];
+        commands[0] = deadline;
+        System.arraycopy(others, 0, commands, 1, others.length);
+        return commands;
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return !running[0];
+    }
+}
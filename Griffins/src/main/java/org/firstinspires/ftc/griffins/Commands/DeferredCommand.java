@@ -0,0 +1,41 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import org.firstinspires.ftc.robotcore.external.Func;
+
+/**
+ * Builds its command when it starts, for steps that depend on what the robot sees by then,
+ * like which side of a beacon to press. The built command's requirements are not known in advance,
+ * so the deferred command has to be given them with {@link #requires(Object...)}.
+ */
+
+public class DeferredCommand extends Command {
+
+    private final Func<Command> factory;
+    private Command command;
+
+    public DeferredCommand(Func<Command> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    protected void initialize() {
+        command = factory.value();
+        command.initialize();
+    }
+
+    @Override
+    protected void execute() {
+        command.execute();
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return command.isFinished();
+    }
+
+    @Override
+    protected void end(boolean interrupted) {
+        command.end(interrupted);
+        command = null;
+    }
+}
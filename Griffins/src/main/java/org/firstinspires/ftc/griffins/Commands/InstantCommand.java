@@ -0,0 +1,24 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+/**
+ * Runs an action once and finishes right away, for setting a motor power or a servo position in a group.
+ */
+
+public class InstantCommand extends Command {
+
+    private final Runnable action;
+
+    public InstantCommand(Runnable action) {
+        this.action = action;
+    }
+
+    @Override
+    protected void initialize() {
+        action.run();
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return true;
+    }
+}
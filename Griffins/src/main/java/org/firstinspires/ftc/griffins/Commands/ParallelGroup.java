@@ -0,0 +1,66 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+/**
+ * Runs its commands at the same time, and finishes when all of them have finished.
+ * A command that finishes early is ended right away, the rest keep running.
+ * {@link RaceGroup} and {@link DeadlineGroup} only change when the group finishes,
+ * whatever is still running then is interrupted.
+ */
+
+public class ParallelGroup extends Command {
+
+    final Command[] commands;
+    final boolean[] running;
+    boolean anyFinished;
+
+    public ParallelGroup(Command... commands) {
+        this.commands = commands.clone();
+        this.running = new boolean[commands.length];
+        for (Command command : commands) {
+            requires(command.getRequirements().toArray());
+        }
+    }
+
+    @Override
+    protected void initialize() {
+        anyFinished = false;
+        for (int i = 0; i < commands.length; i++) {
+            commands[i].initialize();
+            running[i] = true;
+        }
+    }
+
+    @Override
+    protected void execute() {
+        for (int i = 0; i < commands.length; i++) {
+            if (running[i]) {
+                commands[i].execute();
+                if (commands[i].isFinished()) {
+                    commands[i].end(false);
+                    running[i] = false;
+                    anyFinished = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean isFinished() {
+        for (boolean commandRunning : running) {
+            if (commandRunning) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void end(boolean interrupted) {
+        for (int i = 0; i < commands.length; i++) {
+            if (running[i]) {
+                commands[i].end(true);
+                running[i] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+/**
+ * Runs its commands at the same time, and finishes as soon as any one of them finishes,
+ * interrupting the others. A command with a timeout is a race against a {@link WaitCommand}.
+ */
+
+public class RaceGroup extends ParallelGroup {
+
+    public RaceGroup(Command... commands) {
+        super(commands);
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return anyFinished || commands.length == 0;
+    }
+}
@@ -0,0 +1,25 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+/**
+ * Runs an action every cycle and never finishes on its own, it is meant to be ended by a group,
+ * like a {@link DeadlineGroup} that keeps the intake going for as long as a drive takes.
+ */
+
+public class RunCommand extends Command {
+
+    private final Runnable action;
+
+    public RunCommand(Runnable action) {
+        this.action = action;
+    }
+
+    @Override
+    protected void execute() {
+        action.run();
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs its commands one after another, and finishes after the last one.
+ * When a command finishes, the next one starts in the same cycle, so a chain of instant commands takes no time.
+ */
+
+public class SequentialGroup extends Command {
+
+    private final List<Command> commands = new ArrayList<>();
+    private int index = -1;
+
+    public SequentialGroup(Command... commands) {
+        addCommands(commands);
+    }
+
+    /**
+     * Adds commands to the end of the sequence, it can not be called while the group is running.
+     */
+    public SequentialGroup addCommands(Command... commands) {
+        if (index >= 0 && index < this.commands.size()) {
+            throw new IllegalStateException("Commands can not be added to a running group");
+        }
+        Collections.addAll(this.commands, commands);
+        for (Command command : commands) {
+            requires(command.getRequirements().toArray());
+        }
+        return this;
+    }
+
+    @Override
+    protected void initialize() {
+        index = 0;
+        if (!commands.isEmpty()) {
+            commands.get(0).initialize();
+        }
+    }
+
+    @Override
+    protected void execute() {
+        while (index < commands.size()) {
+            Command command = commands.get(index);
+            command.execute();
+            if (!command.isFinished()) {
+                return;
+            }
+
+            command.end(false);
+            index++;
+            if (index < commands.size()) {
+                commands.get(index).initialize();
+            }
+        }
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return index >= commands.size();
+    }
+
+    @Override
+    protected void end(boolean interrupted) {
+        if (interrupted && index >= 0 && index < commands.size()) {
+            commands.get(index).end(true);
+        }
+        index = -1;
+    }
+}
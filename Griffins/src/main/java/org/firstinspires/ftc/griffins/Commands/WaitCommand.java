@@ -0,0 +1,30 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+/**
+ * Finishes once the time has passed since it started, the other commands keep running meanwhile.
+ */
+
+public class WaitCommand extends Command {
+
+    private final double seconds;
+    private long startTime;
+
+    public WaitCommand(double seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("The wait can not be negative");
+        }
+        this.seconds = seconds;
+    }
+
+    @Override
+    protected void initialize() {
+        startTime = Clock.now();
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return Clock.secondsSince(startTime) >= seconds;
+    }
+}
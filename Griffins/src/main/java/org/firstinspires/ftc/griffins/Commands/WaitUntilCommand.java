@@ -0,0 +1,21 @@
+package org.firstinspires.ftc.griffins.Commands;
+
+import org.firstinspires.ftc.robotcore.external.Func;
+
+/**
+ * Finishes the first cycle the condition is true, it is checked once per cycle.
+ */
+
+public class WaitUntilCommand extends Command {
+
+    private final Func<Boolean> condition;
+
+    public WaitUntilCommand(Func<Boolean> condition) {
+        this.condition = condition;
+    }
+
+    @Override
+    protected boolean isFinished() {
+        return condition.value();
+    }
+}
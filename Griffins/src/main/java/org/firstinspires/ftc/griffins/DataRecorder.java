@@ -0,0 +1,485 @@
+package org.firstinspires.ftc.griffins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Records rows of numbers from a control loop, a timestamp and a fixed set of double channels per row,
+ * into preallocated arrays, so recording a row is a few array stores and never allocates.
+ * <p/>
+ * On its own the recorder keeps the last {@code capacity} rows in memory, overwriting the oldest.
+ * After {@link #startFlushing(File, int)} a background thread copies the rows into a memory mapped file,
+ * every {@link #FLUSH_PERIOD_MILLISECONDS}, and the file keeps everything up to its size.
+ * While flushing, rows that the flush thread has not copied yet are never overwritten,
+ * if the loop gets a whole buffer ahead the new rows are dropped and counted instead.
+ * <p/>
+ * Rows are numbered from 0 in the order they were recorded, {@link #toCsv(long)} turns the rows since
+ * a row number back into text, so a method can remember {@link #getRowCount()} at its start and return its own rows.
+ * Rows must be recorded from one thread at a time.
+ * <p/>
+ * The file starts with a header: the bytes "GRDR", the channel count and the row count as ints,
+ * then every column name as a short length and UTF-8 bytes. Each row is the timestamp as a long and the channels as doubles,
+ * all big endian.
+ */
+
+public class DataRecorder {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+    public static final int DEFAULT_FILE_ROWS = 65536;
+    public static final long FLUSH_PERIOD_MILLISECONDS = 100;
+
+    private static final int MAGIC = 0x47524452; // "GRDR"
+    private static final int ROW_COUNT_OFFSET = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String[] columnNames;
+    private final int channelCount;
+    private final int capacity;
+    private final long[] times;
+    private final double[] values; // row major, channelCount values per row
+
+    // written by the recording thread, read by the flush thread
+    private volatile long rowCount;
+    private volatile long droppedCount;
+    // written by the flush thread, read by the recording thread
+    private volatile long flushedCount;
+
+    private volatile boolean flushing;
+    private Thread flushThread;
+    private FileChannel fileChannel;
+    private MappedByteBuffer fileBuffer;
+    private long fileStartRow;
+    private int fileRowCount;
+    private int fileMaxRows;
+    private int fileDataStart;
+    private long unwrittenCount;
+
+    /**
+     * @param capacity    how many rows are kept in memory
+     * @param columnNames the name of the timestamp column, followed by the name of each channel
+     */
+    public DataRecorder(int capacity, String... columnNames) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be greater than 0");
+        }
+        if (columnNames.length < 2) {
+            throw new IllegalArgumentException("There must be a timestamp column and at least one channel");
+        }
+
+        this.columnNames = columnNames.clone();
+        this.channelCount = columnNames.length - 1;
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.values = new double[capacity * channelCount];
+    }
+
+    public DataRecorder(String... columnNames) {
+        this(DEFAULT_CAPACITY, columnNames);
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return the number of rows recorded, which is also the number the next row gets
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of rows lost because the flush thread or the file could not keep up
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount + unwrittenCount;
+    }
+
+    /**
+     * @return the index of the row's first value, or -1 if the row has to be dropped
+     */
+    private int startRow(long time) {
+        long row = rowCount;
+        if (flushing && row - flushedCount >= capacity) {
+            droppedCount++;
+            return -1;
+        }
+
+        int slot = (int) (row % capacity);
+        times[slot] = time;
+        return slot * channelCount;
+    }
+
+    private void checkChannelCount(int count) {
+        if (count != channelCount) {
+            throw new IllegalArgumentException("The recorder has " + channelCount + " channels, not " + count);
+        }
+    }
+
+    public void record(long time, double value) {
+        checkChannelCount(1);
+        int index = startRow(time);
+        if (index >= 0) {
+            values[index] = value;
+            rowCount++;
+        }
+    }
+
+    public void record(long time, double value0, double value1) {
+        checkChannelCount(2);
+        int index = startRow(time);
+        if (index >= 0) {
+            values[index] = value0;
+            values[index + 1] = value1;
+            rowCount++;
+        }
+    }
+
+    public void record(long time, double value0, double value1, double value2) {
+        checkChannelCount(3);
+        int index = startRow(time);
+        if (index >= 0) {
+            values[index] = value0;
+            values[index + 1] = value1;
+            values[index + 2] = value2;
+            rowCount++;
+        }
+    }
+
+    /**
+     * Records a row with any number of channels, the array is not kept.
+     */
+    public void record(long time, double[] rowValues) {
+        checkChannelCount(rowValues.length);
+        int index = startRow(time);
+        if (index >= 0) {
+            System.arraycopy(rowValues, 0, values, index, channelCount);
+            rowCount++;
+        }
+    }
+
+    /**
+     * Forgets every row, it can not be called while flushing to a file.
+     */
+    public synchronized void reset() {
+        if (flushing) {
+            throw new IllegalStateException("The recorder can not be reset while it is flushing to a file");
+        }
+        rowCount = 0;
+        flushedCount = 0;
+        droppedCount = 0;
+    }
+
+    /**
+     * Maps the file and starts copying every new row into it on a background thread.
+     * Rows recorded before the call are not written to the file.
+     *
+     * @param file    the file to write, replaced if it exists
+     * @param maxRows the number of rows the file has room for, later rows are dropped
+     */
+    public synchronized void startFlushing(File file, int maxRows) throws IOException {
+        if (flushing) {
+            throw new IllegalStateException("The recorder is already flushing to a file");
+        }
+        if (maxRows <= 0) {
+            throw new IllegalArgumentException("The file must have room for at least one row");
+        }
+
+        byte[][] names = new byte[columnNames.length][];
+        int headerSize = 12;
+        for (int i = 0; i < columnNames.length; i++) {
+            names[i] = columnNames[i].getBytes(UTF_8);
+            headerSize += 2 + names[i].length;
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        fileChannel = randomAccessFile.getChannel();
+        fileBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + (long) maxRows * getRowSize());
+
+        fileBuffer.putInt(MAGIC).putInt(channelCount).putInt(0);
+        for (byte[] name : names) {
+            fileBuffer.putShort((short) name.length).put(name);
+        }
+
+        fileDataStart = headerSize;
+        fileMaxRows = maxRows;
+        fileRowCount = 0;
+        fileStartRow = rowCount;
+        flushedCount = rowCount;
+        unwrittenCount = 0;
+
+        flushing = true;
+        flushThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    flush();
+                    try {
+                        Thread.sleep(FLUSH_PERIOD_MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "Data Recorder");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    public void startFlushing(File file) throws IOException {
+        startFlushing(file, DEFAULT_FILE_ROWS);
+    }
+
+    /**
+     * Copies the rows that have not been written to the file yet, it is called by the flush thread,
+     * but can also be called to make sure the file is up to date.
+     */
+    public synchronized void flush() {
+        if (fileBuffer == null) {
+            return;
+        }
+
+        long end = rowCount;
+        for (long row = flushedCount; row < end; row++) {
+            if (fileRowCount >= fileMaxRows) {
+                unwrittenCount += end - row;
+                break;
+            }
+
+            int slot = (int) (row % capacity);
+            fileBuffer.position(fileDataStart + fileRowCount * getRowSize());
+            fileBuffer.putLong(times[slot]);
+            for (int channel = 0; channel < channelCount; channel++) {
+                fileBuffer.putDouble(values[slot * channelCount + channel]);
+            }
+            fileRowCount++;
+        }
+        fileBuffer.putInt(ROW_COUNT_OFFSET, fileRowCount);
+        flushedCount = end;
+    }
+
+    /**
+     * Stops the flush thread, writes the last rows and closes the file. Recording goes back to memory only.
+     */
+    public void stopFlushing() {
+        Thread thread;
+        synchronized (this) {
+            if (!flushing) {
+                return;
+            }
+            thread = flushThread;
+            flushThread = null;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(FLUSH_PERIOD_MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            // still flushing until the last rows are copied, so the loop can not overwrite them
+            flush();
+            flushing = false;
+            fileBuffer.force();
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                // the rows are already in the mapped buffer, the OS writes them out without the channel
+            }
+            fileBuffer = null;
+            fileChannel = null;
+        }
+    }
+
+    public boolean isFlushing() {
+        return flushing;
+    }
+
+    private int getRowSize() {
+        return 8 + 8 * channelCount;
+    }
+
+    /**
+     * @param firstRow the number of the first row to include
+     * @return the column names and every row since the first row that is still in memory or in the file, as csv
+     */
+    public synchronized String toCsv(long firstRow) {
+        StringBuilder builder = new StringBuilder();
+        appendHeader(builder, columnNames);
+
+        long end = rowCount;
+        if (fileBuffer != null) {
+            flush();
+            // the rows that made it into the file are read back from it, the rest are gone
+            long start = Math.max(firstRow, fileStartRow);
+            long fileEnd = Math.min(end, fileStartRow + fileRowCount);
+            ByteBuffer buffer = fileBuffer.duplicate();
+            for (long row = start; row < fileEnd; row++) {
+                buffer.position(fileDataStart + (int) (row - fileStartRow) * getRowSize());
+                builder.append(buffer.getLong());
+                for (int channel = 0; channel < channelCount; channel++) {
+                    builder.append(", ").append(buffer.getDouble());
+                }
+                builder.append('\n');
+            }
+        } else {
+            for (long row = Math.max(firstRow, end - capacity); row < end; row++) {
+                int slot = (int) (row % capacity);
+                builder.append(times[slot]);
+                for (int channel = 0; channel < channelCount; channel++) {
+                    builder.append(", ").append(values[slot * channelCount + channel]);
+                }
+                builder.append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @return every row that is still in memory or in the file, as csv
+     */
+    public String toCsv() {
+        return toCsv(0);
+    }
+
+    /**
+     * Reads a file written by a recorder back as csv.
+     */
+    public static String toCsv(File file) throws IOException {
+        Recording recording = read(file);
+        StringBuilder builder = new StringBuilder();
+        appendHeader(builder, recording.columnNames);
+        for (int row = 0; row < recording.getRowCount(); row++) {
+            builder.append(recording.getTime(row));
+            for (int channel = 0; channel < recording.getChannelCount(); channel++) {
+                builder.append(", ").append(recording.getValue(row, channel));
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads a file written by a recorder back into arrays.
+     */
+    public static Recording read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " was not written by a data recorder");
+            }
+
+            int channelCount = buffer.getInt();
+            int fileRowCount = buffer.getInt();
+            String[] names = new String[channelCount + 1];
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                names[i] = new String(name, UTF_8);
+            }
+
+            long[] times = new long[fileRowCount];
+            double[] values = new double[fileRowCount * channelCount];
+            for (int row = 0; row < fileRowCount; row++) {
+                times[row] = buffer.getLong();
+                for (int i = 0; i < channelCount; i++) {
+                    values[row * channelCount + i] = buffer.getDouble();
+                }
+            }
+            return new Recording(names, times, values);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void appendHeader(StringBuilder builder, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(names[i]);
+        }
+        builder.append('\n');
+    }
+
+    /**
+     * The rows of a recorder file, read back by {@link #read(File)}.
+     */
+    public static class Recording {
+        private final String[] columnNames;
+        private final int channelCount;
+        private final long[] times;
+        private final double[] values;
+
+        Recording(String[] columnNames, long[] times, double[] values) {
+            this.columnNames = columnNames;
+            this.channelCount = columnNames.length - 1;
+            this.times = times;
+            this.values = values;
+        }
+
+        /**
+         * @return the name of the timestamp column, followed by the name of each channel
+         */
+        public String[] getColumnNames() {
+            return columnNames.clone();
+        }
+
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        public int getRowCount() {
+            return times.length;
+        }
+
+        public long getTime(int row) {
+            return times[row];
+        }
+
+        public double getValue(int row, int channel) {
+            return values[row * channelCount + channel];
+        }
+
+        /**
+         * @param row a row at or before the time, the rows are searched forward from it
+         * @return the channel's value at the time, in a straight line between the rows on either side of it,
+         * the first or last row's value outside of the recording
+         */
+        public double interpolate(long time, int row, int channel) {
+            row = findRow(time, row);
+            if (row + 1 >= times.length || time <= times[row]) {
+                return getValue(row, channel);
+            }
+            double fraction = (double) (time - times[row]) / (times[row + 1] - times[row]);
+            return getValue(row, channel) + fraction * (getValue(row + 1, channel) - getValue(row, channel));
+        }
+
+        /**
+         * @param row a row at or before the time, the rows are searched forward from it
+         * @return the last row at or before the time, or the first row if the time is before the recording
+         */
+        public int findRow(long time, int row) {
+            row = Math.max(0, row);
+            while (row + 1 < times.length && times[row + 1] <= time) {
+                row++;
+            }
+            return row;
+        }
+    }
+}
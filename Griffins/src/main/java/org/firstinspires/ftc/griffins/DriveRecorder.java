@@ -0,0 +1,85 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records a driver's run for {@link org.firstinspires.ftc.griffins.Navigation.DriveReplay}: every loop, the drive gamepad's
+ * sticks and bumpers, the powers the op mode sent, and the drive encoders and gyro from the same sensor frame.
+ * The rows go into a {@link DataRecorder} file, so recording is a few array stores per loop.
+ */
+
+public class DriveRecorder {
+
+    public static final String FILE_NAME = "drive-recording.dat";
+    // a two minute match at 100 loops a second, with room to spare
+    public static final int MAX_ROWS = 16384;
+
+    // the channels of a recording
+    public static final int LEFT_STICK = 0;
+    public static final int RIGHT_STICK = 1;
+    public static final int LEFT_BUMPER = 2;
+    public static final int RIGHT_BUMPER = 3;
+    public static final int LEFT_DRIVE_POWER = 4;
+    public static final int RIGHT_DRIVE_POWER = 5;
+    public static final int INTAKE_POWER = 6;
+    public static final int LOADER_POWER = 7;
+    public static final int SHOOTER_POWER = 8;
+    public static final int BUTTON_PUSHER_RATIO = 9;
+    public static final int LEFT_DRIVE_POSITION = 10;
+    public static final int RIGHT_DRIVE_POSITION = 11;
+    public static final int GYRO_INTEGRATED_Z = 12;
+
+    private final DataRecorder recorder = new DataRecorder(256, "nanos", "left stick", "right stick", "left bumper",
+            "right bumper", "left power", "right power", "intake", "loader", "shooter", "button pusher",
+            "left position", "right position", "gyro");
+    private final double[] row = new double[recorder.getChannelCount()];
+
+    /**
+     * Starts writing the rows to the file, rows recorded before it are not kept.
+     */
+    public void start(File file) throws IOException {
+        recorder.startFlushing(file, MAX_ROWS);
+    }
+
+    /**
+     * Writes the last rows and closes the file.
+     */
+    public void stop() {
+        recorder.stopFlushing();
+    }
+
+    public boolean isRecording() {
+        return recorder.isFlushing();
+    }
+
+    /**
+     * Records one loop, call it after the loop has decided on its powers.
+     *
+     * @param gamepad the drive gamepad
+     * @param frame   the sensor frame the loop used
+     */
+    public void record(Gamepad gamepad, SensorFrame frame, double leftDrivePower, double rightDrivePower,
+                       double intakePower, double loaderPower, double shooterPower, double buttonPusherRatio) {
+        row[LEFT_STICK] = gamepad.left_stick_y;
+        row[RIGHT_STICK] = gamepad.right_stick_y;
+        row[LEFT_BUMPER] = gamepad.left_bumper ? 1 : 0;
+        row[RIGHT_BUMPER] = gamepad.right_bumper ? 1 : 0;
+        row[LEFT_DRIVE_POWER] = leftDrivePower;
+        row[RIGHT_DRIVE_POWER] = rightDrivePower;
+        row[INTAKE_POWER] = intakePower;
+        row[LOADER_POWER] = loaderPower;
+        row[SHOOTER_POWER] = shooterPower;
+        row[BUTTON_PUSHER_RATIO] = buttonPusherRatio;
+        row[LEFT_DRIVE_POSITION] = frame.getLeftDrivePosition();
+        row[RIGHT_DRIVE_POSITION] = frame.getRightDrivePosition();
+        row[GYRO_INTEGRATED_Z] = frame.getGyroIntegratedZValue();
+        recorder.record(frame.getTimestamp(), row);
+    }
+
+    public DataRecorder getRecorder() {
+        return recorder;
+    }
+}
@@ -0,0 +1,73 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * An exponential moving average: each new value moves the output a fraction (alpha) of the way towards it.
+ * Reacts like a moving average of about 2 / alpha - 1 values, but only keeps one number.
+ */
+
+public class ExponentialMovingAverageFilter extends Filter {
+
+    private final double alpha;
+    private final int settlingSamples;
+    private int sampleCount;
+    private double processedValue;
+
+    /**
+     * @param alpha the weight of the newest value, between 0 (exclusive) and 1 (inclusive)
+     */
+    public ExponentialMovingAverageFilter(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be greater than 0 and at most 1");
+        }
+
+        this.alpha = alpha;
+        this.settlingSamples = (int) Math.ceil(1 / alpha);
+        reset();
+    }
+
+    /**
+     * @param timeConstant the time for the output to move 63% of the way to a step change, in seconds
+     * @param samplePeriod the time between values, in seconds
+     */
+    public static ExponentialMovingAverageFilter fromTimeConstant(double timeConstant, double samplePeriod) {
+        return new ExponentialMovingAverageFilter(samplePeriod / (timeConstant + samplePeriod));
+    }
+
+    @Override
+    public double processValue(double value) {
+        if (sampleCount == 0) {
+            processedValue = value;
+        } else {
+            processedValue += alpha * (value - processedValue);
+        }
+
+        if (sampleCount < settlingSamples) {
+            sampleCount++;
+        }
+
+        return processedValue;
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return processedValue;
+    }
+
+    /**
+     * @return true once the first value has less than 37% weight in the output
+     */
+    @Override
+    public boolean atCapacity() {
+        return sampleCount >= settlingSamples;
+    }
+
+    @Override
+    public void reset() {
+        sampleCount = 0;
+        processedValue = 0;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+}
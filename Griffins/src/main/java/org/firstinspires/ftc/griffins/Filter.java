@@ -12,4 +12,9 @@ public abstract class Filter {
     public abstract double getProcessedValue();
 
     public abstract boolean atCapacity();
+
+    /**
+     * Forgets every value, as if the filter was just created.
+     */
+    public abstract void reset();
 }
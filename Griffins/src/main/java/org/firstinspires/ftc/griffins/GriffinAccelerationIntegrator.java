@@ -5,67 +5,130 @@ import com.qualcomm.hardware.adafruit.NaiveAccelerationIntegrator;
 import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.Position;
 import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
 
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.meanIntegrate;
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.plus;
-
 /**
- * Currently a copy of the {@link NaiveAccelerationIntegrator},
- * which provides a very naive implementation of
- * an acceleration integration algorithm. It just does the basic physics.
+ * Integrates the IMU's linear acceleration into a velocity and a position, like the {@link NaiveAccelerationIntegrator},
+ * but the state is kept in primitive fields, in meters, so an update never allocates.
+ * The {@link Position} and {@link Velocity} objects are only made when they are asked for, and reused until the next update.
+ * <p/>
+ * The integration method can be picked:
+ * {@link IntegrationMethod#TRAPEZOID} is what the naive integrator does, the mean of the two ends of each interval,
+ * {@link IntegrationMethod#SIMPSON} fits a parabola through the last three samples, which works with uneven sample times,
+ * and {@link IntegrationMethod#RK4} runs a Runge-Kutta step with the acceleration interpolated between the samples.
  * <p/>
  * Todo:
  * One you would actually want to use in a robot would, for example, likely
  * filter noise out the acceleration data or more sophisticated processing.
  * look up what and how to filter noise, -> low pass filter, averages a window to produce value at a point
- * look at better methods for approximating the integral, -> currently uses trapezoid rule, try instead simpson's rule
  */
 
 public class GriffinAccelerationIntegrator implements BNO055IMU.AccelerationIntegrator {
+
+    public enum IntegrationMethod {
+        TRAPEZOID,
+        SIMPSON,
+        RK4
+    }
+
     //------------------------------------------------------------------------------------------
     // State
     //------------------------------------------------------------------------------------------
 
-    String log;
+    // about a whole match of samples at the usual 10 ms integration interval
+    public static final int LOG_CAPACITY = 16384;
+    DataRecorder log;
     private BNO055IMU.Parameters parameters;
+    private final IntegrationMethod method;
+    private Acceleration acceleration;
+
+    // the last three samples, [0] is the newest, in meters and nanoseconds
+    private int sampleCount;
+    private final long[] times = new long[3];
+    private final double[] accelX = new double[3];
+    private final double[] accelY = new double[3];
+    private final double[] accelZ = new double[3];
+    // the velocity at the same three times, for integrating the position
+    private final double[] velocityX = new double[3];
+    private final double[] velocityY = new double[3];
+    private final double[] velocityZ = new double[3];
+    private double positionX;
+    private double positionY;
+    private double positionZ;
+    private long positionTime;
+
     private Position position;
     private Velocity velocity;
-    private Acceleration acceleration;
 
     public GriffinAccelerationIntegrator() {
+        this(IntegrationMethod.TRAPEZOID);
+    }
+
+    public GriffinAccelerationIntegrator(IntegrationMethod method) {
         this.parameters = null;
-        this.position = null;
-        this.velocity = null;
-        this.acceleration = null;
+        this.method = method;
     }
 
     @Override
     public void initialize(BNO055IMU.Parameters parameters, Position initialPosition, Velocity initialVelocity) {
         this.parameters = parameters;
-        this.position = initialPosition;
-        this.velocity = initialVelocity;
         this.acceleration = null;
+        sampleCount = 0;
+
+        if (initialPosition == null) {
+            initialPosition = new Position();
+        }
+        if (initialVelocity == null) {
+            initialVelocity = new Velocity();
+        }
+        positionX = initialPosition.unit.toMeters(initialPosition.x);
+        positionY = initialPosition.unit.toMeters(initialPosition.y);
+        positionZ = initialPosition.unit.toMeters(initialPosition.z);
+        positionTime = initialPosition.acquisitionTime;
+        velocityX[0] = initialVelocity.unit.toMeters(initialVelocity.xVeloc);
+        velocityY[0] = initialVelocity.unit.toMeters(initialVelocity.yVeloc);
+        velocityZ[0] = initialVelocity.unit.toMeters(initialVelocity.zVeloc);
+        times[0] = initialVelocity.acquisitionTime;
+        position = null;
+        velocity = null;
 
-        log = "";
+        if (parameters.loggingEnabled) {
+            if (log == null) {
+                log = new DataRecorder(LOG_CAPACITY, "nanos", "x accel", "y accel", "z accel");
+            }
+            log.reset();
+        }
     }
 
-    public Position getPosition() {
-        return this.position;
+    public IntegrationMethod getIntegrationMethod() {
+        return method;
     }
 
     //------------------------------------------------------------------------------------------
-    // Construction
+    // Operations
     //------------------------------------------------------------------------------------------
 
-    public Velocity getVelocity() {
-        return this.velocity;
+    /**
+     * @return the position at the last sample, in meters
+     */
+    public Position getPosition() {
+        if (position == null) {
+            position = new Position(DistanceUnit.METER, positionX, positionY, positionZ, positionTime);
+        }
+        return position;
     }
 
-    //------------------------------------------------------------------------------------------
-    // Operations
-    //------------------------------------------------------------------------------------------
+    /**
+     * @return the velocity at the last sample, in meters per second
+     */
+    public Velocity getVelocity() {
+        if (velocity == null) {
+            velocity = new Velocity(DistanceUnit.METER, velocityX[0], velocityY[0], velocityZ[0], times[0]);
+        }
+        return velocity;
+    }
 
     public Acceleration getAcceleration() {
         return this.acceleration;
@@ -75,47 +138,122 @@ public class GriffinAccelerationIntegrator implements BNO055IMU.AccelerationInte
     public void update(Acceleration linearAcceleration) {
         // We should always be given a timestamp here
         if (linearAcceleration.acquisitionTime != 0) {
+            integrate(linearAcceleration);
+        }
+    }
 
-            //linearAcceleration = round(linearAcceleration);
+    /**
+     * Starts the integration over from the sample, the velocity and position carry on from where they are.
+     */
+    protected void restartFrom(Acceleration linearAcceleration) {
+        acceleration = linearAcceleration;
+        shiftSamples(linearAcceleration);
+        sampleCount = 1;
+    }
+
+    /**
+     * Adds the sample, and integrates the interval since the last one.
+     */
+    protected void integrate(Acceleration linearAcceleration) {
+        acceleration = linearAcceleration;
 
-            // We can only integrate if we have a previous acceleration to baseline from
-            if (acceleration != null) {
-                Acceleration accelPrev = acceleration;
-                Velocity velocityPrev = velocity;
+        // We can only integrate if we have a previous acceleration to baseline from
+        if (sampleCount == 0) {
+            restartFrom(linearAcceleration);
+            return;
+        }
 
-                acceleration = linearAcceleration;
+        shiftSamples(linearAcceleration);
+        sampleCount = Math.min(sampleCount + 1, 3);
+        double dt = (times[0] - times[1]) * 1e-9;
 
-                if (accelPrev.acquisitionTime != 0) {
-                    Velocity deltaVelocity = meanIntegrate(acceleration, accelPrev);
-                    velocity = plus(velocity, deltaVelocity);
-                }
+        if (method == IntegrationMethod.RK4) {
+            // the stages see the acceleration at the start, the middle (twice) and the end of the interval
+            for (int axis = 0; axis < 3; axis++) {
+                double[] accel = axis == 0 ? accelX : axis == 1 ? accelY : accelZ;
+                double[] veloc = axis == 0 ? velocityX : axis == 1 ? velocityY : velocityZ;
+                double startAccel = accel[1];
+                double midAccel = (accel[0] + accel[1]) / 2;
+                double endAccel = accel[0];
+                double startVelocity = veloc[1];
 
-                if (velocityPrev.acquisitionTime != 0) {
-                    Position deltaPosition = meanIntegrate(velocity, velocityPrev);
-                    position = plus(position, deltaPosition);
-                }
+                double k1Position = startVelocity;
+                double k2Position = startVelocity + dt / 2 * startAccel;
+                double k3Position = startVelocity + dt / 2 * midAccel;
+                double k4Position = startVelocity + dt * midAccel;
+                double deltaPosition = dt / 6 * (k1Position + 2 * k2Position + 2 * k3Position + k4Position);
+                veloc[0] = startVelocity + dt / 6 * (startAccel + 4 * midAccel + endAccel);
 
-                if (parameters.loggingEnabled) {
-                    RobotLog.vv(parameters.loggingTag, "dt=%.3fs accel=%s vel=%s pos=%s", (acceleration.acquisitionTime - accelPrev.acquisitionTime) * 1e-9, acceleration, velocity, position);
-                    log += acceleration.acquisitionTime + ", " + acceleration.xAccel + ", " + acceleration.yAccel +
-                            ", " + acceleration.zAccel + "\n";
-                }
-            } else {
-                acceleration = linearAcceleration;
+                addToPosition(axis, deltaPosition);
             }
+        } else if (method == IntegrationMethod.SIMPSON && sampleCount == 3) {
+            double h1 = (times[1] - times[2]) * 1e-9;
+            // the weights of the three samples in the integral of their parabola over the newest interval
+            double w2 = -dt * dt * dt / (6 * h1 * (h1 + dt));
+            double w1 = dt * dt / (6 * h1) + dt / 2;
+            double w0 = (dt * dt / 3 + h1 * dt / 2) / (h1 + dt);
+
+            velocityX[0] = velocityX[1] + w2 * accelX[2] + w1 * accelX[1] + w0 * accelX[0];
+            velocityY[0] = velocityY[1] + w2 * accelY[2] + w1 * accelY[1] + w0 * accelY[0];
+            velocityZ[0] = velocityZ[1] + w2 * accelZ[2] + w1 * accelZ[1] + w0 * accelZ[0];
+            addToPosition(0, w2 * velocityX[2] + w1 * velocityX[1] + w0 * velocityX[0]);
+            addToPosition(1, w2 * velocityY[2] + w1 * velocityY[1] + w0 * velocityY[0]);
+            addToPosition(2, w2 * velocityZ[2] + w1 * velocityZ[1] + w0 * velocityZ[0]);
+        } else {
+            // the trapezoid rule, Simpson's rule uses it too until there are three samples
+            velocityX[0] = velocityX[1] + (accelX[0] + accelX[1]) / 2 * dt;
+            velocityY[0] = velocityY[1] + (accelY[0] + accelY[1]) / 2 * dt;
+            velocityZ[0] = velocityZ[1] + (accelZ[0] + accelZ[1]) / 2 * dt;
+            addToPosition(0, (velocityX[0] + velocityX[1]) / 2 * dt);
+            addToPosition(1, (velocityY[0] + velocityY[1]) / 2 * dt);
+            addToPosition(2, (velocityZ[0] + velocityZ[1]) / 2 * dt);
+        }
+
+        positionTime = times[0];
+        position = null;
+        velocity = null;
+
+        if (parameters.loggingEnabled) {
+            RobotLog.vv(parameters.loggingTag, "dt=%.3fs accel=%s vel=%s pos=%s", dt, acceleration, getVelocity(), getPosition());
+            log.record(acceleration.acquisitionTime, acceleration.xAccel, acceleration.yAccel, acceleration.zAccel);
         }
     }
 
-    private Acceleration round(Acceleration acceleration) {
-        acceleration.xAccel = ((int) (acceleration.xAccel * 10 + 0.5)) / 10.0;
-        acceleration.yAccel = ((int) (acceleration.yAccel * 10 + 0.5)) / 10.0;
-        acceleration.zAccel = ((int) (acceleration.zAccel * 10 + 0.5)) / 10.0;
+    /**
+     * Moves the samples back one place and puts the new one in front, the velocity carries over until it is integrated.
+     */
+    private void shiftSamples(Acceleration linearAcceleration) {
+        for (int i = 2; i > 0; i--) {
+            times[i] = times[i - 1];
+            accelX[i] = accelX[i - 1];
+            accelY[i] = accelY[i - 1];
+            accelZ[i] = accelZ[i - 1];
+            velocityX[i] = velocityX[i - 1];
+            velocityY[i] = velocityY[i - 1];
+            velocityZ[i] = velocityZ[i - 1];
+        }
 
+        DistanceUnit unit = linearAcceleration.unit;
+        times[0] = linearAcceleration.acquisitionTime;
+        accelX[0] = unit.toMeters(linearAcceleration.xAccel);
+        accelY[0] = unit.toMeters(linearAcceleration.yAccel);
+        accelZ[0] = unit.toMeters(linearAcceleration.zAccel);
+    }
 
-        return acceleration;
+    private void addToPosition(int axis, double delta) {
+        if (axis == 0) {
+            positionX += delta;
+        } else if (axis == 1) {
+            positionY += delta;
+        } else {
+            positionZ += delta;
+        }
     }
 
+    /**
+     * @return the logged accelerations as csv, empty if logging was not enabled
+     */
     public String getLog() {
-        return log;
+        return log != null ? log.toCsv() : "";
     }
 }
@@ -1,107 +1,75 @@
 package org.firstinspires.ftc.griffins;
 
 import com.qualcomm.hardware.adafruit.BNO055IMU;
-import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
 import org.firstinspires.ftc.robotcore.external.navigation.Position;
 import org.firstinspires.ftc.robotcore.external.navigation.Velocity;
 
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.meanIntegrate;
-import static org.firstinspires.ftc.robotcore.external.navigation.NavUtil.plus;
-
 /**
  * Provides a naive implementation of an acceleration integration algorithm.
- * It does the basic physics and runs a low pass filter on the data
+ * It does the basic physics and runs a low pass filter on the data,
+ * the integration itself is done by {@link GriffinAccelerationIntegrator} with the method it is given.
  * <p/>
  * Todo:
  * One you would actually want to use in a robot would, for example, likely
  * filter noise out of the acceleration data or more sophisticated processing.
- * look up what and how to filter noise,
- * look at better methods for approximating the integral, -> currently uses trapezoid rule, try instead simpson's rule
+ * look up what and how to filter noise
  */
 
-public class GriffinAccelerationIntegratorLowPass implements BNO055IMU.AccelerationIntegrator {
+public class GriffinAccelerationIntegratorLowPass extends GriffinAccelerationIntegrator {
     //------------------------------------------------------------------------------------------
     // State
     //------------------------------------------------------------------------------------------
 
     public static final int FILTER_WINDOW_SIZE = 15;
     public static final double ACCELERATION_THRESHOLD = 0.1;
-    String log;
-    private BNO055IMU.Parameters parameters;
-    private Position position;
-    private Velocity velocity;
-    private Acceleration acceleration;
     private Filter filterX;
     private Filter filterY;
     private Filter filterZ;
 
     public GriffinAccelerationIntegratorLowPass() {
-        this.parameters = null;
-        this.position = null;
-        this.velocity = null;
-        this.acceleration = null;
-        this.filterX = null;
-        this.filterY = null;
-        this.filterZ = null;
+        this(IntegrationMethod.TRAPEZOID);
     }
 
-    @Override
-    public void initialize(BNO055IMU.Parameters parameters, Position initialPosition, Velocity initialVelocity) {
-        this.parameters = parameters;
-        this.position = initialPosition;
-        this.velocity = initialVelocity;
-        this.acceleration = null;
-
-        this.log = "";
-        this.filterX = new LowPassFilter(FILTER_WINDOW_SIZE);
-        this.filterY = new LowPassFilter(FILTER_WINDOW_SIZE);
-        this.filterZ = new LowPassFilter(FILTER_WINDOW_SIZE);
+    public GriffinAccelerationIntegratorLowPass(IntegrationMethod method) {
+        this(method, new RingBufferLowPassFilter(FILTER_WINDOW_SIZE), new RingBufferLowPassFilter(FILTER_WINDOW_SIZE),
+                new RingBufferLowPassFilter(FILTER_WINDOW_SIZE));
     }
 
-    public Position getPosition() {
-        return this.position;
+    /**
+     * Uses a different filter on each axis, they are reset whenever the integrator is initialized.
+     */
+    public GriffinAccelerationIntegratorLowPass(Filter filterX, Filter filterY, Filter filterZ) {
+        this(IntegrationMethod.TRAPEZOID, filterX, filterY, filterZ);
     }
 
-    public Velocity getVelocity() {
-        return this.velocity;
+    public GriffinAccelerationIntegratorLowPass(IntegrationMethod method, Filter filterX, Filter filterY, Filter filterZ) {
+        super(method);
+        this.filterX = filterX;
+        this.filterY = filterY;
+        this.filterZ = filterZ;
     }
 
-    public Acceleration getAcceleration() {
-        return this.acceleration;
+    @Override
+    public void initialize(BNO055IMU.Parameters parameters, Position initialPosition, Velocity initialVelocity) {
+        super.initialize(parameters, initialPosition, initialVelocity);
+        this.filterX.reset();
+        this.filterY.reset();
+        this.filterZ.reset();
     }
 
     @Override
     public void update(Acceleration linearAcceleration) {
         // We should always be given a timestamp here
         if (linearAcceleration.acquisitionTime != 0) {
-            Acceleration previousAcceleration = acceleration;
-            Velocity previousVelocity = velocity;
-
-            acceleration = processRawAcceleration(linearAcceleration);
-
-            // We can only integrate if we have a previous acceleration to baseline from,
-            // we only want to integrate when the filters are at capacity
-            if (acceleration != null && filterX.atCapacity() && filterY.atCapacity() && filterZ.atCapacity()) {
-
-                if (previousAcceleration.acquisitionTime != 0) {
-                    Velocity deltaVelocity = meanIntegrate(acceleration, previousAcceleration);
-                    velocity = plus(velocity, deltaVelocity);
-                }
-
-                if (previousVelocity.acquisitionTime != 0) {
-                    Position deltaPosition = meanIntegrate(velocity, previousVelocity);
-                    position = plus(position, deltaPosition);
-                }
-
-                if (parameters.loggingEnabled) {
-                    RobotLog.vv(parameters.loggingTag, "dt=%.3fs accel=%s vel=%s pos=%s", (acceleration.acquisitionTime - previousAcceleration.acquisitionTime) * 1e-9, acceleration, velocity, position);
-                    log += acceleration.acquisitionTime + ", " + acceleration.xAccel + ", " + acceleration.yAccel +
-                            ", " + acceleration.zAccel + "\n";
-                }
+            Acceleration acceleration = processRawAcceleration(linearAcceleration);
+
+            // we only want to integrate when the filters are at capacity, until then the sample is only a baseline
+            if (filterX.atCapacity() && filterY.atCapacity() && filterZ.atCapacity()) {
+                integrate(acceleration);
             } else {
-                acceleration = linearAcceleration;
+                restartFrom(acceleration);
             }
         }
     }
@@ -126,8 +94,4 @@ public class GriffinAccelerationIntegratorLowPass implements BNO055IMU.Accelerat
 
         return acceleration;
     }
-
-    public String getLog() {
-        return log;
-    }
 }
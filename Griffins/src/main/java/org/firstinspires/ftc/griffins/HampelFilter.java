@@ -0,0 +1,127 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * Passes values through unchanged, unless they are outliers, which are replaced by the median of the window.
+ * A value is an outlier when it is further from the median than a number of scaled median absolute deviations,
+ * which is a standard deviation that is not thrown off by the outliers themselves.
+ * Unlike a moving average, a spike is removed instead of smeared across the window.
+ */
+
+public class HampelFilter extends Filter {
+
+    public static final double DEFAULT_THRESHOLD = 3;
+    // makes the median absolute deviation of normally distributed noise equal to its standard deviation
+    private static final double MAD_SCALE = 1.4826;
+
+    private final MedianFilter window;
+    private final double[] deviations;
+    private final double threshold;
+    private double processedValue;
+    private long outlierCount;
+
+    /**
+     * @param capacity  the number of values the median and deviation are taken over
+     * @param threshold how many standard deviations from the median a value can be before it is an outlier
+     */
+    public HampelFilter(int capacity, double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold can not be negative");
+        }
+
+        window = new MedianFilter(capacity);
+        deviations = new double[capacity];
+        this.threshold = threshold;
+    }
+
+    public HampelFilter(int capacity) {
+        this(capacity, DEFAULT_THRESHOLD);
+    }
+
+    @Override
+    public double processValue(double value) {
+        double median = window.processValue(value);
+        int size = window.getSize();
+
+        for (int i = 0; i < size; i++) {
+            deviations[i] = Math.abs(window.getSorted(i) - median);
+        }
+        double standardDeviation = MAD_SCALE * median(deviations, size);
+
+        if (Math.abs(value - median) > threshold * standardDeviation) {
+            processedValue = median;
+            outlierCount++;
+        } else {
+            processedValue = value;
+        }
+
+        return processedValue;
+    }
+
+    /**
+     * Finds the median of the first size values in place, by quickselect. Reorders the array.
+     */
+    private static double median(double[] array, int size) {
+        int middle = size / 2;
+        double upper = select(array, size, middle);
+        if (size % 2 == 1) {
+            return upper;
+        }
+
+        // after the select every value before the middle is at most the upper median, the lower median is the largest
+        double lower = array[0];
+        for (int i = 1; i < middle; i++) {
+            lower = Math.max(lower, array[i]);
+        }
+        return (lower + upper) / 2;
+    }
+
+    private static double select(double[] array, int size, int rank) {
+        int left = 0;
+        int right = size - 1;
+        while (left < right) {
+            double pivot = array[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (array[i] < pivot) i++;
+                while (array[j] > pivot) j--;
+                if (i <= j) {
+                    double temp = array[i];
+                    array[i] = array[j];
+                    array[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (rank <= j) {
+                right = j;
+            } else if (rank >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return array[rank];
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return processedValue;
+    }
+
+    @Override
+    public boolean atCapacity() {
+        return window.atCapacity();
+    }
+
+    @Override
+    public void reset() {
+        window.reset();
+        processedValue = 0;
+        outlierCount = 0;
+    }
+
+    public long getOutlierCount() {
+        return outlierCount;
+    }
+}
@@ -0,0 +1,78 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * A one dimensional Kalman filter for a value that wanders slowly, measured with noise.
+ * Each value is weighted by how much the estimate is trusted compared to the measurement,
+ * so it settles quickly from the first value and then smooths like a well tuned moving average.
+ */
+
+public class KalmanFilter extends Filter {
+
+    private final double processNoise;
+    private final double measurementNoise;
+    private final double settledVariance;
+
+    private boolean hasEstimate;
+    private double estimate;
+    private double variance;
+
+    /**
+     * @param processNoise     how much the true value changes between measurements, as a variance
+     * @param measurementNoise the variance of the measurement noise
+     */
+    public KalmanFilter(double processNoise, double measurementNoise) {
+        if (processNoise <= 0 || measurementNoise <= 0) {
+            throw new IllegalArgumentException("The process and measurement noise must be positive");
+        }
+
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+        // the variance the estimate settles to, from solving the update equations for a constant variance
+        double predicted = (processNoise + Math.sqrt(processNoise * processNoise + 4 * processNoise * measurementNoise)) / 2;
+        this.settledVariance = predicted * measurementNoise / (predicted + measurementNoise);
+        reset();
+    }
+
+    @Override
+    public double processValue(double value) {
+        if (!hasEstimate) {
+            estimate = value;
+            variance = measurementNoise;
+            hasEstimate = true;
+        } else {
+            double predictedVariance = variance + processNoise;
+            double gain = predictedVariance / (predictedVariance + measurementNoise);
+            estimate += gain * (value - estimate);
+            variance = (1 - gain) * predictedVariance;
+        }
+
+        return estimate;
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return estimate;
+    }
+
+    /**
+     * @return the variance of the estimate
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * @return true once the variance of the estimate is within 10% of where it settles
+     */
+    @Override
+    public boolean atCapacity() {
+        return hasEstimate && variance <= settledVariance * 1.1;
+    }
+
+    @Override
+    public void reset() {
+        hasEstimate = false;
+        estimate = 0;
+        variance = 0;
+    }
+}
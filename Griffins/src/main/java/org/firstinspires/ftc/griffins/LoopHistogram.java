@@ -0,0 +1,220 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.util.ReadWriteFile;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.robotcore.internal.AppUtil;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A histogram of how long a loop takes, in microseconds, cheap enough to record every iteration of a control loop.
+ * <p/>
+ * The buckets are log-linear: every power of two is split into {@link #SUB_BUCKET_COUNT} equal buckets,
+ * so a value is off by at most 1/16th of itself, from 1 us up to about 18 minutes, in a fixed array.
+ * Recording is a few shifts and an increment, it never allocates, so it does not cause the pauses it is measuring.
+ * <p/>
+ * Histograms are looked up by name with {@link #get(String)}, keep the result in a field,
+ * the lookup is only meant for setting up. They are not thread safe, each one should be recorded from one thread.
+ */
+
+public class LoopHistogram {
+
+    public static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // the highest power of two that gets its own buckets, longer values are counted in the last bucket
+    public static final int MAX_EXPONENT = 30;
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private static final Map<String, LoopHistogram> histograms = new LinkedHashMap<>();
+
+    private final String name;
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long total;
+    private long max;
+
+    private LoopHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the histogram with the name, created empty the first time the name is used
+     */
+    public static synchronized LoopHistogram get(String name) {
+        LoopHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new LoopHistogram(name);
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Clears every histogram, call it at the start of an op mode so the histograms only cover that run.
+     */
+    public static synchronized void resetAll() {
+        for (LoopHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Adds a line with the p50/p99/max of every histogram that has values.
+     */
+    public static synchronized void addTelemetry(Telemetry telemetry) {
+        for (LoopHistogram histogram : histograms.values()) {
+            if (histogram.getCount() > 0) {
+                telemetry.addData(histogram.getName(), histogram);
+            }
+        }
+    }
+
+    /**
+     * Writes the summary and the non empty buckets of every histogram to a csv file in the robot settings folder.
+     *
+     * @param fileName the name of the file, relative to the settings folder
+     */
+    public static synchronized void dumpAll(String fileName) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("name, count, mean us, p50 us, p90 us, p99 us, max us\n");
+        for (LoopHistogram histogram : histograms.values()) {
+            builder.append(histogram.getName()).append(", ").append(histogram.getCount()).append(", ")
+                    .append(histogram.getMean()).append(", ").append(histogram.getPercentile(0.5)).append(", ")
+                    .append(histogram.getPercentile(0.9)).append(", ").append(histogram.getPercentile(0.99)).append(", ")
+                    .append(histogram.getMax()).append('\n');
+        }
+
+        builder.append("\nname, bucket low us, bucket high us, count\n");
+        for (LoopHistogram histogram : histograms.values()) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (histogram.counts[i] != 0) {
+                    builder.append(histogram.getName()).append(", ").append(lowerBound(i)).append(", ")
+                            .append(lowerBound(i + 1) - 1).append(", ").append(histogram.counts[i]).append('\n');
+                }
+            }
+        }
+
+        // the settings folder is looked up directly, AppUtil's instance only exists once the app has started
+        AppUtil.ROBOT_SETTINGS.mkdirs();
+        ReadWriteFile.writeFile(new File(AppUtil.ROBOT_SETTINGS, fileName), builder.toString());
+    }
+
+    /**
+     * @return the bucket the value in microseconds is counted in
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        // the bits right after the leading one pick the sub bucket
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return the smallest value in microseconds that is counted in the bucket
+     */
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int group = index / SUB_BUCKET_COUNT;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (group - 1);
+    }
+
+    /**
+     * @param nanoseconds a duration measured with System.nanoTime()
+     */
+    public void record(long nanoseconds) {
+        long micros = nanoseconds / 1000;
+        counts[bucketIndex(micros)]++;
+        count++;
+        total += micros;
+        if (micros > max) {
+            max = micros;
+        }
+    }
+
+    /**
+     * Records the time since the start, and returns the current time, so one call can end an interval and start the next.
+     *
+     * @param startNanoseconds the System.nanoTime() at the start of the interval
+     * @return the System.nanoTime() at the end of the interval
+     */
+    public long recordSince(long startNanoseconds) {
+        long now = System.nanoTime();
+        record(now - startNanoseconds);
+        return now;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param fraction between 0 and 1, 0.99 for the 99th percentile
+     * @return the value in microseconds that the fraction of the values are at or below,
+     * the top of its bucket, but never more than the largest value recorded
+     */
+    public long getPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("The fraction must be between 0 and 1");
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the largest value recorded, in microseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the average value, in microseconds
+     */
+    public double getMean() {
+        return count > 0 ? (double) total / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "p50 %.1f ms, p99 %.1f ms, max %.1f ms (%d)",
+                getPercentile(0.5) / 1e3, getPercentile(0.99) / 1e3, getMax() / 1e3, getCount());
+    }
+}
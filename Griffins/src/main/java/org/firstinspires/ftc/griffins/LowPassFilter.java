@@ -47,4 +47,9 @@ public class LowPassFilter extends Filter {
     public boolean atCapacity() {
         return values.size() == capacity;
     }
+
+    public void reset() {
+        values.clear();
+        processedValue = 0;
+    }
 }
@@ -0,0 +1,106 @@
+package org.firstinspires.ftc.griffins;
+
+import java.util.Arrays;
+
+/**
+ * The median of the last few values, a spike shorter than half the window does not reach the output at all.
+ * The window is kept twice: in arrival order in a ring, and sorted, so the median is read by index.
+ * Each value moves at most one window of numbers, without allocating.
+ */
+
+public class MedianFilter extends Filter {
+
+    private final double[] values; // in arrival order
+    private final double[] sorted; // the first size entries are the window, sorted
+    private int nextIndex;
+    private int size;
+    private double processedValue;
+
+    public MedianFilter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1");
+        }
+
+        values = new double[capacity];
+        sorted = new double[capacity];
+        reset();
+    }
+
+    @Override
+    public double processValue(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("NaN can not be sorted");
+        }
+
+        if (size == values.length) {
+            removeSorted(values[nextIndex]);
+        }
+        insertSorted(value);
+
+        values[nextIndex] = value;
+        nextIndex++;
+        if (nextIndex == values.length) {
+            nextIndex = 0;
+        }
+
+        processedValue = getMedian();
+        return processedValue;
+    }
+
+    private void removeSorted(double value) {
+        int index = Arrays.binarySearch(sorted, 0, size, value);
+        System.arraycopy(sorted, index + 1, sorted, index, size - index - 1);
+        size--;
+    }
+
+    private void insertSorted(double value) {
+        int index = Arrays.binarySearch(sorted, 0, size, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        System.arraycopy(sorted, index, sorted, index + 1, size - index);
+        sorted[index] = value;
+        size++;
+    }
+
+    /**
+     * @param rank from 0, the smallest value in the window, to {@link #getSize()} - 1, the largest
+     */
+    public double getSorted(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("rank " + rank + " is not in a window of " + size);
+        }
+        return sorted[rank];
+    }
+
+    public double getMedian() {
+        if (size == 0) {
+            return 0;
+        } else if (size % 2 == 1) {
+            return sorted[size / 2];
+        } else {
+            return (sorted[size / 2 - 1] + sorted[size / 2]) / 2;
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return processedValue;
+    }
+
+    @Override
+    public boolean atCapacity() {
+        return size == values.length;
+    }
+
+    @Override
+    public void reset() {
+        nextIndex = 0;
+        size = 0;
+        processedValue = 0;
+    }
+}
@@ -0,0 +1,208 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+import java.util.Locale;
+
+/**
+ * Runs a control loop at a fixed period, so that controller gains do not change with the loop speed.
+ * <p/>
+ * There are two ways to use it:
+ * call {@link #waitForNextCycle()} at the end of every iteration of an existing loop,
+ * or hand a task to {@link #start(Runnable)} to run it on a background thread.
+ * The period should be a multiple of the hardware cycle, so every cycle sees fresh sensor values.
+ * Cycles are scheduled on a fixed grid, so a late wake up does not push back the following cycles.
+ * The time comes from {@link Clock}, so in the simulation the loop runs on the virtual clock.
+ */
+
+public class ControlLoopExecutor {
+
+    public static final double DEFAULT_PERIOD_MILLISECONDS = 20;
+
+    private final long periodNanoseconds;
+    private long nextDeadline;
+
+    //statistics
+    private volatile long startTime;
+    private volatile long lastCycleTime;
+    private volatile long cycleCount;
+    private volatile long overrunCount;
+    private volatile long totalJitter;
+    private volatile long maxJitter;
+
+    private volatile boolean running;
+    private Thread loopThread;
+
+    public ControlLoopExecutor(double periodMilliseconds) {
+        if (periodMilliseconds <= 0) {
+            throw new IllegalArgumentException("The period must be greater than 0");
+        }
+
+        this.periodNanoseconds = (long) (periodMilliseconds * 1e6);
+        reset();
+    }
+
+    public ControlLoopExecutor() {
+        this(DEFAULT_PERIOD_MILLISECONDS);
+    }
+
+    /**
+     * Restarts the schedule and clears the statistics, the first cycle starts at the time of the call.
+     */
+    public void reset() {
+        long now = Clock.now();
+        startTime = now;
+        lastCycleTime = now;
+        nextDeadline = now + periodNanoseconds;
+        cycleCount = 1;
+        overrunCount = 0;
+        totalJitter = 0;
+        maxJitter = 0;
+    }
+
+    /**
+     * Blocks until the start of the next cycle.
+     *
+     * @return false if the thread was interrupted while waiting, true otherwise
+     */
+    public boolean waitForNextCycle() {
+        long now = Clock.now();
+
+        if (now >= nextDeadline) {
+            // the cycle took longer than the period, start the next one right away on a new grid
+            overrunCount++;
+            nextDeadline = now + periodNanoseconds;
+        } else {
+            long deadline = nextDeadline;
+            if (!waitUntil(deadline)) {
+                return false;
+            }
+            now = Clock.now();
+
+            long jitter = now - deadline;
+            totalJitter += jitter;
+            if (jitter > maxJitter) {
+                maxJitter = jitter;
+            }
+            nextDeadline = deadline + periodNanoseconds;
+        }
+
+        lastCycleTime = now;
+        cycleCount++;
+        return true;
+    }
+
+    private boolean waitUntil(long deadline) {
+        try {
+            Clock.get().sleepUntil(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs the task once every period on a background thread, until {@link #stop()} is called.
+     *
+     * @param task the controller update to run every cycle
+     */
+    public synchronized void start(final Runnable task) {
+        if (running) {
+            throw new IllegalStateException("The control loop is already running");
+        }
+        if (!joinLoopThread()) {
+            throw new IllegalStateException("The last control loop thread has not finished");
+        }
+
+        reset();
+        running = true;
+        loopThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    task.run();
+                } while (running && waitForNextCycle());
+            }
+        }, "Control Loop");
+        loopThread.setPriority(Thread.MAX_PRIORITY);
+        loopThread.start();
+    }
+
+    /**
+     * Stops the background thread, and waits for its last cycle to finish.
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            loopThread.interrupt();
+            joinLoopThread();
+        }
+    }
+
+    /**
+     * Waits for the last loop thread to finish. If the wait is interrupted the thread is kept,
+     * so the loop is not started again until it has finished.
+     *
+     * @return true if there is no thread left
+     */
+    private boolean joinLoopThread() {
+        if (loopThread != null) {
+            try {
+                loopThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            loopThread = null;
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public double getPeriodSeconds() {
+        return periodNanoseconds / 1e9;
+    }
+
+    public long getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * @return the number of cycles that took longer than the period
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * @return the average time between when a cycle should have started and when it started, in milliseconds
+     */
+    public double getMeanJitterMilliseconds() {
+        long onTimeCycles = cycleCount - 1 - overrunCount;
+        return onTimeCycles > 0 ? totalJitter / 1e6 / onTimeCycles : 0;
+    }
+
+    public double getMaxJitterMilliseconds() {
+        return maxJitter / 1e6;
+    }
+
+    /**
+     * @return the number of cycles per second actually run since the last reset
+     */
+    public double getAchievedHz() {
+        long elapsed = lastCycleTime - startTime;
+        return cycleCount > 1 && elapsed > 0 ? (cycleCount - 1) * 1e9 / elapsed : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%.1f Hz (target %.1f), jitter mean %.2f ms max %.2f ms, %d/%d overruns",
+                getAchievedHz(), 1 / getPeriodSeconds(), getMeanJitterMilliseconds(), getMaxJitterMilliseconds(),
+                getOverrunCount(), getCycleCount());
+    }
+}
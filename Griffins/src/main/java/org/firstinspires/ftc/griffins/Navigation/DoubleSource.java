@@ -0,0 +1,12 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+/**
+ * A sensor value for a controller, like {@link org.firstinspires.ftc.robotcore.external.Func}&lt;Double&gt;,
+ * but returns a primitive, so reading it does not box a new Double every sample.
+ *
+ * @see DoubleSources for adapters to the robot's sensors
+ */
+
+public interface DoubleSource {
+    double value();
+}
@@ -0,0 +1,101 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import com.qualcomm.hardware.modernrobotics.ModernRoboticsI2cGyro;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.griffins.Filter;
+import org.firstinspires.ftc.griffins.SyncedDcMotors;
+import org.firstinspires.ftc.robotcore.external.Func;
+
+/**
+ * Adapters from the robot's sensors to {@link DoubleSource}s.
+ * None of the returned sources allocate when read.
+ */
+
+public class DoubleSources {
+
+    private DoubleSources() {
+    }
+
+    public static DoubleSource encoder(final DcMotor motor) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return motor.getCurrentPosition();
+            }
+        };
+    }
+
+    /**
+     * @return the average of every motor's encoder, instead of only the first motor's encoder
+     */
+    public static DoubleSource encoder(final SyncedDcMotors motors) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return motors.getAveragePosition();
+            }
+        };
+    }
+
+    public static DoubleSource encoderAverage(final DcMotor motor1, final DcMotor motor2) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return (motor1.getCurrentPosition() + motor2.getCurrentPosition()) / 2.0;
+            }
+        };
+    }
+
+    public static DoubleSource encoderSum(final DcMotor motor1, final DcMotor motor2) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return motor1.getCurrentPosition() + motor2.getCurrentPosition();
+            }
+        };
+    }
+
+    public static DoubleSource integratedZValue(final ModernRoboticsI2cGyro gyro) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return gyro.getIntegratedZValue();
+            }
+        };
+    }
+
+    public static DoubleSource negate(final DoubleSource source) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return -source.value();
+            }
+        };
+    }
+
+    /**
+     * Wraps a boxed source, reading it still allocates if the Func boxes its value.
+     */
+    public static DoubleSource fromFunc(final Func<Double> func) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return func.value();
+            }
+        };
+    }
+
+    /**
+     * Runs every read of the source through the filter, so each signal can have its own filter.
+     * The filter sees one value per read, so the source should be read once per cycle.
+     */
+    public static DoubleSource filtered(final DoubleSource source, final Filter filter) {
+        return new DoubleSource() {
+            @Override
+            public double value() {
+                return filter.processValue(source.value());
+            }
+        };
+    }
+}
@@ -0,0 +1,163 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.DataRecorder;
+import org.firstinspires.ftc.griffins.DriveRecorder;
+import org.firstinspires.ftc.griffins.RobotHardware;
+import org.firstinspires.ftc.griffins.SensorFrame;
+
+import java.util.Locale;
+
+import static org.firstinspires.ftc.griffins.DriveRecorder.BUTTON_PUSHER_RATIO;
+import static org.firstinspires.ftc.griffins.DriveRecorder.GYRO_INTEGRATED_Z;
+import static org.firstinspires.ftc.griffins.DriveRecorder.INTAKE_POWER;
+import static org.firstinspires.ftc.griffins.DriveRecorder.LEFT_DRIVE_POSITION;
+import static org.firstinspires.ftc.griffins.DriveRecorder.LEFT_DRIVE_POWER;
+import static org.firstinspires.ftc.griffins.DriveRecorder.LOADER_POWER;
+import static org.firstinspires.ftc.griffins.DriveRecorder.RIGHT_DRIVE_POSITION;
+import static org.firstinspires.ftc.griffins.DriveRecorder.RIGHT_DRIVE_POWER;
+import static org.firstinspires.ftc.griffins.DriveRecorder.SHOOTER_POWER;
+
+/**
+ * Drives a recording from {@link DriveRecorder} again, as an autonomous.
+ * <p/>
+ * The recorded encoder positions and gyro heading are the trajectory, the recorded powers are only the feed forward:
+ * every step the drive is corrected toward where the recording was at that time, so a different battery or floor
+ * does not add up into a different path. The encoders and the gyro are measured from where the replay starts,
+ * so the robot has to start where the recording did. The intake, loader, shooter and button pusher get their recorded
+ * powers as they are, they do not move the robot.
+ */
+
+public class DriveReplay {
+
+    // the position correction, in power per encoder count, a little firmer than PIDDrive's
+    public static final double POSITION_GAIN = 0.002;
+    // the heading correction, in power per degree, as PIDDrive's turns
+    public static final double HEADING_GAIN = 0.015;
+    // how long the robot may take after the end of the recording to get onto the last position
+    public static final double SETTLE_SECONDS = 0.5;
+
+    private final RobotHardware hardware;
+    private final DataRecorder.Recording recording;
+    private final long recordingStart;
+    private final long recordingEnd;
+
+    private final PIDController leftController;
+    private final PIDController rightController;
+    private final PIDController headingController;
+
+    private long startTime;
+    private int row;
+    private double leftOffset;
+    private double rightOffset;
+    private double gyroOffset;
+
+    public DriveReplay(final RobotHardware hardware, DataRecorder.Recording recording) {
+        if (recording.getRowCount() == 0) {
+            throw new IllegalArgumentException("The recording has no rows");
+        }
+        if (recording.getChannelCount() != GYRO_INTEGRATED_Z + 1) {
+            throw new IllegalArgumentException("Not a drive recording, it has " + recording.getChannelCount() + " channels");
+        }
+
+        this.hardware = hardware;
+        this.recording = recording;
+        recordingStart = recording.getTime(0);
+        recordingEnd = recording.getTime(recording.getRowCount() - 1);
+
+        hardware.updateSensorFrame();
+        leftController = new PIDController(POSITION_GAIN, 0, 0, 22.3, new DoubleSource() {
+            @Override
+            public double value() {
+                return hardware.getSensorFrame().getLeftDrivePosition();
+            }
+        }, null);
+        leftController.setOutputRange(-0.5, 0.5);
+        rightController = new PIDController(POSITION_GAIN, 0, 0, 22.3, new DoubleSource() {
+            @Override
+            public double value() {
+                return hardware.getSensorFrame().getRightDrivePosition();
+            }
+        }, null);
+        rightController.setOutputRange(-0.5, 0.5);
+        headingController = new PIDController(HEADING_GAIN, 0, 0, 1, new DoubleSource() {
+            @Override
+            public double value() {
+                return hardware.getSensorFrame().getGyroIntegratedZValue();
+            }
+        }, null);
+        headingController.setOutputRange(-0.4, 0.4);
+    }
+
+    /**
+     * Starts the replay from the beginning of the recording, at the robot's current encoders and heading.
+     */
+    public void start() {
+        SensorFrame frame = hardware.updateSensorFrame();
+        startTime = frame.getTimestamp();
+        row = 0;
+        leftOffset = frame.getLeftDrivePosition() - recording.getValue(0, LEFT_DRIVE_POSITION);
+        rightOffset = frame.getRightDrivePosition() - recording.getValue(0, RIGHT_DRIVE_POSITION);
+        gyroOffset = frame.getGyroIntegratedZValue() - recording.getValue(0, GYRO_INTEGRATED_Z);
+    }
+
+    /**
+     * One step of the replay, for a control loop or a command.
+     *
+     * @return true once the recording is over and the robot is on its last position, or the settle time has passed
+     */
+    public boolean step() {
+        SensorFrame frame = hardware.updateSensorFrame();
+        long time = recordingStart + (frame.getTimestamp() - startTime);
+        row = recording.findRow(time, row);
+
+        leftController.setSetPoint(recording.interpolate(time, row, LEFT_DRIVE_POSITION) + leftOffset);
+        rightController.setSetPoint(recording.interpolate(time, row, RIGHT_DRIVE_POSITION) + rightOffset);
+        headingController.setSetPoint(recording.interpolate(time, row, GYRO_INTEGRATED_Z) + gyroOffset);
+
+        // turns to the left are positive, so a heading error to the left slows the left side
+        double heading = headingController.sendPIDOutput();
+        boolean over = time >= recordingEnd;
+        double leftFeedForward = over ? 0 : recording.getValue(row, LEFT_DRIVE_POWER);
+        double rightFeedForward = over ? 0 : recording.getValue(row, RIGHT_DRIVE_POWER);
+        hardware.setDrivePower(leftFeedForward + leftController.sendPIDOutput() - heading,
+                rightFeedForward + rightController.sendPIDOutput() + heading);
+
+        if (!over) {
+            hardware.getIntake().setPower(recording.getValue(row, INTAKE_POWER));
+            hardware.setLoaderPower(recording.getValue(row, LOADER_POWER));
+            hardware.getShooter().setPower(recording.getValue(row, SHOOTER_POWER));
+            hardware.extendButtonPusher(recording.getValue(row, BUTTON_PUSHER_RATIO));
+            return false;
+        }
+
+        boolean onTarget = leftController.isOnTarget() && rightController.isOnTarget() && headingController.isOnTarget();
+        return onTarget || (time - recordingEnd) * 1e-9 > SETTLE_SECONDS;
+    }
+
+    /**
+     * Stops the drive and the mechanisms the recording ran.
+     */
+    public void stop() {
+        hardware.stopDrive();
+        hardware.getIntake().setPower(0);
+        hardware.setLoaderPower(0);
+        hardware.getShooter().setPower(0);
+        hardware.retractButtonPusher();
+    }
+
+    /**
+     * @return the length of the recording, in seconds
+     */
+    public double getSeconds() {
+        return (recordingEnd - recordingStart) * 1e-9;
+    }
+
+    /**
+     * @return how far the left and right encoders are from the recording, in inches, as of the last step
+     */
+    public String getTrackingError() {
+        return String.format(Locale.US, "left %.1f in, right %.1f in, heading %.1f deg",
+                leftController.getError() * RobotHardware.INCHES_PER_ENCODER_COUNT,
+                rightController.getError() * RobotHardware.INCHES_PER_ENCODER_COUNT, headingController.getError());
+    }
+}
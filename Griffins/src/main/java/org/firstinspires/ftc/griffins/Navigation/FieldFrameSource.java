@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.BeaconAuto;
+
+/**
+ * Gives the robot poses of a {@link VisionSource} that tracks in Vuforia's field frame in the autonomous' field frame.
+ * <p/>
+ * Vuforia's origin is the middle of the field, the blue beacon wall is at +y with its middle target at +x,
+ * and the red beacon wall is at -x with its middle target at -y. The autonomous puts its own beacon wall along y = 0,
+ * with the field at positive y and the red side mirrored, see {@link BeaconAuto}. So for blue the frame is turned
+ * half a turn, and for red a quarter turn, around the middle of the field.
+ * The robot's heading is taken to be the angle of its x axis in the Vuforia robot location.
+ * <p/>
+ * The target relative poses are the camera's own, they are passed on as they are.
+ */
+
+public class FieldFrameSource implements VisionSource {
+
+    private static final double HALF_FIELD = BeaconAuto.FIELD_SIZE / 2;
+
+    private final VisionSource source;
+    private final boolean blue;
+
+    /**
+     * @param source a source whose robot poses are in Vuforia's field frame
+     * @param blue   true for the blue alliance's frame, false for the red one's
+     */
+    public FieldFrameSource(VisionSource source, boolean blue) {
+        this.source = source;
+        this.blue = blue;
+    }
+
+    /**
+     * @return the pose in the autonomous' field frame of the alliance
+     */
+    public static Pose toFieldFrame(Pose vuforiaPose, boolean blue) {
+        if (blue) {
+            return new Pose(vuforiaPose.getTimestamp(), HALF_FIELD - vuforiaPose.getX(), HALF_FIELD - vuforiaPose.getY(),
+                    Pose.wrapDegrees(vuforiaPose.getHeading() + 180));
+        } else {
+            return new Pose(vuforiaPose.getTimestamp(), HALF_FIELD - vuforiaPose.getY(), HALF_FIELD + vuforiaPose.getX(),
+                    Pose.wrapDegrees(vuforiaPose.getHeading() + 90));
+        }
+    }
+
+    /**
+     * @return the pose in Vuforia's field frame, the opposite of {@link #toFieldFrame(Pose, boolean)}
+     */
+    public static Pose toVuforiaFrame(Pose fieldPose, boolean blue) {
+        if (blue) {
+            return new Pose(fieldPose.getTimestamp(), HALF_FIELD - fieldPose.getX(), HALF_FIELD - fieldPose.getY(),
+                    Pose.wrapDegrees(fieldPose.getHeading() + 180));
+        } else {
+            return new Pose(fieldPose.getTimestamp(), fieldPose.getY() - HALF_FIELD, HALF_FIELD - fieldPose.getX(),
+                    Pose.wrapDegrees(fieldPose.getHeading() - 90));
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return source.isReady();
+    }
+
+    @Override
+    public boolean activateTracking() {
+        return source.activateTracking();
+    }
+
+    @Override
+    public void deactivateTracking() {
+        source.deactivateTracking();
+    }
+
+    @Override
+    public void process() {
+        source.process();
+    }
+
+    @Override
+    public int getTargetCount() {
+        return source.getTargetCount();
+    }
+
+    @Override
+    public boolean isTargetVisible(int targetIndex) {
+        return source.isTargetVisible(targetIndex);
+    }
+
+    @Override
+    public long getRobotPoseTime() {
+        return source.getRobotPoseTime();
+    }
+
+    @Override
+    public Pose getRobotPose() {
+        Pose pose = source.getRobotPose();
+        return pose != null ? toFieldFrame(pose, blue) : null;
+    }
+
+    @Override
+    public Pose getTargetRelativePose(int targetIndex) {
+        return source.getTargetRelativePose(targetIndex);
+    }
+}
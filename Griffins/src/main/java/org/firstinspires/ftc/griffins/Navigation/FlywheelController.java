@@ -0,0 +1,165 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+import java.util.Locale;
+
+/**
+ * Holds a flywheel motor at a speed, in RPM.
+ * The output is a feedforward term, the fraction of the motor's top speed that is wanted,
+ * plus a PI correction on the speed measured by a {@link VelocityEstimator}.
+ * {@link #update()} must be called every cycle while the flywheel is running.
+ */
+
+public class FlywheelController {
+
+    public static final double DEFAULT_KP = 0.002;
+    public static final double DEFAULT_KI = 0.004; // per second
+    public static final double DEFAULT_TOLERANCE_RPM = 10;
+    // the flywheel is at speed once the speed has been within the tolerance for this many updates
+    public static final int AT_SPEED_CYCLES = 3;
+
+    private final DcMotor motor;
+    private final VelocityEstimator estimator;
+    private final PIDController controller;
+    private final double countsPerRotation;
+
+    private double targetRpm;
+    private int cyclesInTolerance;
+
+    //metrics
+    private long spinUpStartTime;
+    private double spinUpTime = Double.NaN;
+    private long steadyStateSamples;
+    private double steadyStateErrorSum;
+    private double maxSteadyStateError;
+
+    public FlywheelController(DcMotor motor, double countsPerRotation, double maxRpm) {
+        this(motor, countsPerRotation, maxRpm, DEFAULT_KP, DEFAULT_KI, DEFAULT_TOLERANCE_RPM);
+    }
+
+    public FlywheelController(DcMotor motor, double countsPerRotation, double maxRpm, double kP, double kI, double toleranceRpm) {
+        if (countsPerRotation <= 0 || maxRpm <= 0) {
+            throw new IllegalArgumentException("The encoder counts and the max speed must be greater than 0");
+        }
+
+        this.motor = motor;
+        this.countsPerRotation = countsPerRotation;
+        this.estimator = new VelocityEstimator(motor);
+
+        DoubleSource rpm = new DoubleSource() {
+            @Override
+            public double value() {
+                return getRpm();
+            }
+        };
+        controller = new PIDController(kP, kI, 0, 1 / maxRpm, toleranceRpm, rpm, motor);
+        controller.setTimeBased(true);
+        controller.setOutputRange(0, 1); // the flywheel only coasts down, it is never driven backwards
+        controller.setIntegralRange(maxRpm / 4);
+        // the integral makes up what the feed forward misses, clearing it near the target would let the speed sag
+        controller.setResetIntegralOnTarget(false);
+        controller.setSetPoint(0);
+    }
+
+    /**
+     * Sets the speed to hold, 0 turns the motor off. The metrics are restarted when the target changes.
+     */
+    public void setTargetRpm(double targetRpm) {
+        if (targetRpm < 0) {
+            throw new IllegalArgumentException("The flywheel only spins forwards");
+        }
+
+        if (targetRpm != this.targetRpm) {
+            this.targetRpm = targetRpm;
+            controller.setSetPoint(targetRpm);
+            cyclesInTolerance = 0;
+            spinUpStartTime = Clock.now();
+            spinUpTime = Double.NaN;
+            steadyStateSamples = 0;
+            steadyStateErrorSum = 0;
+            maxSteadyStateError = 0;
+        }
+
+        if (targetRpm == 0) {
+            controller.PIDdisable();
+            motor.setPower(0);
+        }
+    }
+
+    public double getTargetRpm() {
+        return targetRpm;
+    }
+
+    /**
+     * Samples the encoder and sets the motor power, does nothing to the motor while the target is 0.
+     */
+    public void update() {
+        estimator.update();
+
+        if (targetRpm == 0) {
+            return;
+        }
+
+        controller.sendPIDOutput();
+
+        double error = Math.abs(controller.getError());
+        if (controller.isOnTarget()) {
+            cyclesInTolerance++;
+        } else {
+            cyclesInTolerance = 0;
+        }
+
+        if (Double.isNaN(spinUpTime)) {
+            if (cyclesInTolerance >= AT_SPEED_CYCLES) {
+                spinUpTime = (Clock.now() - spinUpStartTime) * 1e-9;
+            }
+        } else {
+            steadyStateSamples++;
+            steadyStateErrorSum += error;
+            maxSteadyStateError = Math.max(maxSteadyStateError, error);
+        }
+    }
+
+    public double getRpm() {
+        return estimator.getRate() * 60 / countsPerRotation;
+    }
+
+    public boolean isAtSpeed() {
+        return targetRpm > 0 && cyclesInTolerance >= AT_SPEED_CYCLES;
+    }
+
+    /**
+     * @return the seconds from setting the target to first reaching it, NaN if it has not been reached yet
+     */
+    public double getSpinUpTime() {
+        return spinUpTime;
+    }
+
+    /**
+     * @return the mean absolute difference between the target and the speed, after first reaching the target, in RPM
+     */
+    public double getSteadyStateRpmError() {
+        return steadyStateSamples > 0 ? steadyStateErrorSum / steadyStateSamples : 0;
+    }
+
+    public double getMaxSteadyStateRpmError() {
+        return maxSteadyStateError;
+    }
+
+    public VelocityEstimator getEstimator() {
+        return estimator;
+    }
+
+    public PIDController getController() {
+        return controller;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%.0f/%.0f RPM, spin up %.2f s, steady state error %.1f RPM (max %.1f)",
+                getRpm(), targetRpm, spinUpTime, getSteadyStateRpmError(), maxSteadyStateError);
+    }
+}
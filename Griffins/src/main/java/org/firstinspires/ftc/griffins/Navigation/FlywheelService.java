@@ -0,0 +1,171 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.LoopHistogram;
+import org.firstinspires.ftc.robotcore.external.Func;
+
+/**
+ * Holds the flywheels at a speed on a background thread, so the shooter can spin up while the drive PID runs
+ * and the feed step only waits for whatever spin up is left.
+ * <p/>
+ * {@link #arm(double)} sets the speed from any thread, the service thread picks it up on its next cycle,
+ * and {@link #isAtSpeed()} says whether the flywheels have reached it. While the service runs, its thread is
+ * the only one that may touch the {@link PIDRate} or the shooter motors, and every cycle with a target
+ * is recorded in the rate's recorder. The thread stops itself, turning the flywheels off,
+ * once the keep running check fails, so an opmode that is stopped early does not leave the shooter spinning.
+ */
+
+public class FlywheelService {
+
+    public static final double DEFAULT_PERIOD_MILLISECONDS = 10;
+
+    private final PIDRate rate;
+    private final Func<Boolean> keepRunning;
+    private final ControlLoopExecutor executor;
+    private final LoopHistogram cycleTime = LoopHistogram.get("Flywheel service");
+
+    // written by any thread, the service thread applies it
+    private volatile double requestedRpm;
+    // the target the flywheels were last at speed for, NaN while they are not
+    private volatile double atSpeedRpm = Double.NaN;
+
+    private volatile boolean running;
+    private Thread serviceThread;
+
+    /**
+     * @param keepRunning checked every cycle, usually whether the opmode is still active
+     */
+    public FlywheelService(PIDRate rate, Func<Boolean> keepRunning, double periodMilliseconds) {
+        this.rate = rate;
+        this.keepRunning = keepRunning;
+        this.executor = new ControlLoopExecutor(periodMilliseconds);
+    }
+
+    public FlywheelService(PIDRate rate, Func<Boolean> keepRunning) {
+        this(rate, keepRunning, DEFAULT_PERIOD_MILLISECONDS);
+    }
+
+    /**
+     * Starts holding the flywheels at the speed, starting the service if it is not running.
+     * Arming it again with another speed changes the target, the flywheels are not at speed until they reach it.
+     */
+    public void arm(double rpm) {
+        if (rpm <= 0) {
+            throw new IllegalArgumentException("The flywheels have to be armed with a speed greater than 0");
+        }
+        requestedRpm = rpm;
+        if (!running) {
+            start();
+        }
+    }
+
+    /**
+     * Lets the flywheels coast to a stop, the service keeps running so it can be armed again right away.
+     */
+    public void disarm() {
+        requestedRpm = 0;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        // a thread that stopped itself may still be finishing its last cycle, two threads must never drive the flywheels
+        if (!joinServiceThread()) {
+            return;
+        }
+
+        running = true;
+        serviceThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.reset();
+                do {
+                    cycle();
+                } while (running && keepRunning.value() && executor.waitForNextCycle());
+
+                rate.setRateTarget(0);
+                atSpeedRpm = Double.NaN;
+                running = false;
+            }
+        }, "Flywheel Service");
+        // the flywheels are held by a control loop, so it runs at the control loop's priority
+        serviceThread.setPriority(Thread.MAX_PRIORITY);
+        serviceThread.start();
+    }
+
+    /**
+     * Stops the thread and turns the flywheels off, it returns once the thread has finished.
+     */
+    public synchronized void stop() {
+        requestedRpm = 0;
+        if (serviceThread != null) {
+            running = false;
+            serviceThread.interrupt();
+            joinServiceThread();
+        }
+    }
+
+    /**
+     * Waits for the last service thread to finish. If the wait is interrupted the thread is kept,
+     * so the service is not started again until it has finished.
+     *
+     * @return true if there is no thread left
+     */
+    private boolean joinServiceThread() {
+        if (serviceThread != null) {
+            try {
+                serviceThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            serviceThread = null;
+        }
+        return true;
+    }
+
+    private void cycle() {
+        long start = System.nanoTime();
+        double rpm = requestedRpm;
+        if (rpm != rate.getLeftFlywheel().getTargetRpm()) {
+            rate.setRateTarget(rpm);
+        }
+
+        rate.syncRates();
+        atSpeedRpm = rate.isAtSpeed() ? rpm : Double.NaN;
+
+        if (rpm > 0) {
+            rate.getRecorder().record(Clock.now() / 1000000, rate.getLeftFlywheel().getRpm(), rate.getRightFlywheel().getRpm());
+        }
+        cycleTime.recordSince(start);
+    }
+
+    /**
+     * @return true once both flywheels have been held at the armed speed, false while disarmed
+     */
+    public boolean isAtSpeed() {
+        double rpm = requestedRpm;
+        return rpm > 0 && atSpeedRpm == rpm;
+    }
+
+    /**
+     * @return the armed speed, 0 while disarmed
+     */
+    public double getTargetRpm() {
+        return requestedRpm;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public ControlLoopExecutor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return "left flywheel: " + rate.getLeftFlywheel() + ", right flywheel: " + rate.getRightFlywheel();
+    }
+}
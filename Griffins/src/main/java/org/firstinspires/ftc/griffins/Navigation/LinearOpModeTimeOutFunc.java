@@ -1,8 +1,8 @@
 package org.firstinspires.ftc.griffins.Navigation;
 
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
-import com.qualcomm.robotcore.util.ElapsedTime;
 
+import org.firstinspires.ftc.griffins.Clock;
 import org.firstinspires.ftc.robotcore.external.Func;
 
 /**
@@ -11,17 +11,17 @@ import org.firstinspires.ftc.robotcore.external.Func;
 
 public class LinearOpModeTimeOutFunc implements Func<Boolean> {
     LinearOpMode opMode;
-    ElapsedTime timeOut;
+    long startTime;
     double timeOutLength;
 
     public LinearOpModeTimeOutFunc(LinearOpMode opMode, double timeOutLengthSeconds) {
         this.opMode = opMode;
         this.timeOutLength = timeOutLengthSeconds;
-        timeOut = new ElapsedTime();
+        startTime = Clock.now();
     }
 
     @Override
     public Boolean value() {
-        return opMode.opModeIsActive() && (timeOut.seconds() < timeOutLength);
+        return opMode.opModeIsActive() && (Clock.secondsSince(startTime) < timeOutLength);
     }
 }
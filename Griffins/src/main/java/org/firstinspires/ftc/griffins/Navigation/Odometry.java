@@ -0,0 +1,123 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.RobotHardware;
+import org.firstinspires.ftc.griffins.SensorFrame;
+
+/**
+ * Tracks the robot's pose on the field from the drive encoders and the turret gyro in each {@link SensorFrame}.
+ * The heading is the gyro's integrated z value, offset to the field, and the distance the drive moved
+ * since the last frame is applied along the heading halfway between the two frames.
+ * <p/>
+ * The pose is kept in primitive fields, so an update never allocates, {@link #getPose()} is the only call that does.
+ * {@link RobotHardware#updateSensorFrame()} passes every frame to {@link #update(SensorFrame)}.
+ * Between frames the pose does not change, a long gap between frames only makes the heading used for it less accurate.
+ * Resetting the gyro's integrator moves the heading, set the pose again after it.
+ */
+
+public class Odometry {
+
+    private boolean started;
+    private long timestamp;
+    private double x;
+    private double y;
+    private double heading;
+
+    // the field heading of the gyro's zero, and the sensor values of the last frame
+    private double headingOffset;
+    private int lastLeftPosition;
+    private int lastRightPosition;
+    private int lastGyroValue;
+    private int poseSetCount;
+
+    /**
+     * Moves the tracked pose to where the robot is now, the following frames are measured from it.
+     *
+     * @param heading degrees counter clockwise from the x axis
+     */
+    public synchronized void setPose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        headingOffset = heading - lastGyroValue;
+        poseSetCount++;
+    }
+
+    /**
+     * @return the number of times the pose was set, the poses before a set are not comparable with the ones after it
+     */
+    public synchronized int getPoseSetCount() {
+        return poseSetCount;
+    }
+
+    public synchronized void update(SensorFrame frame) {
+        int left = frame.getLeftDrivePosition();
+        int right = frame.getRightDrivePosition();
+        int gyroValue = frame.getGyroIntegratedZValue();
+
+        if (!started) {
+            // the first frame is where the robot starts, at the pose that was set before it
+            headingOffset = heading - gyroValue;
+            started = true;
+        } else {
+            double newHeading = headingOffset + gyroValue;
+            double distance = ((left - lastLeftPosition) + (right - lastRightPosition)) / 2.0 * RobotHardware.INCHES_PER_ENCODER_COUNT;
+            double midHeading = Math.toRadians((heading + newHeading) / 2);
+            x += distance * Math.cos(midHeading);
+            y += distance * Math.sin(midHeading);
+            heading = newHeading;
+        }
+
+        lastLeftPosition = left;
+        lastRightPosition = right;
+        lastGyroValue = gyroValue;
+        timestamp = frame.getTimestamp();
+    }
+
+    /**
+     * @return the {@link org.firstinspires.ftc.griffins.Clock#now()} of the last frame
+     */
+    public synchronized long getTimestamp() {
+        return timestamp;
+    }
+
+    public synchronized double getX() {
+        return x;
+    }
+
+    public synchronized double getY() {
+        return y;
+    }
+
+    /**
+     * @return the heading in degrees, not wrapped
+     */
+    public synchronized double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @return a snapshot of the pose at the last frame
+     */
+    public synchronized Pose getPose() {
+        return new Pose(timestamp, x, y, heading);
+    }
+
+    /**
+     * @return the field heading that points the robot at the point, in degrees between -180 and 180
+     */
+    public synchronized double getBearingTo(double targetX, double targetY) {
+        return Math.toDegrees(Math.atan2(targetY - y, targetX - x));
+    }
+
+    /**
+     * @return the straight line distance to the point, in inches
+     */
+    public synchronized double getDistanceTo(double targetX, double targetY) {
+        return Math.hypot(targetX - x, targetY - y);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return new Pose(timestamp, x, y, heading).toString();
+    }
+}
@@ -1,15 +1,28 @@
 package org.firstinspires.ftc.griffins.Navigation;
 
 import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.Range;
 
+import org.firstinspires.ftc.griffins.Clock;
 import org.firstinspires.ftc.robotcore.external.Func;
 
 /**
  * Created by David on 12/17/2016.
+ * <p/>
+ * By default the controller works per call, the integral and derivative terms depend on how often it is called.
+ * In time based mode ({@link #setTimeBased(boolean)}) the gains are per second:
+ * the integral is scaled by the time between samples, the derivative is taken on the measurement
+ * (so changing the set point does not kick the output) and can be low pass filtered,
+ * and the integral stops winding up while the output is saturated.
+ * In both modes the integral is cleared while the error is within the tolerance,
+ * unless {@link #setResetIntegralOnTarget(boolean)} turns that off.
  */
 
 public class PIDController { //for upcoming comp, just use P and D controllers
 
+    // in time based mode, a sample older than this is not used for the integral or derivative terms
+    private static final double MAX_SAMPLE_INTERVAL = 0.5;
+
     private double kP, kI, kD, kF; // proportional gain, integral gain, derivative gain, feed-forward constant
     private double setPoint; // desired value (e.g. encoder count, gyro heading, etc)
     private double sensorValue; // measured value
@@ -19,12 +32,34 @@ public class PIDController { //for upcoming comp, just use P and D controllers
     private double intTerm;
     private double derTerm;
     private double fTerm;
-    private Func<Double> source;
+    private DoubleSource source;
     private DcMotor output;
     private boolean isEnabled = false;
     private double tolerance;
 
+    private double minOutput = Double.NEGATIVE_INFINITY;
+    private double maxOutput = Double.POSITIVE_INFINITY;
+    private double integralRange = 10; // the integral term only accumulates when the error is within this range
+    private boolean resetIntegralOnTarget = true;
+
+    //time based mode variables
+    private boolean timeBased = false;
+    private double derivativeFilterTime; // time constant of the derivative low pass filter, in seconds
+    private double backCalculationGain; // anti-windup tracking gain, per second. 0 clamps the integral instead
+    private boolean hasLastSample;
+    private long lastSampleTime;
+    private double lastSensorValue;
+    private double sensorRate;
+
     public PIDController(double kP, double kI, double kD, double kF, double tolerance, Func<Double> source, DcMotor output) {
+        this(kP, kI, kD, kF, tolerance, DoubleSources.fromFunc(source), output);
+    }
+
+    public PIDController(double kP, double kI, double kD, double tolerance, Func<Double> source, DcMotor output) {
+        this(kP, kI, kD, tolerance, DoubleSources.fromFunc(source), output);
+    }
+
+    public PIDController(double kP, double kI, double kD, double kF, double tolerance, DoubleSource source, DcMotor output) {
         this.kP = kP;
         this.kI = kI;
         this.kD = kD;
@@ -36,7 +71,7 @@ public class PIDController { //for upcoming comp, just use P and D controllers
         lastError = 0.0;
     }
 
-    public PIDController(double kP, double kI, double kD, double tolerance, Func<Double> source, DcMotor output) {
+    public PIDController(double kP, double kI, double kD, double tolerance, DoubleSource source, DcMotor output) {
         this.kP = kP;
         this.kI = kI;
         this.kD = kD;
@@ -55,6 +90,80 @@ public class PIDController { //for upcoming comp, just use P and D controllers
         this.tolerance = tolerance;
     }
 
+    public boolean isTimeBased() {
+        return timeBased;
+    }
+
+    /**
+     * Switches between per call and time based calculation, the gains are not converted.
+     * Per call gains can be converted with the loop period T: kI / T and kD * T.
+     *
+     * @param timeBased true to use per second gains and the time between samples
+     */
+    public void setTimeBased(boolean timeBased) {
+        this.timeBased = timeBased;
+        hasLastSample = false;
+    }
+
+    /**
+     * Sets the limits of the output, the integral term is also kept within these limits.
+     */
+    public void setOutputRange(double minOutput, double maxOutput) {
+        if (minOutput > maxOutput) {
+            throw new IllegalArgumentException("The minimum output must be less than the maximum output");
+        }
+        this.minOutput = minOutput;
+        this.maxOutput = maxOutput;
+    }
+
+    public double getMinOutput() {
+        return minOutput;
+    }
+
+    public double getMaxOutput() {
+        return maxOutput;
+    }
+
+    /**
+     * Changes the gains, in the units of the current mode, the integral is kept.
+     */
+    public void setGains(double kP, double kI, double kD) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+    }
+
+    /**
+     * @param resetIntegralOnTarget true to clear the integral while the error is within the tolerance, the default.
+     *                              A speed controller that needs its integral to hold the speed turns it off
+     */
+    public void setResetIntegralOnTarget(boolean resetIntegralOnTarget) {
+        this.resetIntegralOnTarget = resetIntegralOnTarget;
+    }
+
+    public void setIntegralRange(double integralRange) {
+        this.integralRange = integralRange;
+    }
+
+    /**
+     * Only used in time based mode.
+     *
+     * @param derivativeFilterTime the time constant of the low pass filter on the derivative, in seconds, 0 for no filtering
+     */
+    public void setDerivativeFilterTime(double derivativeFilterTime) {
+        this.derivativeFilterTime = derivativeFilterTime;
+    }
+
+    /**
+     * Only used in time based mode.
+     *
+     * @param backCalculationGain how fast the integral is unwound while the output is saturated, per second.
+     *                            At 0 the integral is clamped instead: it stops growing while saturated.
+     */
+    public void setBackCalculationGain(double backCalculationGain) {
+        this.backCalculationGain = backCalculationGain;
+    }
+
     public boolean isOnTarget(){
         return Math.abs(error) <= tolerance;
     }
@@ -68,7 +177,7 @@ public class PIDController { //for upcoming comp, just use P and D controllers
 
         calculate();
 
-        double control = propTerm+intTerm+derTerm+fTerm;
+        double control = Range.clip(propTerm + intTerm + derTerm + fTerm, minOutput, maxOutput);
         if(output != null)
             output.setPower(control);
         return control;
@@ -78,6 +187,7 @@ public class PIDController { //for upcoming comp, just use P and D controllers
         isEnabled = false;
         intTerm = 0.0;
         derTerm = 0.0;
+        hasLastSample = false;
     }
 
     public double getSetPoint(){
@@ -96,16 +206,17 @@ public class PIDController { //for upcoming comp, just use P and D controllers
     public void calculate(){
         double intError;
 
-
-        if (isEnabled){
+        if (isEnabled && timeBased) {
+            calculateTimeBased();
+        } else if (isEnabled){
             sensorValue = source.value();
             error = setPoint - sensorValue;
             propTerm = kP*error;
             intError = kI * error;
 
-            if (this.isOnTarget()) {
+            if (resetIntegralOnTarget && this.isOnTarget()) {
                 intTerm = 0;
-            } else if (Math.abs(error) < 10) {
+            } else if (Math.abs(error) < integralRange) {
                 intTerm += intError;
             }
 
@@ -121,5 +232,48 @@ public class PIDController { //for upcoming comp, just use P and D controllers
         }
     }
 
+    private void calculateTimeBased() {
+        long sampleTime = Clock.now();
+        sensorValue = source.value();
+        error = setPoint - sensorValue;
+        propTerm = kP * error;
+        fTerm = kF * setPoint;
+
+        double dt = (sampleTime - lastSampleTime) * 1e-9;
+
+        if (hasLastSample && dt <= MAX_SAMPLE_INTERVAL) {
+            if (dt > 0) {
+                double rate = (sensorValue - lastSensorValue) / dt;
+                double filterRatio = derivativeFilterTime / (derivativeFilterTime + dt);
+                sensorRate = filterRatio * sensorRate + (1 - filterRatio) * rate;
+                derTerm = -kD * sensorRate;
+
+                if (resetIntegralOnTarget && this.isOnTarget()) {
+                    intTerm = 0;
+                } else if (Math.abs(error) < integralRange) {
+                    double intIncrement = kI * error * dt;
+                    double unsaturated = propTerm + intTerm + intIncrement + derTerm + fTerm;
+                    double saturated = Range.clip(unsaturated, minOutput, maxOutput);
 
-}
\ No newline at end of file
+                    if (saturated == unsaturated) {
+                        intTerm += intIncrement;
+                    } else if (backCalculationGain > 0) {
+                        intTerm += intIncrement + backCalculationGain * (saturated - unsaturated) * dt;
+                    } else if (Math.signum(intIncrement) != Math.signum(unsaturated - saturated)) {
+                        // clamping, only integrate when it moves the output out of saturation
+                        intTerm += intIncrement;
+                    }
+
+                    intTerm = Range.clip(intTerm, minOutput, maxOutput);
+                }
+            }
+        } else {
+            hasLastSample = true;
+            sensorRate = 0;
+            derTerm = 0;
+        }
+
+        lastSampleTime = sampleTime;
+        lastSensorValue = sensorValue;
+    }
+}
@@ -2,7 +2,11 @@ package org.firstinspires.ftc.griffins.Navigation;
 
 import com.qualcomm.robotcore.util.Range;
 
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.DataRecorder;
+import org.firstinspires.ftc.griffins.LoopHistogram;
 import org.firstinspires.ftc.griffins.RobotHardware;
+import org.firstinspires.ftc.griffins.SensorFrame;
 import org.firstinspires.ftc.robotcore.external.Func;
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 
@@ -14,74 +18,142 @@ import static org.firstinspires.ftc.griffins.RobotHardware.ENCODER_COUNTS_PER_RO
 
 public class PIDDrive {
 
+    // the hand tuned gains, per iteration of the loop, the gains file takes their place
+    public static final double DRIVE_KP = 0.0015;
+    public static final double DRIVE_KD = 0.003;
+    public static final double TURN_KP = 0.015;
+    public static final double TURN_KI = 0.0004;
+    public static final double TURN_KD = 0.16;
+    public static final double DRIVE_MAX_POWER = 0.6;
+    public static final double TURN_MAX_POWER = 0.4;
+    public static final double DRIVE_TOLERANCE = 22.3; // encoder counts, half an inch
+    public static final double TURN_TOLERANCE = 1; // degrees
+
     private RobotHardware hardware;
     private PIDController pidDrivingDifference;
     private PIDController pidTurningDifference;
 
     private double difference;
     private boolean isTurning;
+    // how many iterations in a row the drive has been on target, and how many it takes to be done
+    private int exitCounter;
+    private int exitValue;
 
     private PIDController pidTurning, pidDrive;
 
+    private ControlLoopExecutor controlLoop;
+
+    // the time each iteration takes, not counting the wait for the next cycle
+    private final LoopHistogram driveIterationTime = LoopHistogram.get("PIDDrive drive");
+    private final LoopHistogram wallDriveIterationTime = LoopHistogram.get("PIDDrive wall drive");
+    // the error of every drive iteration, 1 for turns, and the power that moved the robot toward the target,
+    // driveToTarget returns its own rows as csv
+    private final DataRecorder recorder = new DataRecorder("millis", "error", "turning", "power");
+    // the drive power the last syncDrives sent, for a turn the power that turns the robot
+    private double sentPower;
+
     public PIDDrive(RobotHardware hardware) {
         this.hardware = hardware;
+        this.controlLoop = new ControlLoopExecutor();
         init();
     }
 
+    public DataRecorder getRecorder() {
+        return recorder;
+    }
+
+    public ControlLoopExecutor getControlLoop() {
+        return controlLoop;
+    }
+
+    /**
+     * The drive and turn gains are converted again for the new loop's period.
+     */
+    public void setControlLoop(ControlLoopExecutor controlLoop) {
+        this.controlLoop = controlLoop;
+        setGains();
+    }
+
     public void init(){
-        pidDrive = new PIDController(0.0015, 0, 0.003, 22.3, new Func<Double>() {
+        // the sources read the hardware's sensor frame, so every controller sees the same sample
+        hardware.updateSensorFrame();
+
+        pidDrive = new PIDController(0, 0, 0, DRIVE_TOLERANCE, new DoubleSource() {
             @Override
-            public Double value() {
-                return (double) (hardware.getLeftDrive().getCurrentPosition() + hardware.getRightDrive().getCurrentPosition()) / 2.0;
+            public double value() {
+                SensorFrame frame = hardware.getSensorFrame();
+                return (frame.getLeftDrivePosition() + frame.getRightDrivePosition()) / 2.0;
             }
         }, null);
+        pidDrive.setTimeBased(true);
+        pidDrive.setOutputRange(-DRIVE_MAX_POWER, DRIVE_MAX_POWER);
 
-        pidTurning = new PIDController(0.015, 0.0004, 0.16, 1, new Func<Double>() { //i = .0025
+        pidTurning = new PIDController(0, 0, 0, TURN_TOLERANCE, new DoubleSource() { //i = .0025
             @Override
-            public Double value() {
-                return (double) hardware.getTurretGyro().getIntegratedZValue();
+            public double value() {
+                return hardware.getSensorFrame().getGyroIntegratedZValue();
             }
         }, null);
+        pidTurning.setTimeBased(true);
+        pidTurning.setOutputRange(-TURN_MAX_POWER, TURN_MAX_POWER);
 
-        pidDrivingDifference = new PIDController(0.003 * ENCODER_COUNTS_PER_ROBOT_DEGREE, 0, 0, 0, new Func<Double>() {
+        pidDrivingDifference = new PIDController(0.003 * ENCODER_COUNTS_PER_ROBOT_DEGREE, 0, 0, 0, new DoubleSource() {
             @Override
-            public Double value() {
-                return (double) -hardware.getTurretGyro().getIntegratedZValue();
+            public double value() {
+                return -hardware.getSensorFrame().getGyroIntegratedZValue();
             }
         }, null);
+        pidDrivingDifference.setTimeBased(true);
 
-        pidTurningDifference = new PIDController(0, 0, 0, 22.3, new Func<Double>() {
+        pidTurningDifference = new PIDController(0, 0, 0, 22.3, new DoubleSource() {
             @Override
-            public Double value() {
-                return (double) (hardware.getLeftDrive().getCurrentPosition() + hardware.getRightDrive().getCurrentPosition());
+            public double value() {
+                SensorFrame frame = hardware.getSensorFrame();
+                return frame.getLeftDrivePosition() + frame.getRightDrivePosition();
             }
         }, null);
+        pidTurningDifference.setTimeBased(true);
+
+        setGains();
+    }
+
+    private void setGains() {
+        // the gains were tuned per loop iteration, the controllers are time based, so they are converted with the loop period.
+        // Tuned gains in the gains file take their place
+        double period = controlLoop.getPeriodSeconds();
+        PIDGains gains = PIDGains.load();
+        pidDrive.setGains(gains.get(PIDGains.DRIVE, "kP", DRIVE_KP), gains.get(PIDGains.DRIVE, "kI", 0),
+                gains.get(PIDGains.DRIVE, "kD", DRIVE_KD * period));
+        pidTurning.setGains(gains.get(PIDGains.TURN, "kP", TURN_KP), gains.get(PIDGains.TURN, "kI", TURN_KI / period),
+                gains.get(PIDGains.TURN, "kD", TURN_KD * period));
     }
 
     public void syncDrives(){
         double power;
 
+        hardware.updateSensorFrame();
 
         if (isTurning) {
             power = pidTurning.sendPIDOutput();
-            power = Range.clip(power, -0.4, 0.4);
             difference = pidTurningDifference.sendPIDOutput();
 
             hardware.setDrivePower(-power - difference, power + difference);
+            // with the difference correction and the motors' limit, which the tuner cannot work out from the error
+            sentPower = (Range.clip(power + difference, -1, 1) - Range.clip(-power - difference, -1, 1)) / 2;
         } else {
             power = pidDrive.sendPIDOutput();
-            power = Range.clip(power, -0.6, 0.6);
             difference = pidDrivingDifference.sendPIDOutput();
 
             hardware.setDrivePower(power + difference, power - difference);
+            sentPower = (Range.clip(power + difference, -1, 1) + Range.clip(power - difference, -1, 1)) / 2;
         }
     }
 
     public void biasedSyncDrives(double leftBias, double rightBias) {
         if (!isTurning) {
             double power;
+            hardware.updateSensorFrame();
             power = pidDrive.sendPIDOutput();
-            power = Range.clip(power, -0.6, 0.6);
             //difference = Range.clip(pidDrivingDifference.sendPIDOutput(), 0, 0.5);
 
             hardware.setDrivePower(power * leftBias, power * rightBias);
@@ -89,6 +161,7 @@ public class PIDDrive {
     }
 
     public void setDriveTarget(double inches){
+        hardware.updateSensorFrame();
         pidDrive.setSetPoint(pidDrive.getSourceVal() + inches * RobotHardware.ENCODER_COUNTS_PER_INCH);
         pidDrivingDifference.setSetPoint(pidDrivingDifference.getSourceVal());
         isTurning = false;
@@ -96,58 +169,104 @@ public class PIDDrive {
 
     //turns to the left are positive...
     public void setTurnTarget(double degrees) {
+        hardware.updateSensorFrame();
         pidTurning.setSetPoint(pidTurning.getSourceVal() + degrees);
         pidTurningDifference.setSetPoint(pidTurningDifference.getSourceVal());
         isTurning = true;
     }
 
+    /**
+     * Sets a turn to a field heading, the turn is the shortest way there from the current fused heading.
+     */
+    public void setTurnTargetHeading(double heading) {
+        hardware.updateSensorFrame();
+        setTurnTarget(Pose.wrapDegrees(heading - hardware.getPoseFusion().getHeading()));
+    }
+
+    /**
+     * Sets a drive to the point on the robot's current heading that is closest to the field position,
+     * forward or backward. Turn to face the position first to end up on it.
+     */
+    public void setDriveTargetPosition(double x, double y) {
+        hardware.updateSensorFrame();
+        PoseFusion pose = hardware.getPoseFusion();
+        double heading = Math.toRadians(pose.getHeading());
+        double distance = (x - pose.getX()) * Math.cos(heading) + (y - pose.getY()) * Math.sin(heading);
+        setDriveTarget(distance);
+    }
+
+    /**
+     * One iteration of a wall drive, for running it a step at a time from a command.
+     *
+     * @return true once the drive is on target, or right away if the target is a turn
+     */
+    public boolean stepWallDrive(double leftBias, double rightBias) {
+        if (isTurning) {
+            return true;
+        }
+        biasedSyncDrives(leftBias, rightBias);
+        return pidDrive.isOnTarget();
+    }
+
     public void wallDriveToTarget(double leftBias, double rightBias, Func<Boolean> earlyExitCheck) {
         if (!isTurning) {
+            controlLoop.reset();
+            boolean onTarget;
             do {
-                biasedSyncDrives(leftBias, rightBias);
-            } while (earlyExitCheck.value() && !pidDrive.isOnTarget());
+                long iterationStart = System.nanoTime();
+                onTarget = stepWallDrive(leftBias, rightBias);
+                wallDriveIterationTime.recordSince(iterationStart);
+            } while (earlyExitCheck.value() && !onTarget && controlLoop.waitForNextCycle());
 
             hardware.stopDrive();
         }
 
     }
 
-    public String driveToTarget(Func<Boolean> earlyExitCheck, Telemetry telemetry, boolean quickExit) {
-        StringBuilder builder = new StringBuilder();
-        long lastTime = System.currentTimeMillis();
+    /**
+     * Starts counting the iterations on target for {@link #stepToTarget()}, call it after setting the target.
+     *
+     * @param quickExit if true, the drive is done the first time it is on target, otherwise after 100 iterations in a row
+     */
+    public void startToTarget(boolean quickExit) {
+        exitValue = quickExit ? 1 : 100;
+        exitCounter = 0;
+    }
 
-        int exitValue;
-        if (quickExit) {
-            exitValue = 1;
+    /**
+     * One iteration of a drive or a turn to the target, for running it a step at a time from a command.
+     *
+     * @return true once it has been on target long enough
+     */
+    public boolean stepToTarget() {
+        syncDrives();
+        if (isTurning) {
+            if (pidTurning.isOnTarget()) {
+                exitCounter++;
+            } else {
+                exitCounter = 0;
+            }
         } else {
-            exitValue = 100;
-        }
-
-        int exitCounter = 0;
-        do {
-            syncDrives();
-            String error;
-            if (isTurning) {
-                if (pidTurning.isOnTarget()) {
-                    exitCounter++;
-                } else {
-                    exitCounter = 0;
-                }
-
-                error = pidTurning.getError() + " \n";
+            if (pidDrive.isOnTarget()) {
+                exitCounter++;
             } else {
-                if (pidDrive.isOnTarget()) {
-                    exitCounter++;
-                } else {
-                    exitCounter = 0;
-                }
-                error = pidDrive.getError() + " \n";
+                exitCounter = 0;
             }
+        }
 
-            if (System.currentTimeMillis() != lastTime) {
-                lastTime = System.currentTimeMillis();
-                builder.append(lastTime).append(", ").append(error);
-            }
+        recorder.record(Clock.now() / 1000000, isTurning ? pidTurning.getError() : pidDrive.getError(), isTurning ? 1 : 0, sentPower);
+        return exitCounter >= exitValue;
+    }
+
+    public String driveToTarget(Func<Boolean> earlyExitCheck, Telemetry telemetry, boolean quickExit) {
+        long firstRow = recorder.getRowCount();
+
+        startToTarget(quickExit);
+        controlLoop.reset();
+        boolean onTarget;
+        do {
+            long iterationStart = System.nanoTime();
+            onTarget = stepToTarget();
 
             if (telemetry != null) {
                 telemetry.addData("exit counter", exitCounter);
@@ -157,15 +276,17 @@ public class PIDDrive {
                 telemetry.addData("error", isTurning ? pidTurning.getError() : pidDrive.getError());
                 telemetry.update();
             }
-        } while (exitCounter < exitValue && earlyExitCheck.value());
+            driveIterationTime.recordSince(iterationStart);
+        } while (!onTarget && earlyExitCheck.value() && controlLoop.waitForNextCycle());
 
         hardware.stopDrive();
 
         if (telemetry != null) {
             telemetry.log().add("exit pid " + (isTurning ? "turn" : "drive") + ", error:" + (isTurning ? pidTurning : pidDrive).getError());
+            telemetry.log().add("pid loop: " + controlLoop);
         }
 
-        return builder.toString();
+        return recorder.toCsv(firstRow);
     }
 
     public String driveToTarget(Func<Boolean> booleanFunc, boolean quickExit) {
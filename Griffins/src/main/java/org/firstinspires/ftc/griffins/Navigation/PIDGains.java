@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.AppUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The controller gains, read from a properties file in the robot settings folder, so tuned gains
+ * can be loaded without rebuilding the app. Every gain has a default in the code that uses it,
+ * a missing file or a missing gain means the default is used.
+ * <p/>
+ * The gains are per second, as the time based {@link PIDController}s use them,
+ * and are named by the loop they belong to, like "drive.kP".
+ */
+
+public class PIDGains {
+
+    public static final String FILE_NAME = "pid-gains.properties";
+
+    public static final String DRIVE = "drive";
+    public static final String TURN = "turn";
+    public static final String FLYWHEEL = "flywheel";
+
+    private final Properties properties = new Properties();
+
+    /**
+     * @return the gains in the robot settings folder, none if the file is missing or can not be read
+     */
+    public static PIDGains load() {
+        File file = new File(AppUtil.ROBOT_SETTINGS, FILE_NAME);
+        if (file.exists()) {
+            try {
+                return load(file);
+            } catch (IOException e) {
+                RobotLog.ee("PIDGains", "could not read %s, using the default gains: %s", file, e.getMessage());
+            }
+        }
+        return new PIDGains();
+    }
+
+    public static PIDGains load(File file) throws IOException {
+        PIDGains gains = new PIDGains();
+        InputStream input = new FileInputStream(file);
+        try {
+            gains.properties.load(input);
+        } finally {
+            input.close();
+        }
+        return gains;
+    }
+
+    public void save(File file) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            properties.store(output, "per second PID gains, see PIDGains");
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * @param loop the loop's name, like {@link #DRIVE}
+     * @param gain the gain's name, like "kP"
+     * @return the gain from the file, or the default if it is not in the file or is not a number
+     */
+    public double get(String loop, String gain, double defaultValue) {
+        String value = properties.getProperty(loop + "." + gain);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            RobotLog.ee("PIDGains", "%s.%s is not a number: %s", loop, gain, value);
+            return defaultValue;
+        }
+    }
+
+    public void set(String loop, String gain, double value) {
+        properties.setProperty(loop + "." + gain, Double.toString(value));
+    }
+}
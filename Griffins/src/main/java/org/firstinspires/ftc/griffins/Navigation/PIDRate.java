@@ -1,5 +1,7 @@
 package org.firstinspires.ftc.griffins.Navigation;
 
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.DataRecorder;
 import org.firstinspires.ftc.griffins.RobotHardware;
 import org.firstinspires.ftc.robotcore.external.Func;
 import org.firstinspires.ftc.robotcore.external.Telemetry;
@@ -11,51 +13,101 @@ import org.firstinspires.ftc.robotcore.external.Telemetry;
 public class PIDRate {
 
     private RobotHardware hardware;
-    private PIDController pidRateDifference, pidRate;
+    private FlywheelController leftFlywheel, rightFlywheel;
 
-    private double difference;
+    private ControlLoopExecutor controlLoop;
+    // the speed of both flywheels every spinToTarget cycle, it returns its own rows as csv
+    private final DataRecorder recorder = new DataRecorder("millis", "left rpm", "right rpm");
 
     public PIDRate(RobotHardware hardware){
         this.hardware = hardware;
+        this.controlLoop = new ControlLoopExecutor(10);
         init();
     }
 
+    public DataRecorder getRecorder() {
+        return recorder;
+    }
+
+    public ControlLoopExecutor getControlLoop() {
+        return controlLoop;
+    }
+
+    public void setControlLoop(ControlLoopExecutor controlLoop) {
+        this.controlLoop = controlLoop;
+    }
+
     public void init() {
-        pidRate = new PIDController(.1, 0, 0, .08, 5, new Func<Double>() {
-            @Override
-            public Double value() {
-                return (double) (hardware.getShooterLeft().getCurrentPosition() + hardware.getShooterRight().getCurrentPosition()) / 2;
-            }
-        }, hardware.getShooter());
-        pidRateDifference = new PIDController(0, 0, 0, 1, new Func<Double>() {
-            @Override
-            public Double value() {
-                return (double) (hardware.getShooterLeft().getCurrentPosition() + hardware.getShooterRight().getCurrentPosition());
-            }
-        }, null);
+        // tuned gains in the gains file take the place of the defaults
+        PIDGains gains = PIDGains.load();
+        double kP = gains.get(PIDGains.FLYWHEEL, "kP", FlywheelController.DEFAULT_KP);
+        double kI = gains.get(PIDGains.FLYWHEEL, "kI", FlywheelController.DEFAULT_KI);
+        leftFlywheel = new FlywheelController(hardware.getShooterLeft(), RobotHardware.SHOOTER_ENCODER_COUNTS_PER_ROTATION,
+                RobotHardware.SHOOTER_MAX_RPM, kP, kI, FlywheelController.DEFAULT_TOLERANCE_RPM);
+        rightFlywheel = new FlywheelController(hardware.getShooterRight(), RobotHardware.SHOOTER_ENCODER_COUNTS_PER_ROTATION,
+                RobotHardware.SHOOTER_MAX_RPM, kP, kI, FlywheelController.DEFAULT_TOLERANCE_RPM);
     }
 
-    public void setRateTarget(double ecps){
-        pidRate.setSetPoint(ecps);
-        hardware.getShooterLeft().setPower(-pidRate.sendPIDOutput());
-        hardware.getShooterRight().setPower(pidRate.sendPIDOutput());
-        pidRateDifference.setSetPoint(pidRateDifference.getSourceVal());
+    public void setRateTarget(double rpm){
+        leftFlywheel.setTargetRpm(rpm);
+        rightFlywheel.setTargetRpm(rpm);
     }
 
+    /**
+     * Runs one cycle of both flywheel controllers, must be called every cycle while the shooter is running.
+     */
     public void syncRates(){
-        double ecps;
+        leftFlywheel.update();
+        rightFlywheel.update();
+    }
+
+    public boolean isAtSpeed() {
+        return leftFlywheel.isAtSpeed() && rightFlywheel.isAtSpeed();
+    }
+
+    public FlywheelController getLeftFlywheel() {
+        return leftFlywheel;
+    }
 
-        ecps = pidRate.sendPIDOutput();
-        difference = pidRateDifference.sendPIDOutput();
+    public FlywheelController getRightFlywheel() {
+        return rightFlywheel;
+    }
 
-        hardware.getShooterLeft().setTargetPosition((int)(ecps + difference));
-        hardware.getShooterRight().setTargetPosition((int)(ecps - difference));
+    /**
+     * Keeps the flywheels at the target for the given time.
+     *
+     * @return false if it was stopped early
+     */
+    public boolean holdRate(double seconds, Func<Boolean> earlyExitCheck) {
+        long endTime = Clock.now() + (long) (seconds * 1e9);
+        controlLoop.reset();
+        while (Clock.now() < endTime) {
+            if (!earlyExitCheck.value()) {
+                return false;
+            }
+            syncRates();
+            if (!controlLoop.waitForNextCycle()) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public String spinToTarget(Func<Boolean> earlyExitCheck, Telemetry telemetry, boolean quickExit) {
-        StringBuilder builder = new StringBuilder();
-        long lastTime = System.currentTimeMillis();
-        int lastDist = hardware.getShooter().getCurrentPosition();
+    /**
+     * Keeps the flywheels at the target until both are at speed.
+     *
+     * @return true if the flywheels reached the target before being stopped
+     */
+    public boolean waitUntilAtSpeed(Func<Boolean> earlyExitCheck) {
+        controlLoop.reset();
+        do {
+            syncRates();
+        } while (!isAtSpeed() && earlyExitCheck.value() && controlLoop.waitForNextCycle());
+        return isAtSpeed();
+    }
+
+    public String spinToTarget(double rpm, Func<Boolean> earlyExitCheck, Telemetry telemetry, boolean quickExit) {
+        long firstRow = recorder.getRowCount();
 
         int exitValue;
         if (quickExit) {
@@ -65,45 +117,28 @@ public class PIDRate {
         }
 
         int exitCounter = 0;
-        //do {
-        setRateTarget(7);
-        String error;
+        setRateTarget(rpm);
+        controlLoop.reset();
         while (exitCounter < exitValue && earlyExitCheck.value()) {
-                if (pidRate.isOnTarget()) {
-                    exitCounter++;
-                } else {
-                    exitCounter = 0;
-                }
-
-            error = hardware.getShooter().getCurrentPosition() + " \n";
+            syncRates();
 
-            long time = System.currentTimeMillis();
-            int dist = hardware.getShooter().getCurrentPosition();
-
-            long changeTime = time - lastTime;
-            int changeDist = dist - lastDist;
-
-            double rate = changeDist / changeTime;
-
-            builder.append(time).append(", ").append(rate).append("\n");
+            if (isAtSpeed()) {
+                exitCounter++;
+            } else {
+                exitCounter = 0;
+            }
 
-            lastTime = time;
-            lastDist = dist;
+            recorder.record(Clock.now() / 1000000, leftFlywheel.getRpm(), rightFlywheel.getRpm());
 
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            if (!controlLoop.waitForNextCycle()) {
+                break;
             }
-//            if (System.currentTimeMillis() != lastTime) {
-//                lastTime = System.currentTimeMillis();
-//                builder.append(lastTime).append(", ").append(error);
-//            }
-           // }
         }
 
-        return builder.toString();
+        telemetry.log().add("left flywheel: " + leftFlywheel);
+        telemetry.log().add("right flywheel: " + rightFlywheel);
+
+        return recorder.toCsv(firstRow);
     }
 
 }
-
@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import java.util.Locale;
+
+/**
+ * An immutable robot pose on the field at an instant: x and y in inches, and the heading in degrees,
+ * counter clockwise from the x axis, like the turret gyro's integrated z value.
+ */
+
+public class Pose {
+    private final long timestamp;
+    private final double x;
+    private final double y;
+    private final double heading;
+
+    public Pose(long timestamp, double x, double y, double heading) {
+        this.timestamp = timestamp;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
+
+    /**
+     * @return the angle between -180 (exclusive) and 180 degrees that points the same way
+     */
+    public static double wrapDegrees(double degrees) {
+        degrees %= 360;
+        if (degrees <= -180) {
+            degrees += 360;
+        } else if (degrees > 180) {
+            degrees -= 360;
+        }
+        return degrees;
+    }
+
+    /**
+     * @return the {@link org.firstinspires.ftc.griffins.Clock#now()} at which the robot was at the pose
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the heading in degrees, not wrapped, so it keeps counting past a full turn
+     */
+    public double getHeading() {
+        return heading;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "x %.1f in, y %.1f in, heading %.1f deg", x, y, heading);
+    }
+}
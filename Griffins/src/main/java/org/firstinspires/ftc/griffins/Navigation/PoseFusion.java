@@ -0,0 +1,294 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.RobotHardware;
+
+/**
+ * Fuses the {@link Odometry}, which is smooth and up to date but drifts, with vision poses,
+ * which are absolute but late and only there while a target is in view, into one field pose.
+ * <p/>
+ * It is a complementary filter: the fused pose is the odometry pose moved by a correction,
+ * a rotation of the whole odometry frame followed by a shift. The odometry poses of the last
+ * {@link #HISTORY_SIZE} frames are kept, so a vision pose is compared with where the fused pose was
+ * when its camera frame was captured, not with where the robot is now. The correction is moved part of the way
+ * towards the vision pose, by the position and heading gains, and since the correction applies to the whole
+ * odometry frame, everything the odometry measured after the capture is replayed on top of the corrected pose.
+ * <p/>
+ * The first vision pose is taken as it is, it puts the odometry onto the field.
+ * After that, a vision pose that is further than {@link #MAX_POSITION_JUMP_INCHES} from the fused pose is rejected,
+ * as is one captured before the oldest frame in the history.
+ * If the fused pose itself is what is off, every vision pose is rejected, so once {@link #REACQUIRE_POSES} rejected poses
+ * in a row agree on where the robot is, within {@link #REACQUIRE_TOLERANCE_INCHES}, the last one is taken as it is again.
+ * Setting the odometry's pose starts over, the history and the correction are forgotten at the next frame.
+ * {@link RobotHardware#updateSensorFrame()} records every odometry frame, vision poses can come from any thread.
+ */
+
+public class PoseFusion {
+
+    // about two seconds of frames at the usual loop speed, much longer than the vision latency
+    public static final int HISTORY_SIZE = 128;
+    public static final double DEFAULT_POSITION_GAIN = 0.3;
+    // the gyro drifts much less than the encoders slip, so the heading is trusted more
+    public static final double DEFAULT_HEADING_GAIN = 0.1;
+    public static final double MAX_POSITION_JUMP_INCHES = 24;
+    public static final int REACQUIRE_POSES = 5;
+    public static final double REACQUIRE_TOLERANCE_INCHES = 6;
+
+    private final Odometry odometry;
+    private double positionGain = DEFAULT_POSITION_GAIN;
+    private double headingGain = DEFAULT_HEADING_GAIN;
+
+    // a ring of odometry poses, historyCount of them end at historyEnd - 1
+    private final long[] historyTimes = new long[HISTORY_SIZE];
+    private final double[] historyX = new double[HISTORY_SIZE];
+    private final double[] historyY = new double[HISTORY_SIZE];
+    private final double[] historyHeading = new double[HISTORY_SIZE];
+    private int historyEnd;
+    private int historyCount;
+
+    // fused = rotate odometry by correctionHeading, then shift by correctionX and correctionY
+    private double correctionX;
+    private double correctionY;
+    private double correctionHeading;
+    private boolean visionFix;
+    private long lastVisionTime;
+    private long appliedCount;
+    private long rejectedCount;
+    private long reacquiredCount;
+    private int poseSetCount;
+
+    // the rejected jumps in a row, and the error of the last one
+    private int jumpsInARow;
+    private double lastJumpX;
+    private double lastJumpY;
+
+    // results of the last call to fuse
+    private double fusedX;
+    private double fusedY;
+
+    public PoseFusion(Odometry odometry) {
+        this.odometry = odometry;
+    }
+
+    /**
+     * @param positionGain the part of the position error a vision pose corrects, between 0 and 1
+     * @param headingGain  the part of the heading error a vision pose corrects, between 0 and 1
+     */
+    public synchronized void setGains(double positionGain, double headingGain) {
+        if (positionGain < 0 || positionGain > 1 || headingGain < 0 || headingGain > 1) {
+            throw new IllegalArgumentException("The gains must be between 0 and 1");
+        }
+        this.positionGain = positionGain;
+        this.headingGain = headingGain;
+    }
+
+    /**
+     * Forgets the history and the correction, the fused pose is the odometry pose until the next vision pose.
+     */
+    public synchronized void reset() {
+        historyEnd = 0;
+        historyCount = 0;
+        correctionX = 0;
+        correctionY = 0;
+        correctionHeading = 0;
+        visionFix = false;
+        lastVisionTime = 0;
+        jumpsInARow = 0;
+    }
+
+    /**
+     * Adds the odometry's current pose to the history, a frame that is already in it is skipped.
+     * If the odometry's pose was set since the last frame, it starts over from it first.
+     */
+    public synchronized void recordOdometry() {
+        if (odometry.getPoseSetCount() != poseSetCount) {
+            reset();
+            poseSetCount = odometry.getPoseSetCount();
+        }
+
+        long time = odometry.getTimestamp();
+        if (historyCount > 0 && historyTimes[(historyEnd + HISTORY_SIZE - 1) % HISTORY_SIZE] == time) {
+            return;
+        }
+
+        historyTimes[historyEnd] = time;
+        historyX[historyEnd] = odometry.getX();
+        historyY[historyEnd] = odometry.getY();
+        historyHeading[historyEnd] = odometry.getHeading();
+        historyEnd = (historyEnd + 1) % HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * Applies the vision result if it has a pose that was not added yet.
+     *
+     * @return true if the pose was applied
+     */
+    public boolean addVisionPose(VisionPose visionPose) {
+        Pose pose = visionPose.getPose();
+        return pose != null && addVisionPose(pose);
+    }
+
+    /**
+     * Corrects the fused pose towards a vision pose, as of the time the pose's frame was captured.
+     *
+     * @param visionPose the robot's field pose, timestamped with its capture
+     * @return true if the pose was applied, false if it was already applied, too old, or rejected as a jump
+     */
+    public synchronized boolean addVisionPose(Pose visionPose) {
+        long time = visionPose.getTimestamp();
+        if (historyCount == 0 || time == lastVisionTime) {
+            return false;
+        }
+
+        // find the odometry pose at the capture, between the two frames around it
+        int newest = (historyEnd + HISTORY_SIZE - 1) % HISTORY_SIZE;
+        int oldest = (historyEnd + HISTORY_SIZE - historyCount) % HISTORY_SIZE;
+        // a rejected pose is remembered too, so the same pose added again is not counted twice
+        lastVisionTime = time;
+        if (time < historyTimes[oldest]) {
+            rejectedCount++;
+            return false;
+        }
+
+        double odometryX;
+        double odometryY;
+        double odometryHeading;
+        if (time >= historyTimes[newest]) {
+            odometryX = historyX[newest];
+            odometryY = historyY[newest];
+            odometryHeading = historyHeading[newest];
+        } else {
+            int after = newest;
+            int before = (after + HISTORY_SIZE - 1) % HISTORY_SIZE;
+            while (historyTimes[before] > time) {
+                after = before;
+                before = (after + HISTORY_SIZE - 1) % HISTORY_SIZE;
+            }
+            double fraction = (double) (time - historyTimes[before]) / (historyTimes[after] - historyTimes[before]);
+            odometryX = historyX[before] + fraction * (historyX[after] - historyX[before]);
+            odometryY = historyY[before] + fraction * (historyY[after] - historyY[before]);
+            odometryHeading = historyHeading[before] + fraction * (historyHeading[after] - historyHeading[before]);
+        }
+
+        // the first pose, or one after a reacquire, is taken as it is
+        double targetX = visionPose.getX();
+        double targetY = visionPose.getY();
+        // keep the odometry's turn count, so the fused heading does not jump by whole turns
+        double targetHeading = odometryHeading + Pose.wrapDegrees(visionPose.getHeading() - odometryHeading);
+        if (visionFix) {
+            fuse(odometryX, odometryY);
+            double fusedHeading = odometryHeading + correctionHeading;
+            double errorX = visionPose.getX() - fusedX;
+            double errorY = visionPose.getY() - fusedY;
+            if (Math.hypot(errorX, errorY) > MAX_POSITION_JUMP_INCHES) {
+                // the errors of poses that agree with each other stay the same while the robot moves
+                boolean agrees = jumpsInARow > 0 && Math.hypot(errorX - lastJumpX, errorY - lastJumpY) <= REACQUIRE_TOLERANCE_INCHES;
+                jumpsInARow = agrees ? jumpsInARow + 1 : 1;
+                lastJumpX = errorX;
+                lastJumpY = errorY;
+                if (jumpsInARow < REACQUIRE_POSES) {
+                    rejectedCount++;
+                    return false;
+                }
+                reacquiredCount++;
+            } else {
+                targetX = fusedX + positionGain * errorX;
+                targetY = fusedY + positionGain * errorY;
+                targetHeading = fusedHeading + headingGain * Pose.wrapDegrees(visionPose.getHeading() - fusedHeading);
+            }
+        }
+
+        // the correction that puts the odometry pose at the capture onto the target
+        correctionHeading = targetHeading - odometryHeading;
+        double cos = Math.cos(Math.toRadians(correctionHeading));
+        double sin = Math.sin(Math.toRadians(correctionHeading));
+        correctionX = targetX - (cos * odometryX - sin * odometryY);
+        correctionY = targetY - (sin * odometryX + cos * odometryY);
+
+        visionFix = true;
+        jumpsInARow = 0;
+        appliedCount++;
+        return true;
+    }
+
+    private void fuse(double odometryX, double odometryY) {
+        double cos = Math.cos(Math.toRadians(correctionHeading));
+        double sin = Math.sin(Math.toRadians(correctionHeading));
+        fusedX = cos * odometryX - sin * odometryY + correctionX;
+        fusedY = sin * odometryX + cos * odometryY + correctionY;
+    }
+
+    /**
+     * @return the fused x as of the odometry's last frame, in inches
+     */
+    public synchronized double getX() {
+        fuse(odometry.getX(), odometry.getY());
+        return fusedX;
+    }
+
+    /**
+     * @return the fused y as of the odometry's last frame, in inches
+     */
+    public synchronized double getY() {
+        fuse(odometry.getX(), odometry.getY());
+        return fusedY;
+    }
+
+    /**
+     * @return the fused heading in degrees, not wrapped
+     */
+    public synchronized double getHeading() {
+        return odometry.getHeading() + correctionHeading;
+    }
+
+    /**
+     * @return a snapshot of the fused pose as of the odometry's last frame
+     */
+    public synchronized Pose getPose() {
+        fuse(odometry.getX(), odometry.getY());
+        return new Pose(odometry.getTimestamp(), fusedX, fusedY, odometry.getHeading() + correctionHeading);
+    }
+
+    /**
+     * @return the field heading that points the robot at the point, in degrees between -180 and 180
+     */
+    public synchronized double getBearingTo(double targetX, double targetY) {
+        fuse(odometry.getX(), odometry.getY());
+        return Math.toDegrees(Math.atan2(targetY - fusedY, targetX - fusedX));
+    }
+
+    /**
+     * @return the straight line distance to the point, in inches
+     */
+    public synchronized double getDistanceTo(double targetX, double targetY) {
+        fuse(odometry.getX(), odometry.getY());
+        return Math.hypot(targetX - fusedX, targetY - fusedY);
+    }
+
+    /**
+     * @return true once a vision pose has put the odometry onto the field
+     */
+    public synchronized boolean hasVisionFix() {
+        return visionFix;
+    }
+
+    public synchronized long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the number of times the rejected poses agreed and were taken as they are
+     */
+    public synchronized long getReacquiredCount() {
+        return reacquiredCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getPose() + (visionFix ? "" : " (odometry only)");
+    }
+}
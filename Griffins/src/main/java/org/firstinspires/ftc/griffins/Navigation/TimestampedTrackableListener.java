@@ -0,0 +1,35 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import com.vuforia.TrackableResult;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackableDefaultListener;
+
+/**
+ * The default listener, which also remembers when Vuforia last tracked the target.
+ * Vuforia calls {@link #onTracked(TrackableResult)} as soon as it has processed a camera frame,
+ * so the time is much closer to when the frame was captured than when a loop gets around to reading the pose.
+ */
+
+public class TimestampedTrackableListener extends VuforiaTrackableDefaultListener {
+
+    private volatile long lastTrackedTime;
+
+    public TimestampedTrackableListener(VuforiaTrackable trackable) {
+        super(trackable);
+    }
+
+    @Override
+    public synchronized void onTracked(TrackableResult trackableResult) {
+        lastTrackedTime = Clock.now();
+        super.onTracked(trackableResult);
+    }
+
+    /**
+     * @return the {@link Clock#now()} of the last frame the target was tracked in, 0 if it never was
+     */
+    public long getLastTrackedTime() {
+        return lastTrackedTime;
+    }
+}
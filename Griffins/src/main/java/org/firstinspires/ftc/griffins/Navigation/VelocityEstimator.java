@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+/**
+ * Estimates the rate of change of a position, such as an encoder, from the last few samples.
+ * The rate is the least squares slope through the samples in the window, which is much less noisy
+ * than the difference of two samples, and the samples are timestamped in nanoseconds.
+ * {@link #update()} should be called once per hardware cycle, see {@link ControlLoopExecutor}.
+ */
+
+public class VelocityEstimator {
+
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+
+    private final DoubleSource position;
+    private final long[] sampleTimes;
+    private final double[] samplePositions;
+    private int nextSample;
+    private int sampleCount;
+
+    private double rate;
+
+    public VelocityEstimator(DoubleSource position, int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("The window must hold at least 2 samples");
+        }
+
+        this.position = position;
+        this.sampleTimes = new long[windowSize];
+        this.samplePositions = new double[windowSize];
+        reset();
+    }
+
+    public VelocityEstimator(DcMotor motor) {
+        this(DoubleSources.encoder(motor), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Clears the window, the rate is 0 until there are two new samples.
+     */
+    public void reset() {
+        nextSample = 0;
+        sampleCount = 0;
+        rate = 0;
+    }
+
+    /**
+     * Samples the position and recalculates the rate.
+     *
+     * @return the new rate, in position units per second
+     */
+    public double update() {
+        long newestTime = Clock.now();
+        double newestPosition = position.value();
+
+        sampleTimes[nextSample] = newestTime;
+        samplePositions[nextSample] = newestPosition;
+        nextSample = (nextSample + 1) % sampleTimes.length;
+        if (sampleCount < sampleTimes.length) {
+            sampleCount++;
+        }
+
+        if (sampleCount < 2) {
+            rate = 0;
+            return rate;
+        }
+
+        // relative to the newest sample, so the sums stay small enough to keep their precision
+        double sumT = 0, sumX = 0, sumTT = 0, sumTX = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            double t = (sampleTimes[i] - newestTime) * 1e-9;
+            double x = samplePositions[i] - newestPosition;
+            sumT += t;
+            sumX += x;
+            sumTT += t * t;
+            sumTX += t * x;
+        }
+
+        double denominator = sampleCount * sumTT - sumT * sumT;
+        if (denominator > 0) {
+            rate = (sampleCount * sumTX - sumT * sumX) / denominator;
+        }
+
+        return rate;
+    }
+
+    /**
+     * @return the rate from the last update, in position units per second
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getWindowSize() {
+        return sampleTimes.length;
+    }
+}
@@ -0,0 +1,95 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+import java.util.Locale;
+
+/**
+ * An immutable result of one pass over the vision targets: the robot's field pose, if a target gave one,
+ * and which targets were visible. The pose's timestamp is when its camera frame was tracked,
+ * so {@link #getAgeMilliseconds()} tells how old the information is, however long it took to get here.
+ * <p/>
+ * Bit i of the visible target mask, and index i of the target relative poses,
+ * is the target at index i of {@link VuforiaNavigation#TARGET_NAMES}.
+ */
+
+public class VisionPose {
+
+    public static final VisionPose NONE = new VisionPose(null, 0, 0);
+
+    private final Pose pose;
+    private final int visibleTargets;
+    private final Pose[] targetRelativePoses;
+    private final long publishTime;
+
+    /**
+     * @param pose                the robot's field pose in inches and degrees, or null if there was none
+     * @param visibleTargets      the mask of the targets that were visible
+     * @param targetRelativePoses each target as the camera saw it, null for the ones that were not visible,
+     *                            the array is kept, so it must not be changed afterwards
+     * @param publishTime         the {@link Clock#now()} at which the pass over the targets finished
+     */
+    public VisionPose(Pose pose, int visibleTargets, Pose[] targetRelativePoses, long publishTime) {
+        this.pose = pose;
+        this.visibleTargets = visibleTargets;
+        this.targetRelativePoses = targetRelativePoses;
+        this.publishTime = publishTime;
+    }
+
+    public VisionPose(Pose pose, int visibleTargets, long publishTime) {
+        this(pose, visibleTargets, null, publishTime);
+    }
+
+    public boolean hasPose() {
+        return pose != null;
+    }
+
+    /**
+     * @return the robot's field pose, timestamped with the capture of its frame, or null if no target gave one
+     */
+    public Pose getPose() {
+        return pose;
+    }
+
+    public int getVisibleTargets() {
+        return visibleTargets;
+    }
+
+    public boolean isTargetVisible(int targetIndex) {
+        return (visibleTargets & (1 << targetIndex)) != 0;
+    }
+
+    /**
+     * @return the target's position and rotation as the camera saw it, in inches and degrees, or null if it was not visible
+     */
+    public Pose getTargetRelativePose(int targetIndex) {
+        return targetRelativePoses != null && targetIndex < targetRelativePoses.length ? targetRelativePoses[targetIndex] : null;
+    }
+
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    /**
+     * @return how long ago the pose's frame was captured, infinite if there is no pose
+     */
+    public double getAgeMilliseconds() {
+        return pose != null ? (Clock.now() - pose.getTimestamp()) / 1e6 : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return true if there is no pose, or it is older than the age
+     */
+    public boolean isStale(double maxAgeMilliseconds) {
+        return getAgeMilliseconds() > maxAgeMilliseconds;
+    }
+
+    @Override
+    public String toString() {
+        if (pose == null) {
+            return String.format(Locale.ENGLISH, "no pose, targets 0b%s", Integer.toBinaryString(visibleTargets));
+        }
+        return String.format(Locale.ENGLISH, "%s, %.0f ms old, targets 0b%s", pose, getAgeMilliseconds(),
+                Integer.toBinaryString(visibleTargets));
+    }
+}
@@ -0,0 +1,50 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+/**
+ * Where a {@link VuforiaPoseService} gets its poses from, {@link VuforiaNavigation} on the robot.
+ * The poses are in inches and degrees on the field, so the service never needs the Vuforia classes,
+ * and the simulation can stand in for the camera.
+ * <p/>
+ * {@link #process()} and the getters are only called from the service's thread while it runs.
+ */
+
+public interface VisionSource {
+
+    boolean isReady();
+
+    /**
+     * Starts tracking the targets.
+     *
+     * @return false if the source is not ready yet
+     */
+    boolean activateTracking();
+
+    /**
+     * Stops tracking and forgets what was seen.
+     */
+    void deactivateTracking();
+
+    /**
+     * Reads what the camera saw since the last call, the getters return its results.
+     */
+    void process();
+
+    int getTargetCount();
+
+    boolean isTargetVisible(int targetIndex);
+
+    /**
+     * @return the {@link org.firstinspires.ftc.griffins.Clock#now()} of the frame the robot pose was tracked in, 0 if there is none
+     */
+    long getRobotPoseTime();
+
+    /**
+     * @return the robot's field pose from the newest tracked frame, timestamped with the frame, or null if no target is visible
+     */
+    Pose getRobotPose();
+
+    /**
+     * @return the target's position and rotation as the camera sees it, in inches and degrees, or null if it is not visible
+     */
+    Pose getTargetRelativePose(int targetIndex);
+}
@@ -52,7 +52,6 @@ import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackableDefaultListener;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackables;
 
-import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -85,16 +84,19 @@ import java.util.Locale;
 
 @Autonomous(name = "Concept: Vuforia Navigation", group = "Concept")
 @Disabled
-public class VuforiaNavigation extends LinearOpMode {
+public class VuforiaNavigation extends LinearOpMode implements VisionSource {
 
     public static final String TAG = "Vuforia Sample";
+    public static final double MM_PER_INCH = 25.4;
     public static final int BLUE_MIDDLE_TARGET_INDEX = 0;
     public static final int RED_FAR_TARGET_INDEX = 1;
     public static final int BLUE_FAR_TARGET_INDEX = 2;
     public static final int RED_MIDDLE_TARGET_INDEX = 3;
     public static final String[] TARGET_NAMES = {"Blue Mid (Wheels)", "Red Far (Tools)", "Blue Far(Legos)", "Red Mid (Gears)"};
 
-    private OpenGLMatrix lastLocation = null;
+    // written by whichever thread runs the process loop, which is a VuforiaPoseService's thread when there is one
+    private volatile OpenGLMatrix lastLocation = null;
+    private volatile long lastLocationTime = 0;
     private OpenGLMatrix[] locationRelativeToTargets = null;
     private boolean[] targetsVisible = null;
 
@@ -154,6 +156,13 @@ public class VuforiaNavigation extends LinearOpMode {
         return lastLocation;
     }
 
+    /**
+     * @return the {@link org.firstinspires.ftc.griffins.Clock#now()} of the frame the last location was tracked in
+     */
+    public long getLastLocationTime() {
+        return lastLocationTime;
+    }
+
     public OpenGLMatrix[] getLocationRelativeToTargets() {
         return locationRelativeToTargets;
     }
@@ -162,9 +171,56 @@ public class VuforiaNavigation extends LinearOpMode {
         return targetsVisible;
     }
 
+    @Override
+    public boolean isReady() {
+        return vuforiaReady;
+    }
+
+    @Override
+    public void process() {
+        vuforiaProcessLoop();
+    }
+
+    @Override
+    public int getTargetCount() {
+        return TARGET_NAMES.length;
+    }
+
+    @Override
+    public boolean isTargetVisible(int targetIndex) {
+        return targetsVisible != null && targetsVisible[targetIndex];
+    }
+
+    @Override
+    public long getRobotPoseTime() {
+        return lastLocation != null ? lastLocationTime : 0;
+    }
+
+    @Override
+    public Pose getRobotPose() {
+        OpenGLMatrix location = lastLocation;
+        if (location == null) {
+            return null;
+        }
+        double[] data = extractData(location);
+        return new Pose(lastLocationTime, data[0] / MM_PER_INCH, data[1] / MM_PER_INCH, data[2]);
+    }
+
+    @Override
+    public Pose getTargetRelativePose(int targetIndex) {
+        OpenGLMatrix location = locationRelativeToTargets != null ? locationRelativeToTargets[targetIndex] : null;
+        if (location == null) {
+            return null;
+        }
+        double[] data = extractData(location);
+        long trackedTime = ((TimestampedTrackableListener) visionTargets.get(targetIndex).getListener()).getLastTrackedTime();
+        return new Pose(trackedTime, data[0] / MM_PER_INCH, data[1] / MM_PER_INCH, data[2]);
+    }
+
     /**
      * Start tracking Vuforia images
      */
+    @Override
     public boolean activateTracking() {
         // Start tracking any of the defined targets
         if (vuforiaReady && !vuforiaActivated) {
@@ -174,6 +230,7 @@ public class VuforiaNavigation extends LinearOpMode {
         return vuforiaReady;
     }
 
+    @Override
     public void deactivateTracking() {
         if (vuforiaReady && vuforiaActivated) {
             visionTargets.deactivate();
@@ -241,6 +298,10 @@ public class VuforiaNavigation extends LinearOpMode {
         VuforiaTrackable redMidTarget = visionTargets.get(RED_MIDDLE_TARGET_INDEX);
         redMidTarget.setName("Red Middle Target"); // Gears
 
+        // the listeners also keep the time each target was tracked, for the pose service
+        for (VuforiaTrackable target : visionTargets) {
+            target.setListener(new TimestampedTrackableListener(target));
+        }
 
         /** We don't need to do this, {@Link VuforiaTrackables} already extends List, we just iterate over it*/
 //        /** For convenience, gather together all the trackable objects in one easily-iterable collection */
@@ -425,13 +486,15 @@ public class VuforiaNavigation extends LinearOpMode {
                  * the last time that call was made, or if the trackable is not currently visible.
                  * getRobotLocation() will return null if the trackable is not currently visible.
                  */
-                locationRelativeToTargets[i] = ((VuforiaTrackableDefaultListener) trackable.getListener()).getPose();
-                targetsVisible[i] = ((VuforiaTrackableDefaultListener) trackable.getListener()).isVisible();
+                TimestampedTrackableListener listener = (TimestampedTrackableListener) trackable.getListener();
+                locationRelativeToTargets[i] = listener.getPose();
+                targetsVisible[i] = listener.isVisible();
 
-                isTargetVisible |= ((VuforiaTrackableDefaultListener) trackable.getListener()).isVisible();
+                isTargetVisible |= targetsVisible[i];
 
-                OpenGLMatrix robotLocationTransform = ((VuforiaTrackableDefaultListener) trackable.getListener()).getUpdatedRobotLocation();
+                OpenGLMatrix robotLocationTransform = listener.getUpdatedRobotLocation();
                 if (robotLocationTransform != null) {
+                    lastLocationTime = listener.getLastTrackedTime();
                     lastLocation = robotLocationTransform;
                 }
             }
@@ -475,34 +538,30 @@ public class VuforiaNavigation extends LinearOpMode {
         telemetry.update();
         waitForStart();
 
-        /** Start tracking the data sets we care about. */
-        this.activateTracking();
+        /** Start tracking the data sets we care about, the targets are processed on the pose service's thread. */
+        VuforiaPoseService poseService = new VuforiaPoseService(this);
+        poseService.start();
 
         while (opModeIsActive()) {
             vuforiaTimer.reset();
 
-            this.vuforiaProcessLoop();
+            VisionPose visionPose = poseService.getLatestPose();
 
             for (int i = 0; i < TARGET_NAMES.length; i++) {
-                telemetry.addData(TARGET_NAMES[i], this.getTargetsVisible()[i] ? "Visible" : "Not Visible");
-                if (this.getLocationRelativeToTargets()[i] != null) {
-                    telemetry.addData("location relative to target", Arrays.toString(extractData(this.getLocationRelativeToTargets()[i])));
+                telemetry.addData(TARGET_NAMES[i], visionPose.isTargetVisible(i) ? "Visible" : "Not Visible");
+                Pose targetPose = visionPose.getTargetRelativePose(i);
+                if (targetPose != null) {
+                    telemetry.addData("location relative to target", targetPose);
                 }
             }
 
-
-            if (this.getLastLocation() != null) {
-                //  RobotLog.vv(TAG, "robot=%s", format(lastLocation));
-                telemetry.addData("Pos", format(this.getLastLocation()));
-                telemetry.addData("Relevant Data", Arrays.toString(extractData(this.getLastLocation())));
-            } else {
-                telemetry.addData("Pos", "Unknown");
-                telemetry.addData("Relevant Data", "None");
-            }
+            telemetry.addData("Pos", visionPose.hasPose() ? visionPose.getPose() : "Unknown");
+            telemetry.addData("Pose Age (ms)", visionPose.hasPose() ? String.format(Locale.ENGLISH, "%.0f", visionPose.getAgeMilliseconds()) : "None");
+            telemetry.addData("Vision Loop", poseService.getExecutor());
             telemetry.addData("Loop Time (ms)", vuforiaTimer.milliseconds());
             telemetry.update();
         }
 
-        this.deactivateTracking();
+        poseService.stop();
     }
 }
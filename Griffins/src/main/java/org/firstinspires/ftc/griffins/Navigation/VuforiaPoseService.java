@@ -0,0 +1,143 @@
+package org.firstinspires.ftc.griffins.Navigation;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.LoopHistogram;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link VisionSource}'s process loop, {@link VuforiaNavigation#vuforiaProcessLoop()} on the robot,
+ * on its own thread, so the control loop never waits on the listeners' locks or the matrix math.
+ * After every pass the robot's field pose and the visible targets are published as a {@link VisionPose}
+ * through an atomic reference, {@link #getLatestPose()} only reads it.
+ * <p/>
+ * While the service runs, its thread is the only one that may call the source's process loop,
+ * read the source's results through the service instead.
+ * A new {@link VisionPose} is only made when the pose or the visible targets change,
+ * so a robot that can not see anything does not allocate. The pose's timestamp is when its frame was tracked,
+ * check {@link VisionPose#isStale(double)} before trusting it.
+ */
+
+public class VuforiaPoseService {
+
+    // a little faster than the camera's 30 frames per second, so every frame is seen
+    public static final double DEFAULT_PERIOD_MILLISECONDS = 25;
+
+    private final VisionSource source;
+    private final ControlLoopExecutor executor;
+    private final AtomicReference<VisionPose> latestPose;
+    private final LoopHistogram processTime = LoopHistogram.get("Vuforia process");
+    private volatile long publishCount;
+
+    private volatile boolean running;
+    private Thread serviceThread;
+
+    /**
+     * @param source a source that has already been initialized
+     */
+    public VuforiaPoseService(VisionSource source, double periodMilliseconds) {
+        this.source = source;
+        this.executor = new ControlLoopExecutor(periodMilliseconds);
+        this.latestPose = new AtomicReference<>(VisionPose.NONE);
+    }
+
+    public VuforiaPoseService(VisionSource source) {
+        this(source, DEFAULT_PERIOD_MILLISECONDS);
+    }
+
+    /**
+     * Activates tracking and starts processing the targets on a background thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            throw new IllegalStateException("The pose service is already running");
+        }
+        if (!source.isReady()) {
+            throw new IllegalStateException("The vision source has to be initialized before the pose service starts");
+        }
+
+        source.activateTracking();
+        latestPose.set(VisionPose.NONE);
+        running = true;
+        serviceThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                executor.reset();
+                do {
+                    process();
+                } while (running && executor.waitForNextCycle());
+            }
+        }, "Vuforia Pose");
+        // vision is never more urgent than the control loop
+        serviceThread.setPriority(Thread.NORM_PRIORITY - 1);
+        serviceThread.start();
+    }
+
+    /**
+     * Stops the thread and deactivates tracking, the last pose stays published.
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            serviceThread.interrupt();
+            try {
+                // the source may only be deactivated once its process loop has finished
+                serviceThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            serviceThread = null;
+            source.deactivateTracking();
+        }
+    }
+
+    private void process() {
+        long start = System.nanoTime();
+        source.process();
+
+        int visibleTargets = 0;
+        int targetCount = source.getTargetCount();
+        for (int i = 0; i < targetCount; i++) {
+            if (source.isTargetVisible(i)) {
+                visibleTargets |= 1 << i;
+            }
+        }
+
+        long captureTime = source.getRobotPoseTime();
+        VisionPose previous = latestPose.get();
+        boolean samePose = captureTime == 0 ? !previous.hasPose() : previous.hasPose() && previous.getPose().getTimestamp() == captureTime;
+
+        if (!samePose || visibleTargets != previous.getVisibleTargets()) {
+            Pose[] targetRelativePoses = new Pose[targetCount];
+            for (int i = 0; i < targetCount; i++) {
+                targetRelativePoses[i] = source.getTargetRelativePose(i);
+            }
+            latestPose.set(new VisionPose(source.getRobotPose(), visibleTargets, targetRelativePoses, Clock.now()));
+            publishCount++;
+        }
+
+        processTime.recordSince(start);
+    }
+
+    /**
+     * @return the most recent result, {@link VisionPose#NONE} until the first target is seen, never blocks
+     */
+    public VisionPose getLatestPose() {
+        return latestPose.get();
+    }
+
+    /**
+     * @return the number of results published since the service was created
+     */
+    public long getPublishCount() {
+        return publishCount;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public ControlLoopExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,193 @@
+package org.firstinspires.ftc.griffins;
+
+import org.firstinspires.ftc.griffins.RobotHardware.BeaconState;
+
+import java.util.Locale;
+
+/**
+ * Sorts the particles in the loader as the loader color sensor sees them: the alliance's particles are loaded,
+ * the other alliance's particles are pushed back out through the intake.
+ * <p/>
+ * The sorter listens to the loader's {@link ColorSensorPoller}, so it decides on every sample,
+ * on the controller's thread, whatever loop the opmode happens to be running.
+ * A particle is reacted to within one port cycle of the sensor seeing it: the new powers are sent right away,
+ * even when the {@link ActuatorCache} is deferred, and the time from the particle's first sample to the powers
+ * going out goes into the "Particle sort reaction" histogram. The sorter only sets the loader and the intake
+ * while it is enabled and has an alliance, and only when their powers change.
+ */
+
+public class ParticleSorter implements ColorSensorPoller.SampleListener {
+
+    // how long the loader keeps lifting after a particle has gone past the sensor
+    public static final double FEED_MILLISECONDS = 200;
+    // how long the intake keeps pushing out after a rejected particle has gone past the sensor
+    public static final double REJECT_MILLISECONDS = 750;
+
+    public enum State {
+        /** no particle, the intake runs and the loader waits */
+        WAITING,
+        /** an alliance particle is at the sensor, it is loaded */
+        ACCEPTING,
+        /** an alliance particle has just gone past, the loader finishes lifting it */
+        FEEDING,
+        /** an opposing particle is at the sensor, it is pushed back out */
+        REJECTING,
+        /** an opposing particle has just gone past, the intake finishes pushing it out */
+        CLEARING
+    }
+
+    private final RobotHardware hardware;
+    private final LoopHistogram reactionTime = LoopHistogram.get("Particle sort reaction");
+
+    private volatile BeaconState alliance;
+    private volatile boolean enabled;
+
+    // only used on the controller's thread, and while enabling or disabling, under the sorter's lock
+    private State state = State.WAITING;
+    private long lastAcceptTime;
+    private long lastRejectTime;
+    private double loaderPower = Double.NaN;
+    private double intakePower = Double.NaN;
+    private long acceptedCount;
+    private long rejectedCount;
+
+    public ParticleSorter(RobotHardware hardware) {
+        this.hardware = hardware;
+        hardware.getLoaderColorPoller().setListener(this);
+    }
+
+    /**
+     * @param alliance the color of the particles to load, null stops the sorting
+     */
+    public synchronized void setAlliance(BeaconState alliance) {
+        // the motors may have been set while there was no alliance, so the next sample sets them again
+        loaderPower = Double.NaN;
+        intakePower = Double.NaN;
+        this.alliance = alliance;
+    }
+
+    public BeaconState getAlliance() {
+        return alliance;
+    }
+
+    /**
+     * Starts sorting from the next sample, registering the loader color sensor if it is not already.
+     */
+    public synchronized void enable() {
+        hardware.registerLoaderColorSensor();
+        // something else may have set the motors while the sorter was off, so the next sample sets them again
+        loaderPower = Double.NaN;
+        intakePower = Double.NaN;
+        enabled = true;
+    }
+
+    /**
+     * Stops sorting, the motors are left as they are. Once it returns, the sorter will not set them again until enabled.
+     */
+    public synchronized void disable() {
+        enabled = false;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized void onSample(ColorSample sample) {
+        BeaconState alliance = this.alliance;
+        if (!enabled || alliance == null) {
+            return;
+        }
+
+        // the sample has just been read, the histogram times the code so it uses System.nanoTime() like the rest
+        long sampleTime = System.nanoTime();
+
+        long now = sample.getTimestamp();
+        BeaconState ball = RobotHardware.findParticleColor(sample);
+        State previous = state;
+
+        if (ball == alliance) {
+            state = State.ACCEPTING;
+            lastAcceptTime = now;
+        } else if (!ball.containsUndefined()) {
+            state = State.REJECTING;
+            lastRejectTime = now;
+            // the loader lifts briefly once the particle is out, like after a loaded one
+            lastAcceptTime = now;
+        } else if (previous == State.ACCEPTING || previous == State.REJECTING) {
+            state = previous == State.ACCEPTING ? State.FEEDING : State.CLEARING;
+        } else if (previous == State.FEEDING && (now - lastAcceptTime) * 1e-6 > FEED_MILLISECONDS) {
+            state = State.WAITING;
+        } else if (previous == State.CLEARING && (now - lastRejectTime) * 1e-6 > REJECT_MILLISECONDS) {
+            state = State.WAITING;
+        }
+
+        if (state != previous) {
+            if (state == State.ACCEPTING) {
+                acceptedCount++;
+            } else if (state == State.REJECTING) {
+                rejectedCount++;
+            }
+        }
+
+        double newLoaderPower;
+        double newIntakePower;
+        switch (state) {
+            case ACCEPTING:
+                newLoaderPower = 1;
+                newIntakePower = 1;
+                break;
+            case REJECTING:
+                newLoaderPower = -1;
+                newIntakePower = -1;
+                break;
+            case CLEARING:
+                newLoaderPower = (now - lastAcceptTime) * 1e-6 > FEED_MILLISECONDS ? 0 : .5;
+                newIntakePower = -1;
+                break;
+            case FEEDING:
+                newLoaderPower = .5;
+                newIntakePower = 1;
+                break;
+            default:
+                newLoaderPower = 0;
+                newIntakePower = 1;
+                break;
+        }
+
+        ActuatorCache cache = hardware.getActuatorCache();
+        if (newLoaderPower != loaderPower) {
+            hardware.setLoaderPower(newLoaderPower);
+            cache.flush(hardware.getLoaderServo());
+            loaderPower = newLoaderPower;
+        }
+        if (newIntakePower != intakePower) {
+            hardware.getIntake().setPower(newIntakePower);
+            cache.flush(hardware.getIntake());
+            intakePower = newIntakePower;
+        }
+
+        // a new particle was first sampled just now, the powers for it have gone out
+        if (state != previous && (state == State.ACCEPTING || state == State.REJECTING)) {
+            reactionTime.recordSince(sampleTime);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s, loader %.2f, intake %.2f, %d accepted, %d rejected",
+                state, loaderPower, intakePower, acceptedCount, rejectedCount);
+    }
+}
@@ -2,6 +2,9 @@ package org.firstinspires.ftc.griffins;
 
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+import org.firstinspires.ftc.griffins.Navigation.VuforiaNavigation;
+
 /**
  * Created by David on 12/7/2016.
  */
@@ -13,4 +16,11 @@ public class RedAuto extends BeaconAuto {
         alliance = Alliance.RED_ALLIANCE;
         super.runOpMode();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected VisionSource createVisionSource() {
+        VuforiaNavigation vuforia = new VuforiaNavigation();
+        vuforia.initializeVuforia();
+        return vuforia;
+    }
+}
@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.griffins.Navigation.DriveReplay;
+import org.firstinspires.ftc.robotcore.internal.AppUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Drives the last run recorded in the TeleOp again, see {@link DriveRecorder} and {@link DriveReplay}.
+ * Start the robot where the recording started.
+ */
+@Autonomous(name = "Replay Auto", group = "Auto")
+public class ReplayAuto extends LinearOpMode {
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        RobotHardware hardware = new RobotHardware();
+        hardware.initialize(hardwareMap);
+        AutoFunctions autoFunctions = new AutoFunctions(hardware, this);
+
+        DataRecorder.Recording recording;
+        DriveReplay replay;
+        try {
+            recording = DataRecorder.read(new File(AppUtil.ROBOT_SETTINGS, DriveRecorder.FILE_NAME));
+        } catch (IOException e) {
+            telemetry.log().add("no drive recording: " + e.getMessage());
+            waitForStart();
+            return;
+        }
+        try {
+            replay = new DriveReplay(hardware, recording);
+        } catch (IllegalArgumentException e) {
+            // an empty recording, or one that is not from the DriveRecorder
+            telemetry.log().add("unusable drive recording: " + e.getMessage());
+            waitForStart();
+            return;
+        }
+        telemetry.log().add(String.format(Locale.US, "replaying %.1f s, %d rows", replay.getSeconds(), recording.getRowCount()));
+
+        waitForStart();
+        LoopHistogram.resetAll();
+
+        autoFunctions.run(autoFunctions.replayCommand(replay));
+        telemetry.log().add("replay ended " + replay.getTrackingError());
+
+        LoopHistogram.dumpAll("replay-loop-times.csv");
+    }
+}
@@ -0,0 +1,93 @@
+package org.firstinspires.ftc.griffins;
+
+/**
+ * The same moving average as {@link LowPassFilter}, kept in a circular double array, so a sample does not allocate.
+ * The running sum is updated with compensated (Kahan) summation and recalculated exactly every
+ * {@link #RESUM_PERIOD} samples, so it does not drift over a long match.
+ */
+
+public class RingBufferLowPassFilter extends Filter {
+
+    public static final int RESUM_PERIOD = 1024;
+
+    private final double[] values;
+    private int nextIndex;
+    private int size;
+    private int samplesSinceResum;
+
+    private double sum;
+    private double compensation; // the low order bits lost from sum
+    private double processedValue;
+
+    public RingBufferLowPassFilter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1");
+        }
+
+        values = new double[capacity];
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        nextIndex = 0;
+        size = 0;
+        samplesSinceResum = 0;
+        sum = 0;
+        compensation = 0;
+        processedValue = 0;
+    }
+
+    @Override
+    public double processValue(double newValue) {
+        double change = newValue;
+        if (size == values.length) {
+            change -= values[nextIndex];
+        } else {
+            size++;
+        }
+
+        values[nextIndex] = newValue;
+        nextIndex++;
+        if (nextIndex == values.length) {
+            nextIndex = 0;
+        }
+
+        samplesSinceResum++;
+        if (samplesSinceResum >= RESUM_PERIOD) {
+            resum();
+        } else {
+            double y = change - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+
+        processedValue = sum / size;
+        return processedValue;
+    }
+
+    private void resum() {
+        double exactSum = 0;
+        for (int i = 0; i < size; i++) {
+            exactSum += values[i];
+        }
+        sum = exactSum;
+        compensation = 0;
+        samplesSinceResum = 0;
+    }
+
+    @Override
+    public double getProcessedValue() {
+        return processedValue;
+    }
+
+    @Override
+    public boolean atCapacity() {
+        return size == values.length;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+}
@@ -16,10 +16,11 @@ import com.qualcomm.robotcore.hardware.Servo;
 import com.qualcomm.robotcore.util.Range;
 import com.qualcomm.robotcore.util.TypeConversion;
 
+import org.firstinspires.ftc.griffins.Navigation.DoubleSource;
+import org.firstinspires.ftc.griffins.Navigation.Odometry;
+import org.firstinspires.ftc.griffins.Navigation.PoseFusion;
 import org.firstinspires.ftc.griffins.Navigation.PIDController;
-import org.firstinspires.ftc.robotcore.external.Func;
-
-import java.util.concurrent.locks.Lock;
+import org.firstinspires.ftc.griffins.Navigation.VuforiaPoseService;
 
 import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.BLUE;
 import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.BLUE_BLUE;
@@ -64,6 +65,7 @@ public class RobotHardware {
     // The constants for motor encoders
     public static final int NEVEREST_ENCODER_COUNT_PER_ROTATION = 28;
     public static final int NEVEREST_40_ENCODER_COUNTS_PER_ROTATION = NEVEREST_ENCODER_COUNT_PER_ROTATION * 40;
+    public static final int SHOOTER_ENCODER_COUNTS_PER_ROTATION = NEVEREST_ENCODER_COUNT_PER_ROTATION * 20;
     // The addresses for the color sensors, since we are using five, the default will be changed
     public static final I2cAddr LEFT_COLOR_SENSOR_ADDRESS = I2cAddr.create8bit(0x38);
     public static final I2cAddr RIGHT_COLOR_SENSOR_ADDRESS = I2cAddr.create8bit(0x3C);
@@ -73,6 +75,7 @@ public class RobotHardware {
     // The constants for the button pusher positions
     public static final double BUTTON_PUSHER_CENTER_POSITION = 97 / 255.0;
     public static final double BUTTON_PUSHER_RATIO = 1.2 / 2.0;
+    public static final double BEACON_COLOR_SENSOR_SPACING = 4.8; // inches between the back and front button pusher color sensors
     public static final double BUTTON_PUSHER_LEFT_FULL_EXTENSION = 67 / 255.0;
     public static final double BUTTON_PUSHER_RIGHT_FULL_EXTENSION = 127 / 255.0;
     public static final double BUTTON_PUSHER_RETRACTED = 228 / 255.0;
@@ -83,6 +86,7 @@ public class RobotHardware {
     public static final double LOADER_FULL_FORWARD_POWER = 2 / 3.0;
     // The constants for shooting speeds
     public static final double SHOOTER_SPEED = 0.9;
+    public static final double SHOOTER_MAX_RPM = 340; // the speed of the shooter motors at full power
     // The constants for driving
     public static final double INCHES_PER_ENCODER_COUNT = (2 * Math.PI) / (NEVEREST_ENCODER_COUNT_PER_ROTATION * 10);  // (wheel diameter * pi) / (encoder counts per motor rotation * gear ratio)
     public static final double ENCODER_COUNTS_PER_INCH = 1 / INCHES_PER_ENCODER_COUNT; // inverse of above INCHES_PER_ENCODER_COUNT
@@ -105,6 +109,7 @@ public class RobotHardware {
     private double BUTTON_PUSHER_RIGHT_POSITION = (BUTTON_PUSHER_RIGHT_FULL_EXTENSION - BUTTON_PUSHER_CENTER_POSITION) * BUTTON_PUSHER_RATIO + BUTTON_PUSHER_CENTER_POSITION;
     private double BUTTON_PUSHER_EXTENDED_POSITION = (BUTTON_PUSHER_EXTENDED - BUTTON_PUSHER_RETRACTED) * BUTTON_PUSHER_RATIO + BUTTON_PUSHER_RETRACTED;
     private BeaconState alliance;
+    private ActuatorCache actuatorCache;
     //motor variables
     private SyncedDcMotors leftDrive;
     private SyncedDcMotors rightDrive;
@@ -128,10 +133,19 @@ public class RobotHardware {
     private ModernRoboticsI2cColorSensor leftSecondaryButtonPusherColorSensor;
     private ModernRoboticsI2cColorSensor rightSecondaryButtonPusherColorSensor;
     private ModernRoboticsI2cColorSensor loaderColorSensor;
+    private ColorSensorPoller leftButtonPusherColorPoller;
+    private ColorSensorPoller rightButtonPusherColorPoller;
+    private ColorSensorPoller leftSecondaryButtonPusherColorPoller;
+    private ColorSensorPoller rightSecondaryButtonPusherColorPoller;
+    private ColorSensorPoller loaderColorPoller;
     private ModernRoboticsAnalogOpticalDistanceSensor beaconDistanceSensor;
     private DigitalChannel loaderParticleLimitSwitch;
     private BNO055IMU robotTracker;
     private double turretHeadingTarget;
+    private SensorFrame sensorFrame;
+    private final Odometry odometry = new Odometry();
+    private final PoseFusion poseFusion = new PoseFusion(odometry);
+    private volatile VuforiaPoseService poseService;
 
     //state variables
     private boolean isLoaderColorSensorRegistered;
@@ -143,17 +157,21 @@ public class RobotHardware {
     }
 
     public void initialize(HardwareMap hardwareMap) {
-        leftDrive = new SyncedDcMotors(hardwareMap, DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALL_SAME, LEFT_DRIVE_ONE, LEFT_DRIVE_TWO);
+        actuatorCache = new ActuatorCache();
+
+        leftDrive = new SyncedDcMotors(DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALL_SAME,
+                actuatorCache.wrap(hardwareMap.dcMotor.get(LEFT_DRIVE_ONE)), actuatorCache.wrap(hardwareMap.dcMotor.get(LEFT_DRIVE_TWO)));
         leftDrive.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         leftDrive.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
-        rightDrive = new SyncedDcMotors(hardwareMap, DcMotorSimple.Direction.FORWARD, SyncedDcMotors.ALL_SAME, RIGHT_DRIVE_ONE, RIGHT_DRIVE_TWO);
+        rightDrive = new SyncedDcMotors(DcMotorSimple.Direction.FORWARD, SyncedDcMotors.ALL_SAME,
+                actuatorCache.wrap(hardwareMap.dcMotor.get(RIGHT_DRIVE_ONE)), actuatorCache.wrap(hardwareMap.dcMotor.get(RIGHT_DRIVE_TWO)));
         rightDrive.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         rightDrive.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
-        shooterLeft = hardwareMap.get(DcMotor.class, SHOOTER_MOTOR_LEFT);
-        shooterRight = hardwareMap.get(DcMotor.class, SHOOTER_MOTOR_RIGHT);
-        shooter = new SyncedDcMotors(hardwareMap, DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALTERNATING, SHOOTER_MOTOR_LEFT, SHOOTER_MOTOR_RIGHT);
+        shooterLeft = actuatorCache.wrap(hardwareMap.get(DcMotor.class, SHOOTER_MOTOR_LEFT));
+        shooterRight = actuatorCache.wrap(hardwareMap.get(DcMotor.class, SHOOTER_MOTOR_RIGHT));
+        shooter = new SyncedDcMotors(DcMotorSimple.Direction.REVERSE, SyncedDcMotors.ALTERNATING, shooterLeft, shooterRight);
 
         shooterLeft.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         shooterRight.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
@@ -162,7 +180,7 @@ public class RobotHardware {
         shooter.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         shooter.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
 
-        intake = hardwareMap.get(DcMotor.class, INTAKE_MOTOR);
+        intake = actuatorCache.wrap(hardwareMap.get(DcMotor.class, INTAKE_MOTOR));
         intake.setDirection(DcMotorSimple.Direction.REVERSE);
         intake.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
         intake.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
@@ -173,19 +191,19 @@ public class RobotHardware {
         turretRotation.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
 
-        buttonPusherServo = hardwareMap.get(Servo.class, BUTTON_PUSHER_SERVO);
+        buttonPusherServo = actuatorCache.wrap(hardwareMap.get(Servo.class, BUTTON_PUSHER_SERVO));
         buttonPusherServo.setDirection(Servo.Direction.FORWARD);
         this.retractButtonPusher();
 
-        leftTurretGuide = hardwareMap.get(Servo.class, LEFT_TURRET_GUIDE_SERVO);
+        leftTurretGuide = actuatorCache.wrap(hardwareMap.get(Servo.class, LEFT_TURRET_GUIDE_SERVO));
         leftTurretGuide.setDirection(Servo.Direction.FORWARD);
 
-        rightTurretGuide = hardwareMap.get(Servo.class, RIGHT_TURRET_GUIDE_SERVO);
+        rightTurretGuide = actuatorCache.wrap(hardwareMap.get(Servo.class, RIGHT_TURRET_GUIDE_SERVO));
         rightTurretGuide.setDirection(Servo.Direction.REVERSE);
 
         setTurretGuidePosition(0);
 
-        loaderServoOne = hardwareMap.get(Servo.class, LOADER_SERVO_ONE);
+        loaderServoOne = actuatorCache.wrap(hardwareMap.get(Servo.class, LOADER_SERVO_ONE));
         loaderServoOne.setDirection(Servo.Direction.FORWARD);
 
         /*loaderServoTwo = hardwareMap.get(CRServo.class, LOADER_SERVO_TWO);
@@ -218,6 +236,11 @@ public class RobotHardware {
         rightSecondaryButtonPusherColorSensor.enableLed(true);
         rightSecondaryButtonPusherColorSensor.enableLed(false);
 
+        leftButtonPusherColorPoller = new ColorSensorPoller(leftButtonPusherColorSensor);
+        rightButtonPusherColorPoller = new ColorSensorPoller(rightButtonPusherColorSensor);
+        leftSecondaryButtonPusherColorPoller = new ColorSensorPoller(leftSecondaryButtonPusherColorSensor);
+        rightSecondaryButtonPusherColorPoller = new ColorSensorPoller(rightSecondaryButtonPusherColorSensor);
+
         deregisterBeaconColorSensors(); // TODO: 2/12/2017 need to register the color sensors in relevant files!
 
         loaderColorSensor = hardwareMap.get(ModernRoboticsI2cColorSensor.class, LOADER_COLOR_SENSOR);
@@ -225,6 +248,8 @@ public class RobotHardware {
         loaderColorSensor.enableLed(false);
         loaderColorSensor.enableLed(true);
 
+        loaderColorPoller = new ColorSensorPoller(loaderColorSensor);
+
         deregisterLoaderColorSensor();
 
         /*beaconDistanceSensor = hardwareMap.get(ModernRoboticsAnalogOpticalDistanceSensor.class, BEACON_DISTANCE_SENSOR);
@@ -241,14 +266,68 @@ public class RobotHardware {
         parameters.loggingEnabled = false;
         robotTracker.initialize(parameters);
         robotTracker.startAccelerationIntegration(new Position(), new Velocity(), 10);*/
-        turretController = new PIDController(0.07, 0, 0, 0.05, new Func<Double>() {
+        turretController = new PIDController(0.07, 0, 0, 0.05, new DoubleSource() {
             @Override
-            public Double value() {
+            public double value() {
                 return (turretRotation.getCurrentPosition() / ENCODER_COUNTS_PER_TURRET_DEGREE - turretGyro.getIntegratedZValue());
             }
         }, null);
 
         turretController.setSetPoint(turretController.getSourceVal());
+
+        sensorFrame = new SensorFrame(leftDrive, rightDrive, shooterLeft, shooterRight, turretRotation, turretGyro,
+                loaderParticleLimitSwitch);
+    }
+
+    /**
+     * Starts a new control cycle on the sensor frame, each sensor is read once the first time it is asked for.
+     * Call once per control cycle, then read the values from {@link #getSensorFrame()}.
+     * The odometry is moved forward with every frame, which reads the drive encoders and the gyro's integrated z value,
+     * and the pose fusion records it, along with the pose service's newest pose if there is a service.
+     *
+     * @return the frame, the same one every cycle
+     */
+    public SensorFrame updateSensorFrame() {
+        sensorFrame.startCycle(Clock.now());
+        odometry.update(sensorFrame);
+        poseFusion.recordOdometry();
+        VuforiaPoseService service = poseService;
+        if (service != null) {
+            poseFusion.addVisionPose(service.getLatestPose());
+        }
+        return sensorFrame;
+    }
+
+    /**
+     * @return the frame of the current cycle, {@link #updateSensorFrame()} starts a new one
+     */
+    public SensorFrame getSensorFrame() {
+        return sensorFrame;
+    }
+
+    /**
+     * @return the robot's pose on the field, as of the last sensor frame
+     */
+    public Odometry getOdometry() {
+        return odometry;
+    }
+
+    /**
+     * @return the odometry corrected by the vision poses that were added to it
+     */
+    public PoseFusion getPoseFusion() {
+        return poseFusion;
+    }
+
+    /**
+     * @param poseService the service whose poses are added to the pose fusion every frame, or null for none
+     */
+    public void setPoseService(VuforiaPoseService poseService) {
+        this.poseService = poseService;
+    }
+
+    public VuforiaPoseService getPoseService() {
+        return poseService;
     }
 
     public SyncedDcMotors getLeftDrive() {
@@ -259,6 +338,13 @@ public class RobotHardware {
         return rightDrive;
     }
 
+    /**
+     * @return the cache in front of every motor and servo except the turret motor, which has its own control loop
+     */
+    public ActuatorCache getActuatorCache() {
+        return actuatorCache;
+    }
+
     public DcMotor getShooterLeft() {
         return shooterLeft;
     }
@@ -275,6 +361,10 @@ public class RobotHardware {
         return intake;
     }
 
+    public Servo getLoaderServo() {
+        return loaderServoOne;
+    }
+
     public DcMotor getTurretRotation() {
         return turretRotation;
     }
@@ -326,6 +416,26 @@ public class RobotHardware {
         return loaderColorSensor;
     }
 
+    public ColorSensorPoller getLeftButtonPusherColorPoller() {
+        return leftButtonPusherColorPoller;
+    }
+
+    public ColorSensorPoller getRightButtonPusherColorPoller() {
+        return rightButtonPusherColorPoller;
+    }
+
+    public ColorSensorPoller getLeftSecondaryButtonPusherColorPoller() {
+        return leftSecondaryButtonPusherColorPoller;
+    }
+
+    public ColorSensorPoller getRightSecondaryButtonPusherColorPoller() {
+        return rightSecondaryButtonPusherColorPoller;
+    }
+
+    public ColorSensorPoller getLoaderColorPoller() {
+        return loaderColorPoller;
+    }
+
     @Deprecated
     public DigitalChannel getLoaderParticleLimitSwitch() {
         return loaderParticleLimitSwitch;
@@ -428,40 +538,34 @@ public class RobotHardware {
 
     public void deregisterBeaconColorSensors() {
         if (areBeaconColorSensorsRegistered) {
-            leftButtonPusherColorSensor.getI2cController().deregisterForPortReadyCallback(leftButtonPusherColorSensor.getPort());
-            rightButtonPusherColorSensor.getI2cController().deregisterForPortReadyCallback(rightButtonPusherColorSensor.getPort());
-            leftSecondaryButtonPusherColorSensor.getI2cController()
-                    .deregisterForPortReadyCallback(leftSecondaryButtonPusherColorSensor.getPort());
-            rightSecondaryButtonPusherColorSensor.getI2cController()
-                    .deregisterForPortReadyCallback(rightSecondaryButtonPusherColorSensor.getPort());
+            leftButtonPusherColorPoller.deregister();
+            rightButtonPusherColorPoller.deregister();
+            leftSecondaryButtonPusherColorPoller.deregister();
+            rightSecondaryButtonPusherColorPoller.deregister();
             areBeaconColorSensorsRegistered = false;
         }
     }
 
     public void registerBeaconColorSensors() {
         if (!areBeaconColorSensorsRegistered) {
-            leftButtonPusherColorSensor.getI2cController()
-                    .registerForI2cPortReadyCallback(leftButtonPusherColorSensor, leftButtonPusherColorSensor.getPort());
-            rightButtonPusherColorSensor.getI2cController()
-                    .registerForI2cPortReadyCallback(rightButtonPusherColorSensor, rightButtonPusherColorSensor.getPort());
-            leftSecondaryButtonPusherColorSensor.getI2cController()
-                    .registerForI2cPortReadyCallback(leftSecondaryButtonPusherColorSensor, leftSecondaryButtonPusherColorSensor.getPort());
-            rightSecondaryButtonPusherColorSensor.getI2cController()
-                    .registerForI2cPortReadyCallback(rightSecondaryButtonPusherColorSensor, rightSecondaryButtonPusherColorSensor.getPort());
+            leftButtonPusherColorPoller.register();
+            rightButtonPusherColorPoller.register();
+            leftSecondaryButtonPusherColorPoller.register();
+            rightSecondaryButtonPusherColorPoller.register();
             areBeaconColorSensorsRegistered = true;
         }
     }
 
     public void deregisterLoaderColorSensor() {
         if (isLoaderColorSensorRegistered) {
-            loaderColorSensor.getI2cController().deregisterForPortReadyCallback(loaderColorSensor.getPort());
+            loaderColorPoller.deregister();
             isLoaderColorSensorRegistered = false;
         }
     }
 
     public void registerLoaderColorSensor() {
         if (!isLoaderColorSensorRegistered) {
-            loaderColorSensor.getI2cController().registerForI2cPortReadyCallback(loaderColorSensor, loaderColorSensor.getPort());
+            loaderColorPoller.register();
             isLoaderColorSensorRegistered = true;
         }
     }
@@ -482,27 +586,35 @@ public class RobotHardware {
      */
     @Deprecated
     public BeaconState findBeaconState() {
-        BeaconState leftSide = findColorSensorState(leftButtonPusherColorSensor);
-        BeaconState rightSide = findColorSensorState(rightButtonPusherColorSensor);
+        BeaconState leftSide = findColorSensorState(leftButtonPusherColorPoller.getLatestSample());
+        BeaconState rightSide = findColorSensorState(rightButtonPusherColorPoller.getLatestSample());
 
         return BeaconState.mergeBeaconStates(leftSide, rightSide);
     }
 
     public BeaconState findLeftBeaconState() {
-        BeaconState backSide = findColorSensorState(leftButtonPusherColorSensor);
-        BeaconState frontSide = findColorSensorState(leftSecondaryButtonPusherColorSensor);
+        BeaconState backSide = findColorSensorState(leftButtonPusherColorPoller.getLatestSample());
+        BeaconState frontSide = findColorSensorState(leftSecondaryButtonPusherColorPoller.getLatestSample());
 
         return BeaconState.mergeBeaconStates(backSide, frontSide);
     }
 
     public BeaconState findRightBeaconState() {
-        BeaconState backSide = findColorSensorState(rightButtonPusherColorSensor);
-        BeaconState frontSide = findColorSensorState(rightSecondaryButtonPusherColorSensor);
+        BeaconState backSide = findColorSensorState(rightButtonPusherColorPoller.getLatestSample());
+        BeaconState frontSide = findColorSensorState(rightSecondaryButtonPusherColorPoller.getLatestSample());
 
         return BeaconState.mergeBeaconStates(backSide, frontSide);
     }
 
-    public BeaconState findParticleColor() { //unfortunately, a blue ball returns equal values for blue and green
+    public BeaconState findParticleColor() {
+        return findParticleColor(loaderColorPoller.getLatestSample());
+    }
+
+    /**
+     * @param sample a sample of the loader color sensor
+     * @return the color of the particle in the loader, UNDEFINED if there is none
+     */
+    public static BeaconState findParticleColor(ColorSample sample) { //unfortunately, a blue ball returns equal values for blue and green
         RobotHardware.BeaconState colorState = UNDEFINED;
 
         /*if (loaderColorSensor.red() > loaderColorSensor.blue() + 5 && loaderColorSensor.alpha() > 10) {
@@ -511,7 +623,7 @@ public class RobotHardware {
             colorState = BLUE;
         }*/
 
-        int colorNumber = getLoaderColorNumber();
+        int colorNumber = sample.getColorNumber();
 
         if (colorNumber > 0 && colorNumber < 16 && colorNumber != 14) { //reason tests
             if (colorNumber < 7 || colorNumber == 15) {
@@ -525,36 +637,25 @@ public class RobotHardware {
     }
 
     public int getLoaderColorNumber() {
-        I2cController controller = loaderColorSensor.getI2cController();
-
-        byte color = -1;
-        Lock readLock = controller.getI2cReadCacheLock(loaderColorSensor.getPort());
-        byte[] readBuffer = controller.getI2cReadCache(loaderColorSensor.getPort());
-        try {
-            readLock.lock();
-            color = readBuffer[ModernRoboticsI2cColorSensor.OFFSET_COLOR_NUMBER];
-        } finally {
-            readLock.unlock();
-        }
-
-        if (color == -1)
-            return color;
-        return TypeConversion.unsignedByteToInt(color);
+        return loaderColorPoller.getLatestSample().getColorNumber();
     }
 
     /**
      * Checks the state of the color sensor to determine what color is being read
      *
-     * @param colorSensor the color sensor that will be checked
+     * @param sample the latest sample of the color sensor that will be checked
      * @return A BeaconState, which will be either RED, BLUE, or UNDEFINED.
      */
-    private BeaconState findColorSensorState(ColorSensor colorSensor) {
+    private BeaconState findColorSensorState(ColorSample sample) {
         BeaconState colorState = UNDEFINED;
+        int red = sample.red();
+        int green = sample.green();
+        int blue = sample.blue();
 
-        if (colorSensor.alpha() > 0) {
-            if (colorSensor.red() > colorSensor.blue() + 2 && colorSensor.red() > colorSensor.green()) {
+        if (sample.alpha() > 0) {
+            if (red > blue + 2 && red > green) {
                 colorState = RED;
-            } else if (colorSensor.blue() > colorSensor.red() + 2 && colorSensor.blue() > colorSensor.green()) {
+            } else if (blue > red + 2 && blue > green) {
                 colorState = BLUE;
             }
         }
@@ -603,6 +704,46 @@ public class RobotHardware {
         UNDEFINED_RED(0b11_10), //10 1010
         UNDEFINED_UNDEFINED(0b11_11); //11 1011
 
+        // every operation is a lookup in a table indexed by number state, null where the operation is not valid
+        private static final int TABLE_SIZE = 0b11_11 + 1;
+        private static final BeaconState[] BY_NUMBER_STATE = new BeaconState[TABLE_SIZE];
+        private static final BeaconState[] BACK_STATES = new BeaconState[TABLE_SIZE];
+        private static final BeaconState[] FRONT_STATES = new BeaconState[TABLE_SIZE];
+        private static final BeaconState[] WITHOUT_UNDEFINED = new BeaconState[TABLE_SIZE];
+        private static final BeaconState[] GUESSES = new BeaconState[TABLE_SIZE];
+        private static final boolean[] CONTAINS_UNDEFINED = new boolean[TABLE_SIZE];
+
+        static {
+            for (BeaconState state : values()) {
+                BY_NUMBER_STATE[state.numberState] = state;
+            }
+
+            for (BeaconState state : values()) {
+                int number = state.numberState;
+                int back = number >> 2;
+                int front = number & 0b00_11;
+                CONTAINS_UNDEFINED[number] = back == UNDEFINED.numberState || front == UNDEFINED.numberState;
+
+                if (back == 0) {
+                    continue; // a single state, it has no halves
+                }
+                BACK_STATES[number] = BY_NUMBER_STATE[back];
+                FRONT_STATES[number] = BY_NUMBER_STATE[front];
+                WITHOUT_UNDEFINED[number] = back == UNDEFINED.numberState ? BY_NUMBER_STATE[front] : BY_NUMBER_STATE[back];
+
+                // a beacon is always one of each color, so a known half gives the other half
+                if (state == UNDEFINED_UNDEFINED) {
+                    continue;
+                } else if (front == UNDEFINED.numberState) {
+                    GUESSES[number] = BY_NUMBER_STATE[(back << 2) + (back ^ 0b11)];
+                } else if (back == UNDEFINED.numberState) {
+                    GUESSES[number] = BY_NUMBER_STATE[((front ^ 0b11) << 2) + front];
+                } else {
+                    GUESSES[number] = state;
+                }
+            }
+        }
+
         private final int numberState;
 
         BeaconState(int numberState) {
@@ -610,84 +751,55 @@ public class RobotHardware {
         }
 
         public static BeaconState mergeBeaconStates(BeaconState back, BeaconState front) {
-            if (back.numberState >> 2 != 0 || front.numberState >> 2 != 0) {
+            if ((back.numberState | front.numberState) >> 2 != 0) {
                 throw new IllegalArgumentException("Valid arguments are BLUE, RED, UNDEFINED, all others are already merged");
             }
 
-            return getFromNumberState((back.numberState << 2) + front.numberState);
+            return BY_NUMBER_STATE[(back.numberState << 2) + front.numberState];
         }
 
         public static boolean containsUndefined(BeaconState beaconState) {
-            return ((beaconState.numberState >> 2) ^ 0b11) == 0 || ((beaconState.numberState & 0b11) ^ 0b11) == 0;
+            return CONTAINS_UNDEFINED[beaconState.numberState];
         }
 
         public static BeaconState removeUndefined(BeaconState containsUndefined) {
-            if (containsUndefined.numberState >> 2 == UNDEFINED.numberState) {
-                return getFromNumberState(containsUndefined.numberState & 0b00_11);
-            } else {
-                return getFromNumberState((containsUndefined.numberState & 0b11_00) >> 2);
+            BeaconState removed = WITHOUT_UNDEFINED[containsUndefined.numberState];
+            if (removed == null) {
+                throw new IllegalArgumentException("Not a valid number state.");
             }
+            return removed;
         }
 
         public static BeaconState guessBeaconState(BeaconState containsUndefined) {
-            if (containsUndefined.numberState <= 0b00_11 || containsUndefined == UNDEFINED_UNDEFINED) {
+            BeaconState guess = GUESSES[containsUndefined.numberState];
+            if (guess == null) {
                 throw new IllegalArgumentException("Insufficient data: " + containsUndefined);
             }
-
-            if ((containsUndefined.numberState & 0b00_11) == UNDEFINED.numberState) {
-                return getFromNumberState((removeUndefined(containsUndefined).numberState << 2) + (removeUndefined(containsUndefined).numberState ^ 0b11));
-            } else if ((containsUndefined.numberState & 0b11_00) == (UNDEFINED.numberState << 2)) {
-                return getFromNumberState(((removeUndefined(containsUndefined).numberState ^ 0b11) << 2) + removeUndefined(containsUndefined).numberState);
-            } else {
-                return containsUndefined;
-            }
+            return guess;
         }
 
         public static BeaconState getFromNumberState(int numberState) {
-            switch (numberState) {
-                case 0b00_01:
-                    return BLUE;
-                case 0b00_10:
-                    return RED;
-                case 0b00_11:
-                    return UNDEFINED;
-                case 0b01_01:
-                    return BLUE_BLUE;
-                case 0b01_10:
-                    return BLUE_RED;
-                case 0b01_11:
-                    return BLUE_UNDEFINED;
-                case 0b10_01:
-                    return RED_BLUE;
-                case 0b10_10:
-                    return RED_RED;
-                case 0b10_11:
-                    return RED_UNDEFINED;
-                case 0b11_01:
-                    return UNDEFINED_BLUE;
-                case 0b11_10:
-                    return UNDEFINED_RED;
-                case 0b11_11:
-                    return UNDEFINED_UNDEFINED;
-                default:
-                    throw new IllegalArgumentException("Not a valid number state.");
+            BeaconState state = numberState >= 0 && numberState < TABLE_SIZE ? BY_NUMBER_STATE[numberState] : null;
+            if (state == null) {
+                throw new IllegalArgumentException("Not a valid number state.");
             }
+            return state;
         }
 
         public BeaconState getBackState() {
-            if (numberState <= 0b00_11) {
+            BeaconState back = BACK_STATES[numberState];
+            if (back == null) {
                 throw new IllegalArgumentException("Not Merged!");
             }
-
-            return getFromNumberState(numberState >> 2);
+            return back;
         }
 
         public BeaconState getFrontState() {
-            if (numberState <= 0b00_11) {
+            BeaconState front = FRONT_STATES[numberState];
+            if (front == null) {
                 throw new IllegalArgumentException("Not Merged!");
             }
-
-            return getFromNumberState(numberState & 0b00_11);
+            return front;
         }
 
         public boolean containsUndefined() {
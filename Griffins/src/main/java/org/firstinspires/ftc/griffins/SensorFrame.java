@@ -0,0 +1,159 @@
+package org.firstinspires.ftc.griffins;
+
+import com.qualcomm.hardware.modernrobotics.ModernRoboticsI2cGyro;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DigitalChannel;
+
+/**
+ * The robot's encoders, gyro and loader switch for one control cycle.
+ * {@link RobotHardware#updateSensorFrame()} starts a new cycle, and each sensor is read the first time
+ * it is asked for in the cycle, so a sensor is read at most once per cycle, and a loop that only needs
+ * the drive encoders and the gyro does not pay for the shooter, turret and switch reads.
+ * <p/>
+ * RobotHardware keeps one frame and starts every cycle on it, so nothing is allocated per cycle.
+ * Read it on the thread that updates it, and do not keep values from it past the next update.
+ */
+
+public class SensorFrame {
+
+    // the bits of the sensors that have been read in the current cycle
+    private static final int LEFT_DRIVE = 1;
+    private static final int RIGHT_DRIVE = 1 << 1;
+    private static final int SHOOTER_LEFT = 1 << 2;
+    private static final int SHOOTER_RIGHT = 1 << 3;
+    private static final int TURRET = 1 << 4;
+    private static final int GYRO_INTEGRATED_Z = 1 << 5;
+    private static final int GYRO_HEADING = 1 << 6;
+    private static final int LOADER_SWITCH = 1 << 7;
+
+    private final DcMotor leftDrive;
+    private final DcMotor rightDrive;
+    private final DcMotor shooterLeft;
+    private final DcMotor shooterRight;
+    private final DcMotor turret;
+    private final ModernRoboticsI2cGyro gyro;
+    private final DigitalChannel loaderSwitch;
+
+    private long timestamp;
+    private int readSensors;
+    private int readCount;
+
+    private int leftDrivePosition;
+    private int rightDrivePosition;
+    private int shooterLeftPosition;
+    private int shooterRightPosition;
+    private int turretPosition;
+    private int gyroIntegratedZValue;
+    private int gyroHeading;
+    private boolean loaderSwitchPressed;
+
+    /**
+     * @param loaderSwitch the loader limit switch, or null if it is not configured
+     */
+    public SensorFrame(DcMotor leftDrive, DcMotor rightDrive, DcMotor shooterLeft, DcMotor shooterRight,
+                       DcMotor turret, ModernRoboticsI2cGyro gyro, DigitalChannel loaderSwitch) {
+        this.leftDrive = leftDrive;
+        this.rightDrive = rightDrive;
+        this.shooterLeft = shooterLeft;
+        this.shooterRight = shooterRight;
+        this.turret = turret;
+        this.gyro = gyro;
+        this.loaderSwitch = loaderSwitch;
+    }
+
+    /**
+     * Forgets the values of the last cycle, they are read again when they are next asked for.
+     *
+     * @param timestamp the {@link Clock#now()} at which the cycle starts
+     */
+    void startCycle(long timestamp) {
+        this.timestamp = timestamp;
+        readSensors = 0;
+    }
+
+    /**
+     * @return the {@link Clock#now()} at which the cycle started
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLeftDrivePosition() {
+        if ((readSensors & LEFT_DRIVE) == 0) {
+            leftDrivePosition = leftDrive.getCurrentPosition();
+            markRead(LEFT_DRIVE);
+        }
+        return leftDrivePosition;
+    }
+
+    public int getRightDrivePosition() {
+        if ((readSensors & RIGHT_DRIVE) == 0) {
+            rightDrivePosition = rightDrive.getCurrentPosition();
+            markRead(RIGHT_DRIVE);
+        }
+        return rightDrivePosition;
+    }
+
+    public int getShooterLeftPosition() {
+        if ((readSensors & SHOOTER_LEFT) == 0) {
+            shooterLeftPosition = shooterLeft.getCurrentPosition();
+            markRead(SHOOTER_LEFT);
+        }
+        return shooterLeftPosition;
+    }
+
+    public int getShooterRightPosition() {
+        if ((readSensors & SHOOTER_RIGHT) == 0) {
+            shooterRightPosition = shooterRight.getCurrentPosition();
+            markRead(SHOOTER_RIGHT);
+        }
+        return shooterRightPosition;
+    }
+
+    public int getTurretPosition() {
+        if ((readSensors & TURRET) == 0) {
+            turretPosition = turret.getCurrentPosition();
+            markRead(TURRET);
+        }
+        return turretPosition;
+    }
+
+    public int getGyroIntegratedZValue() {
+        if ((readSensors & GYRO_INTEGRATED_Z) == 0) {
+            gyroIntegratedZValue = gyro.getIntegratedZValue();
+            markRead(GYRO_INTEGRATED_Z);
+        }
+        return gyroIntegratedZValue;
+    }
+
+    public int getGyroHeading() {
+        if ((readSensors & GYRO_HEADING) == 0) {
+            gyroHeading = gyro.getHeading();
+            markRead(GYRO_HEADING);
+        }
+        return gyroHeading;
+    }
+
+    /**
+     * @return the state of the loader limit switch, false if the switch is not configured
+     */
+    public boolean isLoaderSwitchPressed() {
+        if ((readSensors & LOADER_SWITCH) == 0) {
+            loaderSwitchPressed = loaderSwitch != null && loaderSwitch.getState();
+            markRead(LOADER_SWITCH);
+        }
+        return loaderSwitchPressed;
+    }
+
+    private void markRead(int sensor) {
+        readSensors |= sensor;
+        readCount++;
+    }
+
+    /**
+     * @return the number of sensor reads since the frame was made, to check what a loop costs
+     */
+    public int getReadCount() {
+        return readCount;
+    }
+}
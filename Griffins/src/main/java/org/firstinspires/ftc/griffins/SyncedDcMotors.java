@@ -39,6 +39,18 @@ public class SyncedDcMotors implements DcMotor {
         setDirection(direction);
     }
 
+    //note it is illegal to pass zero motors
+    public SyncedDcMotors(DcMotor.Direction direction, int directionPattern, DcMotor... motors) {
+        if (motors.length == 0) {
+            throw new IllegalArgumentException("can not take 0 motors");
+        }
+
+        this.directionPattern = directionPattern;
+        this.motors = motors.clone();
+
+        setDirection(direction);
+    }
+
     @Override
     public Manufacturer getManufacturer() {
         return null;
@@ -192,6 +204,17 @@ public class SyncedDcMotors implements DcMotor {
         return motors[0].getCurrentPosition();
     }
 
+    /**
+     * @return the average encoder position of all the motors, unlike getCurrentPosition, which only reads the first motor
+     */
+    public double getAveragePosition() {
+        int sum = 0;
+        for (DcMotor motor : motors) {
+            sum += motor.getCurrentPosition();
+        }
+        return sum / (double) motors.length;
+    }
+
     @Override
     public void setMode(RunMode mode) {
         for (DcMotor motor : motors) {
@@ -1,8 +1,14 @@
 package org.firstinspires.ftc.griffins;
 
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.util.RobotLog;
 
 import org.firstinspires.ftc.griffins.RobotHardware.BeaconState;
+import org.firstinspires.ftc.robotcore.external.Func;
+import org.firstinspires.ftc.robotcore.internal.AppUtil;
+
+import java.io.File;
+import java.io.IOException;
 
 import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.BLUE;
 import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.RED;
@@ -10,9 +16,14 @@ import static org.firstinspires.ftc.griffins.RobotHardware.BeaconState.UNDEFINED
 
 /**
  * Created by David on 11/26/2016.
+ * Pressing y on the drive gamepad during init records the run with a {@link DriveRecorder},
+ * so it can be driven again as the Replay Auto.
  */
 public abstract class TeleOp extends OpMode {
 
+    // the driver station only needs a few updates a second, the loop runs much faster
+    public static final int TELEMETRY_INTERVAL_MILLISECONDS = 250;
+
     protected BeaconState alliance;
     private RobotHardware hardware;
 
@@ -20,6 +31,24 @@ public abstract class TeleOp extends OpMode {
     private boolean rightBumper;
     private boolean leftBumper;
 
+    private final LoopHistogram loopTime = LoopHistogram.get("TeleOp loop");
+    private final LoopHistogram loopPeriod = LoopHistogram.get("TeleOp period");
+    private long lastLoopStart;
+    private boolean showLoopTimes;
+    private boolean backButton;
+
+    private final DriveRecorder driveRecorder = new DriveRecorder();
+    private boolean recordDrive;
+    private boolean yButton;
+
+    // the last commands sent, kept for the telemetry to show when it is sent
+    private double leftDrivePower;
+    private double rightDrivePower;
+    private double shooterPower;
+    private double intakeSpeed;
+    private double loaderPower;
+    private String particle = "No Particle";
+
     @Override
     public void init() {
         hardware = new RobotHardware();
@@ -32,11 +61,107 @@ public abstract class TeleOp extends OpMode {
         gamepad2.setJoystickDeadzone(0.1f);
 
         driveMode = DriveState.NORMAL;
+
+        telemetry.setMsTransmissionInterval(TELEMETRY_INTERVAL_MILLISECONDS);
+        composeTelemetry();
+    }
+
+    /**
+     * Adds the driver station lines once, as functions, so they are only formatted when the telemetry is sent,
+     * not every loop. The color values come from the pollers' latest samples, so showing them does not read the sensors.
+     */
+    private void composeTelemetry() {
+        telemetry.addData("Time(current:remaining)", new Func<String>() {
+            @Override
+            public String value() {
+                int time = (int) getRuntime();
+                return time + ":" + (120 - time);
+            }
+        });
+        telemetry.addData("Particle Being Loaded", new Func<String>() {
+            @Override
+            public String value() {
+                return particle;
+            }
+        });
+        telemetry.addData("Left Drive Speed", new Func<Double>() {
+            @Override
+            public Double value() {
+                return leftDrivePower;
+            }
+        });
+        telemetry.addData("Right Drive Speed", new Func<Double>() {
+            @Override
+            public Double value() {
+                return rightDrivePower;
+            }
+        });
+        telemetry.addData("Intake Speed", new Func<Double>() {
+            @Override
+            public Double value() {
+                return intakeSpeed;
+            }
+        });
+        telemetry.addData("Loader Speed", new Func<Double>() {
+            @Override
+            public Double value() {
+                return loaderPower;
+            }
+        });
+        telemetry.addData("Shooter Speed", new Func<Double>() {
+            @Override
+            public Double value() {
+                return shooterPower;
+            }
+        });
+        telemetry.addData("Writes Saved/s", new Func<Double>() {
+            @Override
+            public Double value() {
+                return hardware.getActuatorCache().getWritesSavedPerSecond();
+            }
+        });
+        telemetry.addData("gamepad 1", new Func<String>() {
+            @Override
+            public String value() {
+                return gamepad1.toString();
+            }
+        });
+        telemetry.addData("gamepad 2", new Func<String>() {
+            @Override
+            public String value() {
+                return gamepad2.toString();
+            }
+        });
+        telemetry.addData("left sensor data(a b r g)", new Func<ColorSample>() {
+            @Override
+            public ColorSample value() {
+                return hardware.getLeftButtonPusherColorPoller().getLatestSample();
+            }
+        });
+        telemetry.addData("Right sensor data(a b r g)", new Func<ColorSample>() {
+            @Override
+            public ColorSample value() {
+                return hardware.getRightButtonPusherColorPoller().getLatestSample();
+            }
+        });
+        telemetry.addData("Loader sensor data(a b r g)", new Func<ColorSample>() {
+            @Override
+            public ColorSample value() {
+                return hardware.getLoaderColorPoller().getLatestSample();
+            }
+        });
     }
 
     @Override
     public void init_loop() {
         telemetry.addData("Ready for Teleop", !hardware.getTurretGyro().isCalibrating());
+
+        // y toggles recording the run
+        if (gamepad1.y && !yButton) {
+            recordDrive = !recordDrive;
+        }
+        yButton = gamepad1.y;
+        telemetry.addData("Record drive (y)", recordDrive);
     }
 
     @Override
@@ -44,20 +169,34 @@ public abstract class TeleOp extends OpMode {
         super.start();
         this.resetStartTime();
         hardware.startTurretTracking();
+        hardware.getActuatorCache().setDeferred(true);
+        telemetry.clear(); // only the init lines, the composed lines are retained
+        LoopHistogram.resetAll();
+
+        if (recordDrive) {
+            try {
+                driveRecorder.start(new File(AppUtil.ROBOT_SETTINGS, DriveRecorder.FILE_NAME));
+                telemetry.log().add("recording the drive");
+            } catch (IOException e) {
+                RobotLog.ee("TeleOp", "could not open the drive recording: %s", e.getMessage());
+                telemetry.log().add("not recording: " + e.getMessage());
+            }
+        }
+        lastLoopStart = System.nanoTime();
     }
 
     @Override
     public void loop() {
-        double leftDrivePower;
-        double rightDrivePower;
-        double shooterPower;
-        double intakeSpeed;
-        double loaderPower;
+        long loopStart = System.nanoTime();
+        loopPeriod.record(loopStart - lastLoopStart);
+        lastLoopStart = loopStart;
+        // updating the frame reads the drive encoders and the gyro for the odometry, only the drive recording needs them
+        SensorFrame frame = driveRecorder.isRecording() ? hardware.updateSensorFrame() : null;
+
         double targetTurretSpeed;
         BeaconState beaconPushState;
         double beaconPushRatio;
         boolean turretState;
-        String particle;
 
 
         { //gamepad 1 controls
@@ -73,6 +212,12 @@ public abstract class TeleOp extends OpMode {
                 driveMode = DriveState.RIGHT_WALL;
             }
 
+            // back toggles the loop timing telemetry
+            if (gamepad1.back && !backButton) {
+                showLoopTimes = !showLoopTimes;
+            }
+            backButton = gamepad1.back;
+
             if (gamepad1.right_bumper) {
                 leftDrivePower *= .7;
                 rightDrivePower = leftDrivePower * 0.6;
@@ -150,35 +295,31 @@ public abstract class TeleOp extends OpMode {
             hardware.setLoaderPower(loaderPower);
             hardware.extendButtonPusher(beaconPushRatio);
             hardware.setTurretRotation(targetTurretSpeed, turretState);
+            hardware.getActuatorCache().flush();
         } //end send hardware commands
 
+        if (frame != null) {
+            driveRecorder.record(gamepad1, frame, leftDrivePower, rightDrivePower,
+                    intakeSpeed, loaderPower, shooterPower, beaconPushRatio);
+        }
+
 
         { //send telemetry commands
-            int time = (int) getRuntime();
-            telemetry.addData("Time(current:remaining)", time + ":" + (120 - time));
-            telemetry.addData("Particle Being Loaded", particle);
-            telemetry.addData("Left Drive Speed", leftDrivePower);
-            telemetry.addData("Right Drive Speed", rightDrivePower);
-            telemetry.addData("Intake Speed", intakeSpeed);
-            telemetry.addData("Loader Speed", loaderPower);
-            telemetry.addData("Shooter Speed", shooterPower);
-            telemetry.addData("gamepad 1", gamepad1);
-            telemetry.addData("gamepad 2", gamepad2);
-            telemetry.addData("left sensor data(a b r g)", hardware.getLeftButtonPusherColorSensor().alpha() + " " +
-                    hardware.getLeftButtonPusherColorSensor().blue() + " " + hardware.getLeftButtonPusherColorSensor().red() +
-                    " " + hardware.getLeftButtonPusherColorSensor().green());
-            telemetry.addData("Right sensor data(a b r g)", hardware.getRightButtonPusherColorSensor().alpha() + " " +
-                    hardware.getRightButtonPusherColorSensor().blue() + " " + hardware.getRightButtonPusherColorSensor().red() +
-                    " " + hardware.getRightButtonPusherColorSensor().green());
-            telemetry.addData("Loader sensor data(a b r g)", hardware.getLoaderColorSensor().alpha() + " " +
-                    hardware.getLoaderColorSensor().blue() + " " + hardware.getLoaderColorSensor().red() +
-                    " " + hardware.getLoaderColorSensor().green());
+            // the composed lines read the fields above when the telemetry is sent
+            if (showLoopTimes) {
+                LoopHistogram.addTelemetry(telemetry);
+            }
         } //end send telemetry commands
+
+        loopTime.recordSince(loopStart);
     }
 
     @Override
     public void stop() {
         hardware.retractButtonPusher();
+        hardware.getActuatorCache().setDeferred(false);
+        driveRecorder.stop();
+        LoopHistogram.dumpAll("teleop-loop-times.csv");
     }
 
     public enum DriveState {
@@ -0,0 +1,83 @@
+package org.firstinspires.ftc.griffins.Testing;
+
+import android.os.Debug;
+
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.griffins.Filter;
+import org.firstinspires.ftc.griffins.GriffinAccelerationIntegratorLowPass;
+import org.firstinspires.ftc.griffins.LowPassFilter;
+import org.firstinspires.ftc.griffins.RingBufferLowPassFilter;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares LowPassFilter with RingBufferLowPassFilter: time and allocations per sample,
+ * and how far the running average has drifted from the exact average of the window after a long run.
+ * Does not need any hardware, the samples are fake accelerometer readings.
+ */
+@Autonomous(group = "test")
+@Disabled
+public class FilterBenchmark extends LinearOpMode {
+    private static final int WINDOW = GriffinAccelerationIntegratorLowPass.FILTER_WINDOW_SIZE;
+    private static final int SAMPLES = 100000;
+    private static final int DRIFT_SAMPLES = 2000000; // a bit more than a match of IMU samples on three axes
+
+    private double[] samples;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        Random random = new Random(0);
+        samples = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // gravity sized offset and noise, so the low order bits are lost when adding and subtracting
+            samples[i] = 9.8 + random.nextGaussian() * 0.3;
+        }
+
+        waitForStart();
+
+        benchmark("LowPassFilter", new LowPassFilter(WINDOW));
+        benchmark("RingBufferLowPassFilter", new RingBufferLowPassFilter(WINDOW));
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private void benchmark(String name, Filter filter) {
+        // warm up, so class loading and compilation are not counted
+        for (int i = 0; i < SAMPLES && opModeIsActive(); i++) {
+            filter.processValue(samples[i]);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            filter.processValue(samples[i]);
+        }
+        long elapsed = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        for (int i = 0; i < DRIFT_SAMPLES && opModeIsActive(); i++) {
+            filter.processValue(samples[i % SAMPLES]);
+        }
+        double exactSum = 0;
+        for (int i = DRIFT_SAMPLES - WINDOW; i < DRIFT_SAMPLES; i++) {
+            exactSum += samples[i % SAMPLES];
+        }
+        double drift = Math.abs(filter.getProcessedValue() - exactSum / WINDOW);
+
+        log(String.format(Locale.ENGLISH, "%s: %.1f ns/sample, %.2f allocations/sample, drift %.3g",
+                name, elapsed / (double) SAMPLES, allocations / (double) SAMPLES, drift));
+    }
+
+    public void log(String message) {
+        telemetry.log().add(message);
+        telemetry.update();
+    }
+}
@@ -0,0 +1,86 @@
+package org.firstinspires.ftc.griffins.Testing;
+
+import android.os.Debug;
+
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.griffins.Navigation.DoubleSource;
+import org.firstinspires.ftc.griffins.Navigation.PIDController;
+import org.firstinspires.ftc.robotcore.external.Func;
+
+/**
+ * Counts the objects allocated by PIDController samples, with a DoubleSource and with a boxed Func source.
+ * Does not need any hardware, the sources read a fake sensor value.
+ */
+@Autonomous(group = "test")
+@Disabled
+public class PIDAllocationTest extends LinearOpMode {
+    private static final int SAMPLES = 10000;
+
+    private double sensorValue;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        PIDController primitiveController = new PIDController(0.01, 0.001, 0.01, 1, new DoubleSource() {
+            @Override
+            public double value() {
+                return sensorValue;
+            }
+        }, null);
+        PIDController boxedController = new PIDController(0.01, 0.001, 0.01, 1, new Func<Double>() {
+            @Override
+            public Double value() {
+                return sensorValue;
+            }
+        }, null);
+        PIDController timeBasedController = new PIDController(0.01, 0.001, 0.01, 1, new DoubleSource() {
+            @Override
+            public double value() {
+                return sensorValue;
+            }
+        }, null);
+        timeBasedController.setTimeBased(true);
+        timeBasedController.setOutputRange(-1, 1);
+
+        waitForStart();
+
+        int primitiveAllocations = countAllocations(primitiveController);
+        int boxedAllocations = countAllocations(boxedController);
+        int timeBasedAllocations = countAllocations(timeBasedController);
+
+        log("DoubleSource: " + primitiveAllocations + " allocations in " + SAMPLES + " samples");
+        log("Func<Double>: " + boxedAllocations + " allocations in " + SAMPLES + " samples");
+        log("DoubleSource, time based: " + timeBasedAllocations + " allocations in " + SAMPLES + " samples");
+        log(primitiveAllocations == 0 && timeBasedAllocations == 0 ? "PASSED" : "FAILED");
+
+        while (opModeIsActive()) {
+            idle();
+        }
+    }
+
+    private int countAllocations(PIDController controller) {
+        controller.setSetPoint(50);
+        // warm up, so class loading is not counted
+        for (int i = 0; i < 100; i++) {
+            sensorValue = i;
+            controller.sendPIDOutput();
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < SAMPLES; i++) {
+            sensorValue = i % 100;
+            controller.sendPIDOutput();
+        }
+        Debug.stopAllocCounting();
+
+        return Debug.getThreadAllocCount();
+    }
+
+    public void log(String message) {
+        telemetry.log().add(message);
+        telemetry.update();
+    }
+}
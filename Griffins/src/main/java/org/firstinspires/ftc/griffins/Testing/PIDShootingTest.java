@@ -21,7 +21,7 @@ public class PIDShootingTest extends LinearOpMode {
 
         robot.setLoaderPower(1);
 
-       String string = autoFunctions.shootPIDtoString(7);
+       String string = autoFunctions.shootPIDtoString(AutoFunctions.SHOOTING_RPM);
         log("finished shot");
         FileOutput.outputFile("liveShootingData.csv", string);
 
@@ -77,6 +77,8 @@ public class TestingRegister {
 
         manager.register("PID Driving Test", PIDDriveTest.class);
         manager.register("PID Turning Test", PIDTurnTest.class);
+        manager.register("PID Allocation Test", PIDAllocationTest.class);
+        manager.register("Filter Benchmark", FilterBenchmark.class);
 
         manager.register("Beacon Pushing Test", BeaconTest.class);
         manager.register("Beacon Scanning Test", BeaconScan.class);
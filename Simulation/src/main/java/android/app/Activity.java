@@ -0,0 +1,10 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stands in for the Android class on the JVM, only referenced by the SDK, never created.
+ */
+
+public class Activity extends Context {
+}
@@ -0,0 +1,14 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stands in for the Android class on the JVM, only referenced by the SDK, never created.
+ */
+
+public class Application extends Context {
+
+    // AppUtil's activity monitor implements it, so it has to load before AppUtil's constants can be read
+    public interface ActivityLifecycleCallbacks {
+    }
+}
@@ -0,0 +1,8 @@
+package android.content;
+
+/**
+ * Stands in for the Android class on the JVM, the simulation never has a context.
+ */
+
+public abstract class Context {
+}
@@ -0,0 +1,28 @@
+package android.graphics;
+
+/**
+ * Stands in for the Android class on the JVM, with the color packing the color sensors use.
+ */
+
+public class Color {
+
+    public static int argb(int alpha, int red, int green, int blue) {
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    public static int red(int color) {
+        return (color >> 16) & 0xFF;
+    }
+
+    public static int green(int color) {
+        return (color >> 8) & 0xFF;
+    }
+
+    public static int blue(int color) {
+        return color & 0xFF;
+    }
+
+    public static int alpha(int color) {
+        return color >>> 24;
+    }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * Stands in for the Android class on the JVM, the "external storage" is the temporary directory.
+ */
+
+public class Environment {
+
+    public static File getExternalStorageDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+}
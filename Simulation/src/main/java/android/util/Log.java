@@ -0,0 +1,96 @@
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Stands in for the Android class on the JVM, RobotLog ends up here. Warnings and errors go to standard error,
+ * the rest is dropped unless the "simulation.verbose" system property is set.
+ */
+
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private static final boolean VERBOSE_OUTPUT = Boolean.getBoolean("simulation.verbose");
+
+    private Log() {
+    }
+
+    public static int println(int priority, String tag, String message) {
+        if (priority >= WARN || VERBOSE_OUTPUT) {
+            System.err.println(tag + ": " + message);
+        }
+        return 0;
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return level >= WARN || VERBOSE_OUTPUT;
+    }
+
+    public static String getStackTraceString(Throwable throwable) {
+        if (throwable == null) {
+            return "";
+        }
+        StringWriter writer = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+
+    public static int v(String tag, String message) {
+        return println(VERBOSE, tag, message);
+    }
+
+    public static int v(String tag, String message, Throwable throwable) {
+        return println(VERBOSE, tag, message + '\n' + getStackTraceString(throwable));
+    }
+
+    public static int d(String tag, String message) {
+        return println(DEBUG, tag, message);
+    }
+
+    public static int d(String tag, String message, Throwable throwable) {
+        return println(DEBUG, tag, message + '\n' + getStackTraceString(throwable));
+    }
+
+    public static int i(String tag, String message) {
+        return println(INFO, tag, message);
+    }
+
+    public static int i(String tag, String message, Throwable throwable) {
+        return println(INFO, tag, message + '\n' + getStackTraceString(throwable));
+    }
+
+    public static int w(String tag, String message) {
+        return println(WARN, tag, message);
+    }
+
+    public static int w(String tag, String message, Throwable throwable) {
+        return println(WARN, tag, message + '\n' + getStackTraceString(throwable));
+    }
+
+    public static int w(String tag, Throwable throwable) {
+        return println(WARN, tag, getStackTraceString(throwable));
+    }
+
+    public static int e(String tag, String message) {
+        return println(ERROR, tag, message);
+    }
+
+    public static int e(String tag, String message, Throwable throwable) {
+        return println(ERROR, tag, message + '\n' + getStackTraceString(throwable));
+    }
+
+    public static int wtf(String tag, String message) {
+        return println(ASSERT, tag, message);
+    }
+
+    public static int wtf(String tag, String message, Throwable throwable) {
+        return println(ASSERT, tag, message + '\n' + getStackTraceString(throwable));
+    }
+}
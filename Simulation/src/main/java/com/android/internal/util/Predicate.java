@@ -0,0 +1,9 @@
+package com.android.internal.util;
+
+/**
+ * Stands in for the Android class on the JVM, the SDK's telemetry uses it.
+ */
+
+public interface Predicate<T> {
+    boolean apply(T t);
+}
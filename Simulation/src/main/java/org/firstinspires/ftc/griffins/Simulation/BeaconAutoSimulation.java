@@ -0,0 +1,124 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import org.firstinspires.ftc.griffins.BeaconAuto;
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+import org.firstinspires.ftc.griffins.Navigation.Odometry;
+import org.firstinspires.ftc.griffins.Navigation.PoseFusion;
+import org.firstinspires.ftc.griffins.RobotHardware;
+
+import java.util.Random;
+
+/**
+ * Runs the beacon autonomous on the simulated robot and field, and prints where the robot ended up,
+ * which beacons it claimed, and how far the odometry and the fused pose were from where it really was.
+ * <p/>
+ * Usage: BeaconAutoSimulation [blue|red] [random seed] [telemetry] [realtime] [novision]
+ * The match runs on a {@link SimClock}, so it takes as long as the computing does, realtime runs it on the wall clock instead.
+ * The robot starts at {@link BeaconAuto}'s start pose, and a {@link SimCamera} sees the beacons' targets, unless novision
+ * leaves it out. The seed picks the beacon colors and the camera's errors, so a failing run can be repeated,
+ * though not always to the last fraction of an inch, see {@link SimClock}.
+ */
+
+public class BeaconAutoSimulation {
+
+    public static final double AUTONOMOUS_SECONDS = 30;
+    public static final double INIT_SECONDS = 2;
+    public static final double POSE_SAMPLE_PERIOD_MILLISECONDS = 100;
+
+    // the blue beacons, the red ones are mirrored across the middle of the field
+    public static final double NEAR_BEACON_X = 62;
+    public static final double FAR_BEACON_X = 110;
+
+    public static void main(String[] args) {
+        boolean blue = args.length < 1 || args[0].equalsIgnoreCase("blue");
+        long seed = args.length < 2 ? System.currentTimeMillis() : Long.parseLong(args[1]);
+        boolean printTelemetry = false;
+        boolean realTime = false;
+        boolean vision = true;
+        for (int i = 2; i < args.length; i++) {
+            printTelemetry |= args[i].equalsIgnoreCase("telemetry");
+            realTime |= args[i].equalsIgnoreCase("realtime");
+            vision &= !args[i].equalsIgnoreCase("novision");
+        }
+        // the clock must be set before anything reads it
+        if (!realTime) {
+            Clock.set(new SimClock());
+        }
+
+        SimField field = new SimField();
+        Random random = new Random(seed);
+        SimField.Beacon nearBeacon = field.addRandomBeacon(mirror(NEAR_BEACON_X, blue), random);
+        SimField.Beacon farBeacon = field.addRandomBeacon(mirror(FAR_BEACON_X, blue), random);
+
+        final SimRobot robot = new SimRobot(field, mirror(BeaconAuto.START_X, blue), BeaconAuto.START_Y,
+                blue ? BeaconAuto.START_HEADING : 180 - BeaconAuto.START_HEADING);
+        System.out.println((blue ? "Blue" : "Red") + " beacon auto, seed " + seed);
+        System.out.println("Start: " + robot);
+        System.out.println("Beacons: " + nearBeacon + "; " + farBeacon);
+
+        final BeaconAuto opMode = new SimBeaconAuto(blue, vision ? new SimCamera(robot, seed, blue) : null);
+        SimHardwareMap hardwareMap = new SimHardwareMap(robot);
+        OpModeRunner runner = new OpModeRunner(opMode, hardwareMap);
+        runner.setPrintTelemetry(printTelemetry);
+
+        // the odometry and fused position errors, and the number of samples, from when the auto puts the odometry on the field
+        final double[] errorSums = new double[3];
+        final ControlLoopExecutor poseSampler = new ControlLoopExecutor(POSE_SAMPLE_PERIOD_MILLISECONDS);
+        runner.setMatchEndTask(new Runnable() {
+            @Override
+            public void run() {
+                poseSampler.stop();
+                robot.stop();
+            }
+        });
+
+        long realStartTime = System.nanoTime();
+        robot.start();
+        poseSampler.start(new Runnable() {
+            @Override
+            public void run() {
+                RobotHardware hardware = opMode.getHardware();
+                if (hardware != null && hardware.getOdometry().getPoseSetCount() > 0) {
+                    Odometry odometry = hardware.getOdometry();
+                    PoseFusion fusion = hardware.getPoseFusion();
+                    errorSums[0] += Math.hypot(odometry.getX() - robot.getX(), odometry.getY() - robot.getY());
+                    errorSums[1] += Math.hypot(fusion.getX() - robot.getX(), fusion.getY() - robot.getY());
+                    errorSums[2]++;
+                }
+            }
+        });
+        double runTime;
+        try {
+            runTime = runner.run(INIT_SECONDS, AUTONOMOUS_SECONDS);
+        } finally {
+            poseSampler.stop();
+            robot.stop();
+        }
+
+        SimField.Color alliance = blue ? SimField.Color.BLUE : SimField.Color.RED;
+        int claimed = 0;
+        for (SimField.Beacon beacon : field.getBeacons()) {
+            if (beacon.getClaimedColor() == alliance) {
+                claimed++;
+            }
+        }
+
+        System.out.println(String.format("Ran for %.1f s in %.1f s of real time", runTime, (System.nanoTime() - realStartTime) / 1e9));
+        System.out.println("End: " + robot);
+        System.out.println("Beacons: " + nearBeacon + "; " + farBeacon);
+        System.out.println("Claimed " + claimed + " of " + field.getBeacons().size() + " beacons with " +
+                robot.getButtonPresses() + " presses");
+        PoseFusion fusion = opMode.getHardware().getPoseFusion();
+        System.out.println(String.format("Mean position error: odometry %.2f in, fused %.2f in, %d vision poses applied, %d rejected, %d reacquired",
+                errorSums[0] / errorSums[2], errorSums[1] / errorSums[2], fusion.getAppliedCount(), fusion.getRejectedCount(),
+                fusion.getReacquiredCount()));
+
+        // the op mode's threads may still be winding down
+        System.exit(claimed == field.getBeacons().size() ? 0 : 1);
+    }
+
+    private static double mirror(double x, boolean blue) {
+        return blue ? x : SimField.FIELD_SIZE - x;
+    }
+}
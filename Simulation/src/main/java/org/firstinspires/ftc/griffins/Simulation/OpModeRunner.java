@@ -0,0 +1,162 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.robocol.TelemetryMessage;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Runs an op mode the way the robot controller's event loop does: init, init_loop until the start,
+ * then loop until the op mode stops itself or the time runs out, then stop.
+ * <p/>
+ * The op mode talks to the event loop through a package private interface, the runner stands in for it with a proxy,
+ * printing the telemetry the op mode sends and ending the run when the op mode asks to stop.
+ */
+
+public class OpModeRunner {
+
+    public static final double LOOP_PERIOD_MILLISECONDS = 10;
+    private static final String OP_MODE_SERVICES = "com.qualcomm.robotcore.eventloop.opmode.OpModeServices";
+
+    private final OpMode opMode;
+    private final ControlLoopExecutor eventLoop = new ControlLoopExecutor(LOOP_PERIOD_MILLISECONDS);
+    private Method postInitLoop;
+    private Method postLoop;
+    private volatile boolean stopRequested;
+    private boolean printTelemetry;
+    private Runnable matchEndTask;
+    private long startTime;
+
+    public OpModeRunner(OpMode opMode, HardwareMap hardwareMap) {
+        this.opMode = opMode;
+        opMode.hardwareMap = hardwareMap;
+        // the event loop hands every op mode the gamepads, here they stay centered unless the caller moves them
+        opMode.gamepad1 = new Gamepad();
+        opMode.gamepad2 = new Gamepad();
+        installOpModeServices();
+    }
+
+    private void installOpModeServices() {
+        try {
+            Class<?> servicesClass = Class.forName(OP_MODE_SERVICES);
+            Object services = Proxy.newProxyInstance(servicesClass.getClassLoader(), new Class<?>[]{servicesClass}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("refreshUserTelemetry")) {
+                        printTelemetry((TelemetryMessage) args[0]);
+                    } else if (method.getName().equals("requestOpModeStop")) {
+                        stopRequested = true;
+                    }
+                    return null;
+                }
+            });
+
+            Field servicesField = OpMode.class.getDeclaredField("opModeServices");
+            servicesField.setAccessible(true);
+            servicesField.set(opMode, services);
+
+            // the event loop calls these after every init_loop and loop, an iterative op mode's telemetry is sent from them
+            postInitLoop = OpMode.class.getDeclaredMethod("postInitLoop");
+            postInitLoop.setAccessible(true);
+            postLoop = OpMode.class.getDeclaredMethod("postLoop");
+            postLoop.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("This version of the SDK can not be run outside the robot controller", e);
+        }
+    }
+
+    private void invoke(Method method) {
+        try {
+            method.invoke(opMode);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void printTelemetry(TelemetryMessage message) {
+        if (printTelemetry) {
+            StringBuilder builder = new StringBuilder(String.format("[%7.3f]", getSeconds()));
+            for (Map.Entry<String, String> entry : message.getDataStrings().entrySet()) {
+                // the log lines have unprintable keys that only keep them in order
+                String key = entry.getKey();
+                if (!key.isEmpty() && !Character.isISOControl(key.charAt(0))) {
+                    builder.append(' ').append(key).append(':');
+                }
+                builder.append(' ').append(entry.getValue()).append(';');
+            }
+            System.out.println(builder);
+        }
+    }
+
+    /**
+     * @param printTelemetry true to print every telemetry update to standard out
+     */
+    public void setPrintTelemetry(boolean printTelemetry) {
+        this.printTelemetry = printTelemetry;
+    }
+
+    /**
+     * @param matchEndTask run once the op mode is done, before it is stopped. The op mode's stop waits for its threads
+     *                     on the wall clock, so on a {@link SimClock} anything that should end with the match, like the
+     *                     robot's physics, is stopped here, or it runs on for however long that takes.
+     */
+    public void setMatchEndTask(Runnable matchEndTask) {
+        this.matchEndTask = matchEndTask;
+    }
+
+    /**
+     * @return the seconds since the op mode was initialized
+     */
+    public double getSeconds() {
+        return Clock.secondsSince(startTime);
+    }
+
+    /**
+     * Runs the op mode through a whole match.
+     *
+     * @param initSeconds how long to wait between init and start
+     * @param runSeconds  how long the op mode runs, if it does not stop itself
+     * @return the seconds the op mode ran after the start
+     */
+    public double run(double initSeconds, double runSeconds) {
+        startTime = Clock.now();
+        stopRequested = false;
+
+        opMode.init();
+        eventLoop.reset();
+        while (getSeconds() < initSeconds && !stopRequested) {
+            opMode.init_loop();
+            invoke(postInitLoop);
+            eventLoop.waitForNextCycle();
+        }
+
+        double startSeconds = getSeconds();
+        opMode.resetStartTime();
+        opMode.start();
+        eventLoop.reset();
+        while (getSeconds() - startSeconds < runSeconds && !stopRequested) {
+            opMode.loop();
+            invoke(postLoop);
+            eventLoop.waitForNextCycle();
+        }
+        double runTime = getSeconds() - startSeconds;
+
+        if (matchEndTask != null) {
+            matchEndTask.run();
+        }
+        opMode.stop();
+        return runTime;
+    }
+}
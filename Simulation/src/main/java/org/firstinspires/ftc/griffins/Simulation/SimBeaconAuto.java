@@ -0,0 +1,26 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import org.firstinspires.ftc.griffins.BeaconAuto;
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+
+/**
+ * The beacon autonomous of either alliance, like BlueAuto and RedAuto, with a simulated camera in place of Vuforia.
+ */
+
+public class SimBeaconAuto extends BeaconAuto {
+
+    private final VisionSource camera;
+
+    /**
+     * @param camera the vision source, in Vuforia's field frame, or null to drive on the odometry alone
+     */
+    public SimBeaconAuto(boolean blue, VisionSource camera) {
+        this.alliance = blue ? Alliance.BLUE_ALLIANCE : Alliance.RED_ALLIANCE;
+        this.camera = camera;
+    }
+
+    @Override
+    protected VisionSource createVisionSource() {
+        return camera;
+    }
+}
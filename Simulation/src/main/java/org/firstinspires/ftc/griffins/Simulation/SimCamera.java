@@ -0,0 +1,168 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.Navigation.FieldFrameSource;
+import org.firstinspires.ftc.griffins.Navigation.Pose;
+import org.firstinspires.ftc.griffins.Navigation.VisionSource;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The phone camera, standing in for Vuforia as the robot's {@link VisionSource}, with a target above every beacon,
+ * in the order of {@link SimField#getBeacons()}. The camera looks straight ahead, and sees a target that is within
+ * {@link #RANGE_INCHES} and {@link #HALF_FIELD_OF_VIEW} degrees of where it looks, from no more than
+ * {@link #MAX_VIEW_ANGLE} degrees off the front of the target.
+ * <p/>
+ * Like Vuforia it is late and a little off: every call to {@link #process()} gives the robot's pose from
+ * {@link #LATENCY_SECONDS} before, timestamped with that time, with random errors from the seed.
+ * Also like Vuforia, the robot poses are in Vuforia's field frame, so the autonomous turns them into its own
+ * with a {@link FieldFrameSource}, as it does on the robot.
+ */
+
+public class SimCamera implements VisionSource {
+
+    public static final double LATENCY_SECONDS = 0.15;
+    public static final double RANGE_INCHES = 72;
+    public static final double HALF_FIELD_OF_VIEW = 30;
+    public static final double MAX_VIEW_ANGLE = 60;
+    public static final double POSITION_NOISE_INCHES = 0.5;
+    public static final double HEADING_NOISE_DEGREES = 1;
+    // enough of the service's passes to reach back past the latency
+    private static final int HISTORY_SIZE = 32;
+
+    private final SimRobot robot;
+    private final boolean blue;
+    private final List<SimField.Beacon> targets;
+    private final Random random;
+
+    // the robot's true pose at every pass, a ring of historyCount poses that end at historyEnd - 1
+    private final long[] historyTimes = new long[HISTORY_SIZE];
+    private final double[] historyX = new double[HISTORY_SIZE];
+    private final double[] historyY = new double[HISTORY_SIZE];
+    private final double[] historyHeading = new double[HISTORY_SIZE];
+    private int historyEnd;
+    private int historyCount;
+
+    private boolean tracking;
+    private long frameTime;
+    private final boolean[] targetsVisible;
+    private final Pose[] targetRelativePoses;
+    private Pose robotPose;
+
+    /**
+     * @param blue true for the blue alliance, the simulated field is in the autonomous' field frame of the robot's alliance
+     */
+    public SimCamera(SimRobot robot, long seed, boolean blue) {
+        this.robot = robot;
+        this.blue = blue;
+        this.targets = robot.getField().getBeacons();
+        this.random = new Random(seed);
+        targetsVisible = new boolean[targets.size()];
+        targetRelativePoses = new Pose[targets.size()];
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public boolean activateTracking() {
+        tracking = true;
+        return true;
+    }
+
+    @Override
+    public void deactivateTracking() {
+        tracking = false;
+        historyCount = 0;
+        frameTime = 0;
+        robotPose = null;
+        for (int i = 0; i < targets.size(); i++) {
+            targetsVisible[i] = false;
+            targetRelativePoses[i] = null;
+        }
+    }
+
+    @Override
+    public void process() {
+        if (!tracking) {
+            return;
+        }
+
+        long now = Clock.now();
+        historyTimes[historyEnd] = now;
+        historyX[historyEnd] = robot.getX();
+        historyY[historyEnd] = robot.getY();
+        historyHeading[historyEnd] = robot.getHeading();
+        historyEnd = (historyEnd + 1) % HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+
+        // the newest pass that is at least the latency old is the frame the camera has just finished with
+        long captureDeadline = now - (long) (LATENCY_SECONDS * 1e9);
+        int frame = -1;
+        for (int i = 1; i <= historyCount; i++) {
+            int index = (historyEnd + HISTORY_SIZE - i) % HISTORY_SIZE;
+            if (historyTimes[index] <= captureDeadline) {
+                frame = index;
+                break;
+            }
+        }
+        if (frame < 0 || historyTimes[frame] == frameTime) {
+            return;
+        }
+
+        frameTime = historyTimes[frame];
+        double x = historyX[frame];
+        double y = historyY[frame];
+        double heading = historyHeading[frame];
+        boolean anyVisible = false;
+        for (int i = 0; i < targets.size(); i++) {
+            // the targets are on the wall at y = 0, facing the field
+            double dx = targets.get(i).getCenterX() - x;
+            double dy = -y;
+            double bearing = Math.toDegrees(Math.atan2(dy, dx));
+            double viewAngle = Math.toDegrees(Math.atan2(-dx, -dy)); // from the target's front to the camera
+            targetsVisible[i] = Math.hypot(dx, dy) <= RANGE_INCHES && Math.abs(Pose.wrapDegrees(bearing - heading)) <= HALF_FIELD_OF_VIEW
+                    && Math.abs(viewAngle) <= MAX_VIEW_ANGLE;
+            if (targetsVisible[i]) {
+                double radians = Math.toRadians(heading);
+                double forward = dx * Math.cos(radians) + dy * Math.sin(radians);
+                double left = -dx * Math.sin(radians) + dy * Math.cos(radians);
+                targetRelativePoses[i] = new Pose(frameTime, forward, left, Pose.wrapDegrees(90 - heading));
+                anyVisible = true;
+            } else {
+                targetRelativePoses[i] = null;
+            }
+        }
+
+        robotPose = anyVisible ? FieldFrameSource.toVuforiaFrame(new Pose(frameTime, x + random.nextGaussian() * POSITION_NOISE_INCHES,
+                y + random.nextGaussian() * POSITION_NOISE_INCHES, heading + random.nextGaussian() * HEADING_NOISE_DEGREES), blue) : null;
+    }
+
+    @Override
+    public int getTargetCount() {
+        return targets.size();
+    }
+
+    @Override
+    public boolean isTargetVisible(int targetIndex) {
+        return targetsVisible[targetIndex];
+    }
+
+    @Override
+    public long getRobotPoseTime() {
+        return robotPose != null ? robotPose.getTimestamp() : 0;
+    }
+
+    @Override
+    public Pose getRobotPose() {
+        return robotPose;
+    }
+
+    @Override
+    public Pose getTargetRelativePose(int targetIndex) {
+        return targetRelativePoses[targetIndex];
+    }
+}
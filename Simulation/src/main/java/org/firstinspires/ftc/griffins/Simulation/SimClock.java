@@ -0,0 +1,112 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A virtual clock for the simulation, so a run takes as long as the computing does instead of as long as the match.
+ * <p/>
+ * Every thread that has read the clock, like the physics loop, the op mode's event loop and the control loops,
+ * takes part in it. The clock only wakes a thread once every live one of them is either waiting on the clock
+ * or blocked on something else, like the op mode waiting for the start, then it moves straight to the earliest deadline
+ * and wakes that one thread, the one that has taken part longest first when deadlines are equal.
+ * So each thread gets all the time its cycle needs, however slow the computer is, and the threads mostly run in the same
+ * order every time. Threads that never read the clock, like the SDK's own, still run alongside, so two runs with the
+ * same seed can end a little apart.
+ * A thread that keeps running without waiting, like a loop that only calls idle(), would stop the clock,
+ * so the clock moves on anyway once no thread has come back to it for {@link #STALL_NANOSECONDS} of real time.
+ */
+
+public class SimClock extends Clock {
+
+    // where the time starts, 0 is left for timestamps of things that never happened
+    public static final long START_TIME = 1000000000L;
+    public static final long STALL_NANOSECONDS = 100000000;
+    private static final long POLL_MILLISECONDS = 1;
+    // the deadline of a thread that is running
+    private static final long RUNNING = Long.MIN_VALUE;
+
+    private final Object lock = new Object();
+    private volatile long now = START_TIME;
+    // in the order the threads first read the clock
+    private final Map<Thread, Long> deadlines = new LinkedHashMap<>();
+    // threads the clock has woken that have not run yet
+    private final Set<Thread> woken = new HashSet<>();
+    private final ThreadLocal<Boolean> participant = new ThreadLocal<>();
+    // the real time at which a thread last came back to the clock, or the clock last moved
+    private long lastProgressRealTime = System.nanoTime();
+
+    @Override
+    public long nanoTime() {
+        if (participant.get() == null) {
+            participant.set(Boolean.TRUE);
+            synchronized (lock) {
+                deadlines.put(Thread.currentThread(), RUNNING);
+            }
+        }
+        return now;
+    }
+
+    @Override
+    public void sleepUntil(long deadline) throws InterruptedException {
+        Thread thread = Thread.currentThread();
+        participant.set(Boolean.TRUE);
+        synchronized (lock) {
+            lastProgressRealTime = System.nanoTime();
+            try {
+                if (deadline > now) {
+                    deadlines.put(thread, deadline);
+                    while (deadlines.get(thread) != RUNNING) {
+                        wakeNextIfIdle();
+                        if (deadlines.get(thread) != RUNNING) {
+                            lock.wait(POLL_MILLISECONDS);
+                        }
+                    }
+                }
+            } finally {
+                woken.remove(thread);
+                deadlines.put(thread, RUNNING);
+            }
+        }
+    }
+
+    private void wakeNextIfIdle() {
+        Map.Entry<Thread, Long> next = null;
+        boolean running = false;
+        for (Iterator<Map.Entry<Thread, Long>> iterator = deadlines.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Thread, Long> entry = iterator.next();
+            Thread thread = entry.getKey();
+            if (!thread.isAlive()) {
+                iterator.remove();
+                woken.remove(thread);
+            } else if (entry.getValue() != RUNNING) {
+                if (next == null || entry.getValue() < next.getValue()) {
+                    next = entry;
+                }
+            } else if (woken.contains(thread)) {
+                running = true;
+            } else {
+                Thread.State state = thread.getState();
+                // a thread waiting for a lock gets it soon, one waiting on something else may wait for the time to move
+                running |= state == Thread.State.RUNNABLE || state == Thread.State.BLOCKED;
+            }
+        }
+
+        long realTime = System.nanoTime();
+        if (next == null || (running && realTime - lastProgressRealTime < STALL_NANOSECONDS)) {
+            return;
+        }
+
+        now = Math.max(now, next.getValue());
+        lastProgressRealTime = realTime;
+        // the woken thread counts as running until it returns, so no other thread runs before it
+        next.setValue(RUNNING);
+        woken.add(next.getKey());
+        lock.notifyAll();
+    }
+}
@@ -0,0 +1,93 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.hardware.modernrobotics.ModernRoboticsI2cColorSensor;
+import com.qualcomm.robotcore.hardware.I2cAddr;
+
+/**
+ * The Modern Robotics color sensor, looking at the simulated field.
+ * The sensor is mounted on the robot at an offset from the center, every I2C cycle it writes the color under it
+ * into the read cache at the same offsets as the real sensor, so the sensor and its pollers decode it unchanged.
+ */
+
+public class SimColorSensor extends ModernRoboticsI2cColorSensor implements SimI2cController.PortModel {
+
+    // typical readings of the real sensor, an inch from a lit beacon
+    private static final byte[] RED_READING = {10, 10, 1, 1, 12}; // color number, red, green, blue, alpha
+    private static final byte[] BLUE_READING = {3, 1, 3, 10, 12};
+    private static final byte[] NO_READING = {0, 0, 0, 0, 0};
+
+    private final SimRobot robot;
+    private final double forwardOffset;
+    private final double leftOffset;
+    private volatile SimField.Color color = SimField.Color.NONE;
+
+    /**
+     * @param forwardOffset how far in front of the center of the robot the sensor is, in inches
+     * @param leftOffset    how far to the left of the center of the robot the sensor is, in inches
+     */
+    public SimColorSensor(SimI2cController controller, int port, SimRobot robot, double forwardOffset, double leftOffset) {
+        super(controller, port);
+        this.robot = robot;
+        this.forwardOffset = forwardOffset;
+        this.leftOffset = leftOffset;
+        controller.setPortModel(port, this);
+    }
+
+    /**
+     * A sensor that is not looking at the field, like the loader sensor.
+     */
+    public SimColorSensor(SimI2cController controller, int port) {
+        super(controller, port);
+        this.robot = null;
+        this.forwardOffset = 0;
+        this.leftOffset = 0;
+        controller.setPortModel(port, this);
+    }
+
+    @Override
+    public void fillReadCache(byte[] readCache) {
+        color = robot == null ? SimField.Color.NONE :
+                robot.getField().getColorAt(robot.getFieldX(forwardOffset, leftOffset), robot.getFieldY(forwardOffset, leftOffset));
+
+        byte[] reading;
+        switch (color) {
+            case RED:
+                reading = RED_READING;
+                break;
+            case BLUE:
+                reading = BLUE_READING;
+                break;
+            default:
+                reading = NO_READING;
+                break;
+        }
+
+        readCache[OFFSET_COLOR_NUMBER] = reading[0];
+        readCache[OFFSET_RED_READING] = reading[1];
+        readCache[OFFSET_GREEN_READING] = reading[2];
+        readCache[OFFSET_BLUE_READING] = reading[3];
+        readCache[OFFSET_ALPHA_VALUE] = reading[4];
+    }
+
+    /**
+     * @return the color the sensor saw in the last I2C cycle
+     */
+    public SimField.Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setI2cAddress(I2cAddr newAddress) {
+        // every simulated sensor has its own port, so the address does not matter
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated Color Sensor";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulation; port " + physicalPort;
+    }
+}
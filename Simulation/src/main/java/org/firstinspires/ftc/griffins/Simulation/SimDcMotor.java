@@ -0,0 +1,229 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * A motor with an encoder, modeled as a first order system: the speed moves towards the commanded speed
+ * with a time constant, and the encoder counts the integral of the speed.
+ * The run modes and zero power behaviors work like the Modern Robotics motor controller:
+ * RUN_USING_ENCODER holds a fraction of the max speed, RUN_TO_POSITION drives to the target with a P loop.
+ * <p/>
+ * The shaft position is in the motor's own frame, the direction only changes what the robot code sees.
+ */
+
+public class SimDcMotor implements DcMotor {
+
+    public static final double DEFAULT_TIME_CONSTANT = 0.08; // seconds, from standstill to 63% of the commanded speed
+    public static final double COAST_TIME_CONSTANT = 0.8; // seconds, how fast a floating motor slows down
+    // the speed loop of RUN_TO_POSITION, fraction of full speed per count of error
+    private static final double RUN_TO_POSITION_GAIN = 1 / 50.0;
+    private static final int BUSY_TOLERANCE = 10;
+
+    private final String name;
+    private final double freeSpeed; // counts per second at full power
+    private final double timeConstant;
+
+    private Direction direction = Direction.FORWARD;
+    private RunMode mode = RunMode.RUN_WITHOUT_ENCODER;
+    private ZeroPowerBehavior zeroPowerBehavior = ZeroPowerBehavior.BRAKE;
+    private int maxSpeed;
+    private double power;
+    private boolean powerFloat;
+    private int targetPosition;
+
+    private double shaftPosition; // counts
+    private double shaftSpeed; // counts per second
+    private double encoderOffset;
+
+    public SimDcMotor(String name, double countsPerRotation, double freeSpeedRpm, double timeConstant) {
+        this.name = name;
+        this.freeSpeed = countsPerRotation * freeSpeedRpm / 60;
+        this.timeConstant = timeConstant;
+        this.maxSpeed = (int) freeSpeed;
+    }
+
+    public SimDcMotor(String name, double countsPerRotation, double freeSpeedRpm) {
+        this(name, countsPerRotation, freeSpeedRpm, DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * Moves the motor forward by dt seconds.
+     */
+    public synchronized void update(double dt) {
+        double sign = direction == Direction.FORWARD ? 1 : -1;
+        double commandedSpeed;
+        double settlingTime = timeConstant;
+
+        switch (mode) {
+            case STOP_AND_RESET_ENCODER:
+                commandedSpeed = 0;
+                encoderOffset = shaftPosition;
+                break;
+            case RUN_TO_POSITION:
+                double error = targetPosition - getCurrentPosition();
+                commandedSpeed = sign * Range.clip(error * RUN_TO_POSITION_GAIN, -Math.abs(power), Math.abs(power)) * getSpeedLimit();
+                break;
+            case RUN_USING_ENCODER:
+                commandedSpeed = sign * power * getSpeedLimit();
+                break;
+            default:
+                commandedSpeed = sign * power * freeSpeed;
+                break;
+        }
+
+        if (commandedSpeed == 0 && (powerFloat || zeroPowerBehavior == ZeroPowerBehavior.FLOAT) && mode != RunMode.RUN_TO_POSITION) {
+            settlingTime = COAST_TIME_CONSTANT;
+        }
+
+        shaftSpeed += (commandedSpeed - shaftSpeed) * (1 - Math.exp(-dt / settlingTime));
+        shaftPosition += shaftSpeed * dt;
+    }
+
+    private double getSpeedLimit() {
+        return Math.min(maxSpeed, freeSpeed);
+    }
+
+    /**
+     * @return the position of the shaft in its own frame, in counts, whatever the direction and encoder resets
+     */
+    public synchronized double getShaftPosition() {
+        return shaftPosition;
+    }
+
+    /**
+     * @return the speed of the shaft in its own frame, in counts per second
+     */
+    public synchronized double getShaftSpeed() {
+        return shaftSpeed;
+    }
+
+    @Override
+    public synchronized void setMaxSpeed(int encoderTicksPerSecond) {
+        this.maxSpeed = encoderTicksPerSecond;
+    }
+
+    @Override
+    public synchronized int getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    @Override
+    public DcMotorController getController() {
+        return null;
+    }
+
+    @Override
+    public int getPortNumber() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void setZeroPowerBehavior(ZeroPowerBehavior zeroPowerBehavior) {
+        this.zeroPowerBehavior = zeroPowerBehavior;
+    }
+
+    @Override
+    public synchronized ZeroPowerBehavior getZeroPowerBehavior() {
+        return zeroPowerBehavior;
+    }
+
+    @Override
+    public synchronized void setPowerFloat() {
+        power = 0;
+        powerFloat = true;
+    }
+
+    @Override
+    public synchronized boolean getPowerFloat() {
+        return powerFloat;
+    }
+
+    @Override
+    public synchronized void setTargetPosition(int position) {
+        this.targetPosition = position;
+    }
+
+    @Override
+    public synchronized int getTargetPosition() {
+        return targetPosition;
+    }
+
+    @Override
+    public synchronized boolean isBusy() {
+        return mode == RunMode.RUN_TO_POSITION && Math.abs(targetPosition - getCurrentPosition()) > BUSY_TOLERANCE;
+    }
+
+    @Override
+    public synchronized int getCurrentPosition() {
+        double sign = direction == Direction.FORWARD ? 1 : -1;
+        return (int) Math.round(sign * (shaftPosition - encoderOffset));
+    }
+
+    @Override
+    public synchronized void setMode(RunMode mode) {
+        if (mode == RunMode.STOP_AND_RESET_ENCODER) {
+            encoderOffset = shaftPosition;
+        }
+        this.mode = mode;
+    }
+
+    @Override
+    public synchronized RunMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public synchronized void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public synchronized Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public synchronized void setPower(double power) {
+        this.power = Range.clip(power, -1, 1);
+        this.powerFloat = false;
+    }
+
+    @Override
+    public synchronized double getPower() {
+        return power;
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated Motor " + name;
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulation";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public synchronized void resetDeviceConfigurationForOpMode() {
+        direction = Direction.FORWARD;
+        mode = RunMode.RUN_WITHOUT_ENCODER;
+        power = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        power = 0;
+    }
+}
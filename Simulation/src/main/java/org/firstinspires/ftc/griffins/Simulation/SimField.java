@@ -0,0 +1,134 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The field, in inches, with the beacon wall along the x axis at y = 0 and the field at positive y.
+ * Beacons are two halves on the wall, side by side along x, each with a button and a colored light in the middle.
+ * A color sensor sees a light when it is over it and within {@link #SENSING_DISTANCE} of the wall,
+ * and pressing anywhere on a half turns the whole beacon that color.
+ */
+
+public class SimField {
+
+    public static final double FIELD_SIZE = 144;
+    public static final double BEACON_HALF_WIDTH = 4.8;
+    public static final double LIGHT_WIDTH = 3;
+    public static final double SENSING_DISTANCE = 4;
+
+    public enum Color {NONE, RED, BLUE}
+
+    public static class Beacon {
+        private final double centerX;
+        private Color lowHalf; // the half at lower x
+        private Color highHalf;
+        private int pressCount;
+
+        public Beacon(double centerX, Color lowHalf, Color highHalf) {
+            this.centerX = centerX;
+            this.lowHalf = lowHalf;
+            this.highHalf = highHalf;
+        }
+
+        public double getCenterX() {
+            return centerX;
+        }
+
+        public synchronized Color getLowHalf() {
+            return lowHalf;
+        }
+
+        public synchronized Color getHighHalf() {
+            return highHalf;
+        }
+
+        public synchronized int getPressCount() {
+            return pressCount;
+        }
+
+        /**
+         * @return the color of the beacon if both halves match, NONE otherwise
+         */
+        public synchronized Color getClaimedColor() {
+            return lowHalf == highHalf ? lowHalf : Color.NONE;
+        }
+
+        private boolean contains(double x) {
+            return Math.abs(x - centerX) < BEACON_HALF_WIDTH;
+        }
+
+        private boolean isLit(double x) {
+            return Math.abs(Math.abs(x - centerX) - BEACON_HALF_WIDTH / 2) < LIGHT_WIDTH / 2;
+        }
+
+        private synchronized Color getColorAt(double x) {
+            return x < centerX ? lowHalf : highHalf;
+        }
+
+        private synchronized void press(double x) {
+            Color pressed = getColorAt(x);
+            lowHalf = pressed;
+            highHalf = pressed;
+            pressCount++;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("beacon at x %.1f: %s/%s, pressed %d times", centerX, lowHalf, highHalf, pressCount);
+        }
+    }
+
+    private final List<Beacon> beacons = new ArrayList<>();
+
+    public void addBeacon(Beacon beacon) {
+        beacons.add(beacon);
+    }
+
+    /**
+     * Adds a beacon whose halves are red and blue in a random order, like at the start of a match.
+     */
+    public Beacon addRandomBeacon(double centerX, Random random) {
+        boolean redLow = random.nextBoolean();
+        Beacon beacon = new Beacon(centerX, redLow ? Color.RED : Color.BLUE, redLow ? Color.BLUE : Color.RED);
+        addBeacon(beacon);
+        return beacon;
+    }
+
+    public List<Beacon> getBeacons() {
+        return Collections.unmodifiableList(beacons);
+    }
+
+    /**
+     * @return the color a sensor at the point sees
+     */
+    public Color getColorAt(double x, double y) {
+        if (y < SENSING_DISTANCE) {
+            for (Beacon beacon : beacons) {
+                if (beacon.isLit(x)) {
+                    return beacon.getColorAt(x);
+                }
+            }
+        }
+        return Color.NONE;
+    }
+
+    /**
+     * Presses the beacon at the point, if the point is at or behind the wall.
+     *
+     * @return true if a beacon was pressed
+     */
+    public boolean press(double x, double y) {
+        if (y <= 0) {
+            for (Beacon beacon : beacons) {
+                if (beacon.contains(x)) {
+                    beacon.press(x);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.hardware.modernrobotics.ModernRoboticsI2cGyro;
+import com.qualcomm.robotcore.hardware.I2cAddr;
+
+import org.firstinspires.ftc.griffins.Clock;
+
+/**
+ * The Modern Robotics gyro, reading the heading of the simulated robot instead of the I2C port.
+ * The integrated z value is counter clockwise positive like the real sensor, and calibrating takes about a second.
+ */
+
+public class SimGyro extends ModernRoboticsI2cGyro {
+
+    public static final double CALIBRATION_SECONDS = 1;
+
+    private final SimRobot robot;
+    private volatile double zeroHeading;
+    private volatile long calibrationEndTime;
+    private volatile HeadingMode headingMode = HeadingMode.HEADING_CARTESIAN;
+
+    public SimGyro(SimI2cController controller, int port, SimRobot robot) {
+        super(controller, port);
+        this.robot = robot;
+    }
+
+    private double getRelativeHeading() {
+        return robot.getHeading() - zeroHeading;
+    }
+
+    @Override
+    public void calibrate() {
+        calibrationEndTime = Clock.now() + (long) (CALIBRATION_SECONDS * 1e9);
+        zeroHeading = robot.getHeading();
+    }
+
+    @Override
+    public boolean isCalibrating() {
+        return Clock.now() < calibrationEndTime;
+    }
+
+    @Override
+    public HeadingMode getHeadingMode() {
+        return headingMode;
+    }
+
+    @Override
+    public void setHeadingMode(HeadingMode headingMode) {
+        this.headingMode = headingMode;
+    }
+
+    @Override
+    public int getIntegratedZValue() {
+        return (int) Math.round(getRelativeHeading());
+    }
+
+    /**
+     * @return the heading from 0 to 359, cartesian headings increase counter clockwise, cardinal headings clockwise
+     */
+    @Override
+    public int getHeading() {
+        int heading = getIntegratedZValue();
+        if (headingMode == HeadingMode.HEADING_CARDINAL) {
+            heading = -heading;
+        }
+        return ((heading % 360) + 360) % 360;
+    }
+
+    @Override
+    public double getRotationFraction() {
+        return getHeading() / 360.0;
+    }
+
+    @Override
+    public int rawX() {
+        return 0;
+    }
+
+    @Override
+    public int rawY() {
+        return 0;
+    }
+
+    @Override
+    public int rawZ() {
+        return (int) Math.round(robot.getAngularVelocity());
+    }
+
+    @Override
+    public void resetZAxisIntegrator() {
+        zeroHeading = robot.getHeading();
+    }
+
+    @Override
+    public void setI2cAddress(I2cAddr newAddress) {
+    }
+
+    @Override
+    public String status() {
+        return getDeviceName();
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated Gyro";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulation; port " + physicalPort;
+    }
+
+    @Override
+    public void portIsReady(int port) {
+    }
+}
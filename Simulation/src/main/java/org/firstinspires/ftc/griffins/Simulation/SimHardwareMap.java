@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import org.firstinspires.ftc.griffins.RobotHardware;
+
+/**
+ * The hardware map of the simulated robot, with every device under the name {@link RobotHardware} looks it up by,
+ * in both the typed device mappings and the list that {@link HardwareMap#get(Class, String)} searches.
+ */
+
+public class SimHardwareMap extends HardwareMap {
+
+    public SimHardwareMap(SimRobot robot) {
+        super(null);
+
+        putMotor(RobotHardware.LEFT_DRIVE_ONE, robot.getLeftDriveOne());
+        putMotor(RobotHardware.LEFT_DRIVE_TWO, robot.getLeftDriveTwo());
+        putMotor(RobotHardware.RIGHT_DRIVE_ONE, robot.getRightDriveOne());
+        putMotor(RobotHardware.RIGHT_DRIVE_TWO, robot.getRightDriveTwo());
+        putMotor(RobotHardware.SHOOTER_MOTOR_LEFT, robot.getShooterLeft());
+        putMotor(RobotHardware.SHOOTER_MOTOR_RIGHT, robot.getShooterRight());
+        putMotor(RobotHardware.INTAKE_MOTOR, robot.getIntake());
+        putMotor(RobotHardware.TURRET_ROTATION_MOTOR, robot.getTurretRotation());
+
+        putServo(RobotHardware.BUTTON_PUSHER_SERVO, robot.getButtonPusher());
+        putServo(RobotHardware.LEFT_TURRET_GUIDE_SERVO, robot.getLeftTurretGuide());
+        putServo(RobotHardware.RIGHT_TURRET_GUIDE_SERVO, robot.getRightTurretGuide());
+        putServo(RobotHardware.LOADER_SERVO_ONE, robot.getLoader());
+
+        gyroSensor.put(RobotHardware.TURRET_GYRO, robot.getGyro());
+        put(RobotHardware.TURRET_GYRO, robot.getGyro());
+
+        putColorSensor(RobotHardware.LEFT_BUTTON_PUSHER_SENSOR, robot.getLeftColorSensor());
+        putColorSensor(RobotHardware.RIGHT_BUTTON_PUSHER_SENSOR, robot.getRightColorSensor());
+        putColorSensor(RobotHardware.LEFT_SECONDARY_BUTTON_PUSHER_SENSOR, robot.getLeftSecondaryColorSensor());
+        putColorSensor(RobotHardware.RIGHT_SECONDARY_BUTTON_PUSHER_SENSOR, robot.getRightSecondaryColorSensor());
+        putColorSensor(RobotHardware.LOADER_COLOR_SENSOR, robot.getLoaderColorSensor());
+    }
+
+    private void putMotor(String name, DcMotor motor) {
+        dcMotor.put(name, motor);
+        put(name, motor);
+    }
+
+    private void putServo(String name, Servo servo) {
+        this.servo.put(name, servo);
+        put(name, servo);
+    }
+
+    private void putColorSensor(String name, SimColorSensor sensor) {
+        colorSensor.put(name, sensor);
+        put(name, sensor);
+    }
+}
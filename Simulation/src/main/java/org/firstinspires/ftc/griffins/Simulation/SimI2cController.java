@@ -0,0 +1,257 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.robotcore.hardware.I2cAddr;
+import com.qualcomm.robotcore.hardware.I2cController;
+import com.qualcomm.robotcore.util.SerialNumber;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A device interface module's I2C ports. Each port has the read and write caches and locks of the real controller.
+ * Every {@link #cycle()}, like a finished USB read, the device model of each port fills its read cache,
+ * then the port's callback is called.
+ */
+
+public class SimI2cController implements I2cController {
+
+    public static final int PORT_COUNT = 6;
+    public static final int CACHE_SIZE = 32;
+
+    /**
+     * What a simulated I2C device shows in the read cache.
+     */
+    public interface PortModel {
+        /**
+         * Called with the port's read cache lock held.
+         */
+        void fillReadCache(byte[] readCache);
+    }
+
+    private final String name;
+    private final byte[][] readCaches = new byte[PORT_COUNT][CACHE_SIZE];
+    private final byte[][] writeCaches = new byte[PORT_COUNT][CACHE_SIZE];
+    private final Lock[] readLocks = new Lock[PORT_COUNT];
+    private final Lock[] writeLocks = new Lock[PORT_COUNT];
+    private final PortModel[] models = new PortModel[PORT_COUNT];
+    private final I2cPortReadyCallback[] callbacks = new I2cPortReadyCallback[PORT_COUNT];
+    private final I2cPortReadyBeginEndNotifications[] beginEndCallbacks = new I2cPortReadyBeginEndNotifications[PORT_COUNT];
+    private final boolean[] readMode = new boolean[PORT_COUNT];
+
+    public SimI2cController(String name) {
+        this.name = name;
+        for (int i = 0; i < PORT_COUNT; i++) {
+            readLocks[i] = new ReentrantLock();
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public void setPortModel(int port, PortModel model) {
+        models[port] = model;
+    }
+
+    /**
+     * Runs one hardware cycle: refreshes every read cache, then calls every port's callback.
+     */
+    public void cycle() {
+        for (int port = 0; port < PORT_COUNT; port++) {
+            if (models[port] != null) {
+                readLocks[port].lock();
+                try {
+                    models[port].fillReadCache(readCaches[port]);
+                } finally {
+                    readLocks[port].unlock();
+                }
+            }
+        }
+
+        for (int port = 0; port < PORT_COUNT; port++) {
+            I2cPortReadyCallback callback = callbacks[port];
+            if (callback != null) {
+                callback.portIsReady(port);
+            }
+        }
+    }
+
+    @Override
+    public SerialNumber getSerialNumber() {
+        return null;
+    }
+
+    @Override
+    public void enableI2cReadMode(int port, I2cAddr i2cAddress, int registerAddress, int count) {
+        readMode[port] = true;
+    }
+
+    @Override
+    public void enableI2cWriteMode(int port, I2cAddr i2cAddress, int registerAddress, int count) {
+        readMode[port] = false;
+    }
+
+    @Override
+    public byte[] getCopyOfReadBuffer(int port) {
+        readLocks[port].lock();
+        try {
+            return Arrays.copyOf(readCaches[port], CACHE_SIZE);
+        } finally {
+            readLocks[port].unlock();
+        }
+    }
+
+    @Override
+    public byte[] getCopyOfWriteBuffer(int port) {
+        writeLocks[port].lock();
+        try {
+            return Arrays.copyOf(writeCaches[port], CACHE_SIZE);
+        } finally {
+            writeLocks[port].unlock();
+        }
+    }
+
+    @Override
+    public void copyBufferIntoWriteBuffer(int port, byte[] buffer) {
+        writeLocks[port].lock();
+        try {
+            System.arraycopy(buffer, 0, writeCaches[port], I2C_BUFFER_START_ADDRESS,
+                    Math.min(buffer.length, CACHE_SIZE - I2C_BUFFER_START_ADDRESS));
+        } finally {
+            writeLocks[port].unlock();
+        }
+    }
+
+    @Override
+    public void setI2cPortActionFlag(int port) {
+    }
+
+    @Override
+    public void clearI2cPortActionFlag(int port) {
+    }
+
+    @Override
+    public boolean isI2cPortActionFlagSet(int port) {
+        return false;
+    }
+
+    @Override
+    public void readI2cCacheFromController(int port) {
+    }
+
+    @Override
+    public void writeI2cCacheToController(int port) {
+    }
+
+    @Override
+    public void writeI2cPortFlagOnlyToController(int port) {
+    }
+
+    @Override
+    public boolean isI2cPortInReadMode(int port) {
+        return readMode[port];
+    }
+
+    @Override
+    public boolean isI2cPortInWriteMode(int port) {
+        return !readMode[port];
+    }
+
+    @Override
+    public boolean isI2cPortReady(int port) {
+        return true;
+    }
+
+    @Override
+    public Lock getI2cReadCacheLock(int port) {
+        return readLocks[port];
+    }
+
+    @Override
+    public Lock getI2cWriteCacheLock(int port) {
+        return writeLocks[port];
+    }
+
+    @Override
+    public byte[] getI2cReadCache(int port) {
+        return readCaches[port];
+    }
+
+    @Override
+    public byte[] getI2cWriteCache(int port) {
+        return writeCaches[port];
+    }
+
+    @Override
+    public void registerForI2cPortReadyCallback(I2cPortReadyCallback callback, int port) {
+        callbacks[port] = callback;
+    }
+
+    @Override
+    public I2cPortReadyCallback getI2cPortReadyCallback(int port) {
+        return callbacks[port];
+    }
+
+    @Override
+    public void deregisterForPortReadyCallback(int port) {
+        callbacks[port] = null;
+    }
+
+    @Override
+    public void registerForPortReadyBeginEndCallback(I2cPortReadyBeginEndNotifications callback, int port) {
+        beginEndCallbacks[port] = callback;
+    }
+
+    @Override
+    public I2cPortReadyBeginEndNotifications getPortReadyBeginEndCallback(int port) {
+        return beginEndCallbacks[port];
+    }
+
+    @Override
+    public void deregisterForPortReadyBeginEndCallback(int port) {
+        beginEndCallbacks[port] = null;
+    }
+
+    @Override
+    public boolean isArmed() {
+        return true;
+    }
+
+    @Override
+    public void readI2cCacheFromModule(int port) {
+    }
+
+    @Override
+    public void writeI2cCacheToModule(int port) {
+    }
+
+    @Override
+    public void writeI2cPortFlagOnlyToModule(int port) {
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated I2C Controller " + name;
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulation";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,372 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import org.firstinspires.ftc.griffins.Clock;
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+import org.firstinspires.ftc.griffins.RobotHardware;
+
+/**
+ * The simulated robot: every motor, servo and sensor that {@link RobotHardware} uses, and the physics that moves it
+ * around the {@link SimField}. The physics runs on its own thread every 2 ms, the I2C ports are cycled every 10 ms,
+ * about as often as the device interface module reports.
+ * <p/>
+ * The drive is a skid steer, each side moves at the speed of its wheels, and the robot is an 18 inch square
+ * that can not drive through the walls, the wheels slip instead. The pose is in inches and degrees,
+ * with the heading counter clockwise from the x axis.
+ */
+
+public class SimRobot {
+
+    public static final double PHYSICS_PERIOD_MILLISECONDS = 2;
+    public static final int PHYSICS_CYCLES_PER_I2C_CYCLE = 5;
+    public static final double ROBOT_HALF_WIDTH = 9;
+    public static final double TRACK_WIDTH = 14.5625;
+
+    public static final double COLOR_SENSOR_SPACING = SimField.BEACON_HALF_WIDTH; // between the back and front sensors
+    public static final double BUTTON_PUSHER_FORWARD_OFFSET = -COLOR_SENSOR_SPACING / 2; // in line with the back sensors
+    public static final double BUTTON_PUSHER_REACH = 4; // inches past the side of the robot, at full extension
+    public static final double BUTTON_PUSHER_PRESS_EXTENSION = 0.5; // the fraction of full extension that presses a button
+    public static final double WALL_ALIGN_ANGLE = 30; // degrees, a robot closer than this to parallel is turned flush by a wall
+
+    // the drive motors are NeveRest 20s, geared so the wheel turns 280 counts per revolution
+    private static final double DRIVE_COUNTS_PER_ROTATION = RobotHardware.NEVEREST_ENCODER_COUNT_PER_ROTATION * 20;
+    private static final double DRIVE_FREE_SPEED_RPM = 340;
+    private static final double SHOOTER_TIME_CONSTANT = 0.35;
+    private static final double TURRET_FREE_SPEED_RPM = 160;
+    private static final double INTAKE_FREE_SPEED_RPM = 340;
+
+    private final SimField field;
+
+    private final SimDcMotor leftDriveOne;
+    private final SimDcMotor leftDriveTwo;
+    private final SimDcMotor rightDriveOne;
+    private final SimDcMotor rightDriveTwo;
+    private final SimDcMotor shooterLeft;
+    private final SimDcMotor shooterRight;
+    private final SimDcMotor intake;
+    private final SimDcMotor turretRotation;
+    private final SimServo buttonPusher;
+    private final SimServo leftTurretGuide;
+    private final SimServo rightTurretGuide;
+    private final SimServo loader;
+
+    private final SimI2cController i2cController;
+    private final SimGyro gyro;
+    private final SimColorSensor leftColorSensor;
+    private final SimColorSensor rightColorSensor;
+    private final SimColorSensor leftSecondaryColorSensor;
+    private final SimColorSensor rightSecondaryColorSensor;
+    private final SimColorSensor loaderColorSensor;
+
+    private final ControlLoopExecutor physicsLoop;
+    private long lastStepTime;
+    private long stepCount;
+    private boolean buttonPusherPressed;
+    private int buttonPresses;
+
+    private double x;
+    private double y;
+    private double heading; // degrees, not wrapped
+    private double angularVelocity; // degrees per second
+
+    public SimRobot(SimField field, double x, double y, double heading) {
+        this.field = field;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+
+        leftDriveOne = new SimDcMotor(RobotHardware.LEFT_DRIVE_ONE, DRIVE_COUNTS_PER_ROTATION, DRIVE_FREE_SPEED_RPM);
+        leftDriveTwo = new SimDcMotor(RobotHardware.LEFT_DRIVE_TWO, DRIVE_COUNTS_PER_ROTATION, DRIVE_FREE_SPEED_RPM);
+        rightDriveOne = new SimDcMotor(RobotHardware.RIGHT_DRIVE_ONE, DRIVE_COUNTS_PER_ROTATION, DRIVE_FREE_SPEED_RPM);
+        rightDriveTwo = new SimDcMotor(RobotHardware.RIGHT_DRIVE_TWO, DRIVE_COUNTS_PER_ROTATION, DRIVE_FREE_SPEED_RPM);
+        shooterLeft = new SimDcMotor(RobotHardware.SHOOTER_MOTOR_LEFT, RobotHardware.SHOOTER_ENCODER_COUNTS_PER_ROTATION,
+                RobotHardware.SHOOTER_MAX_RPM, SHOOTER_TIME_CONSTANT);
+        shooterRight = new SimDcMotor(RobotHardware.SHOOTER_MOTOR_RIGHT, RobotHardware.SHOOTER_ENCODER_COUNTS_PER_ROTATION,
+                RobotHardware.SHOOTER_MAX_RPM, SHOOTER_TIME_CONSTANT);
+        intake = new SimDcMotor(RobotHardware.INTAKE_MOTOR, RobotHardware.NEVEREST_ENCODER_COUNT_PER_ROTATION * 20, INTAKE_FREE_SPEED_RPM);
+        turretRotation = new SimDcMotor(RobotHardware.TURRET_ROTATION_MOTOR, RobotHardware.NEVEREST_40_ENCODER_COUNTS_PER_ROTATION,
+                TURRET_FREE_SPEED_RPM);
+
+        buttonPusher = new SimServo(RobotHardware.BUTTON_PUSHER_SERVO);
+        leftTurretGuide = new SimServo(RobotHardware.LEFT_TURRET_GUIDE_SERVO);
+        rightTurretGuide = new SimServo(RobotHardware.RIGHT_TURRET_GUIDE_SERVO);
+        loader = new SimServo(RobotHardware.LOADER_SERVO_ONE);
+
+        i2cController = new SimI2cController("Device Interface Module");
+        gyro = new SimGyro(i2cController, 0, this);
+        // the back sensors are the primary ones, the secondary sensors are in front of them
+        leftColorSensor = new SimColorSensor(i2cController, 1, this, -COLOR_SENSOR_SPACING / 2, ROBOT_HALF_WIDTH);
+        rightColorSensor = new SimColorSensor(i2cController, 2, this, -COLOR_SENSOR_SPACING / 2, -ROBOT_HALF_WIDTH);
+        leftSecondaryColorSensor = new SimColorSensor(i2cController, 3, this, COLOR_SENSOR_SPACING / 2, ROBOT_HALF_WIDTH);
+        rightSecondaryColorSensor = new SimColorSensor(i2cController, 4, this, COLOR_SENSOR_SPACING / 2, -ROBOT_HALF_WIDTH);
+        loaderColorSensor = new SimColorSensor(i2cController, 5);
+
+        physicsLoop = new ControlLoopExecutor(PHYSICS_PERIOD_MILLISECONDS);
+    }
+
+    /**
+     * Starts the physics thread, the robot does not move until it is started.
+     */
+    public void start() {
+        lastStepTime = Clock.now();
+        physicsLoop.start(new Runnable() {
+            @Override
+            public void run() {
+                long now = Clock.now();
+                // a long pause, like a garbage collection, is simulated as one normal cycle instead of a jump
+                double dt = Math.min((now - lastStepTime) / 1e9, 10 * PHYSICS_PERIOD_MILLISECONDS / 1000);
+                lastStepTime = now;
+                step(dt);
+            }
+        });
+    }
+
+    public void stop() {
+        physicsLoop.stop();
+    }
+
+    /**
+     * Moves the whole robot forward by dt seconds, and cycles the I2C ports when it is their turn.
+     */
+    public void step(double dt) {
+        for (SimDcMotor motor : new SimDcMotor[]{leftDriveOne, leftDriveTwo, rightDriveOne, rightDriveTwo,
+                shooterLeft, shooterRight, intake, turretRotation}) {
+            motor.update(dt);
+        }
+        for (SimServo servo : new SimServo[]{buttonPusher, leftTurretGuide, rightTurretGuide, loader}) {
+            servo.update(dt);
+        }
+
+        // the left motors are mounted mirrored, so the robot drives forward when their shafts turn backwards
+        double leftSpeed = -(leftDriveOne.getShaftSpeed() + leftDriveTwo.getShaftSpeed()) / 2 * RobotHardware.INCHES_PER_ENCODER_COUNT;
+        double rightSpeed = (rightDriveOne.getShaftSpeed() + rightDriveTwo.getShaftSpeed()) / 2 * RobotHardware.INCHES_PER_ENCODER_COUNT;
+
+        synchronized (this) {
+            double speed = (leftSpeed + rightSpeed) / 2;
+            angularVelocity = Math.toDegrees((rightSpeed - leftSpeed) / TRACK_WIDTH);
+
+            double midHeading = Math.toRadians(heading + angularVelocity * dt / 2);
+            x += speed * Math.cos(midHeading) * dt;
+            y += speed * Math.sin(midHeading) * dt;
+            heading += angularVelocity * dt;
+
+            keepInsideField(speed);
+        }
+
+        updateButtonPusher();
+
+        if (++stepCount % PHYSICS_CYCLES_PER_I2C_CYCLE == 0) {
+            i2cController.cycle();
+        }
+    }
+
+    /**
+     * Pushes the robot back inside the walls, along the normal of each wall it went through.
+     * A robot that drives into a wall at a shallow angle is turned flush with it, and stays flush while it keeps
+     * turning into the wall, like a robot sliding along the wall on its side rollers. Turning away is not resisted.
+     */
+    private void keepInsideField(double speed) {
+        double[] extents = getExtents();
+        alignWithWall(extents[0] < 0, 1, 0, speed);
+        alignWithWall(extents[1] > SimField.FIELD_SIZE, -1, 0, speed);
+        alignWithWall(extents[2] < 0, 0, 1, speed);
+        alignWithWall(extents[3] > SimField.FIELD_SIZE, 0, -1, speed);
+
+        extents = getExtents();
+        if (extents[0] < 0) {
+            x -= extents[0];
+        } else if (extents[1] > SimField.FIELD_SIZE) {
+            x -= extents[1] - SimField.FIELD_SIZE;
+        }
+        if (extents[2] < 0) {
+            y -= extents[2];
+        } else if (extents[3] > SimField.FIELD_SIZE) {
+            y -= extents[3] - SimField.FIELD_SIZE;
+        }
+    }
+
+    /**
+     * @return the min x, max x, min y and max y of the corners of the robot
+     */
+    private double[] getExtents() {
+        double[] extents = {Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int corner = 0; corner < 4; corner++) {
+            double forward = corner < 2 ? ROBOT_HALF_WIDTH : -ROBOT_HALF_WIDTH;
+            double left = corner % 2 == 0 ? ROBOT_HALF_WIDTH : -ROBOT_HALF_WIDTH;
+            double cornerX = getFieldX(forward, left);
+            double cornerY = getFieldY(forward, left);
+            extents[0] = Math.min(extents[0], cornerX);
+            extents[1] = Math.max(extents[1], cornerX);
+            extents[2] = Math.min(extents[2], cornerY);
+            extents[3] = Math.max(extents[3], cornerY);
+        }
+        return extents;
+    }
+
+    /**
+     * @param touching true if the robot went through the wall
+     * @param normalX  the x of the wall's normal, pointing into the field
+     * @param normalY  the y of the wall's normal
+     * @param speed    the forward speed of the robot, the sign tells which end leads
+     */
+    private void alignWithWall(boolean touching, double normalX, double normalY, double speed) {
+        double flushHeading = Math.round(heading / 90) * 90;
+        double angleToFlush = heading - flushHeading;
+        if (!touching || speed == 0 || Math.abs(angleToFlush) > WALL_ALIGN_ANGLE) {
+            return;
+        }
+
+        double radians = Math.toRadians(heading);
+        // the wall is on the right if the robot's right side faces against the wall's normal
+        boolean wallOnRight = Math.sin(radians) * normalX - Math.cos(radians) * normalY < 0;
+        // the leading end turns into a wall on the right by turning clockwise
+        double intoWallSign = (wallOnRight ? -1 : 1) * Math.signum(speed);
+        // only walls parallel to the flush heading hold the robot, not a wall it is driving head on into
+        boolean parallel = Math.abs(Math.cos(Math.toRadians(flushHeading)) * normalY - Math.sin(Math.toRadians(flushHeading)) * normalX) > 0.5;
+
+        if (parallel && Math.signum(angleToFlush) == intoWallSign) {
+            heading = flushHeading;
+        }
+    }
+
+    /**
+     * Presses a beacon once each time the button pusher reaches past the wall, on whichever side is at the wall.
+     */
+    private void updateButtonPusher() {
+        double extension = (RobotHardware.BUTTON_PUSHER_RETRACTED - buttonPusher.getActualPosition()) /
+                (RobotHardware.BUTTON_PUSHER_RETRACTED - RobotHardware.BUTTON_PUSHER_EXTENDED);
+
+        if (extension < BUTTON_PUSHER_PRESS_EXTENSION) {
+            buttonPusherPressed = false;
+        } else if (!buttonPusherPressed) {
+            double reach = ROBOT_HALF_WIDTH + extension * BUTTON_PUSHER_REACH;
+            synchronized (this) {
+                buttonPusherPressed = field.press(getFieldX(BUTTON_PUSHER_FORWARD_OFFSET, reach), getFieldY(BUTTON_PUSHER_FORWARD_OFFSET, reach)) ||
+                        field.press(getFieldX(BUTTON_PUSHER_FORWARD_OFFSET, -reach), getFieldY(BUTTON_PUSHER_FORWARD_OFFSET, -reach));
+            }
+            if (buttonPusherPressed) {
+                buttonPresses++;
+            }
+        }
+    }
+
+    /**
+     * @return the field x of a point on the robot
+     */
+    public synchronized double getFieldX(double forwardOffset, double leftOffset) {
+        double radians = Math.toRadians(heading);
+        return x + forwardOffset * Math.cos(radians) - leftOffset * Math.sin(radians);
+    }
+
+    /**
+     * @return the field y of a point on the robot
+     */
+    public synchronized double getFieldY(double forwardOffset, double leftOffset) {
+        double radians = Math.toRadians(heading);
+        return y + forwardOffset * Math.sin(radians) + leftOffset * Math.cos(radians);
+    }
+
+    public synchronized double getX() {
+        return x;
+    }
+
+    public synchronized double getY() {
+        return y;
+    }
+
+    public synchronized double getHeading() {
+        return heading;
+    }
+
+    public synchronized double getAngularVelocity() {
+        return angularVelocity;
+    }
+
+    public int getButtonPresses() {
+        return buttonPresses;
+    }
+
+    public SimField getField() {
+        return field;
+    }
+
+    public SimDcMotor getLeftDriveOne() {
+        return leftDriveOne;
+    }
+
+    public SimDcMotor getLeftDriveTwo() {
+        return leftDriveTwo;
+    }
+
+    public SimDcMotor getRightDriveOne() {
+        return rightDriveOne;
+    }
+
+    public SimDcMotor getRightDriveTwo() {
+        return rightDriveTwo;
+    }
+
+    public SimDcMotor getShooterLeft() {
+        return shooterLeft;
+    }
+
+    public SimDcMotor getShooterRight() {
+        return shooterRight;
+    }
+
+    public SimDcMotor getIntake() {
+        return intake;
+    }
+
+    public SimDcMotor getTurretRotation() {
+        return turretRotation;
+    }
+
+    public SimServo getButtonPusher() {
+        return buttonPusher;
+    }
+
+    public SimServo getLeftTurretGuide() {
+        return leftTurretGuide;
+    }
+
+    public SimServo getRightTurretGuide() {
+        return rightTurretGuide;
+    }
+
+    public SimServo getLoader() {
+        return loader;
+    }
+
+    public SimI2cController getI2cController() {
+        return i2cController;
+    }
+
+    public SimGyro getGyro() {
+        return gyro;
+    }
+
+    public SimColorSensor getLeftColorSensor() {
+        return leftColorSensor;
+    }
+
+    public SimColorSensor getRightColorSensor() {
+        return rightColorSensor;
+    }
+
+    public SimColorSensor getLeftSecondaryColorSensor() {
+        return leftSecondaryColorSensor;
+    }
+
+    public SimColorSensor getRightSecondaryColorSensor() {
+        return rightSecondaryColorSensor;
+    }
+
+    public SimColorSensor getLoaderColorSensor() {
+        return loaderColorSensor;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("x %.1f in, y %.1f in, heading %.1f deg", x, y, heading);
+    }
+}
@@ -0,0 +1,129 @@
+package org.firstinspires.ftc.griffins.Simulation;
+
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.ServoController;
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * A servo that moves towards the commanded position at a fixed speed.
+ * Like the real servo, getPosition returns the commanded position, {@link #getActualPosition()} is where it is.
+ */
+
+public class SimServo implements Servo {
+
+    public static final double DEFAULT_TRAVEL_TIME = 0.6; // seconds for the full range
+
+    private final String name;
+    private final double travelTime;
+
+    private Direction direction = Direction.FORWARD;
+    private double minPosition = MIN_POSITION;
+    private double maxPosition = MAX_POSITION;
+    private double position = Double.NaN; // commanded, in the robot code's frame
+    private double actualPosition = 0.5; // in the servo's own frame, from 0 to 1
+
+    public SimServo(String name, double travelTime) {
+        this.name = name;
+        this.travelTime = travelTime;
+    }
+
+    public SimServo(String name) {
+        this(name, DEFAULT_TRAVEL_TIME);
+    }
+
+    /**
+     * Moves the servo forward by dt seconds.
+     */
+    public synchronized void update(double dt) {
+        if (Double.isNaN(position)) {
+            return;
+        }
+
+        double target = getTargetInServoFrame();
+        double maxStep = dt / travelTime;
+        actualPosition += Range.clip(target - actualPosition, -maxStep, maxStep);
+    }
+
+    private double getTargetInServoFrame() {
+        double scaled = Range.scale(position, MIN_POSITION, MAX_POSITION, minPosition, maxPosition);
+        return direction == Direction.FORWARD ? scaled : MAX_POSITION - scaled;
+    }
+
+    /**
+     * @return where the servo is, in the same frame as the commanded position
+     */
+    public synchronized double getActualPosition() {
+        double unreversed = direction == Direction.FORWARD ? actualPosition : MAX_POSITION - actualPosition;
+        return Range.scale(unreversed, minPosition, maxPosition, MIN_POSITION, MAX_POSITION);
+    }
+
+    @Override
+    public ServoController getController() {
+        return null;
+    }
+
+    @Override
+    public int getPortNumber() {
+        return 0;
+    }
+
+    @Override
+    public synchronized void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public synchronized Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public synchronized void setPosition(double position) {
+        this.position = Range.clip(position, MIN_POSITION, MAX_POSITION);
+    }
+
+    @Override
+    public synchronized double getPosition() {
+        return Double.isNaN(position) ? 0 : position;
+    }
+
+    @Override
+    public synchronized void scaleRange(double min, double max) {
+        if (min < MIN_POSITION || max > MAX_POSITION || min >= max) {
+            throw new IllegalArgumentException("The range must be within 0 and 1, and min must be less than max");
+        }
+        minPosition = min;
+        maxPosition = max;
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Simulated Servo " + name;
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "simulation";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public synchronized void resetDeviceConfigurationForOpMode() {
+        direction = Direction.FORWARD;
+        minPosition = MIN_POSITION;
+        maxPosition = MAX_POSITION;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,98 @@
+package org.firstinspires.ftc.griffins.Tuning;
+
+import com.qualcomm.robotcore.util.Range;
+
+import java.util.Locale;
+
+/**
+ * The per second gains and limits of a time based {@link org.firstinspires.ftc.griffins.Navigation.PIDController},
+ * with a stand in controller that calculates its output the same way: the derivative on the measurement,
+ * the integral only within the integral range and clamped while the output is saturated.
+ */
+
+public class ControllerGains {
+
+    private final double kP;
+    private final double kI;
+    private final double kD;
+    private final double kF;
+    private final double minOutput;
+    private final double maxOutput;
+    private final double integralRange;
+
+    public ControllerGains(double kP, double kI, double kD, double kF, double minOutput, double maxOutput, double integralRange) {
+        this.kP = kP;
+        this.kI = kI;
+        this.kD = kD;
+        this.kF = kF;
+        this.minOutput = minOutput;
+        this.maxOutput = maxOutput;
+        this.integralRange = integralRange;
+    }
+
+    /**
+     * @return the same limits and feed forward with other gains
+     */
+    public ControllerGains withGains(double kP, double kI, double kD) {
+        return new ControllerGains(kP, kI, kD, kF, minOutput, maxOutput, integralRange);
+    }
+
+    public double getKP() {
+        return kP;
+    }
+
+    public double getKI() {
+        return kI;
+    }
+
+    public double getKD() {
+        return kD;
+    }
+
+    public Controller newController() {
+        return new Controller();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "kP %.6g, kI %.6g, kD %.6g", kP, kI, kD);
+    }
+
+    public class Controller {
+        private boolean hasLastSample;
+        private double lastTime;
+        private double lastMeasurement;
+        private double integral;
+
+        /**
+         * @param time seconds, from any starting point
+         * @return the output for the sample
+         */
+        public double output(double time, double setPoint, double measurement) {
+            double error = setPoint - measurement;
+            double proportional = kP * error;
+            double feedForward = kF * setPoint;
+            double derivative = 0;
+
+            if (hasLastSample && time > lastTime) {
+                double dt = time - lastTime;
+                derivative = -kD * (measurement - lastMeasurement) / dt;
+
+                if (Math.abs(error) < integralRange) {
+                    double increment = kI * error * dt;
+                    double unsaturated = proportional + integral + increment + derivative + feedForward;
+                    double saturated = Range.clip(unsaturated, minOutput, maxOutput);
+                    if (saturated == unsaturated || Math.signum(increment) != Math.signum(unsaturated - saturated)) {
+                        integral += increment;
+                    }
+                    integral = Range.clip(integral, minOutput, maxOutput);
+                }
+            }
+            hasLastSample = true;
+            lastTime = time;
+            lastMeasurement = measurement;
+
+            return Range.clip(proportional + integral + derivative + feedForward, minOutput, maxOutput);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package org.firstinspires.ftc.griffins.Tuning;
+
+import org.firstinspires.ftc.griffins.Navigation.ControlLoopExecutor;
+import org.firstinspires.ftc.griffins.Navigation.FlywheelController;
+import org.firstinspires.ftc.griffins.Navigation.FlywheelService;
+import org.firstinspires.ftc.griffins.Navigation.PIDDrive;
+import org.firstinspires.ftc.griffins.Navigation.PIDGains;
+import org.firstinspires.ftc.griffins.RobotHardware;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Works out new gains for the drive, turn or flywheel loop from recorded moves, on a computer.
+ * <p/>
+ * The recordings are the PIDDrive and PIDRate data files, or the csv that driveToTarget and spinToTarget return,
+ * from the robot or from the simulation. A plant model is fitted to them ({@link PlantModel}), then gains are worked
+ * out three ways and each is tried on the model in a closed loop with the real loop period and output limits:
+ * <ul>
+ * <li>imc: lambda (SIMC) tuning, the closed loop time constant is searched for the one that meets the overshoot
+ * and settles within the target time, or as fast as the plant allows when nothing does</li>
+ * <li>zn: Ziegler-Nichols, from the ultimate gain and period a relay test would find on the model</li>
+ * <li>tl: Tyreus-Luyben, from the same point, with less overshoot than Ziegler-Nichols</li>
+ * </ul>
+ * The chosen gains are written into a {@link PIDGains} file, copy it to the robot settings folder for PIDDrive and
+ * PIDRate to load at init.
+ * <p/>
+ * Usage: PIDTuner drive|turn|flywheel recording... [--settle seconds] [--overshoot percent] [--method imc|zn|tl]
+ * [--gains the gains file the recordings ran with] [--target rpm] [--out gains file]
+ */
+
+public class PIDTuner {
+
+    public static final double DEFAULT_SETTLE_SECONDS = 1;
+    public static final double DEFAULT_OVERSHOOT_PERCENT = 5;
+
+    public enum Loop {
+        DRIVE(PIDGains.DRIVE, true, false, true, ControlLoopExecutor.DEFAULT_PERIOD_MILLISECONDS / 1000,
+                PIDDrive.DRIVE_TOLERANCE, -PIDDrive.DRIVE_MAX_POWER, PIDDrive.DRIVE_MAX_POWER, 10, 0),
+        TURN(PIDGains.TURN, true, true, true, ControlLoopExecutor.DEFAULT_PERIOD_MILLISECONDS / 1000,
+                PIDDrive.TURN_TOLERANCE, -PIDDrive.TURN_MAX_POWER, PIDDrive.TURN_MAX_POWER, 10, 0),
+        FLYWHEEL(PIDGains.FLYWHEEL, false, true, false, FlywheelService.DEFAULT_PERIOD_MILLISECONDS / 1000,
+                FlywheelController.DEFAULT_TOLERANCE_RPM, 0, 1, RobotHardware.SHOOTER_MAX_RPM / 4, 1 / RobotHardware.SHOOTER_MAX_RPM);
+
+        final String name;
+        final boolean integrating;
+        final boolean integral;
+        final boolean derivative;
+        final double period;
+        final double tolerance;
+        final double minOutput;
+        final double maxOutput;
+        final double integralRange;
+        final double kF;
+
+        Loop(String name, boolean integrating, boolean integral, boolean derivative, double period, double tolerance,
+             double minOutput, double maxOutput, double integralRange, double kF) {
+            this.name = name;
+            this.integrating = integrating;
+            this.integral = integral;
+            this.derivative = derivative;
+            this.period = period;
+            this.tolerance = tolerance;
+            this.minOutput = minOutput;
+            this.maxOutput = maxOutput;
+            this.integralRange = integralRange;
+            this.kF = kF;
+        }
+
+        /**
+         * @return the gains the loop runs with, from the gains file or PIDDrive's and FlywheelController's defaults
+         */
+        ControllerGains getGains(PIDGains gains) {
+            double kP, kI, kD;
+            switch (this) {
+                case DRIVE:
+                    kP = gains.get(name, "kP", PIDDrive.DRIVE_KP);
+                    kI = gains.get(name, "kI", 0);
+                    kD = gains.get(name, "kD", PIDDrive.DRIVE_KD * period);
+                    break;
+                case TURN:
+                    kP = gains.get(name, "kP", PIDDrive.TURN_KP);
+                    kI = gains.get(name, "kI", PIDDrive.TURN_KI / period);
+                    kD = gains.get(name, "kD", PIDDrive.TURN_KD * period);
+                    break;
+                default:
+                    kP = gains.get(name, "kP", FlywheelController.DEFAULT_KP);
+                    kI = gains.get(name, "kI", FlywheelController.DEFAULT_KI);
+                    kD = 0;
+                    break;
+            }
+            return new ControllerGains(kP, kI, kD, kF, minOutput, maxOutput, integralRange);
+        }
+    }
+
+    /**
+     * How a set of gains did on the model.
+     */
+    public static class Result {
+        final String method;
+        final ControllerGains gains;
+        final double settleSeconds;
+        final double overshootPercent;
+
+        Result(String method, ControllerGains gains, double settleSeconds, double overshootPercent) {
+            this.method = method;
+            this.gains = gains;
+            this.settleSeconds = settleSeconds;
+            this.overshootPercent = overshootPercent;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-4s %s, settles in %.2f s, overshoot %.1f%%",
+                    method, gains, settleSeconds, overshootPercent);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PIDTuner drive|turn|flywheel recording... [--settle seconds] [--overshoot percent]"
+                    + " [--method imc|zn|tl] [--gains file] [--target rpm] [--out file]");
+            System.exit(2);
+        }
+
+        Loop loop = Loop.valueOf(args[0].toUpperCase(Locale.US));
+        double settleSeconds = DEFAULT_SETTLE_SECONDS;
+        double overshootPercent = DEFAULT_OVERSHOOT_PERCENT;
+        double targetRpm = Double.NaN;
+        String method = "imc";
+        PIDGains recordedGains = new PIDGains();
+        File out = new File(PIDGains.FILE_NAME);
+        List<File> recordings = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--settle")) {
+                settleSeconds = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--overshoot")) {
+                overshootPercent = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--method")) {
+                method = args[++i];
+            } else if (args[i].equals("--gains")) {
+                recordedGains = PIDGains.load(new File(args[++i]));
+            } else if (args[i].equals("--target")) {
+                targetRpm = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--out")) {
+                out = new File(args[++i]);
+            } else {
+                recordings.add(new File(args[i]));
+            }
+        }
+
+        ControllerGains recorded = loop.getGains(recordedGains);
+        List<StepResponse> responses = new ArrayList<>();
+        for (File recording : recordings) {
+            double[][] columns = StepResponse.readColumns(recording);
+            if (loop == Loop.FLYWHEEL) {
+                responses.addAll(StepResponse.fromFlywheelRecording(columns, targetRpm, recorded));
+            } else {
+                responses.addAll(StepResponse.fromDriveRecording(columns, loop == Loop.TURN, recorded, loop.tolerance));
+            }
+        }
+        if (responses.isEmpty()) {
+            System.err.println("No " + loop.name + " moves in the recordings");
+            System.exit(1);
+        }
+
+        PlantModel model = PlantModel.fit(responses, loop.integrating);
+        double step = typicalStep(responses);
+        System.out.println(String.format(Locale.US, "%d moves, typical step %.1f", responses.size(), step));
+        System.out.println("Model: " + model);
+        System.out.println("Now:  " + simulate("now", model, loop, recorded, step));
+
+        List<Result> results = new ArrayList<>();
+        results.add(tuneImc(model, loop, recorded, step, settleSeconds, overshootPercent));
+        double[] ultimate = model.ultimatePoint(loop.period);
+        if (ultimate != null) {
+            System.out.println(String.format(Locale.US, "Ultimate gain %.4g, period %.3f s", ultimate[0], ultimate[1]));
+            results.add(tuneUltimate("zn", model, loop, recorded, step, ultimate));
+            results.add(tuneUltimate("tl", model, loop, recorded, step, ultimate));
+        } else {
+            System.out.println("The model has no ultimate point, zn and tl are skipped");
+        }
+
+        Result chosen = null;
+        for (Result result : results) {
+            System.out.println((result.method.equals(method) ? "* " : "  ") + result);
+            if (result.method.equals(method)) {
+                chosen = result;
+            }
+        }
+        if (chosen == null) {
+            System.err.println("No gains from " + method);
+            System.exit(1);
+        }
+
+        PIDGains gains = out.exists() ? PIDGains.load(out) : new PIDGains();
+        gains.set(loop.name, "kP", chosen.gains.getKP());
+        gains.set(loop.name, "kI", chosen.gains.getKI());
+        gains.set(loop.name, "kD", chosen.gains.getKD());
+        gains.save(out);
+        System.out.println("Wrote the " + loop.name + " gains to " + out);
+    }
+
+    /**
+     * @return the median step size of the moves, the closed loop simulations use it so the output limits count
+     */
+    private static double typicalStep(List<StepResponse> responses) {
+        double[] steps = new double[responses.size()];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = Math.abs(responses.get(i).getStepSize());
+        }
+        Arrays.sort(steps);
+        return steps[steps.length / 2];
+    }
+
+    /**
+     * Lambda tuning: the closed loop should act like a lag of time constant tc after the dead time.
+     * For an integrating plant the derivative cancels the motor lag (SIMC PD, with an integral of 4 (tc + theta) for the turn,
+     * or a slower one for less overshoot), for a lag plant the integral does (IMC PI).
+     *
+     * @param integralFactor the integral time of an integrating plant, in closed loop times, 4 by the SIMC rule
+     */
+    public static ControllerGains imcGains(PlantModel model, Loop loop, ControllerGains base, double closedLoopTime, double integralFactor) {
+        double deadTime = model.getDeadTime() + loop.period / 2;
+        double tau = model.getTimeConstant();
+        if (loop.integrating) {
+            double kc = 1 / (model.getGain() * (closedLoopTime + deadTime));
+            double derivativeTime = loop.derivative ? tau : 0;
+            if (!loop.integral) {
+                return base.withGains(kc, 0, kc * derivativeTime);
+            }
+            double integralTime = integralFactor * (closedLoopTime + deadTime);
+            // the series form, in the parallel form the controller uses
+            return base.withGains(kc * (1 + derivativeTime / integralTime), kc / integralTime, kc * derivativeTime);
+        } else {
+            double kc = tau / (model.getGain() * (closedLoopTime + deadTime));
+            double integralTime = Math.min(tau, 4 * (closedLoopTime + deadTime));
+            return base.withGains(kc, loop.integral ? kc / integralTime : 0, 0);
+        }
+    }
+
+    /**
+     * Tries closed loop time constants from 20 ms up, and for an integrating plant with an integral,
+     * integral times of 4 and 8 of them. Of those within the overshoot, it picks the gentlest that settles
+     * in time, or the fastest settling one if none do.
+     */
+    private static Result tuneImc(PlantModel model, Loop loop, ControllerGains base, double step,
+                                  double settleSeconds, double overshootPercent) {
+        Result gentlest = null;
+        Result fastest = null;
+        double[] integralFactors = loop.integrating && loop.integral ? new double[]{4, 8} : new double[]{4};
+        for (double integralFactor : integralFactors) {
+            for (int i = 0; i <= 60; i++) {
+                double closedLoopTime = 0.02 * Math.pow(1.12, i);
+                Result result = simulate("imc", model, loop, imcGains(model, loop, base, closedLoopTime, integralFactor), step);
+                if (result.overshootPercent > overshootPercent) {
+                    continue;
+                }
+                if (result.settleSeconds <= settleSeconds
+                        && (gentlest == null || result.gains.getKP() < gentlest.gains.getKP())) {
+                    gentlest = result;
+                }
+                if (fastest == null || result.settleSeconds < fastest.settleSeconds) {
+                    fastest = result;
+                }
+            }
+        }
+        if (gentlest != null) {
+            return gentlest;
+        }
+        return fastest != null ? fastest : simulate("imc", model, loop, imcGains(model, loop, base, 1, 4), step);
+    }
+
+    /**
+     * Ziegler-Nichols (zn) or Tyreus-Luyben (tl) gains, in the loop's form: PD, PI or PID.
+     */
+    private static Result tuneUltimate(String method, PlantModel model, Loop loop, ControllerGains base, double step, double[] ultimate) {
+        double ku = ultimate[0];
+        double tu = ultimate[1];
+        boolean zn = method.equals("zn");
+        double kp, integralTime, derivativeTime;
+        if (loop.integral && loop.derivative) {
+            kp = zn ? 0.6 * ku : ku / 2.2;
+            integralTime = zn ? tu / 2 : 2.2 * tu;
+            derivativeTime = zn ? tu / 8 : tu / 6.3;
+        } else if (loop.integral) {
+            kp = zn ? 0.45 * ku : ku / 3.2;
+            integralTime = zn ? tu / 1.2 : 2.2 * tu;
+            derivativeTime = 0;
+        } else {
+            kp = zn ? 0.8 * ku : ku / 2.2;
+            integralTime = Double.POSITIVE_INFINITY;
+            derivativeTime = zn ? tu / 8 : tu / 6.3;
+        }
+        return simulate(method, model, loop, base.withGains(kp, kp / integralTime, kp * derivativeTime), step);
+    }
+
+    /**
+     * Runs a step on the model in a closed loop, the controller running once per loop period.
+     * It settles once it stays within 2% of the step, or the loop's tolerance if that is wider.
+     */
+    public static Result simulate(String method, PlantModel model, Loop loop, ControllerGains gains, double step) {
+        double start = 0;
+        double setPoint = step;
+        double duration = Math.max(5, 20 * (model.getTimeConstant() + model.getDeadTime()));
+        double band = Math.max(0.02 * Math.abs(step), loop.tolerance);
+
+        PlantModel.State plant = model.newState(start);
+        ControllerGains.Controller controller = gains.newController();
+        int steps = (int) Math.round(duration / PlantModel.STEP_SECONDS);
+        int stepsPerCycle = Math.max(1, (int) Math.round(loop.period / PlantModel.STEP_SECONDS));
+        int delaySteps = (int) Math.round(model.getDeadTime() / PlantModel.STEP_SECONDS);
+        double[] sent = new double[steps + 1];
+
+        double output = 0;
+        double peak = start;
+        double lastOutside = 0;
+        for (int i = 0; i < steps; i++) {
+            double time = i * PlantModel.STEP_SECONDS;
+            if (i % stepsPerCycle == 0) {
+                output = controller.output(time, setPoint, plant.getOutput());
+            }
+            sent[i] = output;
+            plant.step(i >= delaySteps ? sent[i - delaySteps] : 0, PlantModel.STEP_SECONDS);
+
+            double measurement = plant.getOutput();
+            peak = Math.max(peak, measurement);
+            if (Math.abs(setPoint - measurement) > band) {
+                lastOutside = time + PlantModel.STEP_SECONDS;
+            }
+        }
+
+        double settle = lastOutside >= duration - loop.period ? Double.POSITIVE_INFINITY : lastOutside;
+        double overshoot = Math.max(0, (peak - setPoint) / Math.abs(step) * 100);
+        return new Result(method, gains, settle, overshoot);
+    }
+}
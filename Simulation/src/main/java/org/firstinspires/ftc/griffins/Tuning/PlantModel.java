@@ -0,0 +1,209 @@
+package org.firstinspires.ftc.griffins.Tuning;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A low order model of what a control loop drives, fitted to recorded moves.
+ * <p/>
+ * A lag plant (a flywheel's speed) is first order plus dead time: {@code K e^(-theta s) / (tau s + 1)}.
+ * An integrating plant (a drive's position or heading) is an integrator with a lag: {@code K e^(-theta s) / (s (tau s + 1))}.
+ * K is the measurement per unit of power (per second for an integrating plant), tau the motor's time constant
+ * and theta the dead time, both in seconds.
+ */
+
+public class PlantModel {
+
+    // the step the model is integrated with, the fit and the closed loop simulations use it
+    public static final double STEP_SECONDS = 0.001;
+
+    private final double gain;
+    private final double timeConstant;
+    private final double deadTime;
+    private final boolean integrating;
+
+    public PlantModel(double gain, double timeConstant, double deadTime, boolean integrating) {
+        this.gain = gain;
+        this.timeConstant = timeConstant;
+        this.deadTime = deadTime;
+        this.integrating = integrating;
+    }
+
+    public double getGain() {
+        return gain;
+    }
+
+    public double getTimeConstant() {
+        return timeConstant;
+    }
+
+    public double getDeadTime() {
+        return deadTime;
+    }
+
+    public boolean isIntegrating() {
+        return integrating;
+    }
+
+    /**
+     * Fits the time constant and dead time on a grid, the gain by least squares for each,
+     * to the measurements of every response at once.
+     */
+    public static PlantModel fit(List<StepResponse> responses, boolean integrating) {
+        if (responses.isEmpty()) {
+            throw new IllegalArgumentException("There are no moves to fit the model to");
+        }
+
+        PlantModel best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int delayStep = 0; delayStep <= 30; delayStep++) {
+            double deadTime = delayStep * 0.01;
+            for (int lagStep = 0; lagStep <= 40; lagStep++) {
+                double timeConstant = 0.01 * Math.pow(1.15, lagStep); // 10 ms to about 2.7 s
+                PlantModel unit = new PlantModel(1, timeConstant, deadTime, integrating);
+
+                // the response is linear in the gain, apart from where the plant started
+                double sumProducts = 0;
+                double sumSquares = 0;
+                double[][] unitResponses = new double[responses.size()][];
+                for (int i = 0; i < responses.size(); i++) {
+                    StepResponse response = responses.get(i);
+                    unitResponses[i] = unit.simulate(response, 0);
+                    double[] outputs = response.getOutputs();
+                    for (int row = 0; row < outputs.length; row++) {
+                        double start = integrating ? response.getInitialOutput() : decay(response, row, timeConstant);
+                        sumProducts += unitResponses[i][row] * (outputs[row] - start);
+                        sumSquares += unitResponses[i][row] * unitResponses[i][row];
+                    }
+                }
+                if (sumSquares == 0) {
+                    continue;
+                }
+                double gain = sumProducts / sumSquares;
+
+                double cost = 0;
+                for (int i = 0; i < responses.size(); i++) {
+                    StepResponse response = responses.get(i);
+                    double[] outputs = response.getOutputs();
+                    double scale = Math.max(Math.abs(response.getStepSize()), 1e-9);
+                    for (int row = 0; row < outputs.length; row++) {
+                        double start = integrating ? response.getInitialOutput() : decay(response, row, timeConstant);
+                        double residual = (outputs[row] - start - gain * unitResponses[i][row]) / scale;
+                        cost += residual * residual;
+                    }
+                }
+
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = new PlantModel(gain, timeConstant, deadTime, integrating);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return what is left of a lag plant's starting value at the row, with no input
+     */
+    private static double decay(StepResponse response, int row, double timeConstant) {
+        return response.getInitialOutput() * Math.exp(-response.getTimes()[row] / timeConstant);
+    }
+
+    /**
+     * @return the measurement at every time of the response, driven by its inputs, starting from the value
+     */
+    public double[] simulate(StepResponse response, double initialOutput) {
+        double[] times = response.getTimes();
+        double[] inputs = response.getInputs();
+        double[] result = new double[times.length];
+        State state = new State(initialOutput);
+
+        int inputRow = 0;
+        double time = 0;
+        for (int row = 0; row < times.length; row++) {
+            while (time < times[row]) {
+                // the input the plant sees now was sent one dead time ago
+                double sentAt = time - deadTime;
+                while (inputRow + 1 < times.length && times[inputRow + 1] <= sentAt) {
+                    inputRow++;
+                }
+                state.step(sentAt < 0 ? 0 : inputs[inputRow], STEP_SECONDS);
+                time += STEP_SECONDS;
+            }
+            result[row] = state.output;
+        }
+        return result;
+    }
+
+    /**
+     * @return a fresh state of the plant, resting at the output
+     */
+    public State newState(double initialOutput) {
+        return new State(initialOutput);
+    }
+
+    /**
+     * Finds where the loop's phase reaches -180 degrees, what a relay test would measure.
+     * The loop period adds half a period of dead time, for the hold between outputs.
+     *
+     * @return the ultimate gain and period, or null if the phase never reaches -180 degrees
+     */
+    public double[] ultimatePoint(double loopPeriod) {
+        double delay = deadTime + loopPeriod / 2;
+        double low = 1e-3;
+        double high = 1e4;
+        if (phase(high, delay) > -Math.PI) {
+            return null;
+        }
+        for (int i = 0; i < 100; i++) {
+            double middle = Math.sqrt(low * high);
+            if (phase(middle, delay) > -Math.PI) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        double frequency = (low + high) / 2;
+        double magnitude = gain / Math.sqrt(1 + frequency * frequency * timeConstant * timeConstant);
+        if (integrating) {
+            magnitude /= frequency;
+        }
+        return new double[]{1 / magnitude, 2 * Math.PI / frequency};
+    }
+
+    private double phase(double frequency, double delay) {
+        return (integrating ? -Math.PI / 2 : 0) - Math.atan(frequency * timeConstant) - frequency * delay;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s plant, K %.4g, tau %.3f s, dead time %.3f s",
+                integrating ? "integrating" : "lag", gain, timeConstant, deadTime);
+    }
+
+    /**
+     * The plant's state, stepped forward a little at a time. The dead time is left to the caller.
+     */
+    public class State {
+        private double lagged; // the motor's response to the input, through the lag
+        private double output;
+
+        private State(double initialOutput) {
+            this.output = initialOutput;
+            this.lagged = integrating || gain == 0 ? 0 : initialOutput / gain;
+        }
+
+        public void step(double input, double dt) {
+            lagged += (input - lagged) * (1 - Math.exp(-dt / timeConstant));
+            if (integrating) {
+                output += gain * lagged * dt;
+            } else {
+                output = gain * lagged;
+            }
+        }
+
+        public double getOutput() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.firstinspires.ftc.griffins.Tuning;
+
+import org.firstinspires.ftc.griffins.DataRecorder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One recorded move of a control loop: the times, the controller's output (the plant's input) and the measurement,
+ * as a change from where the move started, toward the set point.
+ * <p/>
+ * PIDDrive records the power it sent, which is used as it is. Older drive recordings and the flywheel recordings
+ * only hold the error or the speed, so the controller's output is worked out again from them, with the gains
+ * the loop ran with, the same way the time based {@link org.firstinspires.ftc.griffins.Navigation.PIDController} does.
+ * That leaves out the derivative filter and the drive's left and right difference correction.
+ */
+
+public class StepResponse {
+
+    private final double[] times;
+    private final double[] inputs;
+    private final double[] outputs;
+    private final double initialOutput;
+    private final double setPoint;
+
+    /**
+     * @param times         seconds from the start of the move
+     * @param inputs        the controller output from each time to the next
+     * @param outputs       the measurement at each time
+     * @param initialOutput the measurement the plant rests at before the move
+     * @param setPoint      the measurement the move was heading for
+     */
+    public StepResponse(double[] times, double[] inputs, double[] outputs, double initialOutput, double setPoint) {
+        this.times = times;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.initialOutput = initialOutput;
+        this.setPoint = setPoint;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public double[] getTimes() {
+        return times;
+    }
+
+    public double[] getInputs() {
+        return inputs;
+    }
+
+    public double[] getOutputs() {
+        return outputs;
+    }
+
+    public double getInitialOutput() {
+        return initialOutput;
+    }
+
+    public double getSetPoint() {
+        return setPoint;
+    }
+
+    public double getStepSize() {
+        return setPoint - initialOutput;
+    }
+
+    /**
+     * Reads a recording, either a data recorder file or the csv that driveToTarget and spinToTarget return.
+     *
+     * @return the columns, the first one is the time
+     */
+    public static double[][] readColumns(File file) throws IOException {
+        if (!file.getName().endsWith(".csv") && !file.getName().endsWith(".txt")) {
+            DataRecorder.Recording recording = DataRecorder.read(file);
+            double[][] columns = new double[recording.getChannelCount() + 1][recording.getRowCount()];
+            for (int row = 0; row < recording.getRowCount(); row++) {
+                columns[0][row] = recording.getTime(row);
+                for (int channel = 0; channel < recording.getChannelCount(); channel++) {
+                    columns[channel + 1][row] = recording.getValue(row, channel);
+                }
+            }
+            return columns;
+        }
+
+        List<double[]> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                double[] row = new double[fields.length];
+                try {
+                    for (int i = 0; i < fields.length; i++) {
+                        row[i] = Double.parseDouble(fields[i].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    continue; // a header
+                }
+                rows.add(row);
+            }
+        } finally {
+            reader.close();
+        }
+
+        int columnCount = rows.isEmpty() ? 0 : rows.get(0).length;
+        double[][] columns = new double[columnCount][rows.size()];
+        for (int row = 0; row < rows.size(); row++) {
+            for (int column = 0; column < columnCount; column++) {
+                columns[column][row] = rows.get(row)[column];
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Splits a PIDDrive recording (millis, error, turning, power) into its moves.
+     * A move starts where the error jumps away from the target, the time skips, or a drive changes to a turn.
+     *
+     * @param columns   the recording, from {@link #readColumns(File)}
+     * @param turns     true for the turns, false for the straight drives. Recordings without the turning column are all used
+     * @param loop      the gains the loop ran with
+     * @param tolerance the loop's on target tolerance, moves shorter than 10 of them are skipped
+     */
+    public static List<StepResponse> fromDriveRecording(double[][] columns, boolean turns, ControllerGains loop, double tolerance) {
+        List<StepResponse> responses = new ArrayList<>();
+        double[] millis = columns[0];
+        double[] errors = columns[1];
+        double[] turning = columns.length > 2 ? columns[2] : null;
+        double[] powers = columns.length > 3 ? columns[3] : null;
+
+        int start = 0;
+        for (int row = 1; row <= millis.length; row++) {
+            boolean split = row == millis.length
+                    || millis[row] - millis[row - 1] > 100
+                    || (turning != null && turning[row] != turning[row - 1])
+                    || Math.abs(errors[row]) > Math.abs(errors[row - 1]) + Math.max(5 * tolerance, 0.25 * Math.abs(errors[row]));
+            if (!split) {
+                continue;
+            }
+
+            boolean wanted = turning == null || (turning[start] != 0) == turns;
+            if (wanted && row - start >= 10 && Math.abs(errors[start]) > 10 * tolerance) {
+                responses.add(fromErrors(millis, errors, powers, start, row, loop));
+            }
+            start = row;
+        }
+        return responses;
+    }
+
+    /**
+     * @param powers the powers that were sent, or null to work them out from the errors
+     */
+    private static StepResponse fromErrors(double[] millis, double[] errors, double[] powers, int start, int end, ControllerGains loop) {
+        int size = end - start;
+        double[] times = new double[size];
+        double[] inputs = new double[size];
+        double[] outputs = new double[size];
+        double setPoint = errors[start];
+
+        ControllerGains.Controller controller = loop.newController();
+        for (int i = 0; i < size; i++) {
+            times[i] = (millis[start + i] - millis[start]) / 1000;
+            // the measurement moves from 0 toward the first error
+            outputs[i] = setPoint - errors[start + i];
+            inputs[i] = powers != null ? powers[start + i] : controller.output(times[i], setPoint, outputs[i]);
+        }
+        return new StepResponse(times, inputs, outputs, 0, setPoint);
+    }
+
+    /**
+     * Splits a PIDRate recording (millis, left rpm, right rpm) into the spin ups of each flywheel,
+     * a spin up starts where the time skips.
+     *
+     * @param targetRpm the target of the spin ups, or NaN to take the speed they end at
+     */
+    public static List<StepResponse> fromFlywheelRecording(double[][] columns, double targetRpm, ControllerGains loop) {
+        List<StepResponse> responses = new ArrayList<>();
+        double[] millis = columns[0];
+
+        int start = 0;
+        for (int row = 1; row <= millis.length; row++) {
+            if (row < millis.length && millis[row] - millis[row - 1] <= 100) {
+                continue;
+            }
+            if (row - start >= 10) {
+                for (int column = 1; column < columns.length; column++) {
+                    responses.add(fromSpeeds(millis, columns[column], start, row, targetRpm, loop));
+                }
+            }
+            start = row;
+        }
+        return responses;
+    }
+
+    private static StepResponse fromSpeeds(double[] millis, double[] rpms, int start, int end, double targetRpm, ControllerGains loop) {
+        int size = end - start;
+        if (Double.isNaN(targetRpm)) {
+            // the average of the last tenth, where it has settled
+            targetRpm = 0;
+            int settled = Math.max(1, size / 10);
+            for (int i = end - settled; i < end; i++) {
+                targetRpm += rpms[i] / settled;
+            }
+        }
+
+        double[] times = new double[size];
+        double[] inputs = new double[size];
+        double[] outputs = new double[size];
+        ControllerGains.Controller controller = loop.newController();
+        for (int i = 0; i < size; i++) {
+            times[i] = (millis[start + i] - millis[start]) / 1000;
+            outputs[i] = rpms[start + i];
+            inputs[i] = controller.output(times[i], targetRpm, outputs[i]);
+        }
+        return new StepResponse(times, inputs, outputs, rpms[start], targetRpm);
+    }
+}